@@ -4,7 +4,9 @@ import com.mongodb.MongoClientURI;
 import com.mongodb.client.MongoClient;
 import dev.morphia.Datastore;
 import dev.morphia.Morphia;
+import io.micrometer.core.instrument.Metrics;
 import org.apache.logging.log4j.LogManager;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
 import org.springframework.boot.autoconfigure.mongo.MongoProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -35,4 +37,13 @@ public class DataSourceConfig {
 
         return Morphia.createDatastore(mongoClient, database, MAPPER_OPTIONS);
     }
+
+    /**
+     * Record latency and response size of all Mongo commands. We use the global registry, because injecting the
+     * MeterRegistry bean here would create a dependency cycle (meter binders depend on the datastore)
+     */
+    @Bean
+    public MongoClientSettingsBuilderCustomizer mongoCommandMetrics() {
+        return builder -> builder.addCommandListener(new MongoCommandMetrics(Metrics.globalRegistry));
+    }
 }
@@ -7,6 +7,7 @@ public final class FTDefinitions {
 
     public static final  String MEDIA_TYPE_JSONLD         = "application/ld+json";
     public static final  String MEDIA_TYPE_JSON           = "application/json";
+    public static final  String MEDIA_TYPE_NDJSON         = "application/x-ndjson";
     public static final  String V3_ANNO_PAGE_TYPE         = "AnnotationPage";
     public static final  String V3_ANNOTATION_TYPE        = "Annotation";
     public static final  String V3_ANNO_BODY_TYPE         = "SpecificResource";
@@ -43,6 +43,36 @@ public class FTSettings {
     @Value("${resource.baseurl}")
     private String resourceBaseUrl;
 
+    @Value("${annopage.cache.maxsize.mb:0}")
+    private int annoPageCacheMaxSizeMb;
+
+    @Value("${response.cache.maxsize.mb:0}")
+    private int responseCacheMaxSizeMb;
+
+    @Value("${annopage.filter.enabled:true}")
+    private boolean annoPageFilterEnabled;
+
+    @Value("${annopage.filter.refresh.seconds:60}")
+    private int annoPageFilterRefreshSeconds;
+
+    @Value("${annopage.filter.rebuild.hours:24}")
+    private int annoPageFilterRebuildHours;
+
+    @Value("${notfound.cache.seconds:0}")
+    private int notFoundCacheSeconds;
+
+    @Value("${annopages.batch.maxsize:100}")
+    private int annoPagesBatchMaxSize;
+
+    @Value("${export.cursor.batchsize:500}")
+    private int exportBatchSize;
+
+    @Value("${search.cache.maxsize.mb:0}")
+    private int searchCacheMaxSizeMb;
+
+    @Value("${search.cache.ttl.seconds:0}")
+    private int searchCacheTtlSeconds;
+
     @Value("${search.textGranularity.default:Word}")
     private String searchTextGranularity;
     private List<AnnotationType> defaultSearchTextGranularity;
@@ -50,6 +80,8 @@ public class FTSettings {
     @Autowired
     private Environment environment;
 
+    private String appVersion;
+
 
     @PostConstruct
     private void init() throws InvalidParameterException {
@@ -61,6 +93,7 @@ public class FTSettings {
                     FTSearchController.ALLOWED_ANNOTATION_TYPES);
         }
         LOG.info("Default text granularity for search = {}", searchTextGranularity);
+        appVersion = loadAppVersion();
     }
 
     /**
@@ -78,6 +111,11 @@ public class FTSettings {
      * @return String containing app version, used in the eTag SHA hash generation
      */
     public String getAppVersion() {
+        return appVersion;
+    }
+
+    // the version doesn't change while running, so we read it only once at startup
+    private String loadAppVersion() {
         Properties  buildProperties  = new Properties();
         InputStream resourceAsStream = this.getClass().getResourceAsStream("/build.properties");
         try {
@@ -101,6 +139,76 @@ public class FTSettings {
         return resourceBaseUrl;
     }
 
+    /**
+     * @return maximum (estimated) size of the AnnoPage cache in megabytes, 0 means caching is disabled
+     */
+    public int getAnnoPageCacheMaxSizeMb() {
+        return annoPageCacheMaxSizeMb;
+    }
+
+    /**
+     * @return maximum (estimated) size of the serialized response cache in megabytes, 0 means caching is disabled
+     */
+    public int getResponseCacheMaxSizeMb() {
+        return responseCacheMaxSizeMb;
+    }
+
+    /**
+     * @return true if a filter with the ids of all existing AnnoPages should be kept in memory
+     */
+    public boolean isAnnoPageFilterEnabled() {
+        return annoPageFilterEnabled;
+    }
+
+    /**
+     * @return interval in seconds for adding new AnnoPages to the AnnoPage filter
+     */
+    public int getAnnoPageFilterRefreshSeconds() {
+        return annoPageFilterRefreshSeconds;
+    }
+
+    /**
+     * @return interval in hours for rebuilding the complete AnnoPage filter (so deleted AnnoPages are removed)
+     */
+    public int getAnnoPageFilterRebuildHours() {
+        return annoPageFilterRebuildHours;
+    }
+
+    /**
+     * @return number of seconds we remember that something wasn't found, 0 means this is disabled
+     */
+    public int getNotFoundCacheSeconds() {
+        return notFoundCacheSeconds;
+    }
+
+    /**
+     * @return maximum number of pages that can be requested at once with the annopages (batch) endpoint
+     */
+    public int getAnnoPagesBatchMaxSize() {
+        return annoPagesBatchMaxSize;
+    }
+
+    /**
+     * @return number of documents retrieved from the database in one batch when exporting a record or dataset
+     */
+    public int getExportBatchSize() {
+        return exportBatchSize;
+    }
+
+    /**
+     * @return maximum (estimated) size of the search result cache in megabytes, 0 means caching is disabled
+     */
+    public int getSearchCacheMaxSizeMb() {
+        return searchCacheMaxSizeMb;
+    }
+
+    /**
+     * @return number of seconds a search result is cached, 0 means caching is disabled
+     */
+    public int getSearchCacheTtlSeconds() {
+        return searchCacheTtlSeconds;
+    }
+
     public List<AnnotationType> getDefaultSearchTextGranularity() {
         return Collections.unmodifiableList(defaultSearchTextGranularity);
     }
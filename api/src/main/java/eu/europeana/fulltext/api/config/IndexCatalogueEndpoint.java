@@ -0,0 +1,76 @@
+package eu.europeana.fulltext.api.config;
+
+import dev.morphia.Datastore;
+import eu.europeana.fulltext.repository.IndexCatalogue;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Read-only actuator endpoint (/actuator/indexes) that reports missing, undeclared and unused MongoDB indexes.
+ * Missing indexes can be created at startup by setting the mongo.indexes.ensure property to true. Normally indexes are
+ * created by the loader, so this is disabled by default. Index builds can't be started via the endpoint, because it's
+ * exposed over http without authentication.
+ */
+@Component
+@Endpoint(id = "indexes")
+public class IndexCatalogueEndpoint {
+
+    private static final Logger LOG = LogManager.getLogger(IndexCatalogueEndpoint.class);
+
+    private final IndexCatalogue indexCatalogue;
+    private final TaskExecutor   taskExecutor;
+    private final boolean        ensureOnStartup;
+
+    /**
+     * Create a new endpoint for the index catalogue
+     * @param datastore       datastore to check
+     * @param taskExecutor    executor used to create missing indexes in the background
+     * @param ensureOnStartup if true, missing indexes are created when the application has started
+     */
+    public IndexCatalogueEndpoint(Datastore datastore, TaskExecutor taskExecutor,
+                                  @Value("${mongo.indexes.ensure:false}") boolean ensureOnStartup) {
+        this.indexCatalogue = new IndexCatalogue(datastore);
+        this.taskExecutor = taskExecutor;
+        this.ensureOnStartup = ensureOnStartup;
+    }
+
+    /**
+     * Create missing indexes after startup (if configured), we do this asynchronously so it doesn't delay the startup
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndexesOnStartup() {
+        if (ensureOnStartup) {
+            taskExecutor.execute(this::ensureIndexes);
+        }
+    }
+
+    /**
+     * @return index report for each collection
+     */
+    @ReadOperation
+    public Map<String, IndexCatalogue.CollectionReport> report() {
+        return indexCatalogue.report();
+    }
+
+    /**
+     * Create all missing indexes
+     */
+    void ensureIndexes() {
+        LOG.info("Ensuring indexes...");
+        indexCatalogue.ensureIndexes();
+        indexCatalogue.report().forEach((collection, report) -> {
+            if (!report.isComplete()) {
+                LOG.warn("Collection {} is missing indexes {}", collection, report.getMissing());
+            }
+        });
+    }
+}
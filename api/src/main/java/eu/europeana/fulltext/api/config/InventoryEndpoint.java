@@ -0,0 +1,47 @@
+package eu.europeana.fulltext.api.config;
+
+import eu.europeana.fulltext.api.service.InventoryService;
+import eu.europeana.fulltext.entity.DatasetInventory;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Actuator endpoint (/actuator/inventory) that reports the number of documents in each collection and the
+ * number of pages, resources, annotations and bytes per dataset (/actuator/inventory/{datasetId}).
+ * This can be used to verify a load without counting the collections.
+ */
+@Component
+@Endpoint(id = "inventory")
+public class InventoryEndpoint {
+
+    private final InventoryService inventoryService;
+
+    public InventoryEndpoint(InventoryService inventoryService) {
+        this.inventoryService = inventoryService;
+    }
+
+    /**
+     * @return collection totals and the inventory of each dataset
+     */
+    @ReadOperation
+    public Map<String, Object> inventory() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("totals", inventoryService.getTotals());
+        result.put("datasets", inventoryService.getDatasets());
+        return result;
+    }
+
+    /**
+     * @param datasetId ID of the dataset
+     * @return the inventory of the dataset, or null (404 response) if there is none
+     */
+    @ReadOperation
+    public DatasetInventory dataset(@Selector String datasetId) {
+        return inventoryService.getDataset(datasetId);
+    }
+}
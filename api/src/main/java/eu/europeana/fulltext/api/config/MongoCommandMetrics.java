@@ -0,0 +1,97 @@
+package eu.europeana.fulltext.api.config;
+
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.RawBsonDocument;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the latency (mongodb.command timer) and response size (mongodb.command.response.size) of each command
+ * sent to Mongo, tagged with the command name, collection and whether it succeeded. Together with the
+ * fulltext.query timers this shows how much of a query's time is spent in the database and how much in mapping
+ * the results.
+ */
+public class MongoCommandMetrics implements CommandListener {
+
+    static final String COMMAND_TIMER = "mongodb.command";
+    static final String RESPONSE_SIZE = "mongodb.command.response.size";
+
+    private static final String TAG_COMMAND    = "command";
+    private static final String TAG_COLLECTION = "collection";
+    private static final String TAG_STATUS     = "status";
+    private static final String SUCCESS        = "success";
+    private static final String FAILED         = "failed";
+    private static final String UNKNOWN        = "unknown";
+
+    private final MeterRegistry registry;
+    // collection of each running command, the finished events don't contain the command itself
+    private final Map<Integer, String> collections = new ConcurrentHashMap<>();
+
+    /**
+     * Create a new listener
+     * @param registry registry to record the metrics in
+     */
+    public MongoCommandMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+        collections.put(event.getRequestId(), getCollection(event.getCommand(), event.getCommandName()));
+    }
+
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event) {
+        String collection = collections.remove(event.getRequestId());
+        record(event.getCommandName(), collection, SUCCESS, event.getElapsedTime(TimeUnit.NANOSECONDS));
+        BsonDocument reply = event.getResponse();
+        if (reply instanceof RawBsonDocument) {
+            DistributionSummary.builder(RESPONSE_SIZE)
+                    .baseUnit("bytes")
+                    .tags(TAG_COMMAND, event.getCommandName(), TAG_COLLECTION, nonNull(collection))
+                    .publishPercentileHistogram()
+                    .register(registry)
+                    .record(((RawBsonDocument) reply).getByteBuffer().remaining());
+        }
+    }
+
+    @Override
+    public void commandFailed(CommandFailedEvent event) {
+        String collection = collections.remove(event.getRequestId());
+        record(event.getCommandName(), collection, FAILED, event.getElapsedTime(TimeUnit.NANOSECONDS));
+    }
+
+    private void record(String command, String collection, String status, long nanos) {
+        Timer.builder(COMMAND_TIMER)
+                .tags(TAG_COMMAND, command, TAG_COLLECTION, nonNull(collection), TAG_STATUS, status)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * For most commands (find, aggregate, count, insert, etc.) the collection name is the value of the command field.
+     * For getMore it's in a separate collection field.
+     */
+    private static String getCollection(BsonDocument command, String commandName) {
+        BsonValue value = command.get("collection");
+        if (value == null || !value.isString()) {
+            value = command.get(commandName);
+        }
+        return (value != null && value.isString() ? value.asString().getValue() : UNKNOWN);
+    }
+
+    private static String nonNull(String collection) {
+        return (collection == null ? UNKNOWN : collection);
+    }
+}
@@ -0,0 +1,38 @@
+package eu.europeana.fulltext.api.config;
+
+import eu.europeana.fulltext.api.service.FTMetrics;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.boot.actuate.metrics.web.servlet.WebMvcTagsContributor;
+import org.springframework.stereotype.Component;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Adds the requested IIIF version, text granularity and how the request was handled (e.g. served from cache) as tags
+ * to the http.server.requests timer. Controllers provide these values as request attributes via {@link FTMetrics}.
+ * Requests that don't set an attribute get the value 'none', so all requests have the same tag keys.
+ */
+@Component
+public class RequestMetricsTags implements WebMvcTagsContributor {
+
+    @Override
+    public Iterable<Tag> getTags(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                 Throwable exception) {
+        return Tags.of(
+                tag(request, FTMetrics.TAG_VERSION, FTMetrics.ATTRIBUTE_VERSION),
+                tag(request, FTMetrics.TAG_GRANULARITY, FTMetrics.ATTRIBUTE_GRANULARITY),
+                tag(request, FTMetrics.TAG_RESULT, FTMetrics.ATTRIBUTE_RESULT));
+    }
+
+    @Override
+    public Iterable<Tag> getLongRequestTags(HttpServletRequest request, Object handler) {
+        return Tags.empty();
+    }
+
+    private static Tag tag(HttpServletRequest request, String key, String attribute) {
+        Object value = request.getAttribute(attribute);
+        return Tag.of(key, value == null ? FTMetrics.RESULT_NONE : value.toString());
+    }
+}
@@ -1,5 +1,6 @@
 package eu.europeana.fulltext.api.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 
@@ -23,6 +24,9 @@ public class FTResource extends JsonLdIdType {
     @JsonProperty("edmRights")
     private String rights;
 
+    @JsonIgnore
+    private String hash;
+
 
     private FTResource(String id) {
         super(id, EDM_FULLTEXTRESOURCE_TYPE);
@@ -68,4 +72,15 @@ public class FTResource extends JsonLdIdType {
     }
 
     public String getRights() { return rights; }
+
+    /**
+     * @return fingerprint of the resource contents, used for generating the ETag
+     */
+    public String getHash() {
+        return hash;
+    }
+
+    public void setHash(String hash) {
+        this.hash = hash;
+    }
 }
@@ -0,0 +1,66 @@
+package eu.europeana.fulltext.api.model;
+
+import eu.europeana.fulltext.entity.AnnoPage;
+
+/**
+ * Wraps an AnnoPage entity so it can be serialized to a IIIF AnnotationPage without first creating an
+ * AnnotationV2/AnnotationV3 object for every annotation. The url prefixes that are the same for all annotations of
+ * the page are determined only once, the actual output is generated by a dedicated serializer for each IIIF version.
+ */
+public abstract class IIIFAnnotationPage implements AnnotationWrapper {
+
+    private final AnnoPage   annoPage;
+    private final FTResource resource;
+    private final String     annoPageIdUrl;
+    private final String     annotationIdBaseUrl;
+    private final String     resourceIdUrl;
+    private       String[]   context;
+
+    /**
+     * @param annoPage            the AnnoPage to serialize
+     * @param resource            if not null, the resource is dereferenced (included) in the top-level annotations
+     * @param context             the page's json-ld context
+     * @param annoPageIdUrl       id url of the AnnoPage
+     * @param annotationIdBaseUrl id url of the annotations, without annotation id
+     * @param resourceIdUrl       id url of the AnnoPage's resource
+     */
+    protected IIIFAnnotationPage(AnnoPage annoPage, FTResource resource, String[] context, String annoPageIdUrl,
+                                 String annotationIdBaseUrl, String resourceIdUrl) {
+        this.annoPage = annoPage;
+        this.resource = resource;
+        this.context = context;
+        this.annoPageIdUrl = annoPageIdUrl;
+        this.annotationIdBaseUrl = annotationIdBaseUrl;
+        this.resourceIdUrl = resourceIdUrl;
+    }
+
+    public AnnoPage getAnnoPage() {
+        return annoPage;
+    }
+
+    public FTResource getResource() {
+        return resource;
+    }
+
+    public String getAnnoPageIdUrl() {
+        return annoPageIdUrl;
+    }
+
+    public String getAnnotationIdBaseUrl() {
+        return annotationIdBaseUrl;
+    }
+
+    public String getResourceIdUrl() {
+        return resourceIdUrl;
+    }
+
+    @Override
+    public String[] getContext() {
+        return context;
+    }
+
+    @Override
+    public void setContext(String[] context) {
+        this.context = context;
+    }
+}
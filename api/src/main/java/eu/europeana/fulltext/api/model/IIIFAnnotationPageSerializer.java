@@ -0,0 +1,265 @@
+package eu.europeana.fulltext.api.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import eu.europeana.fulltext.AnnotationType;
+import eu.europeana.fulltext.entity.AnnoPage;
+import eu.europeana.fulltext.entity.Annotation;
+import eu.europeana.fulltext.entity.Target;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static eu.europeana.fulltext.util.NormalPlayTime.msToHHmmss;
+
+/**
+ * Base class for serializing an AnnoPage entity directly to IIIF json(-ld). The output is exactly the same as that
+ * of the former AnnotationPageV2/AnnotationPageV3 model (which the tests still use to verify this), but no
+ * intermediate objects and strings are created for every annotation. Property names are pre-encoded and the url prefixes of a page are copied into a
+ * character buffer only once, so for each annotation only the variable part of its urls is appended.
+ *
+ * @param <T> the IIIF version specific AnnotationPage type
+ */
+public abstract class IIIFAnnotationPageSerializer<T extends IIIFAnnotationPage> extends StdSerializer<T> {
+
+    private static final long serialVersionUID = -3484256254470217036L;
+
+    private static final Logger LOG = LogManager.getLogger(IIIFAnnotationPageSerializer.class);
+
+    protected static final SerializableString CONTEXT    = new SerializedString("@context");
+    protected static final SerializableString LANG       = new SerializedString("lang");
+    protected static final SerializableString MOTIVATION = new SerializedString("motivation");
+    protected static final SerializableString DC_TYPE    = new SerializedString("dcType");
+    protected static final SerializableString TYPE       = new SerializedString("type");
+    protected static final SerializableString RIGHTS     = new SerializedString("rights");
+    protected static final SerializableString SOURCE     = new SerializedString("source");
+    protected static final SerializableString LANGUAGE   = new SerializedString("language");
+    protected static final SerializableString VALUE      = new SerializedString("value");
+
+    private static final String UNDEFINED_DC_TYPE = "undefined";
+
+    protected IIIFAnnotationPageSerializer(Class<T> type) {
+        super(type);
+    }
+
+    @Override
+    public void serialize(T page, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        AnnoPage annoPage = page.getAnnoPage();
+        gen.writeStartObject();
+        if (page.getContext() != null) {
+            gen.writeFieldName(CONTEXT);
+            writeStringArray(gen, page.getContext());
+        }
+        writePageIdAndType(gen, page.getAnnoPageIdUrl());
+        if (annoPage.getLang() != null) {
+            gen.writeFieldName(LANG);
+            gen.writeString(annoPage.getLang());
+        }
+        writeAnnotationsFieldName(gen);
+
+        PageUrls urls = new PageUrls(page, annoPage.getTgtId());
+        List<Annotation> annotations = annoPage.getAns();
+        gen.writeStartArray();
+        // page annotations are listed first (in reverse order, the same as the former AnnotationPageV2/V3 mapping)
+        for (int i = annotations.size() - 1; i >= 0; i--) {
+            Annotation annotation = annotations.get(i);
+            if (annotation.isTopLevel()) {
+                writeAnnotation(gen, urls, annotation, page.getResource());
+            }
+        }
+        for (Annotation annotation : annotations) {
+            if (!annotation.isTopLevel()) {
+                writeAnnotation(gen, urls, annotation, null);
+            }
+        }
+        gen.writeEndArray();
+        gen.writeEndObject();
+    }
+
+    /**
+     * Writes the id and type fields of the AnnotationPage
+     */
+    protected abstract void writePageIdAndType(JsonGenerator gen, String annoPageIdUrl) throws IOException;
+
+    /**
+     * Writes the field name of the AnnotationPage's list of annotations
+     */
+    protected abstract void writeAnnotationsFieldName(JsonGenerator gen) throws IOException;
+
+    /**
+     * Writes a single annotation object
+     * @param resource if not null, the resource is dereferenced (included) in the annotation body
+     */
+    protected abstract void writeAnnotation(JsonGenerator gen, PageUrls urls, Annotation annotation,
+                                            FTResource resource) throws IOException;
+
+    protected static void writeMotivationAndDcType(JsonGenerator gen, Annotation annotation, String defaultMotivation)
+            throws IOException {
+        gen.writeFieldName(MOTIVATION);
+        gen.writeString(StringUtils.isNotBlank(annotation.getMotiv()) ? annotation.getMotiv() : defaultMotivation);
+        gen.writeFieldName(DC_TYPE);
+        gen.writeString(expandDCType(annotation.getDcType()));
+    }
+
+    /**
+     * Writes the type, rights, source, language and value of a dereferenced resource
+     */
+    protected static void writeResourceFields(JsonGenerator gen, FTResource resource) throws IOException {
+        writeOptional(gen, TYPE, resource.getType());
+        writeOptional(gen, RIGHTS, resource.getRights());
+        writeOptional(gen, SOURCE, resource.getSource());
+        writeOptional(gen, LANGUAGE, resource.getLanguage());
+        writeOptional(gen, VALUE, resource.getValue());
+    }
+
+    protected static void writeOptional(JsonGenerator gen, SerializableString fieldName, String value)
+            throws IOException {
+        if (value != null) {
+            gen.writeFieldName(fieldName);
+            gen.writeString(value);
+        }
+    }
+
+    protected static void writeStringArray(JsonGenerator gen, String[] values) throws IOException {
+        gen.writeStartArray();
+        for (String value : values) {
+            gen.writeString(value);
+        }
+        gen.writeEndArray();
+    }
+
+    /**
+     * Writes the target urls of an annotation (using the AnnoPage's target id as prefix)
+     */
+    protected static void writeTargets(JsonGenerator gen, PageUrls urls, Annotation annotation) throws IOException {
+        gen.writeStartArray();
+        if (annotation.getTgs() != null) {
+            for (Target target : annotation.getTgs()) {
+                urls.target.reset();
+                if (annotation.isMedia()) {
+                    urls.target.append("#t=")
+                            .append(msToHHmmss(target.getStart().longValue())).append(',')
+                            .append(msToHHmmss(target.getEnd().longValue()));
+                } else {
+                    urls.target.append("#xywh=")
+                            .append(target.getX()).append(',')
+                            .append(target.getY()).append(',')
+                            .append(target.getW()).append(',')
+                            .append(target.getH());
+                }
+                urls.target.write(gen);
+            }
+        } else if (annotation.isTopLevel()) {
+            gen.writeString(urls.targetId);
+        }
+        gen.writeEndArray();
+    }
+
+    private static String expandDCType(char dcTypeCode) {
+        AnnotationType dcType = AnnotationType.fromAbbreviation(dcTypeCode);
+        if (dcType == null) {
+            LOG.warn("Unknown dcType code '{}'", dcTypeCode);
+            return UNDEFINED_DC_TYPE;
+        }
+        return dcType.getDisplayName();
+    }
+
+    /**
+     * Url buffers for all annotations of a single AnnoPage
+     */
+    protected static final class PageUrls {
+        private final String    targetId;
+        private final UrlBuffer target;
+        private final UrlBuffer annotationId;
+        private final UrlBuffer resourceId;
+        private final String    resourceIdUrl;
+
+        private PageUrls(IIIFAnnotationPage page, String targetId) {
+            this.targetId = targetId;
+            this.target = new UrlBuffer(String.valueOf(targetId));
+            this.annotationId = new UrlBuffer(page.getAnnotationIdBaseUrl());
+            this.resourceId = new UrlBuffer(page.getResourceIdUrl());
+            this.resourceIdUrl = page.getResourceIdUrl();
+        }
+
+        /**
+         * Writes the id url of an annotation
+         */
+        public void writeAnnotationId(JsonGenerator gen, Annotation annotation) throws IOException {
+            annotationId.reset().append(annotation.getAnId()).write(gen);
+        }
+
+        /**
+         * Writes the resource url of an annotation, including the character range (if any)
+         */
+        public void writeResourceId(JsonGenerator gen, Annotation annotation) throws IOException {
+            resourceId.reset();
+            if (annotation.getFrom() != null || annotation.getTo() != null) {
+                resourceId.append("#char=").append(annotation.getFrom()).append(',').append(annotation.getTo());
+            }
+            resourceId.write(gen);
+        }
+
+        /**
+         * @return the id url of the AnnoPage's resource
+         */
+        public String getResourceIdUrl() {
+            return resourceIdUrl;
+        }
+    }
+
+    /**
+     * Character buffer for string values that all start with the same prefix. The prefix is copied into the buffer
+     * only once, after a reset only the variable part of a value has to be appended.
+     */
+    private static final class UrlBuffer {
+        private final int prefixLength;
+        private char[] chars;
+        private int    length;
+
+        private UrlBuffer(String prefix) {
+            this.prefixLength = prefix.length();
+            this.chars = new char[prefixLength + 64];
+            prefix.getChars(0, prefixLength, chars, 0);
+            this.length = prefixLength;
+        }
+
+        private UrlBuffer reset() {
+            length = prefixLength;
+            return this;
+        }
+
+        private UrlBuffer append(String s) {
+            int newLength = length + s.length();
+            if (newLength > chars.length) {
+                chars = Arrays.copyOf(chars, Math.max(newLength, 2 * chars.length));
+            }
+            s.getChars(0, s.length(), chars, length);
+            length = newLength;
+            return this;
+        }
+
+        private UrlBuffer append(Object o) {
+            return append(String.valueOf(o));
+        }
+
+        private UrlBuffer append(char c) {
+            if (length == chars.length) {
+                chars = Arrays.copyOf(chars, 2 * chars.length);
+            }
+            chars[length++] = c;
+            return this;
+        }
+
+        private void write(JsonGenerator gen) throws IOException {
+            gen.writeString(chars, 0, length);
+        }
+    }
+}
@@ -7,6 +7,7 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 
 import static eu.europeana.fulltext.api.config.FTDefinitions.*;
@@ -27,6 +28,9 @@ public class SummaryManifest implements Serializable {
     @JsonIgnore
     private String              localId;
 
+    @JsonIgnore
+    private Date                modified;
+
     @JsonProperty("items")
     private List<SummaryCanvas> canvases;
 
@@ -59,6 +63,17 @@ public class SummaryManifest implements Serializable {
         this.localId = localId;
     }
 
+    /**
+     * @return most recent modified date of all AnnoPages of this record
+     */
+    public Date getModified() {
+        return (modified == null ? null : (Date) modified.clone());
+    }
+
+    public void setModified(Date modified) {
+        this.modified = (modified == null ? null : (Date) modified.clone());
+    }
+
 
     /**
      * Adds a *fake* SummaryCanvas containing original and translated versions of an AnnoPage (AnnotationLangPages)
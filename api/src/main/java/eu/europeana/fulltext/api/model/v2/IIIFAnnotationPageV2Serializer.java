@@ -0,0 +1,77 @@
+package eu.europeana.fulltext.api.model.v2;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import eu.europeana.fulltext.api.model.FTResource;
+import eu.europeana.fulltext.api.model.IIIFAnnotationPageSerializer;
+import eu.europeana.fulltext.entity.Annotation;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.IOException;
+
+/**
+ * Writes an AnnoPage as IIIF v2 AnnotationList, with the same output as an AnnotationPageV2 object
+ */
+public class IIIFAnnotationPageV2Serializer extends IIIFAnnotationPageSerializer<IIIFAnnotationPageV2> {
+
+    private static final long serialVersionUID = 2470166203335284135L;
+
+    private static final SerializableString ID          = new SerializedString("@id");
+    private static final SerializableString JSONLD_TYPE = new SerializedString("@type");
+    private static final SerializableString RESOURCES   = new SerializedString("resources");
+    private static final SerializableString RESOURCE    = new SerializedString("resource");
+    private static final SerializableString FULL        = new SerializedString("full");
+    private static final SerializableString ON          = new SerializedString("on");
+
+    private static final SerializableString PAGE_TYPE       = new SerializedString("sc:AnnotationList");
+    private static final SerializableString ANNOTATION_TYPE = new SerializedString("oa:Annotation");
+    private static final String             V2_MOTIVATION   = "sc:painting";
+
+    public IIIFAnnotationPageV2Serializer() {
+        super(IIIFAnnotationPageV2.class);
+    }
+
+    @Override
+    protected void writePageIdAndType(JsonGenerator gen, String annoPageIdUrl) throws IOException {
+        gen.writeFieldName(ID);
+        gen.writeString(annoPageIdUrl);
+        gen.writeFieldName(JSONLD_TYPE);
+        gen.writeString(PAGE_TYPE);
+    }
+
+    @Override
+    protected void writeAnnotationsFieldName(JsonGenerator gen) throws IOException {
+        gen.writeFieldName(RESOURCES);
+    }
+
+    @Override
+    protected void writeAnnotation(JsonGenerator gen, PageUrls urls, Annotation annotation, FTResource resource)
+            throws IOException {
+        gen.writeStartObject();
+        gen.writeFieldName(ID);
+        urls.writeAnnotationId(gen, annotation);
+        gen.writeFieldName(JSONLD_TYPE);
+        gen.writeString(ANNOTATION_TYPE);
+        writeMotivationAndDcType(gen, annotation, V2_MOTIVATION);
+
+        gen.writeFieldName(RESOURCE);
+        gen.writeStartObject();
+        gen.writeFieldName(ID);
+        urls.writeResourceId(gen, annotation);
+        if (StringUtils.isNotBlank(annotation.getLang())) {
+            gen.writeFieldName(FULL);
+            gen.writeString(urls.getResourceIdUrl());
+            gen.writeFieldName(LANGUAGE);
+            gen.writeString(annotation.getLang());
+        } else if (resource != null) {
+            // dereferenced annotations only occur in top-level annotations, which in practice never have a language
+            writeResourceFields(gen, resource);
+        }
+        gen.writeEndObject();
+
+        gen.writeFieldName(ON);
+        writeTargets(gen, urls, annotation);
+        gen.writeEndObject();
+    }
+}
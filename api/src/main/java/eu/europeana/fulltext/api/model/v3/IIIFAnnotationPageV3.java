@@ -0,0 +1,29 @@
+package eu.europeana.fulltext.api.model.v3;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import eu.europeana.fulltext.api.model.FTResource;
+import eu.europeana.fulltext.api.model.IIIFAnnotationPage;
+import eu.europeana.fulltext.entity.AnnoPage;
+
+import static eu.europeana.fulltext.api.config.FTDefinitions.MEDIA_TYPE_EDM_JSONLD;
+import static eu.europeana.fulltext.api.config.FTDefinitions.MEDIA_TYPE_IIIF_V3;
+
+/**
+ * AnnoPage that is serialized directly to a IIIF v3 AnnotationPage (see AnnotationPageV3)
+ */
+@JsonSerialize(using = IIIFAnnotationPageV3Serializer.class)
+public class IIIFAnnotationPageV3 extends IIIFAnnotationPage {
+
+    /**
+     * @param annoPage            the AnnoPage to serialize
+     * @param resource            if not null, the resource is dereferenced (included) in the top-level annotations
+     * @param annoPageIdUrl       id url of the AnnoPage
+     * @param annotationIdBaseUrl id url of the annotations, without annotation id
+     * @param resourceIdUrl       id url of the AnnoPage's resource
+     */
+    public IIIFAnnotationPageV3(AnnoPage annoPage, FTResource resource, String annoPageIdUrl,
+                                String annotationIdBaseUrl, String resourceIdUrl) {
+        super(annoPage, resource, new String[]{MEDIA_TYPE_IIIF_V3, MEDIA_TYPE_EDM_JSONLD}, annoPageIdUrl,
+              annotationIdBaseUrl, resourceIdUrl);
+    }
+}
@@ -0,0 +1,79 @@
+package eu.europeana.fulltext.api.model.v3;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import eu.europeana.fulltext.api.model.FTResource;
+import eu.europeana.fulltext.api.model.IIIFAnnotationPageSerializer;
+import eu.europeana.fulltext.entity.Annotation;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.IOException;
+
+import static eu.europeana.fulltext.api.config.FTDefinitions.V3_ANNOTATION_TYPE;
+import static eu.europeana.fulltext.api.config.FTDefinitions.V3_ANNO_PAGE_TYPE;
+
+/**
+ * Writes an AnnoPage as IIIF v3 AnnotationPage, with the same output as an AnnotationPageV3 object
+ */
+public class IIIFAnnotationPageV3Serializer extends IIIFAnnotationPageSerializer<IIIFAnnotationPageV3> {
+
+    private static final long serialVersionUID = -6409938581525457792L;
+
+    private static final SerializableString ID     = new SerializedString("id");
+    private static final SerializableString ITEMS  = new SerializedString("items");
+    private static final SerializableString BODY   = new SerializedString("body");
+    private static final SerializableString TARGET = new SerializedString("target");
+
+    private static final SerializableString PAGE_TYPE       = new SerializedString(V3_ANNO_PAGE_TYPE);
+    private static final SerializableString ANNOTATION_TYPE = new SerializedString(V3_ANNOTATION_TYPE);
+    private static final String             V3_MOTIVATION   = "transcribing";
+
+    public IIIFAnnotationPageV3Serializer() {
+        super(IIIFAnnotationPageV3.class);
+    }
+
+    @Override
+    protected void writePageIdAndType(JsonGenerator gen, String annoPageIdUrl) throws IOException {
+        gen.writeFieldName(ID);
+        gen.writeString(annoPageIdUrl);
+        gen.writeFieldName(TYPE);
+        gen.writeString(PAGE_TYPE);
+    }
+
+    @Override
+    protected void writeAnnotationsFieldName(JsonGenerator gen) throws IOException {
+        gen.writeFieldName(ITEMS);
+    }
+
+    @Override
+    protected void writeAnnotation(JsonGenerator gen, PageUrls urls, Annotation annotation, FTResource resource)
+            throws IOException {
+        gen.writeStartObject();
+        gen.writeFieldName(ID);
+        urls.writeAnnotationId(gen, annotation);
+        gen.writeFieldName(TYPE);
+        gen.writeString(ANNOTATION_TYPE);
+        writeMotivationAndDcType(gen, annotation, V3_MOTIVATION);
+
+        gen.writeFieldName(BODY);
+        gen.writeStartObject();
+        gen.writeFieldName(ID);
+        urls.writeResourceId(gen, annotation);
+        if (StringUtils.isNotBlank(annotation.getLang())) {
+            // note that an AnnotationBodyV3 never outputs its SpecificResource type, so neither do we
+            gen.writeFieldName(SOURCE);
+            gen.writeString(urls.getResourceIdUrl());
+            gen.writeFieldName(LANGUAGE);
+            gen.writeString(annotation.getLang());
+        } else if (resource != null) {
+            // dereferenced annotations only occur in top-level annotations, which in practice never have a language
+            writeResourceFields(gen, resource);
+        }
+        gen.writeEndObject();
+
+        gen.writeFieldName(TARGET);
+        writeTargets(gen, urls, annotation);
+        gen.writeEndObject();
+    }
+}
@@ -0,0 +1,201 @@
+package eu.europeana.fulltext.api.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import eu.europeana.fulltext.AnnotationType;
+import eu.europeana.fulltext.api.config.FTSettings;
+import eu.europeana.fulltext.entity.AnnoPage;
+import eu.europeana.fulltext.entity.Annotation;
+import eu.europeana.fulltext.entity.TranslationAnnoPage;
+import eu.europeana.fulltext.repository.AnnoPageRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static eu.europeana.fulltext.api.service.FTMetrics.*;
+
+/**
+ * In-memory cache for AnnoPages. For each page only the complete AnnoPage (with all annotations) is stored,
+ * requests for specific text granularities are derived from that.
+ * Before a cached AnnoPage is returned we check if its modified date is still the same as the one in the database
+ * (or the one that the caller has just retrieved from the database). AnnoPages without modified date are not cached.
+ * <p>
+ * The cache size is limited to an estimated number of megabytes (see annopage.cache.maxsize.mb property). Cache
+ * statistics are available via actuator metrics (cache.gets, cache.puts, cache.evictions, etc.) and the time it takes
+ * to get an AnnoPage is recorded in the fulltext.annopage.fetch timer (tagged with cache hit or miss).
+ */
+@Component
+public class AnnoPageCache implements MeterBinder {
+
+    private static final Logger LOG = LogManager.getLogger(AnnoPageCache.class);
+
+    private static final String CACHE_NAME = "annoPages";
+    private static final long   BYTES_PER_MB = 1024L * 1024L;
+
+    // rough estimates of the memory used by the various AnnoPage parts
+    private static final int ANNOPAGE_SIZE   = 500;
+    private static final int ANNOTATION_SIZE = 150;
+    private static final int TARGET_SIZE     = 100;
+
+    private final AnnoPageRepository annoPageRepository;
+    private final Cache<String, AnnoPage> cache;
+
+    /**
+     * Create a new AnnoPage cache
+     * @param annoPageRepository repository used to load AnnoPages
+     * @param ftSettings settings containing the maximum cache size
+     */
+    public AnnoPageCache(AnnoPageRepository annoPageRepository, FTSettings ftSettings) {
+        this.annoPageRepository = annoPageRepository;
+        int maxSizeMb = ftSettings.getAnnoPageCacheMaxSizeMb();
+        if (maxSizeMb > 0) {
+            LOG.info("AnnoPage cache maximum size is {} MB", maxSizeMb);
+            this.cache = Caffeine.newBuilder()
+                    .maximumWeight(maxSizeMb * BYTES_PER_MB)
+                    .weigher((String key, AnnoPage annoPage) -> estimateSize(annoPage))
+                    .recordStats()
+                    .build();
+        } else {
+            LOG.info("AnnoPage cache is disabled");
+            this.cache = null;
+        }
+    }
+
+    /**
+     * Registers the cache statistics with actuator
+     * @param registry the registry to bind cache metrics to
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (cache != null) {
+            CaffeineCacheMetrics.monitor(registry, cache, CACHE_NAME);
+        }
+    }
+
+    /**
+     * Return an AnnoPage, either from cache or from the database
+     * @param datasetId identifier of the AnnoPage's dataset
+     * @param localId   identifier of the AnnoPage's record
+     * @param pageId    identifier of the AnnoPage
+     * @param annoTypes dcType values to filter annotations with, if empty all annotations are returned
+     * @param lang      optional, if provided an original or translation AnnoPage in this language is returned
+     * @param modified  optional, the current modified date of the AnnoPage if the caller already retrieved it. If null
+     *                  the modified date is retrieved from the database to validate a cached AnnoPage
+     * @return AnnoPage, or null if it doesn't exist
+     */
+    public AnnoPage getAnnoPage(String datasetId, String localId, String pageId, List<AnnotationType> annoTypes,
+                                String lang, Date modified) {
+        Timer.Sample sample = Timer.start();
+        if (cache == null) {
+            AnnoPage result = loadAnnoPage(datasetId, localId, pageId, annoTypes, lang);
+            stopFetch(sample, RESULT_DISABLED, annoTypes);
+            return result;
+        }
+
+        String key = createKey(datasetId, localId, pageId, lang);
+        AnnoPage fullPage = cache.getIfPresent(key);
+        if (fullPage != null) {
+            Date currentModified = (modified != null ? modified : timeQuery("annoPageModified", () ->
+                    annoPageRepository.findModified(datasetId, localId, pageId, lang)));
+            if (currentModified == null || !Objects.equals(currentModified, fullPage.getModified())) {
+                LOG.debug("Cached AnnoPage {} is outdated", key);
+                cache.invalidate(key);
+                fullPage = null;
+            }
+        }
+        String result = RESULT_HIT;
+        if (fullPage == null) {
+            result = RESULT_MISS;
+            fullPage = loadAnnoPage(datasetId, localId, pageId, Collections.emptyList(), lang);
+            if (fullPage == null) {
+                stopFetch(sample, result, annoTypes);
+                return null;
+            }
+            if (fullPage.getModified() == null) {
+                // legacy AnnoPage without modified date, we can't validate it later so we don't cache it
+                LOG.debug("AnnoPage {} has no modified date, not cached", key);
+            } else {
+                cache.put(key, fullPage);
+            }
+        }
+        AnnoPage filtered = filterTextGranularity(fullPage, annoTypes);
+        stopFetch(sample, result, annoTypes);
+        return filtered;
+    }
+
+    private AnnoPage loadAnnoPage(String datasetId, String localId, String pageId, List<AnnotationType> annoTypes,
+                                  String lang) {
+        if (StringUtils.isEmpty(lang)) {
+            return timeQuery("annoPage", () ->
+                    annoPageRepository.findOriginalByPageId(datasetId, localId, pageId, annoTypes));
+        }
+        return timeQuery("annoPage", () ->
+                annoPageRepository.findOriginalOrTranslationByPageIdLang(datasetId, localId, pageId, annoTypes, lang));
+    }
+
+    private static void stopFetch(Timer.Sample sample, String result, List<AnnotationType> annoTypes) {
+        sample.stop(timer(ANNOPAGE_FETCH_TIMER, TAG_RESULT, result, TAG_GRANULARITY, granularity(annoTypes)));
+    }
+
+    private static String createKey(String datasetId, String localId, String pageId, String lang) {
+        StringBuilder key = new StringBuilder(50)
+                .append('/').append(datasetId)
+                .append('/').append(localId)
+                .append('/').append(pageId);
+        if (!StringUtils.isEmpty(lang)) {
+            key.append('?').append(lang);
+        }
+        return key.toString();
+    }
+
+    /**
+     * Derive an AnnoPage that only contains annotations of the requested types. The cached AnnoPage itself is never
+     * modified.
+     */
+    private static AnnoPage filterTextGranularity(AnnoPage fullPage, List<AnnotationType> annoTypes) {
+        if (annoTypes == null || annoTypes.isEmpty()) {
+            return fullPage;
+        }
+        Set<Character> dcTypes = annoTypes.stream().map(AnnotationType::getAbbreviation).collect(Collectors.toSet());
+
+        AnnoPage result = (fullPage instanceof TranslationAnnoPage ? new TranslationAnnoPage() : new AnnoPage());
+        result.setDsId(fullPage.getDsId());
+        result.setLcId(fullPage.getLcId());
+        result.setPgId(fullPage.getPgId());
+        result.setTgtId(fullPage.getTgtId());
+        result.setLang(fullPage.getLang());
+        result.setModified(fullPage.getModified());
+        result.setRes(fullPage.getRes());
+        result.setAns(fullPage.getAns().stream()
+                .filter(annotation -> dcTypes.contains(annotation.getDcType()))
+                .collect(Collectors.toList()));
+        return result;
+    }
+
+    private static int estimateSize(AnnoPage annoPage) {
+        long size = ANNOPAGE_SIZE;
+        for (Annotation annotation : annoPage.getAns()) {
+            size += ANNOTATION_SIZE;
+            if (annotation.getTgs() != null) {
+                size += (long) TARGET_SIZE * annotation.getTgs().size();
+            }
+        }
+        if (annoPage.getRes() != null && annoPage.getRes().getValue() != null) {
+            // Java strings use 1 or 2 bytes per character, so we assume the worst
+            size += 2L * annoPage.getRes().getValue().length();
+        }
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+}
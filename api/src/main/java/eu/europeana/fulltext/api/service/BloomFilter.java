@@ -0,0 +1,80 @@
+package eu.europeana.fulltext.api.service;
+
+import org.apache.commons.codec.digest.MurmurHash3;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Simple Bloom filter for strings. A Bloom filter can tell with certainty that a string was never added, but it may
+ * wrongly report that a string was added (with the configured false positive probability, as long as the number of
+ * added strings doesn't exceed the expected number).
+ * <p>
+ * Strings can be added and checked concurrently. Strings can not be removed, so to get rid of strings that are no
+ * longer valid a new filter has to be created.
+ */
+final class BloomFilter {
+
+    private static final double LN2 = Math.log(2);
+
+    private final AtomicLongArray bits;
+    private final long            bitCount;
+    private final int             hashCount;
+
+    /**
+     * Create a new empty Bloom filter
+     * @param expectedInsertions          expected number of strings that will be added
+     * @param falsePositiveProbability    desired false positive probability (between 0 and 1)
+     */
+    BloomFilter(long expectedInsertions, double falsePositiveProbability) {
+        long n = Math.max(expectedInsertions, 1L);
+        long optimalBits = (long) Math.ceil(-n * Math.log(falsePositiveProbability) / (LN2 * LN2));
+        int words = (int) Math.min((optimalBits + Long.SIZE - 1) / Long.SIZE, Integer.MAX_VALUE - 8L);
+        this.bits = new AtomicLongArray(Math.max(words, 1));
+        this.bitCount = (long) bits.length() * Long.SIZE;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / n * LN2));
+    }
+
+    /**
+     * Add a string to the filter
+     * @param value string to add
+     */
+    void put(String value) {
+        long[] hash = MurmurHash3.hash128x64(value.getBytes(StandardCharsets.UTF_8));
+        long combined = hash[0];
+        for (int i = 0; i < hashCount; i++) {
+            long bit = (combined & Long.MAX_VALUE) % bitCount;
+            long mask = 1L << bit;
+            int word = (int) (bit >>> 6);
+            if ((bits.get(word) & mask) == 0) {
+                bits.getAndAccumulate(word, mask, (current, m) -> current | m);
+            }
+            combined += hash[1];
+        }
+    }
+
+    /**
+     * Check if a string may have been added to the filter
+     * @param value string to check
+     * @return false if the string was definitely never added, true if it probably was
+     */
+    boolean mightContain(String value) {
+        long[] hash = MurmurHash3.hash128x64(value.getBytes(StandardCharsets.UTF_8));
+        long combined = hash[0];
+        for (int i = 0; i < hashCount; i++) {
+            long bit = (combined & Long.MAX_VALUE) % bitCount;
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+            combined += hash[1];
+        }
+        return true;
+    }
+
+    /**
+     * @return size of the filter in bytes
+     */
+    long sizeInBytes() {
+        return bitCount / Byte.SIZE;
+    }
+}
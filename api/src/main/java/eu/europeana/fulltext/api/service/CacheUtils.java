@@ -1,5 +1,6 @@
 package eu.europeana.fulltext.api.service;
 
+import io.micrometer.core.instrument.Timer;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.http.client.utils.DateUtils;
 import org.apache.logging.log4j.LogManager;
@@ -100,6 +101,17 @@ public final class CacheUtils {
                                 0, 0, ZoneId.of("UTC"));
     }
 
+    /**
+     * Check if a request contains any of the conditional headers (If-None-Match, If-Match or If-Modified-Since)
+     * @param request incoming HttpServletRequest
+     * @return true if the request is conditional, otherwise false
+     */
+    public static boolean isConditionalRequest(HttpServletRequest request) {
+        return StringUtils.isNotBlank(request.getHeader(IFNONEMATCH))
+                || StringUtils.isNotBlank(request.getHeader(IFMATCH))
+                || StringUtils.isNotBlank(request.getHeader(IFMODIFIEDSINCE));
+    }
+
     /**
      * Should be RFC-7232 compliant, incl. ability to process multiple eTags for an If-*-Match header
      * @param request  incoming HttpServletRequest
@@ -108,6 +120,15 @@ public final class CacheUtils {
      * @return ResponseEntity with 304 or 312 status if requested object has not changed, otherwise null
      */
     public static ResponseEntity<String> checkCached(HttpServletRequest request, ZonedDateTime modified, String eTag) {
+        Timer.Sample sample = Timer.start();
+        ResponseEntity<String> result = checkConditionalHeaders(request, modified, eTag);
+        String status = (result == null ? FTMetrics.RESULT_NONE : String.valueOf(result.getStatusCodeValue()));
+        sample.stop(FTMetrics.timer(FTMetrics.CHECK_CACHED_TIMER, FTMetrics.TAG_RESULT, status));
+        return result;
+    }
+
+    private static ResponseEntity<String> checkConditionalHeaders(HttpServletRequest request, ZonedDateTime modified,
+                                                                  String eTag) {
         HttpHeaders headers;
         // If If-None-Match is present: check if it contains a matching eTag OR == '*"
         // Yes: return HTTP 304 + cache headers. Ignore If-Modified-Since (RFC 7232)
@@ -1,11 +1,17 @@
 package eu.europeana.fulltext.api.service;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import eu.europeana.fulltext.AnnotationType;
 import eu.europeana.fulltext.search.exception.InvalidParameterException;
 import io.micrometer.core.instrument.util.StringUtils;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -18,6 +24,23 @@ public final class ControllerUtils {
         //empty constructor to prevent initalization
     }
 
+    /**
+     * Serializes an object as json and writes it to the provided output stream. Jackson's generator writes in small
+     * chunks using its own recycled buffers, so the serialized object is never kept in memory as a whole.
+     * @param mapper object mapper to use for serialization
+     * @param data   object to serialize
+     * @param out    stream to write to, it's flushed but not closed
+     * @param pretty if true, the output is pretty printed
+     * @throws IOException when serializing or writing to the output stream fails
+     */
+    public static void writeJson(ObjectMapper mapper, Object data, OutputStream out, boolean pretty) throws IOException {
+        ObjectWriter writer = (pretty ? mapper.writerWithDefaultPrettyPrinter() : mapper.writer());
+        try (JsonGenerator generator = mapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            writer.writeValue(generator, data);
+        }
+    }
+
     /**
      * Verifies if the received text granularity are supported and allowed values. If not an exception is thrown
      * @param textGranularityParams received text granularity parameter values (should be non-null)
@@ -43,4 +66,58 @@ public final class ControllerUtils {
         }
         return result;
     }
+
+    /**
+     * Converts the received pages parameter into a list of page ids. The parameter is a comma separated list of page
+     * ids and/or numeric page ranges, for example "1-40" or "1,3,5-8".
+     * @param pagesParam received pages parameter value
+     * @param maxPages maximum number of pages that is allowed
+     * @return list of page ids, without duplicates and in the requested order
+     * @throws InvalidParameterException thrown when the parameter is empty or contains an invalid range, or when
+     * too many pages are requested
+     */
+    public static List<String> parsePageIds(String pagesParam, int maxPages) throws InvalidParameterException {
+        if (StringUtils.isBlank(pagesParam)) {
+            throw new InvalidParameterException("pages parameter should contain at least 1 page id");
+        }
+        Set<String> result = new LinkedHashSet<>();
+        for (String value : pagesParam.split(",")) {
+            String pages = value.trim();
+            int separator = pages.indexOf('-', 1);
+            if (separator < 0) {
+                if (!pages.isEmpty()) {
+                    result.add(pages);
+                }
+            } else {
+                int[] range = parseRange(pages, separator);
+                if ((long) range[1] - range[0] + result.size() >= maxPages) {
+                    throw new InvalidParameterException("too many pages requested, the maximum is " + maxPages);
+                }
+                for (int page = range[0]; page <= range[1]; page++) {
+                    result.add(String.valueOf(page));
+                }
+            }
+            if (result.size() > maxPages) {
+                throw new InvalidParameterException("too many pages requested, the maximum is " + maxPages);
+            }
+        }
+        if (result.isEmpty()) {
+            throw new InvalidParameterException("pages parameter should contain at least 1 page id");
+        }
+        return new ArrayList<>(result);
+    }
+
+    private static int[] parseRange(String range, int separator) throws InvalidParameterException {
+        try {
+            int first = Integer.parseInt(range.substring(0, separator).trim());
+            int last = Integer.parseInt(range.substring(separator + 1).trim());
+            if (first <= last) {
+                return new int[]{first, last};
+            }
+        } catch (NumberFormatException e) {
+            // handled below
+        }
+        throw new InvalidParameterException("invalid page range '" + range + "'. Ranges should be of the form " +
+                "<first page number>-<last page number>");
+    }
 }
@@ -6,16 +6,17 @@ import eu.europeana.fulltext.AnnotationType;
 import eu.europeana.fulltext.api.model.FTResource;
 import eu.europeana.fulltext.api.model.v2.AnnotationBodyV2;
 import eu.europeana.fulltext.api.model.v2.AnnotationFullBodyV2;
-import eu.europeana.fulltext.api.model.v2.AnnotationPageV2;
+import eu.europeana.fulltext.api.model.v2.IIIFAnnotationPageV2;
 import eu.europeana.fulltext.api.model.v2.AnnotationV2;
 import eu.europeana.fulltext.api.model.v3.AnnotationBodyV3;
-import eu.europeana.fulltext.api.model.v3.AnnotationPageV3;
+import eu.europeana.fulltext.api.model.v3.IIIFAnnotationPageV3;
 import eu.europeana.fulltext.api.model.v3.AnnotationV3;
 import eu.europeana.fulltext.api.service.exception.ResourceDoesNotExistException;
 import eu.europeana.fulltext.entity.AnnoPage;
 import eu.europeana.fulltext.entity.Annotation;
 import eu.europeana.fulltext.entity.Resource;
 import eu.europeana.fulltext.entity.Target;
+import eu.europeana.fulltext.util.ContentFingerprint;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -36,6 +37,8 @@ import static eu.europeana.fulltext.util.NormalPlayTime.msToHHmmss;
  * for now not displayed in the output. Instead, the values as specified in the EDM 2 IIIF mapping document are used;
  * they are for now hard-coded in this class for both the V2 and V3 version of the output JSON.
  *
+ * AnnotationPages are not mapped here, but serialized directly from the AnnoPage (see IIIFAnnotationPageSerializer).
+ *
  * Created by luthien on 18/06/2018.
  */
 @Component
@@ -55,31 +58,24 @@ public final class EDM2IIIFMapping {
         EDM2IIIFMapping.ftService = ftService;
     }
 
-    static AnnotationPageV2 getAnnotationPageV2(AnnoPage annoPage, boolean derefResource){
-        AnnotationPageV2 annPage = new AnnotationPageV2(getAnnoPageIdUrl(annoPage));
-        annPage.setLang(annoPage.getLang());
-        annPage.setResources(getAnnotationV2Array(annoPage, derefResource));
-        return annPage;
-    }
-
-    private static AnnotationV2[] getAnnotationV2Array(AnnoPage annoPage, boolean derefResource){
-        ArrayList<AnnotationV2> annoArrayList = new ArrayList<>();
-        for (Annotation ftAnno : annoPage.getAns()){
-            addAnnotationV2(annoPage, ftAnno, derefResource, annoArrayList);
-        }
-        return annoArrayList.toArray(new AnnotationV2[0]);
+    /**
+     * The returned page is serialized directly from the AnnoPage entity, so no AnnotationV2 objects are created
+     */
+    static IIIFAnnotationPageV2 getAnnotationPageV2(AnnoPage annoPage, boolean derefResource){
+        FTResource ftResource = (derefResource ? fetchFTResourceForPage(annoPage) : null);
+        return new IIIFAnnotationPageV2(annoPage, ftResource, getAnnoPageIdUrl(annoPage),
+                                        getAnnotationIdBaseUrl(annoPage), getResourceIdBaseUrl(annoPage));
     }
 
-    private static void addAnnotationV2(AnnoPage annoPage, Annotation ftAnno, boolean derefResource, ArrayList<AnnotationV2> annoArrayList) {
-        // make sure page annotations are listed first.
-        if (ftAnno.isTopLevel()) {
-            annoArrayList.add(0, getAnnotationV2(annoPage, ftAnno, false, derefResource ));
-        } else {
-            annoArrayList.add(getAnnotationV2(annoPage, ftAnno, false, false));
-        }
+    public static AnnotationV2 getAnnotationV2(AnnoPage annoPage, Annotation annotation, boolean includeContext, boolean derefResource){
+        boolean deref = derefResource && StringUtils.isBlank(annotation.getLang());
+        return getAnnotationV2(annoPage, annotation, includeContext, deref ? fetchFTResource(annoPage) : null);
     }
 
-    public static AnnotationV2 getAnnotationV2(AnnoPage annoPage, Annotation annotation, boolean includeContext, boolean derefResource){
+    /**
+     * @param ftResource if not null, the resource is dereferenced (included) in the annotation body
+     */
+    private static AnnotationV2 getAnnotationV2(AnnoPage annoPage, Annotation annotation, boolean includeContext, FTResource ftResource){
         String       resourceIdUrl  = getResourceIdUrl(annoPage, annotation);
         AnnotationV2 ann            = new AnnotationV2(getAnnotationIdUrl(annoPage, annotation));
         if (includeContext){
@@ -98,47 +94,36 @@ public final class EDM2IIIFMapping {
             anb = new AnnotationBodyV2(resourceIdUrl);
             // dereference Resource: because dereferenced annotations ONLY occur in top-level annotations
             // *AND* top-level annotations in practice never have a language set, this should be OK
-            if (derefResource) {
-                FTResource ftResource = fetchFTResource(annoPage);
-                if (ftResource != null) {
-                    anb.setType(ftResource.getType());
-                    anb.setLanguage(ftResource.getLanguage());
-                    anb.setValue(ftResource.getValue());
-                    anb.setSource(ftResource.getSource());
-                    anb.setRights(ftResource.getRights());
-                }
+            if (ftResource != null) {
+                anb.setType(ftResource.getType());
+                anb.setLanguage(ftResource.getLanguage());
+                anb.setValue(ftResource.getValue());
+                anb.setSource(ftResource.getSource());
+                anb.setRights(ftResource.getRights());
             }
         }
         ann.setResource(anb);
         return ann;
     }
 
-    static AnnotationPageV3 getAnnotationPageV3(AnnoPage annoPage, boolean derefResource){
-        AnnotationPageV3 annPage = new AnnotationPageV3(getAnnoPageIdUrl(annoPage));
-        annPage.setLang(annoPage.getLang());
-        annPage.setItems(getAnnotationV3Array(annoPage, derefResource));
-        return annPage;
-    }
-
-    private static AnnotationV3[] getAnnotationV3Array(AnnoPage annoPage, boolean derefResource){
-        ArrayList<AnnotationV3> annoArrayList = new ArrayList<>();
-        for (Annotation ftAnno : annoPage.getAns()){
-            addAnnotationV3(annoPage, ftAnno, derefResource, annoArrayList);
-        }
-        return annoArrayList.toArray(new AnnotationV3[0]);
+    /**
+     * The returned page is serialized directly from the AnnoPage entity, so no AnnotationV3 objects are created
+     */
+    static IIIFAnnotationPageV3 getAnnotationPageV3(AnnoPage annoPage, boolean derefResource){
+        FTResource ftResource = (derefResource ? fetchFTResourceForPage(annoPage) : null);
+        return new IIIFAnnotationPageV3(annoPage, ftResource, getAnnoPageIdUrl(annoPage),
+                                        getAnnotationIdBaseUrl(annoPage), getResourceIdBaseUrl(annoPage));
     }
 
-    private static void addAnnotationV3(AnnoPage annoPage, Annotation ftAnno, boolean derefResource, ArrayList<AnnotationV3> annoArrayList) {
-        // make sure page annotations are listed first.
-        if (ftAnno.isTopLevel()) {
-            annoArrayList.add(0, getAnnotationV3(annoPage, ftAnno, false, derefResource));
-
-        } else {
-            annoArrayList.add(getAnnotationV3(annoPage, ftAnno, false, false));
-        }
+    public static AnnotationV3 getAnnotationV3(AnnoPage annoPage, Annotation annotation, boolean includeContext, boolean derefResource){
+        boolean deref = derefResource && StringUtils.isBlank(annotation.getLang());
+        return getAnnotationV3(annoPage, annotation, includeContext, deref ? fetchFTResource(annoPage) : null);
     }
 
-    public static AnnotationV3 getAnnotationV3(AnnoPage annoPage, Annotation annotation, boolean includeContext, boolean derefResource){
+    /**
+     * @param ftResource if not null, the resource is dereferenced (included) in the annotation body
+     */
+    private static AnnotationV3 getAnnotationV3(AnnoPage annoPage, Annotation annotation, boolean includeContext, FTResource ftResource){
         String       body = getResourceIdUrl(annoPage, annotation);
         AnnotationV3 ann  = new AnnotationV3(getAnnotationIdUrl(annoPage, annotation));
         AnnotationBodyV3 anb;
@@ -156,15 +141,12 @@ public final class EDM2IIIFMapping {
             anb = new AnnotationBodyV3(body);
             // dereference Resource: because dereferenced annotations ONLY occur in top-level annotations
             // *AND* top-level annotations in practice never have a language set, this should be OK
-              if (derefResource) {
-                  FTResource ftResource = fetchFTResource(annoPage);
-                  if (ftResource != null) {
-                    anb.setType(ftResource.getType());
-                    anb.setLanguage(ftResource.getLanguage());
-                    anb.setValue(ftResource.getValue());
-                    anb.setSource(ftResource.getSource());
-                    anb.setRights(ftResource.getRights());
-                }
+            if (ftResource != null) {
+                anb.setType(ftResource.getType());
+                anb.setLanguage(ftResource.getLanguage());
+                anb.setValue(ftResource.getValue());
+                anb.setSource(ftResource.getSource());
+                anb.setRights(ftResource.getRights());
             }
         }
 
@@ -175,14 +157,16 @@ public final class EDM2IIIFMapping {
 
     static AnnotationV3 getSingleAnnotationV3(AnnoPage annoPage, String annoId){
         Optional<Annotation> maybe = annoPage.getAns().stream().filter(o -> o.getAnId().equals(annoId)).findFirst();
-        // NOTE this shouldn't fail because in that case the annoPage would not have been found in the first place
-        return maybe.map(annotation1 -> getAnnotationV3(annoPage, annotation1, true, false)).orElse(null);
+        // NOTE this shouldn't fail because in that case the annoPage would not have been found in the first place.
+        // Usually the annoPage only contains the requested annotation, so there is nothing to scan
+        return maybe.map(annotation1 -> getAnnotationV3(annoPage, annotation1, true, null)).orElse(null);
     }
 
     static AnnotationV2 getSingleAnnotationV2(AnnoPage annoPage, String annoId){
         Optional<Annotation> maybe = annoPage.getAns().stream().filter(o -> o.getAnId().equals(annoId)).findFirst();
-        // NOTE this shouldn't fail because in that case the annoPage would not have been found in the first place
-        return maybe.map(annotation1 -> getAnnotationV2(annoPage, annotation1, true,false)).orElse(null);
+        // NOTE this shouldn't fail because in that case the annoPage would not have been found in the first place.
+        // Usually the annoPage only contains the requested annotation, so there is nothing to scan
+        return maybe.map(annotation1 -> getAnnotationV2(annoPage, annotation1, true, null)).orElse(null);
     }
 
     private static String[] getFTTargetArray(AnnoPage annoPage, Annotation annotation){
@@ -216,17 +200,40 @@ public final class EDM2IIIFMapping {
     }
 
     static FTResource getFTResource(Resource resource){
-        return new FTResource(fts.getResourceBaseUrl() +
-                              resource.getDsId() + "/" +
-                              resource.getLcId() + "/" +
-                              resource.getId(),
-                              resource.getLang(),
-                              resource.getValue(),
-                              resource.getSource(),
-                              resource.getRights());
+        FTResource result = new FTResource(fts.getResourceBaseUrl() +
+                                           resource.getDsId() + "/" +
+                                           resource.getLcId() + "/" +
+                                           resource.getId(),
+                                           resource.getLang(),
+                                           resource.getValue(),
+                                           resource.getSource(),
+                                           resource.getRights());
+        // resources loaded before we started storing fingerprints don't have one yet
+        result.setHash(resource.getHash() != null ? resource.getHash() : ContentFingerprint.of(resource));
+        return result;
     }
 
+    /**
+     * The resource is only dereferenced in top-level annotations without language, so we load it (at most once per
+     * page) only if the page has such an annotation
+     */
+    private static FTResource fetchFTResourceForPage(AnnoPage annoPage) {
+        for (Annotation annotation : annoPage.getAns()) {
+            if (annotation.isTopLevel() && StringUtils.isBlank(annotation.getLang())) {
+                return fetchFTResource(annoPage);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the full-text resource of an AnnoPage. If the resource was already loaded together with the AnnoPage
+     * we use that, otherwise it's retrieved from the database.
+     */
     private static FTResource fetchFTResource(AnnoPage annoPage) {
+        if (annoPage.getRes().getValue() != null) {
+            return getFTResource(annoPage.getRes());
+        }
         FTResource resource;
         try {
             resource = ftService.fetchFTResource(annoPage.getDsId(), annoPage.getLcId(), annoPage.getRes().getId());
@@ -259,8 +266,11 @@ public final class EDM2IIIFMapping {
     }
 
     private static String getAnnotationIdUrl(AnnoPage annoPage, Annotation annotation) {
-        return fts.getAnnotationBaseUrl() + annoPage.getDsId() + "/" + annoPage.getLcId() +
-               ANNOTATION_PATH + annotation.getAnId();
+        return getAnnotationIdBaseUrl(annoPage) + annotation.getAnId();
+    }
+
+    private static String getAnnotationIdBaseUrl(AnnoPage annoPage) {
+        return fts.getAnnotationBaseUrl() + annoPage.getDsId() + "/" + annoPage.getLcId() + ANNOTATION_PATH;
     }
 
     public static String getAnnotationIdUrl(String europeanaId, Annotation annotation) {
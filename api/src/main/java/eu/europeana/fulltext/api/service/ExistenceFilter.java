@@ -0,0 +1,360 @@
+package eu.europeana.fulltext.api.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import dev.morphia.query.internal.MorphiaCursor;
+import eu.europeana.fulltext.api.config.FTSettings;
+import eu.europeana.fulltext.entity.AnnoPage;
+import eu.europeana.fulltext.entity.TranslationAnnoPage;
+import eu.europeana.fulltext.repository.AnnoPageRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Date;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static eu.europeana.fulltext.util.MorphiaUtils.Fields.*;
+
+/**
+ * Keeps track of which records and AnnoPages exist, so requests for things that don't exist can be rejected without
+ * loading them from the database. This consists of two parts:
+ * <ol>
+ *     <li>A Bloom filter with the ids of all records and (original and translated) AnnoPages. The filter is built in
+ *     the background at startup, until then everything is assumed to exist. New AnnoPages are added to the filter
+ *     periodically (see annopage.filter.refresh.seconds). A Bloom filter doesn't support removal, so the complete
+ *     filter is rebuilt every annopage.filter.rebuild.hours to get rid of deleted AnnoPages.</li>
+ *     <li>A short-lived cache of pages, records, annotations and resources that were requested but not found (see
+ *     notfound.cache.seconds). This also covers annotation and resource ids, which are not in the Bloom filter, and
+ *     the false positives of the Bloom filter.</li>
+ * </ol>
+ * A refresh finds new AnnoPages by their _id, because an ObjectId starts with the time at which it was generated (on
+ * insert), while the modified date is set by the loader before saving. Records and pages that are not in the filter
+ * are reported as non-existing without querying the database, so a page that was saved after the last refresh is
+ * only found after the next refresh.
+ */
+@Component
+public class ExistenceFilter implements MeterBinder {
+
+    private static final Logger LOG = LogManager.getLogger(ExistenceFilter.class);
+
+    private static final String CACHE_NAME                 = "notFound";
+    private static final double FALSE_POSITIVE_PROBABILITY = 0.01;
+    // reserve room in the filter for AnnoPages that are added between rebuilds
+    private static final double GROWTH_FACTOR              = 1.2;
+    // ObjectIds are generated by the clients that save the pages, so they are not strictly increasing (e.g. when the
+    // clocks of several loaders differ). When refreshing we therefore look back a bit further than the highest _id
+    private static final long   REFRESH_OVERLAP_MS         = TimeUnit.MINUTES.toMillis(5);
+    private static final int    NOT_FOUND_CACHE_MAX_SIZE   = 100_000;
+
+    private final AnnoPageRepository       annoPageRepository;
+    private final FTSettings               ftSettings;
+    private final Cache<String, Boolean>   notFound;
+    private final AtomicLong               rejected = new AtomicLong();
+    private ScheduledExecutorService       executor;
+
+    // null as long as the filter isn't available
+    private volatile BloomFilter filter;
+    // highest _id read from the database (per collection), used to find AnnoPages that were added since
+    private volatile ObjectId    lastOriginalId;
+    private volatile ObjectId    lastTranslationId;
+
+    /**
+     * Create a new existence filter
+     * @param annoPageRepository repository used to retrieve the ids of all AnnoPages
+     * @param ftSettings settings with filter refresh intervals and not found cache duration
+     */
+    public ExistenceFilter(AnnoPageRepository annoPageRepository, FTSettings ftSettings) {
+        this.annoPageRepository = annoPageRepository;
+        this.ftSettings = ftSettings;
+        int notFoundSeconds = ftSettings.getNotFoundCacheSeconds();
+        if (notFoundSeconds > 0) {
+            this.notFound = Caffeine.newBuilder()
+                    .expireAfterWrite(notFoundSeconds, TimeUnit.SECONDS)
+                    .maximumSize(NOT_FOUND_CACHE_MAX_SIZE)
+                    .recordStats()
+                    .build();
+        } else {
+            this.notFound = null;
+        }
+    }
+
+    /**
+     * Schedules building and refreshing the filter (if enabled)
+     */
+    @PostConstruct
+    public void start() {
+        if (!ftSettings.isAnnoPageFilterEnabled()) {
+            LOG.info("AnnoPage filter is disabled");
+            return;
+        }
+        // a single thread, so building and refreshing the filter never happen at the same time
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "annopage-filter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::rebuild, 0, ftSettings.getAnnoPageFilterRebuildHours(), TimeUnit.HOURS);
+        executor.scheduleWithFixedDelay(this::refresh, ftSettings.getAnnoPageFilterRefreshSeconds(),
+                ftSettings.getAnnoPageFilterRefreshSeconds(), TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops refreshing the filter
+     */
+    @PreDestroy
+    public void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Registers the not found cache statistics and the number of rejected requests with actuator
+     * @param registry the registry to bind metrics to
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (notFound != null) {
+            CaffeineCacheMetrics.monitor(registry, notFound, CACHE_NAME);
+        }
+        FunctionCounter.builder("annopage.filter.rejected", rejected, AtomicLong::get)
+                .description("Number of requests rejected by the AnnoPage filter")
+                .register(registry);
+        Gauge.builder("annopage.filter.size", this, f -> f.filter == null ? 0 : f.filter.sizeInBytes())
+                .description("Size of the AnnoPage filter")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    /**
+     * Builds a new filter with the ids of all AnnoPages and replaces the current one
+     */
+    void rebuild() {
+        try {
+            long start = System.currentTimeMillis();
+            long expected = 3 * annoPageRepository.estimateCount(AnnoPage.class)
+                    + annoPageRepository.estimateCount(TranslationAnnoPage.class);
+            BloomFilter newFilter = new BloomFilter((long) (expected * GROWTH_FACTOR), FALSE_POSITIVE_PROBABILITY);
+            // read before the pages, so pages that are inserted while building are added by the next refresh
+            ObjectId lastOriginal = annoPageRepository.findLastPageId(AnnoPage.class);
+            ObjectId lastTranslation = annoPageRepository.findLastPageId(TranslationAnnoPage.class);
+            long count = addPages(newFilter, AnnoPage.class, null)
+                    + addPages(newFilter, TranslationAnnoPage.class, null);
+            lastOriginalId = lastOriginal;
+            lastTranslationId = lastTranslation;
+            filter = newFilter;
+            LOG.info("AnnoPage filter with {} pages built in {} ms ({} MB)", count,
+                    System.currentTimeMillis() - start, newFilter.sizeInBytes() / (1024 * 1024));
+        } catch (RuntimeException e) {
+            LOG.error("Error building AnnoPage filter", e);
+        }
+    }
+
+    /**
+     * Adds the ids of recently inserted AnnoPages to the current filter
+     */
+    void refresh() {
+        BloomFilter current = filter;
+        if (current == null) {
+            return;
+        }
+        try {
+            lastOriginalId = refresh(current, AnnoPage.class, lastOriginalId);
+            lastTranslationId = refresh(current, TranslationAnnoPage.class, lastTranslationId);
+        } catch (RuntimeException e) {
+            LOG.error("Error refreshing AnnoPage filter", e);
+        }
+    }
+
+    private ObjectId refresh(BloomFilter target, Class<? extends AnnoPage> clazz, ObjectId previous) {
+        long sinceMs = (previous == null ? 0 : previous.getDate().getTime() - REFRESH_OVERLAP_MS);
+        ObjectId since = new ObjectId(new Date(sinceMs));
+        PagesAdded added = new PagesAdded(previous);
+        addPages(target, clazz, since, added);
+        LOG.debug("Added {} {}s inserted since {} to AnnoPage filter", added.count, clazz.getSimpleName(),
+                since.getDate());
+        return added.lastId;
+    }
+
+    private long addPages(BloomFilter target, Class<? extends AnnoPage> clazz, ObjectId idAfter) {
+        PagesAdded added = new PagesAdded(null);
+        addPages(target, clazz, idAfter, added);
+        return added.count;
+    }
+
+    private void addPages(BloomFilter target, Class<? extends AnnoPage> clazz, ObjectId idAfter, PagesAdded added) {
+        boolean isTranslation = TranslationAnnoPage.class.equals(clazz);
+        try (MorphiaCursor<Document> pageIds = annoPageRepository.findPageIds(clazz, idAfter)) {
+            while (pageIds.hasNext()) {
+                Document page = pageIds.next();
+                String datasetId = page.getString(DATASET_ID);
+                String localId = page.getString(LOCAL_ID);
+                String pageId = page.getString(PAGE_ID);
+                if (!isTranslation) {
+                    target.put(recordKey(datasetId, localId));
+                    target.put(pageKey(datasetId, localId, pageId, null));
+                }
+                String lang = page.getString(LANGUAGE);
+                if (!StringUtils.isEmpty(lang)) {
+                    target.put(pageKey(datasetId, localId, pageId, lang));
+                }
+                added.add(page.getObjectId(DOC_ID));
+            }
+        }
+    }
+
+    /**
+     * Check if a record (with at least one AnnoPage) may exist
+     * @param datasetId identifier of the record's dataset
+     * @param localId   identifier of the record
+     * @return false if the record definitely doesn't exist, true if it may exist
+     */
+    public boolean recordMightExist(String datasetId, String localId) {
+        String key = recordKey(datasetId, localId);
+        return !isNotFound(key) && isInFilter(key);
+    }
+
+    /**
+     * Check if an AnnoPage may exist
+     * @param datasetId identifier of the AnnoPage's dataset
+     * @param localId   identifier of the AnnoPage's record
+     * @param pageId    identifier of the AnnoPage
+     * @param lang      optional, language of the original AnnoPage or translation
+     * @return false if the AnnoPage definitely doesn't exist, true if it may exist
+     */
+    public boolean pageMightExist(String datasetId, String localId, String pageId, String lang) {
+        String key = pageKey(datasetId, localId, pageId, lang);
+        return !isNotFound(key) && isInFilter(key);
+    }
+
+    /**
+     * Check if an annotation may exist. Annotation ids are not in the filter, so we only check the record id.
+     * @param datasetId identifier of the AnnoPage's dataset
+     * @param localId   identifier of the AnnoPage's record
+     * @param annoId    identifier of the annotation
+     * @return false if the annotation definitely doesn't exist, true if it may exist
+     */
+    public boolean annotationMightExist(String datasetId, String localId, String annoId) {
+        return !isNotFound(annotationKey(datasetId, localId, annoId)) && recordMightExist(datasetId, localId);
+    }
+
+    /**
+     * Check if a resource may exist. Resource ids are not in the filter, so we only check the record id.
+     * @param datasetId identifier of the resource's dataset
+     * @param localId   identifier of the resource's record
+     * @param resId     identifier of the resource
+     * @return false if the resource definitely doesn't exist, true if it may exist
+     */
+    public boolean resourceMightExist(String datasetId, String localId, String resId) {
+        return !isNotFound(resourceKey(datasetId, localId, resId)) && recordMightExist(datasetId, localId);
+    }
+
+    /**
+     * Remember that a record wasn't found
+     * @param datasetId identifier of the record's dataset
+     * @param localId   identifier of the record
+     */
+    public void recordNotFound(String datasetId, String localId) {
+        putNotFound(recordKey(datasetId, localId));
+    }
+
+    /**
+     * Remember that an AnnoPage wasn't found
+     * @param datasetId identifier of the AnnoPage's dataset
+     * @param localId   identifier of the AnnoPage's record
+     * @param pageId    identifier of the AnnoPage
+     * @param lang      optional, language of the original AnnoPage or translation
+     */
+    public void pageNotFound(String datasetId, String localId, String pageId, String lang) {
+        putNotFound(pageKey(datasetId, localId, pageId, lang));
+    }
+
+    /**
+     * Remember that an annotation wasn't found
+     * @param datasetId identifier of the AnnoPage's dataset
+     * @param localId   identifier of the AnnoPage's record
+     * @param annoId    identifier of the annotation
+     */
+    public void annotationNotFound(String datasetId, String localId, String annoId) {
+        putNotFound(annotationKey(datasetId, localId, annoId));
+    }
+
+    /**
+     * Remember that a resource wasn't found
+     * @param datasetId identifier of the resource's dataset
+     * @param localId   identifier of the resource's record
+     * @param resId     identifier of the resource
+     */
+    public void resourceNotFound(String datasetId, String localId, String resId) {
+        putNotFound(resourceKey(datasetId, localId, resId));
+    }
+
+    private boolean isInFilter(String key) {
+        BloomFilter current = filter;
+        if (current == null || current.mightContain(key)) {
+            return true;
+        }
+        rejected.incrementAndGet();
+        return false;
+    }
+
+    private boolean isNotFound(String key) {
+        return notFound != null && notFound.getIfPresent(key) != null;
+    }
+
+    private void putNotFound(String key) {
+        if (notFound != null) {
+            notFound.put(key, Boolean.TRUE);
+        }
+    }
+
+    private static String recordKey(String datasetId, String localId) {
+        return '/' + datasetId + '/' + localId;
+    }
+
+    private static String pageKey(String datasetId, String localId, String pageId, String lang) {
+        String key = recordKey(datasetId, localId) + "/annopage/" + pageId;
+        return (StringUtils.isEmpty(lang) ? key : key + '?' + lang);
+    }
+
+    private static String annotationKey(String datasetId, String localId, String annoId) {
+        return recordKey(datasetId, localId) + "/anno/" + annoId;
+    }
+
+    private static String resourceKey(String datasetId, String localId, String resId) {
+        return recordKey(datasetId, localId) + '/' + resId;
+    }
+
+    /**
+     * Number of AnnoPages added to a filter and the highest _id among them
+     */
+    private static final class PagesAdded {
+        private long     count;
+        private ObjectId lastId;
+
+        private PagesAdded(ObjectId lastId) {
+            this.lastId = lastId;
+        }
+
+        private void add(ObjectId id) {
+            count++;
+            if (id != null && (lastId == null || id.compareTo(lastId) > 0)) {
+                lastId = id;
+            }
+        }
+    }
+}
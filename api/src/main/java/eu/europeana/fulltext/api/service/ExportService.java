@@ -0,0 +1,115 @@
+package eu.europeana.fulltext.api.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import dev.morphia.query.internal.MorphiaCursor;
+import eu.europeana.fulltext.api.config.FTSettings;
+import eu.europeana.fulltext.api.model.AnnotationWrapper;
+import eu.europeana.fulltext.api.model.FTResource;
+import eu.europeana.fulltext.entity.AnnoPage;
+import eu.europeana.fulltext.entity.Resource;
+import eu.europeana.fulltext.repository.AnnoPageCursor;
+import eu.europeana.fulltext.repository.AnnoPageRepository;
+import eu.europeana.fulltext.repository.ResourceRepository;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.function.Function;
+
+/**
+ * Exports all full-texts or annotation pages of a record or dataset as newline delimited json (one json object per
+ * line). Documents are read from a database cursor and written to the output one by one, so memory use doesn't
+ * depend on the size of the record or dataset.
+ */
+@Service
+public class ExportService {
+
+    private static final Logger LOG = LogManager.getLogger(ExportService.class);
+
+    private static final SerializedString NEWLINE = new SerializedString("\n");
+
+    private final ResourceRepository resourceRepository;
+    private final AnnoPageRepository annoPageRepository;
+    private final FTSettings         ftSettings;
+    private final ObjectWriter       writer;
+
+    public ExportService(ResourceRepository resourceRepository, AnnoPageRepository annoPageRepository,
+                         FTSettings ftSettings, ObjectMapper mapper) {
+        this.resourceRepository = resourceRepository;
+        this.annoPageRepository = annoPageRepository;
+        this.ftSettings = ftSettings;
+        // we flush the generator ourselves, flushing after each line would send many small chunks to the client
+        this.writer = mapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    /**
+     * Writes all original full-text resources of a dataset or record as ndjson
+     * @param datasetId identifier of the dataset
+     * @param localId   optional, identifier of the record. If null the entire dataset is exported
+     * @param out       stream to write to (this stream is not closed)
+     * @return the number of exported resources
+     * @throws IOException when writing to the output stream fails
+     */
+    public long exportResources(String datasetId, String localId, OutputStream out) throws IOException {
+        try (MorphiaCursor<Resource> cursor = resourceRepository.streamOriginals(datasetId, localId,
+                ftSettings.getExportBatchSize())) {
+            return writeNdJson(cursor, ExportService::toFTResource, out);
+        }
+    }
+
+    /**
+     * Writes all original annotation pages of a dataset or record as ndjson. Resources are not dereferenced.
+     * @param datasetId identifier of the dataset
+     * @param localId   optional, identifier of the record. If null the entire dataset is exported
+     * @param iiifV3    if true the annotation pages are written in IIIF v3 format, otherwise in IIIF v2 format
+     * @param out       stream to write to (this stream is not closed)
+     * @return the number of exported annotation pages
+     * @throws IOException when writing to the output stream fails
+     */
+    public long exportAnnoPages(String datasetId, String localId, boolean iiifV3, OutputStream out)
+            throws IOException {
+        try (AnnoPageCursor cursor = annoPageRepository.streamOriginals(datasetId, localId,
+                ftSettings.getExportBatchSize())) {
+            return writeNdJson(cursor, annoPage -> toAnnotationPage(annoPage, iiifV3), out);
+        }
+    }
+
+    private static FTResource toFTResource(Resource resource) {
+        FTResource result = EDM2IIIFMapping.getFTResource(resource);
+        result.setContext(null);
+        return result;
+    }
+
+    private static AnnotationWrapper toAnnotationPage(AnnoPage annoPage, boolean iiifV3) {
+        AnnotationWrapper result = (iiifV3
+                ? EDM2IIIFMapping.getAnnotationPageV3(annoPage, false)
+                : EDM2IIIFMapping.getAnnotationPageV2(annoPage, false));
+        result.setContext(null);
+        return result;
+    }
+
+    private <T> long writeNdJson(Iterator<T> items, Function<T, Object> converter, OutputStream out)
+            throws IOException {
+        long count = 0;
+        try (JsonGenerator generator = writer.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(NEWLINE);
+            while (items.hasNext()) {
+                writer.writeValue(generator, converter.apply(items.next()));
+                count++;
+            }
+            if (count > 0) {
+                generator.writeRaw('\n');
+            }
+        }
+        LOG.debug("Exported {} items", count);
+        return count;
+    }
+}
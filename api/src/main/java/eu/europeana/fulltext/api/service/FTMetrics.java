@@ -0,0 +1,112 @@
+package eu.europeana.fulltext.api.service;
+
+import eu.europeana.fulltext.AnnotationType;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Timers for the various phases of handling a presentation request (database queries, mapping to IIIF,
+ * serialisation and conditional request checks). All timers publish a percentile histogram and only have tags with a
+ * small, fixed set of values so they can be aggregated in a monitoring system. The timers are registered with the
+ * global registry, which Spring Boot connects to the actuator metrics endpoint.
+ * <p>
+ * The total request time is recorded by Spring Boot's http.server.requests timer. Controllers can store the requested
+ * IIIF version, text granularity and whether a cached response was used as request attributes, these are then added
+ * as extra tags to that timer (see {@link eu.europeana.fulltext.api.config.RequestMetricsTags}).
+ */
+public final class FTMetrics {
+
+    public static final String QUERY_TIMER          = "fulltext.query";
+    public static final String ANNOPAGE_FETCH_TIMER = "fulltext.annopage.fetch";
+    public static final String MAPPING_TIMER        = "fulltext.mapping";
+    public static final String SERIALISE_TIMER      = "fulltext.serialise";
+    public static final String CHECK_CACHED_TIMER   = "fulltext.checkcached";
+
+    public static final String TAG_QUERY            = "query";
+    public static final String TAG_TYPE             = "type";
+    public static final String TAG_VERSION          = "version";
+    public static final String TAG_GRANULARITY      = "granularity";
+    public static final String TAG_RESULT           = "result";
+
+    public static final String RESULT_HIT           = "hit";
+    public static final String RESULT_MISS          = "miss";
+    public static final String RESULT_DISABLED      = "disabled";
+    public static final String RESULT_NOT_MODIFIED  = "notModified";
+    public static final String RESULT_NONE          = "none";
+
+    public static final String ATTRIBUTE_VERSION     = FTMetrics.class.getName() + ".version";
+    public static final String ATTRIBUTE_GRANULARITY = FTMetrics.class.getName() + ".granularity";
+    public static final String ATTRIBUTE_RESULT      = FTMetrics.class.getName() + ".result";
+
+    private static final String ALL_GRANULARITIES = "all";
+
+    private FTMetrics() {
+        // empty constructor to prevent initialization
+    }
+
+    /**
+     * Returns the timer with the provided name and tags (it's created if it doesn't exist yet)
+     * @param name name of the timer
+     * @param tags tag keys and values, these should have a small and fixed set of values
+     * @return timer
+     */
+    public static Timer timer(String name, String... tags) {
+        return Timer.builder(name)
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(Metrics.globalRegistry);
+    }
+
+    /**
+     * Times a database query
+     * @param query name of the query
+     * @param supplier function that executes the query
+     * @param <T> query result type
+     * @return query result
+     */
+    public static <T> T timeQuery(String query, Supplier<T> supplier) {
+        return timer(QUERY_TIMER, TAG_QUERY, query).record(supplier);
+    }
+
+    /**
+     * Stores the requested IIIF version and text granularity, so they are added as tags to the request timer
+     * @param request incoming request
+     * @param version requested IIIF version
+     * @param annoTypes requested text granularity
+     */
+    public static void tagRequest(HttpServletRequest request, String version, List<AnnotationType> annoTypes) {
+        request.setAttribute(ATTRIBUTE_VERSION, version);
+        request.setAttribute(ATTRIBUTE_GRANULARITY, granularity(annoTypes));
+    }
+
+    /**
+     * Stores how a request was handled, so it's added as tag to the request timer
+     * @param request incoming request
+     * @param result e.g. {@link #RESULT_HIT} if the response came from a cache
+     */
+    public static void tagRequestResult(HttpServletRequest request, String result) {
+        request.setAttribute(ATTRIBUTE_RESULT, result);
+    }
+
+    /**
+     * @param annoTypes requested text granularity
+     * @return tag value for the requested text granularity, the abbreviations of the requested types in a fixed
+     * order (e.g. "BL" for Block and Line), or "all" if no types were requested
+     */
+    public static String granularity(List<AnnotationType> annoTypes) {
+        if (annoTypes == null || annoTypes.isEmpty()) {
+            return ALL_GRANULARITIES;
+        }
+        StringBuilder result = new StringBuilder(AnnotationType.values().length);
+        for (AnnotationType type : AnnotationType.values()) {
+            if (annoTypes.contains(type)) {
+                result.append(type.getAbbreviation());
+            }
+        }
+        return result.toString();
+    }
+}
@@ -1,33 +1,45 @@
 package eu.europeana.fulltext.api.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import dev.morphia.query.internal.MorphiaCursor;
+import com.mongodb.MongoException;
 import eu.europeana.fulltext.AnnotationType;
 import eu.europeana.fulltext.api.config.FTDefinitions;
 import eu.europeana.fulltext.api.config.FTSettings;
 import eu.europeana.fulltext.api.model.info.SummaryAnnoPage;
 import eu.europeana.fulltext.api.model.info.SummaryCanvas;
 import eu.europeana.fulltext.api.model.info.SummaryManifest;
+import eu.europeana.fulltext.api.model.AnnotationWrapper;
 import eu.europeana.fulltext.api.model.FTResource;
-import eu.europeana.fulltext.api.model.v2.AnnotationPageV2;
 import eu.europeana.fulltext.api.model.v2.AnnotationV2;
-import eu.europeana.fulltext.api.model.v3.AnnotationPageV3;
 import eu.europeana.fulltext.api.model.v3.AnnotationV3;
 import eu.europeana.fulltext.api.service.exception.AnnoPageDoesNotExistException;
 import eu.europeana.fulltext.api.service.exception.ResourceDoesNotExistException;
 import eu.europeana.fulltext.api.service.exception.SerializationException;
 import eu.europeana.fulltext.entity.AnnoPage;
+import eu.europeana.fulltext.entity.RecordPageIndex;
 import eu.europeana.fulltext.entity.Resource;
 import eu.europeana.fulltext.entity.TranslationAnnoPage;
 import eu.europeana.fulltext.repository.AnnoPageRepository;
+import eu.europeana.fulltext.repository.RecordPageIndexRepository;
 import eu.europeana.fulltext.repository.ResourceRepository;
+import eu.europeana.fulltext.repository.TextRange;
+import io.micrometer.core.instrument.Timer;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static eu.europeana.fulltext.api.service.FTMetrics.*;
 
 /**
  *
@@ -38,21 +50,34 @@ import java.util.List;
 @Service
 public class FTService {
 
-    private static final String GENERATED_IN    = "Generated in {} ms ";
-    private static final Logger LOG             = LogManager.getLogger(FTService.class);
+    private static final Logger LOG = LogManager.getLogger(FTService.class);
+
+    private static final String TYPE_ANNOPAGE   = "annoPage";
+    private static final String TYPE_ANNOTATION = "annotation";
+    private static final String TYPE_RESOURCE   = "resource";
+    private static final String VERSION_2       = "2";
+    private static final String VERSION_3       = "3";
 
-    private final ResourceRepository resourceRepository;
-    private final AnnoPageRepository annoPageRepository;
-    private final FTSettings         ftSettings;
+    private final ResourceRepository        resourceRepository;
+    private final AnnoPageRepository        annoPageRepository;
+    private final RecordPageIndexRepository pageIndexRepository;
+    private final AnnoPageCache             annoPageCache;
+    private final ExistenceFilter           existenceFilter;
+    private final FTSettings                ftSettings;
 
     private final ObjectMapper mapper;
 
     /*
      * Constructs an FTService object with autowired dependencies
      */
-    public FTService(ResourceRepository resourceRepository, AnnoPageRepository annoPageRepository, FTSettings ftSettings, ObjectMapper mapper) {
+    public FTService(ResourceRepository resourceRepository, AnnoPageRepository annoPageRepository,
+                     RecordPageIndexRepository pageIndexRepository, AnnoPageCache annoPageCache,
+                     ExistenceFilter existenceFilter, FTSettings ftSettings, ObjectMapper mapper) {
         this.resourceRepository = resourceRepository;
         this.annoPageRepository = annoPageRepository;
+        this.pageIndexRepository = pageIndexRepository;
+        this.annoPageCache = annoPageCache;
+        this.existenceFilter = existenceFilter;
         this.ftSettings = ftSettings;
         this.mapper = mapper;
     }
@@ -73,65 +98,126 @@ public class FTService {
      * @param pageId    identifier of the AnnoPage
      * @param textGranValues dcType values to filter annotations with
      * @param lang      optional, if provided we'll check if there's an original or translation annopage with this language
+     * @param modified  optional, modified date of the AnnoPage if it was already retrieved with
+     *                  {@link #getAnnoPageModified(String, String, String, String)}, so a cached AnnoPage can be
+     *                  validated without querying the modified date again
      * @throws AnnoPageDoesNotExistException when the Annopage cannot be found
      * @return AnnoPage
      */
     public AnnoPage fetchAnnoPage(String datasetId, String localId, String pageId, List<AnnotationType> textGranValues,
-                                  String lang) throws AnnoPageDoesNotExistException {
-        AnnoPage result;
-        if (StringUtils.isEmpty(lang)) {
-            result = annoPageRepository.findOriginalByPageId(datasetId, localId, pageId, textGranValues);
-            if (result == null) {
+                                  String lang, Date modified) throws AnnoPageDoesNotExistException {
+        AnnoPage result = null;
+        if (existenceFilter.pageMightExist(datasetId, localId, pageId, lang)) {
+            result = annoPageCache.getAnnoPage(datasetId, localId, pageId, textGranValues, lang, modified);
+        }
+        if (result == null) {
+            existenceFilter.pageNotFound(datasetId, localId, pageId, lang);
+            if (StringUtils.isEmpty(lang)) {
                 throw new AnnoPageDoesNotExistException(String.format("/%s/%s/annopage/%s", datasetId, localId, pageId));
             }
-        } else  {
-            // TODO do request to get original and translation in parallel instead in series
-            //  (unless we can fix this my doing 1 query in AnnoPageRepository)
-            result = annoPageRepository.findOriginalByPageIdLang(datasetId, localId, pageId, textGranValues, lang);
-            if (result == null) {
-                result = annoPageRepository.findTranslationByPageIdLang(datasetId, localId, pageId, textGranValues, lang);
-                LOG.debug("No original AnnoPage, TranslationAnnoPage = {}", result);
-            }
-            if (result == null) {
-                throw new AnnoPageDoesNotExistException(String.format("/%s/%s/annopage/%s", datasetId, localId, pageId), lang);
-            }
+            throw new AnnoPageDoesNotExistException(String.format("/%s/%s/annopage/%s", datasetId, localId, pageId), lang);
+        }
+        return result;
+    }
+
+    /**
+     * Handles fetching multiple original Annotation pages of a record at once. Pages that don't exist are left out.
+     * @param datasetId identifier of the AnnoPages' dataset
+     * @param localId   identifier of the AnnoPages' record
+     * @param pageIds   identifiers of the AnnoPages
+     * @param textGranValues dcType values to filter annotations with
+     * @throws AnnoPageDoesNotExistException when none of the AnnoPages can be found
+     * @return list of found AnnoPages, in the same order as the provided page ids
+     */
+    public List<AnnoPage> fetchAnnoPages(String datasetId, String localId, List<String> pageIds,
+                                         List<AnnotationType> textGranValues) throws AnnoPageDoesNotExistException {
+        List<String> existingPageIds = filterPageIds(datasetId, localId, pageIds);
+        List<AnnoPage> result = Collections.emptyList();
+        if (!existingPageIds.isEmpty()) {
+            result = timeQuery("annoPages", () ->
+                    annoPageRepository.findOriginalsByPageIds(datasetId, localId, existingPageIds, textGranValues));
+        }
+        if (result.isEmpty()) {
+            throw new AnnoPageDoesNotExistException(String.format("/%s/%s/annopages/%s", datasetId, localId,
+                    String.join(",", pageIds)));
         }
         return result;
     }
 
     /**
-     * Retrieve a cursor to AnnoPages with the provided datasetId, localId and imageIds. If the annotationType is
-     * specified the returned AnnoPages will only contain annotations of that type. If annotationType is null or empty
-     * then all annotations of that type will be returned. The cursor must be closed when the caller is done!
-     * @param datasetId ID of the dataset
-     * @param localId   ID of the parent of the Annopage object
-     * @param imageIds  IDs of the images
-     * @param annoTypes type of annotations that should be retrieved, if null or empty all annotations of that
-     *                        annopage will be retrieved
-     * @return MorphiaCursor containing AnnoPage entries.
+     * Retrieve only the modified dates of multiple original AnnoPages of a record, so conditional requests can be
+     * handled without loading annotations
+     * @param datasetId identifier of the AnnoPages' dataset
+     * @param localId   identifier of the AnnoPages' record
+     * @param pageIds   identifiers of the AnnoPages
+     * @return map with the modified date of each found page id (empty if none were found)
      */
-    public MorphiaCursor<AnnoPage> fetchAnnoPageFromImageId(String datasetId, String localId, List<String> imageIds, List<AnnotationType> annoTypes) {
-        return annoPageRepository.findByImageId(datasetId, localId, imageIds, annoTypes);
+    public Map<String, Date> getAnnoPagesModified(String datasetId, String localId, List<String> pageIds) {
+        List<String> existingPageIds = filterPageIds(datasetId, localId, pageIds);
+        if (existingPageIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        return timeQuery("annoPagesModified", () ->
+                annoPageRepository.findModifiedByPageIds(datasetId, localId, existingPageIds));
     }
 
+    /**
+     * @return the provided page ids, without the ids of pages that we know don't exist
+     */
+    private List<String> filterPageIds(String datasetId, String localId, List<String> pageIds) {
+        if (!existenceFilter.recordMightExist(datasetId, localId)) {
+            return Collections.emptyList();
+        }
+        return pageIds.stream()
+                .filter(pageId -> existenceFilter.pageMightExist(datasetId, localId, pageId, null))
+                .collect(Collectors.toList());
+    }
 
     /**
-     * Handles fetching an Annotation page (aka AnnoPage) containing the Annotation with given annoId
+     * Retrieve the AnnoPages with the provided datasetId, localId and imageIds for searching. The returned AnnoPages
+     * only contain the annotations of the requested types that overlap with one of the hits on that page. The text of
+     * the Resources is not loaded (see {@link #fetchTextSlices(String, String, Map)}).
+     * @param datasetId     ID of the dataset
+     * @param localId       ID of the parent of the Annopage object
+     * @param hitsByImageId per image id the offsets of the hits on that page
+     * @param annoTypes     type of annotations that should be retrieved, if empty all types are retrieved
+     * @return List containing AnnoPage entries.
+     */
+    public List<AnnoPage> fetchAnnoPagesForSearch(String datasetId, String localId,
+                                                  Map<String, List<TextRange>> hitsByImageId,
+                                                  List<AnnotationType> annoTypes) {
+        return annoPageRepository.findForSearch(datasetId, localId, hitsByImageId, annoTypes);
+    }
+
+    /**
+     * Retrieve parts of the text of one or more Resources, without loading the complete texts
+     * @param datasetId          ID of the dataset
+     * @param localId            ID of the parent of the Resource object
+     * @param rangesByResourceId per resource id the parts of the text that are needed
+     * @return per resource id the requested texts, in the same order as the ranges
+     */
+    public Map<String, List<String>> fetchTextSlices(String datasetId, String localId,
+                                                     Map<String, List<TextRange>> rangesByResourceId) {
+        return resourceRepository.findTextSlices(datasetId, localId, rangesByResourceId);
+    }
+
+    /**
+     * Handles fetching an Annotation page (aka AnnoPage) containing the Annotation with given annoId.
+     * Only the requested Annotation is loaded, all other annotations of the page are left out.
      * @param datasetId identifier of the AnnoPage's dataset
      * @param localId   identifier of the AnnoPage's record
      * @param annoId    identifier of the Annotation to be found
      * @throws AnnoPageDoesNotExistException when the Annopage containing the required Annotation can't be found
-     * @return AnnoPage
+     * @return AnnoPage with only the requested Annotation
      */
     public AnnoPage fetchAPAnnotation(String datasetId, String localId, String annoId) throws AnnoPageDoesNotExistException {
-        // TODO do request to get original and translation in parallel instead in series (unless we can fix this my doing 1 query in AnnoPageRepository)
-        AnnoPage result = annoPageRepository.findOriginalByAnnoId(datasetId, localId, annoId);
-        if (result == null) {
-            annoPageRepository.findTranslationByAnnoId(datasetId, localId, annoId);
-            LOG.debug("Annotation not in original AnnoPage, TranslationAnnoPage = {}", result);
+        AnnoPage result = null;
+        if (existenceFilter.annotationMightExist(datasetId, localId, annoId)) {
+            result = timeQuery("annotation", () ->
+                    annoPageRepository.findOriginalOrTranslationByAnnoId(datasetId, localId, annoId));
         }
-
         if (result == null) {
+            existenceFilter.annotationNotFound(datasetId, localId, annoId);
             throw new AnnoPageDoesNotExistException(String.format("/%s/%s/anno/%s", datasetId, localId, annoId));
         }
         return result;
@@ -147,41 +233,75 @@ public class FTService {
      * @return FTResource
      */
     public FTResource fetchFTResource(String datasetId, String localId, String resId)  throws ResourceDoesNotExistException {
-        // TODO investigate if we can combine original annopage and translation annopage in 1 query
-        //  (or maybe when lang is specified we can sent 2 requests in parallel)
-        Resource result = resourceRepository.findOriginalByResId(datasetId, localId, resId);
-        if (result == null) {
-            result = resourceRepository.findTranslationByResId(datasetId, localId, resId);
-            LOG.debug("No original Resource, TranslationResource = {}", result);
+        Resource result = null;
+        if (existenceFilter.resourceMightExist(datasetId, localId, resId)) {
+            result = timeQuery("resource", () ->
+                    resourceRepository.findOriginalOrTranslationByResId(datasetId, localId, resId));
         }
-
         if (result == null) {
+            existenceFilter.resourceNotFound(datasetId, localId, resId);
             throw new ResourceDoesNotExistException(String.format("/%s/%s/%s", datasetId, localId, resId));
         }
         return generateFTResource(result);
     }
 
+    /**
+     * Retrieve the stored content fingerprint of a Resource, without loading its text
+     * @param datasetId identifier of the dataset that contains the Annopage that refers to Resource
+     * @param localId   identifier of the record that contains the Annopage that refers to Resource
+     * @param resId     identifier of the Resource
+     * @return fingerprint, null if the Resource doesn't exist or if no fingerprint was stored
+     */
+    public String getResourceHash(String datasetId, String localId, String resId) {
+        if (!existenceFilter.resourceMightExist(datasetId, localId, resId)) {
+            return null;
+        }
+        return timeQuery("resourceHash", () -> resourceRepository.findHash(datasetId, localId, resId));
+    }
+
     // = = [ collect summary information ]= = = = = = = = = = = = = = = = = = = = = = = = = = = = = =
 
+    /**
+     * Lists all original and translated AnnoPages of a record
+     * @param datasetId identifier of the record's dataset
+     * @param localId   identifier of the record
+     * @throws AnnoPageDoesNotExistException when the record doesn't have any AnnoPages
+     * @return SummaryManifest containing a SummaryCanvas for each page
+     */
     public SummaryManifest collectAnnoPageInfo(String datasetId, String localId) throws AnnoPageDoesNotExistException {
-        // 1) create SummaryManifest container for this EuropeanaID
-        SummaryManifest apInfoSummaryManifest = new SummaryManifest(datasetId, localId);
-
-        // 2) find all original AnnoPages and create a SummaryCanvas for each
-        List<AnnoPage> annoPages = annoPageRepository.findOrigPages(datasetId, localId);
-        if (annoPages == null || annoPages.size() == 0) {
+        // 1) retrieve the page index of this EuropeanaID
+        RecordPageIndex pageIndex = fetchPageIndex(datasetId, localId);
+        if (pageIndex == null) {
             throw new AnnoPageDoesNotExistException(datasetId + "/" + localId);
         }
-        for (AnnoPage ap : annoPages) {
-            SummaryCanvas summaryCanvas = new SummaryCanvas(makeSummaryCanvasID(ap));
+
+        // 2) translations are saved by other applications so they are not in the index, we retrieve their languages
+        // with a separate (covered) query
+        Date modified = pageIndex.getModified();
+        Map<String, List<String>> translationsByPage = new HashMap<>();
+        for (TranslationAnnoPage translation : timeQuery("translationLanguages", () ->
+                annoPageRepository.findTranslationLanguages(datasetId, localId))) {
+            translationsByPage.computeIfAbsent(translation.getPgId(), k -> new ArrayList<>()).add(translation.getLang());
+            if (translation.getModified() != null && (modified == null || translation.getModified().after(modified))) {
+                modified = translation.getModified();
+            }
+        }
+
+        // 3) create SummaryManifest container and add a SummaryCanvas for each original AnnoPage
+        SummaryManifest apInfoSummaryManifest = new SummaryManifest(datasetId, localId);
+        apInfoSummaryManifest.setModified(modified);
+        for (RecordPageIndex.IndexedPage page : pageIndex.getPages()) {
+            SummaryCanvas summaryCanvas = new SummaryCanvas(makeSummaryCanvasID(datasetId, localId, page.getPgId()));
 
             // add original SummaryAnnoPage to the SummaryCanvas
-            summaryCanvas.addAnnotation(new SummaryAnnoPage(makeLangAwareAnnoPageID(ap), ap.getLang()));
-            summaryCanvas.setOriginalLanguage(ap.getLang());
+            summaryCanvas.addAnnotation(new SummaryAnnoPage(
+                    makeLangAwareAnnoPageID(datasetId, localId, page.getPgId(), page.getLang()), page.getLang()));
+            summaryCanvas.setOriginalLanguage(page.getLang());
 
             // add translated AnnotationLangPages (if any) to the SummaryCanvas
-            for (TranslationAnnoPage tap : annoPageRepository.findTranslatedPages(datasetId, localId, ap.getPgId())) {
-                summaryCanvas.addAnnotation(new SummaryAnnoPage(makeLangAwareAnnoPageID(tap), tap.getLang()));
+            for (String lang : translationsByPage.getOrDefault(page.getPgId(), Collections.emptyList())) {
+                summaryCanvas.addAnnotation(new SummaryAnnoPage(
+                        makeLangAwareAnnoPageID(datasetId, localId, page.getPgId(), lang), lang));
             }
             // add SummaryCanvas to SummaryManifest
             apInfoSummaryManifest.addCanvas(summaryCanvas);
@@ -189,23 +309,53 @@ public class FTService {
         return apInfoSummaryManifest;
     }
 
-    private String makeSummaryCanvasID(AnnoPage ap){
-        return ftSettings.getAnnoPageBaseUrl() + ap.getDsId() + "/" + ap.getLcId() + FTDefinitions.CANVAS_PATH +"/" + ap.getPgId();
+    /**
+     * Retrieve the page index of a record. Records that were loaded before page indexes were introduced may not have
+     * one yet, in which case we generate it from the AnnoPages of that record and save it, so this is done only once.
+     */
+    private RecordPageIndex fetchPageIndex(String datasetId, String localId) {
+        if (!existenceFilter.recordMightExist(datasetId, localId)) {
+            return null;
+        }
+        RecordPageIndex result = timeQuery("pageIndex", () -> pageIndexRepository.findByRecordId(datasetId, localId));
+        if (result == null) {
+            LOG.debug("No page index found for /{}/{}, generating from AnnoPages", datasetId, localId);
+            result = timeQuery("generatePageIndex", () -> pageIndexRepository.generate(datasetId, localId));
+            if (result == null) {
+                existenceFilter.recordNotFound(datasetId, localId);
+            } else {
+                savePageIndex(result);
+            }
+        }
+        return result;
+    }
+
+    private void savePageIndex(RecordPageIndex pageIndex) {
+        try {
+            pageIndexRepository.save(pageIndex);
+        } catch (MongoException e) {
+            // not a problem for this request, we'll try again next time
+            LOG.warn("Error saving page index {}", pageIndex, e);
+        }
+    }
+
+    private String makeSummaryCanvasID(String datasetId, String localId, String pageId){
+        return ftSettings.getAnnoPageBaseUrl() + datasetId + "/" + localId + FTDefinitions.CANVAS_PATH +"/" + pageId;
     }
 
-    private String makeLangAwareAnnoPageID(AnnoPage ap){
+    private String makeLangAwareAnnoPageID(String datasetId, String localId, String pageId, String lang){
         StringBuilder result = new StringBuilder(100);
         result.append(ftSettings.getAnnoPageBaseUrl())
-                .append(ap.getDsId())
+                .append(datasetId)
                 .append("/")
-                .append(ap.getLcId())
+                .append(localId)
                 .append(FTDefinitions.ANNOPAGE_PATH)
                 .append("/")
-                .append(ap.getPgId());
-        if (!StringUtils.isEmpty(ap.getLang())) {
+                .append(pageId);
+        if (!StringUtils.isEmpty(lang)) {
             result.append("?")
                     .append(FTDefinitions.LANGUAGE_PARAM)
-                    .append(ap.getLang());
+                    .append(lang);
         }
         return result.toString();
     }
@@ -220,50 +370,104 @@ public class FTService {
      * @param lang      optional, in which language should the AnnoPage be
      * @return true if it exists, otherwise false
      */
-    public boolean doesAnnoPageExist(String datasetId, String localId, String pageId, String lang){
+    public boolean doesAnnoPageExist(String datasetId, String localId, String pageId, String lang) {
+        if (!existenceFilter.pageMightExist(datasetId, localId, pageId, lang)) {
+            return false;
+        }
+        boolean result;
         if (StringUtils.isEmpty(lang)) {
-            return annoPageRepository.existsOriginalByPageId(datasetId, localId, pageId);
+            result = timeQuery("annoPageExists", () ->
+                    annoPageRepository.existsOriginalByPageId(datasetId, localId, pageId));
+        } else {
+            result = timeQuery("annoPageExists", () ->
+                    annoPageRepository.existsOriginalOrTranslationByPageIdLang(datasetId, localId, pageId, lang));
         }
-
-        // TODO investigate if we can combine original annopage and translation annopage in 1 query
-        //  (or maybe when lang is specified we can sent 2 requests in parallel)
-        boolean result = annoPageRepository.existsOriginalByPageIdLang(datasetId, localId, pageId, lang);
         if (!result) {
-            result = annoPageRepository.existsTranslationByPageIdLang(datasetId, localId, pageId, lang);
-            LOG.debug("No original AnnoPage, TranslationAnnoPage exists = {}", result);
+            existenceFilter.pageNotFound(datasetId, localId, pageId, lang);
         }
         return result;
     }
 
+    /**
+     * Retrieve only the modified date of an AnnoPage, so conditional requests can be handled without loading
+     * annotations.
+     * Note that null is also returned for (legacy) AnnoPages without a modified date, so a null result doesn't mean
+     * the AnnoPage doesn't exist (see {@link #doesAnnoPageExist(String, String, String, String)}).
+     * @param datasetId Identifier of the dataset
+     * @param localId   Identifier of the item
+     * @param pageId    Identifier of the item's page
+     * @param lang      optional, in which language should the AnnoPage be
+     * @return modified date of the AnnoPage, or null if it doesn't exist or doesn't have a modified date
+     */
+    public Date getAnnoPageModified(String datasetId, String localId, String pageId, String lang) {
+        if (!existenceFilter.pageMightExist(datasetId, localId, pageId, lang)) {
+            return null;
+        }
+        return timeQuery("annoPageModified", () -> annoPageRepository.findModified(datasetId, localId, pageId, lang));
+    }
+
+    /**
+     * Retrieve only the most recent modified date of all AnnoPages of a record, so cached search results can be
+     * validated and conditional search requests can be handled without querying Solr
+     * @param datasetId Identifier of the dataset
+     * @param localId   Identifier of the item
+     * @return last modified date of the record's AnnoPages, or null if the record doesn't exist or none of its
+     * AnnoPages has a modified date (see {@link #doesRecordExist(String, String)})
+     */
+    public Date getRecordModified(String datasetId, String localId) {
+        if (!existenceFilter.recordMightExist(datasetId, localId)) {
+            return null;
+        }
+        return timeQuery("recordModified", () -> annoPageRepository.findLastModified(datasetId, localId));
+    }
+
+    /**
+     * Retrieve only the modified date of the AnnoPage containing a particular annotation, so conditional requests
+     * can be handled without loading annotations
+     * @param datasetId Identifier of the dataset
+     * @param localId   Identifier of the item
+     * @param annoId    Identifier of the annotation
+     * @return modified date of the AnnoPage, or null if it doesn't exist or doesn't have a modified date
+     */
+    public Date getAnnotationModified(String datasetId, String localId, String annoId) {
+        if (!existenceFilter.annotationMightExist(datasetId, localId, annoId)) {
+            return null;
+        }
+        return timeQuery("annotationModified", () ->
+                annoPageRepository.findModifiedByAnnoId(datasetId, localId, annoId));
+    }
+
+    /**
+     * Check if a record has any AnnoPages
+     * @param datasetId Identifier of the dataset
+     * @param localId   Identifier of the item
+     * @return true if the record exists, otherwise false
+     */
+    public boolean doesRecordExist(String datasetId, String localId) {
+        return fetchPageIndex(datasetId, localId) != null;
+    }
+
     // = = [ generate JSON objects ] = = = = = = = = = = = = = = = = = = = = = = = = = = = = = = = =
     /**
-     * Generates an AnnotationPageV3 (IIIF V3 response type) object with the AnnoPage as input
+     * Generates an IIIF V3 AnnotationPage (response type) object with the AnnoPage as input
      * @param annoPage AnnoPage input object
      * @param derefResource boolean indicating whether to dereference the Resource object on the top level Annotation
-     * @return AnnotationPageV3
+     * @return AnnotationPage that is serialized directly from the AnnoPage as IIIF V3 AnnotationPage
      */
-     public AnnotationPageV3 generateAnnoPageV3(AnnoPage annoPage, boolean derefResource){
-        long start = System.currentTimeMillis();
-        AnnotationPageV3 result = EDM2IIIFMapping.getAnnotationPageV3(annoPage, derefResource);
-        if (LOG.isDebugEnabled()) {
-            LOG.debug(GENERATED_IN, System.currentTimeMillis() - start);
-        }
-        return result;
+     public AnnotationWrapper generateAnnoPageV3(AnnoPage annoPage, boolean derefResource){
+        return timer(MAPPING_TIMER, TAG_TYPE, TYPE_ANNOPAGE, TAG_VERSION, VERSION_3).record(() ->
+                EDM2IIIFMapping.getAnnotationPageV3(annoPage, derefResource));
     }
 
     /**
-     * Generates an AnnotationPageV2 (IIIF V2 response type) object with the AnnoPage as input
+     * Generates an IIIF V2 AnnotationPage (response type) object with the AnnoPage as input
      * @param annoPage AnnoPage input object
      * @param derefResource boolean indicating whether or not to load and dereference the Resource
-     * @return AnnotationPageV2
+     * @return AnnotationPage that is serialized directly from the AnnoPage as IIIF V2 AnnotationList
      */
-    public AnnotationPageV2 generateAnnoPageV2(AnnoPage annoPage, boolean derefResource){
-        long start = System.currentTimeMillis();
-        AnnotationPageV2 result = EDM2IIIFMapping.getAnnotationPageV2(annoPage, derefResource);
-        if (LOG.isDebugEnabled()) {
-            LOG.debug(GENERATED_IN, System.currentTimeMillis() - start);
-        }
-        return result;
+    public AnnotationWrapper generateAnnoPageV2(AnnoPage annoPage, boolean derefResource){
+        return timer(MAPPING_TIMER, TAG_TYPE, TYPE_ANNOPAGE, TAG_VERSION, VERSION_2).record(() ->
+                EDM2IIIFMapping.getAnnotationPageV2(annoPage, derefResource));
     }
 
     /**
@@ -274,12 +478,8 @@ public class FTService {
      * @return AnnotationV3
      */
     public AnnotationV3 generateAnnotationV3(AnnoPage annoPage, String annoId){
-        long start = System.currentTimeMillis();
-        AnnotationV3 result = EDM2IIIFMapping.getSingleAnnotationV3(annoPage, annoId);
-        if (LOG.isDebugEnabled()) {
-            LOG.debug(GENERATED_IN, System.currentTimeMillis() - start);
-        }
-        return result;
+        return timer(MAPPING_TIMER, TAG_TYPE, TYPE_ANNOTATION, TAG_VERSION, VERSION_3).record(() ->
+                EDM2IIIFMapping.getSingleAnnotationV3(annoPage, annoId));
     }
 
 
@@ -291,21 +491,13 @@ public class FTService {
      * @return AnnotationV2
      */
     public AnnotationV2 generateAnnotationV2(AnnoPage annoPage, String annoId){
-        long start = System.currentTimeMillis();
-        AnnotationV2 result = EDM2IIIFMapping.getSingleAnnotationV2(annoPage, annoId);
-        if (LOG.isDebugEnabled()) {
-            LOG.debug(GENERATED_IN, System.currentTimeMillis() - start);
-        }
-        return result;
+        return timer(MAPPING_TIMER, TAG_TYPE, TYPE_ANNOTATION, TAG_VERSION, VERSION_2).record(() ->
+                EDM2IIIFMapping.getSingleAnnotationV2(annoPage, annoId));
     }
 
     private FTResource generateFTResource(Resource resource){
-        long       start  = System.currentTimeMillis();
-        FTResource result = EDM2IIIFMapping.getFTResource(resource);
-        if (LOG.isDebugEnabled()) {
-            LOG.debug(GENERATED_IN, System.currentTimeMillis() - start);
-        }
-        return result;
+        return timer(MAPPING_TIMER, TAG_TYPE, TYPE_RESOURCE, TAG_VERSION, "").record(() ->
+                EDM2IIIFMapping.getFTResource(resource));
     }
 
     // = = = = = = = = = = = = = = = = = = = = = = = = = = = = = = = = = = = = = = = = = = = =
@@ -317,12 +509,38 @@ public class FTService {
      * @throws SerializationException when serialisation seriously severely snaps somewhere
      */
     public String serialise(Object data) throws SerializationException {
+        Timer.Sample sample = Timer.start();
         try {
             return mapper.writerWithDefaultPrettyPrinter().writeValueAsString(data);
         } catch (IOException e) {
             throw new SerializationException("Error serialising data: " + e.getMessage(), e);
+        } finally {
+            stopSerialise(sample, data);
+        }
+    }
+
+    /**
+     * Serialize data from MongoDB to JSON-LD, writing directly to the provided output stream so the serialized
+     * response is never kept in memory as a whole
+     * @param  data   input data
+     * @param  out    stream to write to (this stream is not closed)
+     * @param  pretty if true, the output is pretty printed
+     * @throws SerializationException when serialising or writing fails
+     */
+    public void serialise(Object data, OutputStream out, boolean pretty) throws SerializationException {
+        Timer.Sample sample = Timer.start();
+        try {
+            ControllerUtils.writeJson(mapper, data, out, pretty);
+        } catch (IOException e) {
+            throw new SerializationException("Error serialising data: " + e.getMessage(), e);
+        } finally {
+            stopSerialise(sample, data);
         }
     }
 
+    private static void stopSerialise(Timer.Sample sample, Object data) {
+        sample.stop(timer(SERIALISE_TIMER, TAG_TYPE, data == null ? RESULT_NONE : data.getClass().getSimpleName()));
+    }
+
 
 }
@@ -0,0 +1,65 @@
+package eu.europeana.fulltext.api.service;
+
+import eu.europeana.fulltext.entity.AnnoPage;
+import eu.europeana.fulltext.entity.DatasetInventory;
+import eu.europeana.fulltext.entity.Resource;
+import eu.europeana.fulltext.entity.TranslationAnnoPage;
+import eu.europeana.fulltext.entity.TranslationResource;
+import eu.europeana.fulltext.repository.AnnoPageRepository;
+import eu.europeana.fulltext.repository.DatasetInventoryRepository;
+import eu.europeana.fulltext.repository.ResourceRepository;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Provides the number of documents in each collection and the inventory of each dataset. None of this requires
+ * scanning a collection: totals are estimated from collection metadata and the dataset counters are maintained by
+ * the loader.
+ */
+@Service
+public class InventoryService {
+
+    private final AnnoPageRepository         annoPageRepository;
+    private final ResourceRepository         resourceRepository;
+    private final DatasetInventoryRepository inventoryRepository;
+
+    public InventoryService(AnnoPageRepository annoPageRepository, ResourceRepository resourceRepository,
+                            DatasetInventoryRepository inventoryRepository) {
+        this.annoPageRepository = annoPageRepository;
+        this.resourceRepository = resourceRepository;
+        this.inventoryRepository = inventoryRepository;
+    }
+
+    /**
+     * @return map with the (estimated) number of documents in the AnnoPage, TranslationAnnoPage, Resource and
+     * TranslationResource collections
+     */
+    public Map<String, Long> getTotals() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        result.put(AnnoPage.class.getSimpleName(), annoPageRepository.estimateCount(AnnoPage.class));
+        result.put(TranslationAnnoPage.class.getSimpleName(),
+                annoPageRepository.estimateCount(TranslationAnnoPage.class));
+        result.put(Resource.class.getSimpleName(), resourceRepository.estimateCount(Resource.class));
+        result.put(TranslationResource.class.getSimpleName(),
+                resourceRepository.estimateCount(TranslationResource.class));
+        return result;
+    }
+
+    /**
+     * @return the inventories of all datasets, ordered by dataset id
+     */
+    public List<DatasetInventory> getDatasets() {
+        return inventoryRepository.findAll();
+    }
+
+    /**
+     * @param datasetId ID of the dataset
+     * @return the inventory of the dataset, or null if there is none
+     */
+    public DatasetInventory getDataset(String datasetId) {
+        return inventoryRepository.findByDatasetId(datasetId);
+    }
+}
@@ -0,0 +1,207 @@
+package eu.europeana.fulltext.api.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import eu.europeana.fulltext.AnnotationType;
+import eu.europeana.fulltext.api.config.FTSettings;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory cache for serialized IIIF responses, so we don't have to map and serialize popular AnnoPages over and
+ * over again. Each response is stored together with its eTag; if the eTag of a request is different than the one of
+ * the cached response (e.g. because the AnnoPage was modified or the API was updated), the cached response is not used.
+ * <p>
+ * The cache size is limited to an estimated number of megabytes (see response.cache.maxsize.mb property). Responses
+ * larger than 1/20th of the cache size are not cached. Cache statistics are available via actuator metrics.
+ */
+@Component
+public class SerializedResponseCache implements MeterBinder {
+
+    private static final Logger LOG = LogManager.getLogger(SerializedResponseCache.class);
+
+    private static final String CACHE_NAME = "serializedResponses";
+    private static final long   BYTES_PER_MB = 1024L * 1024L;
+    private static final int    MAX_ENTRY_FRACTION = 20;
+
+    private final Cache<String, CachedResponse> cache;
+    private final int maxEntrySize;
+
+    /**
+     * Create a new response cache
+     * @param ftSettings settings containing the maximum cache size
+     */
+    public SerializedResponseCache(FTSettings ftSettings) {
+        int maxSizeMb = ftSettings.getResponseCacheMaxSizeMb();
+        if (maxSizeMb > 0) {
+            LOG.info("Serialized response cache maximum size is {} MB", maxSizeMb);
+            this.cache = Caffeine.newBuilder()
+                    .maximumWeight(maxSizeMb * BYTES_PER_MB)
+                    .weigher((String key, CachedResponse response) -> key.length() + response.size())
+                    .recordStats()
+                    .build();
+            this.maxEntrySize = (int) Math.min(maxSizeMb * BYTES_PER_MB / MAX_ENTRY_FRACTION, Integer.MAX_VALUE);
+        } else {
+            LOG.info("Serialized response cache is disabled");
+            this.cache = null;
+            this.maxEntrySize = 0;
+        }
+    }
+
+    /**
+     * Registers the cache statistics with actuator
+     * @param registry the registry to bind cache metrics to
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (cache != null) {
+            CaffeineCacheMetrics.monitor(registry, cache, CACHE_NAME);
+        }
+    }
+
+    /**
+     * @return true if serialized responses are cached, otherwise false
+     */
+    public boolean isEnabled() {
+        return cache != null;
+    }
+
+    /**
+     * Create a cache key for an AnnoPage response
+     * @param datasetId      identifier of the AnnoPage's dataset
+     * @param localId        identifier of the AnnoPage's record
+     * @param pageId         identifier of the AnnoPage
+     * @param lang           optional, requested language
+     * @param version        requested IIIF version
+     * @param isJson         true if json was requested, false for json-ld
+     * @param derefResource  true if the resource is dereferenced (text profile)
+     * @param pretty         true if the response is pretty printed
+     * @param textGranValues requested annotation types
+     * @return cache key
+     */
+    public static String createAnnoPageKey(String datasetId, String localId, String pageId, String lang, String version,
+                                           boolean isJson, boolean derefResource, boolean pretty,
+                                           List<AnnotationType> textGranValues) {
+        StringBuilder key = new StringBuilder(70)
+                .append('/').append(datasetId)
+                .append('/').append(localId)
+                .append("/annopage/").append(pageId)
+                .append('|').append(StringUtils.isEmpty(lang) ? "" : lang)
+                .append('|').append(version)
+                .append('|').append(isJson ? "json" : "jsonld")
+                .append('|').append(derefResource ? "text" : "")
+                .append('|').append(pretty ? "pretty" : "")
+                .append('|');
+        // sort so the order in which the text granularity values were specified doesn't matter
+        key.append(textGranValues.stream()
+                .map(type -> String.valueOf(type.getAbbreviation()))
+                .sorted()
+                .collect(Collectors.joining()));
+        return key.toString();
+    }
+
+    /**
+     * Return a cached response
+     * @param key  cache key
+     * @param eTag eTag of the current request
+     * @return cached response (UTF-8 encoded), or null if there is none with the same eTag
+     */
+    public byte[] get(String key, String eTag) {
+        if (cache == null) {
+            return null;
+        }
+        CachedResponse response = cache.getIfPresent(key);
+        if (response == null || !response.eTag.equals(eTag)) {
+            return null;
+        }
+        return response.body;
+    }
+
+    /**
+     * Wraps an output stream so that everything written to it is also stored in the cache, replacing any older
+     * version. The response is only cached when the returned stream is closed, so nothing is stored when serializing
+     * fails halfway. Closing the returned stream does not close the wrapped stream.
+     * @param key  cache key
+     * @param eTag eTag of the response
+     * @param out  stream to which the response is written
+     * @return output stream that should be used for writing the response
+     */
+    public OutputStream cacheWhileWriting(String key, String eTag, OutputStream out) {
+        if (cache == null) {
+            return out;
+        }
+        return new CachingOutputStream(out, key, eTag);
+    }
+
+    private final class CachingOutputStream extends FilterOutputStream {
+        private final String key;
+        private final String eTag;
+        private ByteArrayOutputStream copy = new ByteArrayOutputStream(8192);
+
+        private CachingOutputStream(OutputStream out, String key, String eTag) {
+            super(out);
+            this.key = key;
+            this.eTag = eTag;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            if (copy != null) {
+                copy.write(b);
+                checkSize();
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            if (copy != null) {
+                copy.write(b, off, len);
+                checkSize();
+            }
+        }
+
+        private void checkSize() {
+            if (copy.size() > maxEntrySize) {
+                LOG.debug("Response {} is too large to cache", key);
+                copy = null;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.flush();
+            if (copy != null) {
+                cache.put(key, new CachedResponse(eTag, copy.toByteArray()));
+                copy = null;
+            }
+        }
+    }
+
+    private static final class CachedResponse {
+        private final String eTag;
+        private final byte[] body;
+
+        private CachedResponse(String eTag, byte[] body) {
+            this.eTag = eTag;
+            this.body = body;
+        }
+
+        private int size() {
+            return eTag.length() + body.length;
+        }
+    }
+}
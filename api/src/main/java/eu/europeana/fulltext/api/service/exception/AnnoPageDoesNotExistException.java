@@ -1,6 +1,5 @@
 package eu.europeana.fulltext.api.service.exception;
 
-import eu.europeana.api.commons.error.EuropeanaApiException;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
@@ -10,7 +9,7 @@ import org.springframework.web.bind.annotation.ResponseStatus;
  * Created on 27-02-2018
  */
 @ResponseStatus(HttpStatus.NOT_FOUND)
-public class AnnoPageDoesNotExistException extends EuropeanaApiException {
+public class AnnoPageDoesNotExistException extends NotFoundException {
 
     private static final long serialVersionUID = -8172379300509594428L;
 
@@ -21,14 +20,4 @@ public class AnnoPageDoesNotExistException extends EuropeanaApiException {
     public AnnoPageDoesNotExistException(String id, String language) {
         super("Annotation Page with id " + id + " does not exist for language " + language);
     }
-
-    @Override
-    public boolean doLog() {
-        return false;
-    }
-
-    //@Override
-    public HttpStatus getResponseStatus() {
-        return HttpStatus.NOT_FOUND;
-    }
 }
@@ -1,6 +1,5 @@
 package eu.europeana.fulltext.api.service.exception;
 
-import eu.europeana.api.commons.error.EuropeanaApiException;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
@@ -10,21 +9,11 @@ import org.springframework.web.bind.annotation.ResponseStatus;
  * Created on 27-02-2018
  */
 @ResponseStatus(HttpStatus.NOT_FOUND)
-public class AnnotationDoesNotExistException extends EuropeanaApiException {
+public class AnnotationDoesNotExistException extends NotFoundException {
 
     private static final long serialVersionUID = 2048581559311721229L;
 
     public AnnotationDoesNotExistException(String id) {
         super("Annotation with id " + id + " does not exist");
     }
-
-    @Override
-    public boolean doLog() {
-        return false;
-    }
-
-    //@Override
-    public HttpStatus getResponseStatus() {
-        return HttpStatus.NOT_FOUND;
-    }
 }
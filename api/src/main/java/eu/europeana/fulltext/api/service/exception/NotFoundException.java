@@ -0,0 +1,37 @@
+package eu.europeana.fulltext.api.service.exception;
+
+import eu.europeana.api.commons.error.EuropeanaApiException;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Base class for errors that are thrown when a requested AnnoPage, Annotation or Resource doesn't exist
+ */
+@ResponseStatus(HttpStatus.NOT_FOUND)
+public abstract class NotFoundException extends EuropeanaApiException {
+
+    private static final long serialVersionUID = 4718530462155912740L;
+
+    protected NotFoundException(String msg) {
+        super(msg);
+    }
+
+    @Override
+    public boolean doLog() {
+        return false;
+    }
+
+    /**
+     * Not found errors are common and expected, so we skip filling in the (expensive) stack trace. It's not logged
+     * anyway.
+     */
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+
+    //@Override
+    public HttpStatus getResponseStatus() {
+        return HttpStatus.NOT_FOUND;
+    }
+}
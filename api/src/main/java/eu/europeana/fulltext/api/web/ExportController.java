@@ -0,0 +1,160 @@
+package eu.europeana.fulltext.api.web;
+
+import eu.europeana.api.commons.error.EuropeanaApiException;
+import eu.europeana.fulltext.api.service.ExportService;
+import eu.europeana.fulltext.api.service.FTService;
+import eu.europeana.fulltext.api.service.exception.AnnoPageDoesNotExistException;
+import eu.europeana.fulltext.api.service.exception.SerializationException;
+import eu.europeana.fulltext.search.exception.InvalidParameterException;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static eu.europeana.fulltext.api.config.FTDefinitions.MEDIA_TYPE_NDJSON;
+import static eu.europeana.fulltext.api.config.FTDefinitions.UTF_8;
+
+/**
+ * Rest controller that exports all full-texts or annotation pages of a record or dataset as newline delimited json
+ * (one json object per line), so harvesters don't have to retrieve them one by one. The response is streamed and
+ * compressed with gzip if the client accepts that.
+ */
+@RestController
+@Api(tags = {"Full-text export"}, description = "Export all full-texts or annotation pages of a record or dataset")
+@RequestMapping("/presentation")
+public class ExportController {
+
+    private static final Logger LOG = LogManager.getLogger(ExportController.class);
+
+    private static final String TYPE_RESOURCE = "resource";
+    private static final String TYPE_ANNOPAGE = "annopage";
+    private static final String GZIP          = "gzip";
+    private static final int    GZIP_BUFFER   = 8192;
+
+    private final ExportService exportService;
+    private final FTService     fts;
+
+    public ExportController(ExportService exportService, FTService ftService) {
+        this.exportService = exportService;
+        this.fts = ftService;
+    }
+
+    /**
+     * Exports all full-texts or annotation pages of a dataset
+     *
+     * @param datasetId    identifier of the dataset
+     * @param type         optional, either 'resource' (default) or 'annopage'
+     * @param versionParam optional, IIIF format (2|3) of exported annotation pages
+     * @return response in ndjson format
+     * @throws EuropeanaApiException when an invalid parameter value is provided or writing the response fails
+     */
+    @ApiOperation(value = "Export all full-texts or annotation pages of a dataset as ndjson")
+    @GetMapping(value = "/{datasetId}/export")
+    public ResponseEntity<String> exportDataset(
+            @PathVariable String datasetId,
+            @RequestParam(value = "type", required = false, defaultValue = TYPE_RESOURCE) String type,
+            @RequestParam(value = "format", required = false) String versionParam,
+            HttpServletRequest request,
+            HttpServletResponse response) throws EuropeanaApiException {
+        return export(datasetId, null, type, versionParam, request, response);
+    }
+
+    /**
+     * Exports all full-texts or annotation pages of a record
+     *
+     * @param datasetId    identifier of the record's dataset
+     * @param localId      identifier of the record
+     * @param type         optional, either 'resource' (default) or 'annopage'
+     * @param versionParam optional, IIIF format (2|3) of exported annotation pages
+     * @return response in ndjson format
+     * @throws EuropeanaApiException when the record doesn't exist, an invalid parameter value is provided or writing
+     * the response fails
+     */
+    @ApiOperation(value = "Export all full-texts or annotation pages of a record as ndjson")
+    @GetMapping(value = "/{datasetId}/{localId}/export")
+    public ResponseEntity<String> exportRecord(
+            @PathVariable String datasetId,
+            @PathVariable String localId,
+            @RequestParam(value = "type", required = false, defaultValue = TYPE_RESOURCE) String type,
+            @RequestParam(value = "format", required = false) String versionParam,
+            HttpServletRequest request,
+            HttpServletResponse response) throws EuropeanaApiException {
+        if (!fts.doesRecordExist(datasetId, localId)) {
+            throw new AnnoPageDoesNotExistException(datasetId + "/" + localId);
+        }
+        return export(datasetId, localId, type, versionParam, request, response);
+    }
+
+    private ResponseEntity<String> export(String datasetId, String localId, String type, String versionParam,
+                                          HttpServletRequest request, HttpServletResponse response)
+            throws EuropeanaApiException {
+        boolean exportAnnoPages = validateType(type);
+        boolean iiifV3 = validateVersion(versionParam);
+        LOG.debug("Export {}s of {}/{}", type, datasetId, localId);
+
+        boolean gzip = StringUtils.containsIgnoreCase(request.getHeader(HttpHeaders.ACCEPT_ENCODING), GZIP);
+        response.setStatus(HttpStatus.OK.value());
+        response.setHeader(HttpHeaders.CONTENT_TYPE, MEDIA_TYPE_NDJSON + ";" + UTF_8);
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, GZIP);
+        }
+        try {
+            OutputStream out = response.getOutputStream();
+            if (gzip) {
+                out = new GZIPOutputStream(out, GZIP_BUFFER);
+            }
+            long count = (exportAnnoPages
+                    ? exportService.exportAnnoPages(datasetId, localId, iiifV3, out)
+                    : exportService.exportResources(datasetId, localId, out));
+            // close to write the gzip trailer (closing the servlet output stream is fine too)
+            out.close();
+            LOG.debug("Exported {} {}s of {}/{}", count, type, datasetId, localId);
+        } catch (IOException e) {
+            throw new SerializationException("Error writing export: " + e.getMessage(), e);
+        }
+        return null;
+    }
+
+    /**
+     * @return true if annotation pages should be exported, false if resources should be exported
+     */
+    private static boolean validateType(String type) throws InvalidParameterException {
+        if (TYPE_RESOURCE.equalsIgnoreCase(type)) {
+            return false;
+        }
+        if (TYPE_ANNOPAGE.equalsIgnoreCase(type)) {
+            return true;
+        }
+        throw new InvalidParameterException("invalid type '" + type + "'. Allowed values are " + TYPE_RESOURCE +
+                " and " + TYPE_ANNOPAGE);
+    }
+
+    /**
+     * @return true if IIIF v3 is requested, false for IIIF v2 (default)
+     */
+    private static boolean validateVersion(String versionParam) throws InvalidParameterException {
+        if (StringUtils.isBlank(versionParam) || "2".equals(versionParam)) {
+            return false;
+        }
+        if ("3".equals(versionParam)) {
+            return true;
+        }
+        throw new InvalidParameterException("invalid format '" + versionParam + "'. Allowed values are 2 and 3");
+    }
+}
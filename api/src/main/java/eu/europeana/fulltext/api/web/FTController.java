@@ -2,12 +2,16 @@ package eu.europeana.fulltext.api.web;
 
 import eu.europeana.api.commons.error.EuropeanaApiException;
 import eu.europeana.fulltext.AnnotationType;
+import eu.europeana.fulltext.api.model.info.SummaryAnnoPage;
+import eu.europeana.fulltext.api.model.info.SummaryCanvas;
 import eu.europeana.fulltext.api.model.info.SummaryManifest;
 import eu.europeana.fulltext.api.model.AnnotationWrapper;
 import eu.europeana.fulltext.api.model.FTResource;
 import eu.europeana.fulltext.api.service.CacheUtils;
 import eu.europeana.fulltext.api.service.ControllerUtils;
+import eu.europeana.fulltext.api.service.FTMetrics;
 import eu.europeana.fulltext.api.service.FTService;
+import eu.europeana.fulltext.api.service.SerializedResponseCache;
 import eu.europeana.fulltext.api.service.exception.SerializationException;
 import eu.europeana.fulltext.entity.AnnoPage;
 import io.swagger.annotations.Api;
@@ -22,6 +26,9 @@ import org.springframework.web.bind.annotation.*;
 import springfox.documentation.annotations.ApiIgnore;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.ZonedDateTime;
 import java.util.*;
 import java.util.regex.Matcher;
@@ -58,9 +65,11 @@ public class FTController {
     private static final Logger LOG = LogManager.getLogger(FTController.class);
 
     private FTService fts;
+    private SerializedResponseCache responseCache;
 
-    public FTController(FTService ftService) {
+    public FTController(FTService ftService, SerializedResponseCache responseCache) {
         this.fts = ftService;
+        this.responseCache = responseCache;
     }
 
     /**
@@ -68,6 +77,7 @@ public class FTController {
      *
      * @param datasetId identifier of the AnnoPage's dataset
      * @param localId   identifier of the AnnoPage's record
+     * @param pretty    optional, if true the response is pretty printed
      * @return result String containing requested info
      * @throws EuropeanaApiException when serialising to Json fails
      */
@@ -75,9 +85,40 @@ public class FTController {
     @GetMapping(value = "/{datasetId}/{localId}/annopage", headers = ACCEPT_JSON)
     public ResponseEntity<String> annoPageInfo(
             @PathVariable String datasetId,
-            @PathVariable String localId) throws EuropeanaApiException {
+            @PathVariable String localId,
+            @RequestParam(value = "pretty", required = false) boolean pretty,
+            HttpServletRequest request,
+            HttpServletResponse response) throws EuropeanaApiException {
         SummaryManifest apInfo = fts.collectAnnoPageInfo(datasetId, localId);
-        return new ResponseEntity<>(fts.serialise(apInfo), HttpStatus.OK);
+        if (apInfo.getModified() == null) {
+            // none of the record's pages has a modified date (legacy data), so we can't validate cached summaries
+            return writeResponse(response, CacheUtils.generateHeaders(request, null, null), apInfo, pretty);
+        }
+
+        ZonedDateTime modified = CacheUtils.dateToZonedUTC(apInfo.getModified());
+        // adding or deleting a page or translation doesn't have to change the modified date, so the ETag also covers
+        // the listed pages and languages
+        String eTag = generateETag(datasetId + localId + listAnnoPageIds(apInfo),
+                                   modified,
+                                   fts.getSettings().getAppVersion(),
+                                   true);
+        ResponseEntity<String> cached = CacheUtils.checkCached(request, modified, eTag);
+        if (cached != null) {
+            return cached;
+        }
+
+        HttpHeaders headers = CacheUtils.generateHeaders(request, eTag, CacheUtils.zonedDateTimeToString(modified));
+        return writeResponse(response, headers, apInfo, pretty);
+    }
+
+    private static String listAnnoPageIds(SummaryManifest apInfo) {
+        StringBuilder result = new StringBuilder();
+        for (SummaryCanvas canvas : apInfo.getCanvases()) {
+            for (SummaryAnnoPage annoPage : canvas.getAnnotations()) {
+                result.append(annoPage.getId());
+            }
+        }
+        return result.toString();
     }
 
     /**
@@ -90,6 +131,7 @@ public class FTController {
      * @param versionParam    optional, requested IIIF output format (2|3)
      * @param profile         optional, when value = 'text', resources are dereferenced
      * @param textGranularity optional, types of annotations that should be included (e.g. Block, Line, Page)
+     * @param pretty          optional, if true the response is pretty printed
      * @return response in json format
      * @throws EuropeanaApiException when serialising to Json fails or an invalid parameter value is provided
      */
@@ -103,8 +145,11 @@ public class FTController {
             @RequestParam(value = "format", required = false) String versionParam,
             @RequestParam(value = "profile", required = false) String profile,
             @RequestParam(value = "textGranularity", required = false) String textGranularity,
-            HttpServletRequest request) throws EuropeanaApiException {
-        return annoPage(datasetId, localId, pageId, lang, versionParam, profile, textGranularity, request, true);
+            @RequestParam(value = "pretty", required = false) boolean pretty,
+            HttpServletRequest request,
+            HttpServletResponse response) throws EuropeanaApiException {
+        return annoPage(datasetId, localId, pageId, lang, versionParam, profile, textGranularity, pretty, request,
+                        response, true);
     }
 
     /**
@@ -117,6 +162,7 @@ public class FTController {
      * @param versionParam    optional, requested IIIF output format (2|3)
      * @param profile         optional, when value = 'text', resources are dereferenced
      * @param textGranularity optional, specifies what annotations should be returned
+     * @param pretty          optional, if true the response is pretty printed
      * @return response in json-ld format
      * @throws EuropeanaApiException when serialising to JsonLd fails or an invalid parameter value is provided
      */
@@ -130,8 +176,11 @@ public class FTController {
             @RequestParam(value = "format", required = false) String versionParam,
             @RequestParam(value = "profile", required = false) String profile,
             @RequestParam(value = "textGranularity", required = false) String textGranularity,
-            HttpServletRequest request) throws EuropeanaApiException {
-        return annoPage(datasetId, localId, pageId, lang, versionParam, profile, textGranularity, request, false);
+            @RequestParam(value = "pretty", required = false) boolean pretty,
+            HttpServletRequest request,
+            HttpServletResponse response) throws EuropeanaApiException {
+        return annoPage(datasetId, localId, pageId, lang, versionParam, profile, textGranularity, pretty, request,
+                        response, false);
     }
 
     private ResponseEntity<String> annoPage(
@@ -142,7 +191,9 @@ public class FTController {
             String versionParam,
             String profile,
             String textGranularity,
+            boolean pretty,
             HttpServletRequest request,
+            HttpServletResponse response,
             boolean isJson) throws EuropeanaApiException {
         LOG.debug("Retrieve Annopage: {}/{}/{} with language {}", datasetId, localId, pageId, lang);
         String requestVersion = getRequestVersion(request, versionParam);
@@ -154,31 +205,205 @@ public class FTController {
 
         List<AnnotationType> textGranValues = ControllerUtils.validateTextGranularity(textGranularity,
                                                                                       ALLOWED_ANNOTATION_TYPES);
-
-        AnnoPage      annoPage = fts.fetchAnnoPage(datasetId, localId, pageId, textGranValues, lang);
-        ZonedDateTime modified = CacheUtils.dateToZonedUTC(annoPage.getModified());
-        String eTag = generateETag(datasetId + localId + pageId,
-                                   modified,
-                                   requestVersion + fts.getSettings().getAppVersion(),
-                                   true);
-        ResponseEntity<String> cached = CacheUtils.checkCached(request, modified, eTag);
-        if (null != cached) {
-            return cached;
+        FTMetrics.tagRequest(request, requestVersion, textGranValues);
+
+        boolean derefResource = StringUtils.equalsAnyIgnoreCase(profile, PROFILE_TEXT);
+        String cacheKey = SerializedResponseCache.createAnnoPageKey(datasetId, localId, pageId, lang, requestVersion,
+                                                                    isJson, derefResource, pretty, textGranValues);
+        ResponseEntity<String> cached;
+        ZonedDateTime modified     = null;
+        Date          modifiedDate = null;
+        String        eTag         = null;
+        if (CacheUtils.isConditionalRequest(request) || responseCache.isEnabled()) {
+            // check the modified date first, so revalidation and cached responses don't require loading the annotations
+            modifiedDate = fts.getAnnoPageModified(datasetId, localId, pageId, lang);
+            if (modifiedDate != null) {
+                modified = CacheUtils.dateToZonedUTC(modifiedDate);
+                eTag = generateAnnoPageETag(datasetId + localId + pageId, modified, requestVersion);
+                cached = CacheUtils.checkCached(request, modified, eTag);
+                if (null != cached) {
+                    return cached;
+                }
+                byte[] body = responseCache.get(cacheKey, eTag);
+                if (body != null) {
+                    LOG.debug("Serialized response found in cache");
+                    FTMetrics.tagRequestResult(request, FTMetrics.RESULT_HIT);
+                    headers = CacheUtils.generateHeaders(request, eTag, CacheUtils.zonedDateTimeToString(modified));
+                    addContentTypeToResponseHeader(headers, requestVersion, isJson);
+                    return writeResponse(response, headers, body);
+                }
+            }
         }
 
-        headers = CacheUtils.generateHeaders(request, eTag, CacheUtils.zonedDateTimeToString(modified));
+        AnnoPage annoPage = fts.fetchAnnoPage(datasetId, localId, pageId, textGranValues, lang, modifiedDate);
+        if (annoPage.getModified() == null) {
+            // legacy AnnoPage without modified date, so no eTag and we can't cache the response either
+            modified = null;
+            eTag = null;
+            headers = CacheUtils.generateHeaders(request, null, null);
+        } else {
+            ZonedDateTime pageModified = CacheUtils.dateToZonedUTC(annoPage.getModified());
+            if (!pageModified.equals(modified)) {
+                // no modified date retrieved yet, or the page was modified in the meantime
+                modified = pageModified;
+                eTag = generateAnnoPageETag(datasetId + localId + pageId, modified, requestVersion);
+                cached = CacheUtils.checkCached(request, modified, eTag);
+                if (null != cached) {
+                    return cached;
+                }
+            }
+            headers = CacheUtils.generateHeaders(request, eTag, CacheUtils.zonedDateTimeToString(modified));
+        }
         addContentTypeToResponseHeader(headers, requestVersion, isJson);
 
         if ("3".equalsIgnoreCase(requestVersion)) {
-            annotationPage = fts.generateAnnoPageV3(annoPage, StringUtils.equalsAnyIgnoreCase(profile, PROFILE_TEXT));
+            annotationPage = fts.generateAnnoPageV3(annoPage, derefResource);
         } else {
-            annotationPage = fts.generateAnnoPageV2(annoPage, StringUtils.equalsAnyIgnoreCase(profile, PROFILE_TEXT));
+            annotationPage = fts.generateAnnoPageV2(annoPage, derefResource);
         }
 
         if (isJson) {
             annotationPage.setContext(null);
         }
-        return new ResponseEntity<>(fts.serialise(annotationPage), headers, HttpStatus.OK);
+        FTMetrics.tagRequestResult(request, FTMetrics.RESULT_MISS);
+        writeHeaders(response, headers);
+        try {
+            OutputStream out = response.getOutputStream();
+            if (eTag != null) {
+                out = responseCache.cacheWhileWriting(cacheKey, eTag, out);
+            }
+            fts.serialise(annotationPage, out, pretty);
+            // closing the stream stores the response in the cache
+            out.close();
+        } catch (IOException e) {
+            throw new SerializationException("Error writing response: " + e.getMessage(), e);
+        }
+        return null;
+    }
+
+    /**
+     * Handles fetching multiple original Annotation pages of a record at once, returned as a json array of
+     * AnnotationPages. Requested pages that don't exist are left out.
+     *
+     * @param datasetId       identifier of the AnnoPages' dataset
+     * @param localId         identifier of the AnnoPages' record
+     * @param pages           identifiers and/or ranges of the AnnoPages (e.g. 1-40 or 1,3,5-8)
+     * @param versionParam    optional, requested IIIF output format (2|3)
+     * @param profile         optional, when value = 'text', resources are dereferenced
+     * @param textGranularity optional, types of annotations that should be included (e.g. Block, Line, Page)
+     * @param pretty          optional, if true the response is pretty printed
+     * @return response in json format
+     * @throws EuropeanaApiException when serialising to Json fails or an invalid parameter value is provided
+     */
+    @ApiOperation(value = "Retrieve multiple pages with annotations")
+    @GetMapping(value = "/{datasetId}/{localId}/annopages", headers = ACCEPT_JSON)
+    public ResponseEntity<String> annoPagesJson(
+            @PathVariable String datasetId,
+            @PathVariable String localId,
+            @RequestParam(value = "pages") String pages,
+            @RequestParam(value = "format", required = false) String versionParam,
+            @RequestParam(value = "profile", required = false) String profile,
+            @RequestParam(value = "textGranularity", required = false) String textGranularity,
+            @RequestParam(value = "pretty", required = false) boolean pretty,
+            HttpServletRequest request,
+            HttpServletResponse response) throws EuropeanaApiException {
+        return annoPages(datasetId, localId, pages, versionParam, profile, textGranularity, pretty, request,
+                         response, true);
+    }
+
+    /**
+     * Handles fetching multiple original Annotation pages of a record at once, returned as a json-ld array of
+     * AnnotationPages. Requested pages that don't exist are left out.
+     *
+     * @param datasetId       identifier of the AnnoPages' dataset
+     * @param localId         identifier of the AnnoPages' record
+     * @param pages           identifiers and/or ranges of the AnnoPages (e.g. 1-40 or 1,3,5-8)
+     * @param versionParam    optional, requested IIIF output format (2|3)
+     * @param profile         optional, when value = 'text', resources are dereferenced
+     * @param textGranularity optional, types of annotations that should be included (e.g. Block, Line, Page)
+     * @param pretty          optional, if true the response is pretty printed
+     * @return response in json-ld format
+     * @throws EuropeanaApiException when serialising to JsonLd fails or an invalid parameter value is provided
+     */
+    @ApiOperation(value = "Retrieve multiple pages with annotations")
+    @GetMapping(value = "/{datasetId}/{localId}/annopages", headers = ACCEPT_JSONLD)
+    public ResponseEntity<String> annoPagesJsonLd(
+            @PathVariable String datasetId,
+            @PathVariable String localId,
+            @RequestParam(value = "pages") String pages,
+            @RequestParam(value = "format", required = false) String versionParam,
+            @RequestParam(value = "profile", required = false) String profile,
+            @RequestParam(value = "textGranularity", required = false) String textGranularity,
+            @RequestParam(value = "pretty", required = false) boolean pretty,
+            HttpServletRequest request,
+            HttpServletResponse response) throws EuropeanaApiException {
+        return annoPages(datasetId, localId, pages, versionParam, profile, textGranularity, pretty, request,
+                         response, false);
+    }
+
+    private ResponseEntity<String> annoPages(
+            String datasetId,
+            String localId,
+            String pages,
+            String versionParam,
+            String profile,
+            String textGranularity,
+            boolean pretty,
+            HttpServletRequest request,
+            HttpServletResponse response,
+            boolean isJson) throws EuropeanaApiException {
+        LOG.debug("Retrieve Annopages: {}/{} pages {}", datasetId, localId, pages);
+        String requestVersion = getRequestVersion(request, versionParam);
+        if (ACCEPT_VERSION_INVALID.equals(requestVersion)) {
+            return new ResponseEntity<>(ACCEPT_VERSION_INVALID, HttpStatus.NOT_ACCEPTABLE);
+        }
+        List<String> pageIds = ControllerUtils.parsePageIds(pages, fts.getSettings().getAnnoPagesBatchMaxSize());
+        List<AnnotationType> textGranValues = ControllerUtils.validateTextGranularity(textGranularity,
+                                                                                      ALLOWED_ANNOTATION_TYPES);
+        FTMetrics.tagRequest(request, requestVersion, textGranValues);
+
+        ResponseEntity<String> cached;
+        if (CacheUtils.isConditionalRequest(request)) {
+            // check the modified dates first, so revalidation doesn't require loading the annotations
+            Map<String, Date> modifiedDates = fts.getAnnoPagesModified(datasetId, localId, pageIds);
+            if (!modifiedDates.isEmpty()) {
+                ZonedDateTime modified = lastModified(modifiedDates);
+                cached = CacheUtils.checkCached(request, modified,
+                        generateAnnoPagesETag(datasetId, localId, modifiedDates, modified, requestVersion));
+                if (cached != null) {
+                    return cached;
+                }
+            }
+        }
+
+        List<AnnoPage> annoPages = fts.fetchAnnoPages(datasetId, localId, pageIds, textGranValues);
+        Map<String, Date> modifiedDates = new LinkedHashMap<>();
+        for (AnnoPage annoPage : annoPages) {
+            modifiedDates.put(annoPage.getPgId(), annoPage.getModified());
+        }
+        ZonedDateTime modified = lastModified(modifiedDates);
+        String        eTag     = generateAnnoPagesETag(datasetId, localId, modifiedDates, modified, requestVersion);
+        cached = CacheUtils.checkCached(request, modified, eTag);
+        if (cached != null) {
+            return cached;
+        }
+
+        HttpHeaders headers = CacheUtils.generateHeaders(request, eTag, CacheUtils.zonedDateTimeToString(modified));
+        addContentTypeToResponseHeader(headers, requestVersion, isJson);
+
+        boolean derefResource = StringUtils.equalsAnyIgnoreCase(profile, PROFILE_TEXT);
+        List<AnnotationWrapper> annotationPages = new ArrayList<>(annoPages.size());
+        for (AnnoPage annoPage : annoPages) {
+            AnnotationWrapper annotationPage = ("3".equalsIgnoreCase(requestVersion)
+                    ? fts.generateAnnoPageV3(annoPage, derefResource)
+                    : fts.generateAnnoPageV2(annoPage, derefResource));
+            if (isJson) {
+                annotationPage.setContext(null);
+            }
+            annotationPages.add(annotationPage);
+        }
+        // the AnnotationPages are serialized directly from the AnnoPages, so the array is written out page by page
+        return writeResponse(response, headers, annotationPages, pretty);
     }
 
     /**
@@ -241,13 +466,27 @@ public class FTController {
         if (ACCEPT_VERSION_INVALID.equals(requestVersion)) {
             return new ResponseEntity(ACCEPT_VERSION_INVALID, HttpStatus.NOT_ACCEPTABLE);
         }
-        HttpHeaders headers = new HttpHeaders();
-        addContentTypeToResponseHeader(headers, requestVersion, isJson);
-        if (fts.doesAnnoPageExist(datasetId, localId, pageId, lang)) {
-            return new ResponseEntity(headers, HttpStatus.OK);
-        } else {
+        HttpHeaders headers;
+        Date        modifiedDate = fts.getAnnoPageModified(datasetId, localId, pageId, lang);
+        if (modifiedDate == null) {
+            // either the page doesn't exist or it's a legacy page without modified date
+            headers = new HttpHeaders();
+            addContentTypeToResponseHeader(headers, requestVersion, isJson);
+            if (fts.doesAnnoPageExist(datasetId, localId, pageId, lang)) {
+                return new ResponseEntity(headers, HttpStatus.OK);
+            }
             return new ResponseEntity(headers, HttpStatus.NOT_FOUND);
         }
+
+        ZonedDateTime modified = CacheUtils.dateToZonedUTC(modifiedDate);
+        String        eTag     = generateAnnoPageETag(datasetId + localId + pageId, modified, requestVersion);
+        ResponseEntity<String> cached = CacheUtils.checkCached(request, modified, eTag);
+        if (cached != null) {
+            return cached;
+        }
+        headers = CacheUtils.generateHeaders(request, eTag, CacheUtils.zonedDateTimeToString(modified));
+        addContentTypeToResponseHeader(headers, requestVersion, isJson);
+        return new ResponseEntity(headers, HttpStatus.OK);
     }
 
     /**
@@ -257,6 +496,7 @@ public class FTController {
      * @param localId      identifier of the record that contains the AnnoPage with this Annotation
      * @param annoID       identifier of the Annotation
      * @param versionParam requested IIIF output format (2|3)
+     * @param pretty       optional, if true the response is pretty printed
      * @return response in json format
      * @throws EuropeanaApiException when serialising to Json fails
      */
@@ -267,8 +507,10 @@ public class FTController {
             @PathVariable String localId,
             @PathVariable String annoID,
             @RequestParam(value = "format", required = false) String versionParam,
-            HttpServletRequest request) throws EuropeanaApiException {
-        return annotation(datasetId, localId, annoID, versionParam, request, true);
+            @RequestParam(value = "pretty", required = false) boolean pretty,
+            HttpServletRequest request,
+            HttpServletResponse response) throws EuropeanaApiException {
+        return annotation(datasetId, localId, annoID, versionParam, pretty, request, response, true);
     }
 
     /**
@@ -278,6 +520,7 @@ public class FTController {
      * @param localId      identifier of the record that contains the AnnoPage with this Annotation
      * @param annoID       identifier of the Annotation
      * @param versionParam requested IIIF output format (2|3)
+     * @param pretty       optional, if true the response is pretty printed
      * @return response in json-ld format
      * @throws EuropeanaApiException when serialising to JsonLd fails
      */
@@ -288,8 +531,10 @@ public class FTController {
             @PathVariable String localId,
             @PathVariable String annoID,
             @RequestParam(value = "format", required = false) String versionParam,
-            HttpServletRequest request) throws EuropeanaApiException {
-        return annotation(datasetId, localId, annoID, versionParam, request, false);
+            @RequestParam(value = "pretty", required = false) boolean pretty,
+            HttpServletRequest request,
+            HttpServletResponse response) throws EuropeanaApiException {
+        return annotation(datasetId, localId, annoID, versionParam, pretty, request, response, false);
     }
 
     private ResponseEntity<String> annotation(
@@ -297,23 +542,34 @@ public class FTController {
             String localId,
             String annoID,
             String versionParam,
+            boolean pretty,
             HttpServletRequest request,
+            HttpServletResponse response,
             boolean isJson) throws EuropeanaApiException {
         LOG.debug("Retrieve Annotation: {}/{}/{}", datasetId, localId, annoID);
         String requestVersion = getRequestVersion(request, versionParam);
         if (ACCEPT_VERSION_INVALID.equals(requestVersion)) {
             return new ResponseEntity<>(ACCEPT_VERSION_INVALID, HttpStatus.NOT_ACCEPTABLE);
         }
+        FTMetrics.tagRequest(request, requestVersion, null);
 
         HttpHeaders       headers;
         AnnotationWrapper annotation;
+
+        ResponseEntity<String> cached;
+        if (CacheUtils.isConditionalRequest(request)) {
+            // check the modified date first, so revalidation doesn't require loading the annotations
+            cached = checkCached(request, fts.getAnnotationModified(datasetId, localId, annoID),
+                                 datasetId + localId + annoID, requestVersion);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
         AnnoPage          annoPage = fts.fetchAPAnnotation(datasetId, localId, annoID);
         ZonedDateTime     modified = CacheUtils.dateToZonedUTC(annoPage.getModified());
-        String eTag = generateETag(datasetId + localId + annoID,
-                                   modified,
-                                   requestVersion + fts.getSettings().getAppVersion(),
-                                   true);
-        ResponseEntity<String> cached = CacheUtils.checkCached(request, modified, eTag);
+        String            eTag     = generateAnnoPageETag(datasetId + localId + annoID, modified, requestVersion);
+        cached = CacheUtils.checkCached(request, modified, eTag);
         if (cached != null) {
             return cached;
         }
@@ -330,7 +586,7 @@ public class FTController {
         if (isJson) {
             annotation.setContext(null);
         }
-        return new ResponseEntity<>(fts.serialise(annotation), headers, HttpStatus.OK);
+        return writeResponse(response, headers, annotation, pretty);
     }
 
     /**
@@ -339,6 +595,7 @@ public class FTController {
      * @param datasetId identifier of the dataset that contains the Annopage that refers to the Resource
      * @param localId   identifier of the record that contains the Annopage that refers to the Resource
      * @param resId     identifier of the Resource
+     * @param pretty    optional, if true the response is pretty printed
      * @return response in json-ld format
      * @throws EuropeanaApiException when serialising to JsonLd fails
      */
@@ -350,8 +607,10 @@ public class FTController {
             @PathVariable String datasetId,
             @PathVariable String localId,
             @PathVariable String resId,
-            HttpServletRequest request) throws EuropeanaApiException {
-        return resource(datasetId, localId, resId, request, false);
+            @RequestParam(value = "pretty", required = false) boolean pretty,
+            HttpServletRequest request,
+            HttpServletResponse response) throws EuropeanaApiException {
+        return resource(datasetId, localId, resId, pretty, request, response, false);
     }
 
     /**
@@ -360,6 +619,7 @@ public class FTController {
      * @param datasetId identifier of the dataset that contains the Annopage that refers to the Resource
      * @param localId   identifier of the record that contains the Annopage that refers to the Resource
      * @param resId     identifier of the Resource
+     * @param pretty    optional, if true the response is pretty printed
      * @return response in json format
      * @throws EuropeanaApiException when serialising to Json fails
      */
@@ -371,26 +631,36 @@ public class FTController {
             @PathVariable String datasetId,
             @PathVariable String localId,
             @PathVariable String resId,
-            HttpServletRequest request) throws EuropeanaApiException {
-        return resource(datasetId, localId, resId, request, true);
+            @RequestParam(value = "pretty", required = false) boolean pretty,
+            HttpServletRequest request,
+            HttpServletResponse response) throws EuropeanaApiException {
+        return resource(datasetId, localId, resId, pretty, request, response, true);
     }
 
     private ResponseEntity<String> resource(
-            String datasetId, String localId, String resId, HttpServletRequest request, boolean isJson) throws
-                                                                                                        EuropeanaApiException {
+            String datasetId, String localId, String resId, boolean pretty, HttpServletRequest request,
+            HttpServletResponse response, boolean isJson) throws EuropeanaApiException {
         LOG.debug("Retrieve Resource: {}/{}/{}", datasetId, localId, resId);
         HttpHeaders headers;
         FTResource  resource;
 
-        resource = fts.fetchFTResource(datasetId, localId, resId);
         ZonedDateTime modified = CacheUtils.januarificator();
-        String eTag = generateSimpleETag(datasetId
-                                         + localId
-                                         + resId
-                                         + resource.getLanguage()
-                                         + resource.getValue()
-                                         + fts.getSettings().getAppVersion(), true);
-        ResponseEntity<String> cached = CacheUtils.checkCached(request, modified, eTag);
+        ResponseEntity<String> cached;
+        if (CacheUtils.isConditionalRequest(request)) {
+            // use the stored fingerprint first, so revalidation doesn't require loading the text
+            String hash = fts.getResourceHash(datasetId, localId, resId);
+            if (hash != null) {
+                cached = CacheUtils.checkCached(request, modified,
+                                                generateResourceETag(datasetId + localId + resId, hash));
+                if (cached != null) {
+                    return cached;
+                }
+            }
+        }
+
+        resource = fts.fetchFTResource(datasetId, localId, resId);
+        String eTag = generateResourceETag(datasetId + localId + resId, resource.getHash());
+        cached = CacheUtils.checkCached(request, modified, eTag);
         if (cached != null) {
             return cached;
         }
@@ -402,11 +672,86 @@ public class FTController {
         if (isJson) {
             resource.setContext(null);
         }
-        return new ResponseEntity<>(fts.serialise(resource), headers, HttpStatus.OK);
+        return writeResponse(response, headers, resource, pretty);
     }
 
     // --- utils ---
 
+    /**
+     * Serializes the data directly to the response output stream, so we never keep the entire serialized response
+     * in memory.
+     * @return null, to let Spring know the response was already handled
+     */
+    private ResponseEntity<String> writeResponse(HttpServletResponse response, HttpHeaders headers, Object data,
+                                                 boolean pretty) throws SerializationException {
+        writeHeaders(response, headers);
+        try {
+            fts.serialise(data, response.getOutputStream(), pretty);
+        } catch (IOException e) {
+            throw new SerializationException("Error writing response: " + e.getMessage(), e);
+        }
+        return null;
+    }
+
+    private ResponseEntity<String> writeResponse(HttpServletResponse response, HttpHeaders headers, byte[] body)
+            throws SerializationException {
+        writeHeaders(response, headers);
+        try {
+            response.getOutputStream().write(body);
+        } catch (IOException e) {
+            throw new SerializationException("Error writing response: " + e.getMessage(), e);
+        }
+        return null;
+    }
+
+    private void writeHeaders(HttpServletResponse response, HttpHeaders headers) {
+        response.setStatus(HttpStatus.OK.value());
+        headers.forEach((name, values) -> values.forEach(value -> response.addHeader(name, value)));
+    }
+
+    private String generateResourceETag(String ids, String hash) {
+        return generateSimpleETag(ids + hash + fts.getSettings().getAppVersion(), true);
+    }
+
+    private String generateAnnoPageETag(String ids, ZonedDateTime modified, String requestVersion) {
+        return generateETag(ids, modified, requestVersion + fts.getSettings().getAppVersion(), true);
+    }
+
+    // the newest modified date of a batch of AnnoPages, or the epoch if none of them has a modified date
+    private static ZonedDateTime lastModified(Map<String, Date> modifiedDates) {
+        return CacheUtils.dateToZonedUTC(modifiedDates.values().stream()
+                .filter(Objects::nonNull)
+                .max(Date::compareTo)
+                .orElseGet(() -> new Date(0)));
+    }
+
+    /**
+     * Generates an eTag for a batch of AnnoPages, that changes whenever one of the pages is modified or when the
+     * set of returned pages changes
+     */
+    private String generateAnnoPagesETag(String datasetId, String localId, Map<String, Date> modifiedDates,
+                                         ZonedDateTime lastModified, String requestVersion) {
+        StringBuilder ids = new StringBuilder(datasetId).append(localId);
+        // sort on page id, so the eTag doesn't depend on the order in which pages were retrieved
+        new TreeMap<>(modifiedDates).forEach((pageId, modified) -> ids.append('/').append(pageId).append(':')
+                .append(modified == null ? 0 : modified.getTime()));
+        return generateAnnoPageETag(ids.toString(), lastModified, requestVersion);
+    }
+
+    /**
+     * Handles conditional request headers using only the modified date of the requested AnnoPage
+     * @return ResponseEntity with 304 or 412 status if applicable, null if the request should be processed normally
+     * (also when the AnnoPage doesn't exist; the normal flow will then generate the proper error response)
+     */
+    private ResponseEntity<String> checkCached(HttpServletRequest request, Date modifiedDate, String ids,
+                                               String requestVersion) {
+        if (modifiedDate == null) {
+            return null;
+        }
+        ZonedDateTime modified = CacheUtils.dateToZonedUTC(modifiedDate);
+        return CacheUtils.checkCached(request, modified, generateAnnoPageETag(ids, modified, requestVersion));
+    }
+
     private void addContentTypeToResponseHeader(HttpHeaders headers, String version, boolean isJson) {
         if ("3".equalsIgnoreCase(version)) {
             if (isJson) {
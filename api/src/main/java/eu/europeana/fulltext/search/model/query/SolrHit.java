@@ -15,13 +15,16 @@ public class SolrHit implements Serializable {
 
     @NotNull
     private String imageId;
-    @NotNull
     private String snippet;
     private int start;
     private int end;
 
     /**
      * Create a new object containing the snippet and offset data from Solr
+     * @param imageId id of the image of the page that contains the hit
+     * @param snippet page text, null if Solr only returned offsets
+     * @param start start of the hit in the page text
+     * @param end end of the hit in the page text
      */
     public SolrHit(String imageId, String snippet, int start, int end) {
         this.imageId = imageId;
@@ -55,6 +58,9 @@ public class SolrHit implements Serializable {
      */
     @JsonIgnore
     public String getDebugInfo() {
+        if (snippet == null) {
+            return "hit " + start + "," + end;
+        }
         return "hit " + start + "," + end + " with text '"+ snippet.substring(start, end) + "'";
     }
 
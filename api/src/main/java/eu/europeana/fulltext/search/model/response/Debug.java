@@ -13,12 +13,13 @@ import java.util.List;
  * @author Patrick Ehlert
  * Created on 9 June 2020
  */
-@JsonPropertyOrder({"solrQuery", "solrHits"})
+@JsonPropertyOrder({"solrQuery", "solrResponseBytes", "solrHits"})
 public class Debug implements Serializable {
 
     private static final long serialVersionUID = 3800855960101156128L;
 
     private String solrQuery;
+    private long solrResponseBytes;
     private List<SolrHit> solrHits = new ArrayList<>();
 
     public void setSolrQuery(String solrQuery) {
@@ -29,6 +30,17 @@ public class Debug implements Serializable {
         return this.solrQuery;
     }
 
+    public void setSolrResponseBytes(long solrResponseBytes) {
+        this.solrResponseBytes = solrResponseBytes;
+    }
+
+    /**
+     * @return size of the Solr response in bytes
+     */
+    public long getSolrResponseBytes() {
+        return solrResponseBytes;
+    }
+
     public void addSolrSnippet(SolrHit solrHit) {
         this.solrHits.add(solrHit);
     }
@@ -55,7 +55,20 @@ public abstract class Hit implements Serializable {
      * @param annotation the annotation that was found
      */
     public Hit addAnnotation(int start, int end, AnnoPage annoPage, Annotation annotation) {
-        String fulltext = annoPage.getRes().getValue();
+        return addAnnotation(start, end, annoPage, annotation, annoPage.getRes().getValue(), 0);
+    }
+
+    /**
+     * Same as {@link #addAnnotation(int, int, AnnoPage, Annotation)}, but with only part of the page text instead of
+     * the text of the page's resource. The provided text should contain both the hit and the annotation.
+     *
+     * @param annoPage   the annotation page where the hit was found
+     * @param annotation the annotation that was found
+     * @param text       part of the page text
+     * @param textStart  offset of the provided text in the page text
+     */
+    public Hit addAnnotation(int start, int end, AnnoPage annoPage, Annotation annotation, String text, int textStart) {
+        PartialText fulltext = new PartialText(text, textStart);
         HitSelector hs;
 
         if (this.selectors.isEmpty()) {
@@ -82,4 +95,21 @@ public abstract class Hit implements Serializable {
     }
 
     protected abstract HitSelector createSelector(String exact);
+
+    /**
+     * Part of a text, that can be used with the offsets of the complete text
+     */
+    private static final class PartialText {
+        private final String text;
+        private final int    start;
+
+        private PartialText(String text, int start) {
+            this.text = text;
+            this.start = start;
+        }
+
+        private String substring(int beginIndex, int endIndex) {
+            return text.substring(beginIndex - start, endIndex - start);
+        }
+    }
 }
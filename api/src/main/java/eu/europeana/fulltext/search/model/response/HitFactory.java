@@ -20,14 +20,17 @@ public final class HitFactory {
      * @param end        end index of hit
      * @param annoPage   the annotation page object for this hit
      * @param annotation the annotation object for this hit
+     * @param text       part of the page text that contains both the hit and the annotation
+     * @param textStart  offset of the provided text in the page text
      * @param version    request version. "2" by default
      * @return Hit instance
      */
-    public static Hit createHit(int start, int end, AnnoPage annoPage, Annotation annotation, String version) {
+    public static Hit createHit(int start, int end, AnnoPage annoPage, Annotation annotation, String text,
+                                int textStart, String version) {
         if (REQUEST_VERSION_3.equals(version)) {
-            return new HitV3().addAnnotation(start, end, annoPage, annotation);
+            return new HitV3().addAnnotation(start, end, annoPage, annotation, text, textStart);
         }
-        return new HitV2().addAnnotation(start, end, annoPage, annotation);
+        return new HitV2().addAnnotation(start, end, annoPage, annotation, text, textStart);
     }
 
 
@@ -23,5 +23,14 @@ public interface SearchResult {
     void addAnnotationHit(AnnoPage annoPage, Annotation annotation, Hit hit);
 
     List<Hit> getHits();
+
+    /**
+     * Create a copy of this search result with a different id. The copy shares the annotations and hits with this
+     * search result, so this should only be used for results that are not modified anymore (e.g. cached results).
+     * Debug information is not copied.
+     * @param searchId id of the copy
+     * @return copy of this search result
+     */
+    SearchResult withId(String searchId);
 }
 
@@ -23,8 +23,8 @@ public class SearchResultV2 implements Serializable, SearchResult {
 
     private final String id;
     private Debug debug;
-    private final List<AnnotationV2> items = new ArrayList<>();
-    private final List<Hit> hits = new ArrayList<>();
+    private final List<AnnotationV2> items;
+    private final List<Hit> hits;
 
 
     public SearchResultV2(String searchId, boolean debug) {
@@ -32,6 +32,14 @@ public class SearchResultV2 implements Serializable, SearchResult {
         if (debug) {
             this.debug = new Debug();
         }
+        this.items = new ArrayList<>();
+        this.hits = new ArrayList<>();
+    }
+
+    private SearchResultV2(String searchId, SearchResultV2 original) {
+        this.id = searchId;
+        this.items = original.items;
+        this.hits = original.hits;
     }
 
     @Override
@@ -75,4 +83,9 @@ public class SearchResultV2 implements Serializable, SearchResult {
     public List<Hit> getHits() {
         return hits;
     }
+
+    @Override
+    public SearchResult withId(String searchId) {
+        return new SearchResultV2(searchId, this);
+    }
 }
@@ -32,6 +32,12 @@ public class SearchResultV3 implements Serializable, SearchResult {
         }
     }
 
+    private SearchResultV3(String searchId, SearchResultV3 original) {
+        this.id = searchId;
+        this.items = original.items;
+        this.hits = original.hits;
+    }
+
     public String getId() {
         return id;
     }
@@ -78,4 +84,9 @@ public class SearchResultV3 implements Serializable, SearchResult {
             hits.add(hit);
         }
     }
+
+    @Override
+    public SearchResult withId(String searchId) {
+        return new SearchResultV3(searchId, this);
+    }
 }
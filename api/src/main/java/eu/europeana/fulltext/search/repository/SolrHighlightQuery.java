@@ -2,10 +2,10 @@ package eu.europeana.fulltext.search.repository;
 
 import eu.europeana.api.commons.error.EuropeanaApiException;
 import eu.europeana.fulltext.search.model.query.EuropeanaId;
+import eu.europeana.fulltext.search.model.query.SolrHit;
 import eu.europeana.fulltext.search.model.response.Debug;
 
 import java.util.List;
-import java.util.Map;
 
 /**
  * Defines the query sent to solr to retrieve highlights in a particular newspaper issue (record)
@@ -21,10 +21,10 @@ public interface SolrHighlightQuery {
      * @param query          the string to search
      * @param maxSnippets    maximum number of snippets we want from solr
      * @param debug          if not null we store debug information in the object
-     * @return Map containing snippets and passages (offsets)
+     * @return the hits found by Solr (nearby hits are merged), empty list if there are none
      * @throws EuropeanaApiException when there's an error sending/reading the request to/from Solr
      */
-    Map<String, List<String>> getHighlightsWithOffsets(EuropeanaId europeanaId, String query, int maxSnippets,
-                                                       Debug debug) throws EuropeanaApiException;
+    List<SolrHit> getHighlightsWithOffsets(EuropeanaId europeanaId, String query, int maxSnippets,
+                                           Debug debug) throws EuropeanaApiException;
 
 }
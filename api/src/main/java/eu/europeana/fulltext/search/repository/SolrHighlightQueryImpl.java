@@ -3,21 +3,20 @@ package eu.europeana.fulltext.search.repository;
 import eu.europeana.api.commons.error.EuropeanaApiException;
 import eu.europeana.fulltext.search.config.SearchConfig;
 import eu.europeana.fulltext.search.model.query.EuropeanaId;
+import eu.europeana.fulltext.search.model.query.SolrHit;
 import eu.europeana.fulltext.search.model.response.Debug;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.solr.client.solrj.SolrQuery;
 import org.apache.solr.client.solrj.SolrServerException;
-import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.client.solrj.request.QueryRequest;
 import org.apache.solr.client.solrj.util.ClientUtils;
-import org.apache.solr.common.SolrDocumentList;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.solr.core.SolrTemplate;
 
 import java.io.IOException;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Defines the query sent to solr to retrieve highlights in a particular newspaper issue (record)
@@ -47,31 +46,29 @@ public class SolrHighlightQueryImpl implements SolrHighlightQuery {
     /**
      * @see SolrHighlightQuery#getHighlightsWithOffsets(EuropeanaId, String, int, Debug)
      */
-    public Map<String, List<String>> getHighlightsWithOffsets(EuropeanaId europeanaId, String query, int maxSnippets,
-                                                              Debug debug) throws EuropeanaApiException {
+    public List<SolrHit> getHighlightsWithOffsets(EuropeanaId europeanaId, String query, int maxSnippets,
+                                                  Debug debug) throws EuropeanaApiException {
         SolrQuery q = createQuery(europeanaId, query, maxSnippets);
         if (debug != null) {
             debug.setSolrQuery(q.toQueryString());
         }
 
-        // do query
-        QueryResponse response;
+        // do query, the highlighting is parsed while reading the response
+        QueryRequest request = new QueryRequest(q);
+        SolrHighlightResponseParser parser = new SolrHighlightResponseParser(debug != null);
+        request.setResponseParser(parser);
         try {
-            response = solrTemplate.getSolrClient().query(solrCore, createQuery(europeanaId, query, maxSnippets));
-            if (LOG.isTraceEnabled()) {
-                LOG.trace("Solr response = {}", response.jsonStr());
-            }
+            solrTemplate.getSolrClient().request(request, solrCore);
         } catch (SolrServerException | IOException e) {
             throw new EuropeanaApiException("Error querying Solr", e);
         }
-
-        // process results
-        SolrDocumentList list = response.getResults();
-        if (list.getNumFound() == 0) {
-            return null;
+        List<SolrHit> hits = parser.getHits();
+        LOG.debug("Solr response size is {} bytes", parser.getBytesRead());
+        if (debug != null) {
+            debug.setSolrResponseBytes(parser.getBytesRead());
+            hits.forEach(debug::addSolrSnippet);
         }
-        Map<String, Map<String, List<String>>> highlights = response.getHighlighting();
-        return highlights.get(europeanaId.toString()); // should only be 1 item
+        return hits;
     }
 
     SolrQuery createQuery(EuropeanaId europeanaId, String query, int maxSnippets) {
@@ -81,9 +78,11 @@ public class SolrHighlightQueryImpl implements SolrHighlightQuery {
         sq.setTimeAllowed(SearchConfig.QUERY_TIME_ALLOWED);
         sq.setFields(EUROPEANA_ID_FIELD); // just 1 field, so we limit the amount of data that is returned
 
+        // A passage is always an entire value of the fulltext field (one page), because the start offset of the
+        // passage is then the start of the page and the value starts with the imageId
         sq.setHighlight(true)
                 .setHighlightSnippets(maxSnippets)
-                .setHighlightFragsize(0) // we need to entire fragment because that includes the imageId
+                .setHighlightFragsize(0)
                 .setHighlightSimplePre(SearchConfig.HIT_TAG_START)
                 .setHighlightSimplePost(SearchConfig.HIT_TAG_END)
                 .set(HL_EXTENDED_PARAM, "true")
@@ -0,0 +1,373 @@
+package eu.europeana.fulltext.search.repository;
+
+import eu.europeana.fulltext.search.config.SearchConfig;
+import eu.europeana.fulltext.search.model.query.SolrHit;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.solr.client.solrj.impl.BinaryResponseParser;
+import org.apache.solr.common.util.DataInputInputStream;
+import org.apache.solr.common.util.JavaBinCodec;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads the highlighting of the extended unified highlighter directly from the javabin response stream and turns it
+ * into SolrHits, without creating the NamedLists, lists and strings of the highlighting first.
+ * <p>
+ * For each highlighted page the highlighter returns a snippet and a passage. The snippet is the page's value of the
+ * fulltext field: {<imageId>} <page text>. The passage contains
+ * the start offset of that value in the field and the start and end offsets of the hits in the field
+ * (startOffsetUtf16, matchStartsUtf16 and matchEndsUtf16, padded with zeros). The hit offsets are read into int
+ * arrays and when the highlighting of a field is read they are converted to offsets in the page text, and hits that
+ * are at most {@link SearchConfig#HIT_MERGE_MAX_DISTANCE} characters apart are merged.
+ * <p>
+ * Only the imageIds (and only if requested, the page texts) are decoded. The rest of the response (header, documents,
+ * error) is read as usual and returned without the highlighting, so SolrJ can still check it for errors.
+ * The parser also keeps track of the size of the response. A new parser should be used for each request.
+ */
+class SolrHighlightResponseParser extends BinaryResponseParser {
+
+    private static final Logger LOG = LogManager.getLogger(SolrHighlightResponseParser.class);
+
+    private static final String HIGHLIGHTING      = "highlighting";
+    private static final String SNIPPETS          = "snippets";
+    private static final String PASSAGES          = "passages";
+    private static final String TEXT_START_OFFSET = "startOffsetUtf16";
+    private static final String HIT_START_OFFSETS = "matchStartsUtf16";
+    private static final String HIT_END_OFFSETS   = "matchEndsUtf16";
+
+    private static final byte IMAGE_ID_END = '}';
+
+    private final boolean       keepSnippets;
+    private final List<SolrHit> hits = new ArrayList<>();
+    private long                bytesRead;
+    private int                 mergedHits;
+
+    // highlighting of the field that is being read
+    private final List<String> imageIds         = new ArrayList<>();
+    private final List<String> snippets         = new ArrayList<>();
+    private final IntList      passageStarts    = new IntList();
+    private final IntList      passageHitStarts = new IntList();
+    private final IntList      passageHitEnds   = new IntList();
+    private final IntList      hitStarts        = new IntList();
+    private final IntList      hitEnds          = new IntList();
+
+    /**
+     * Create a new parser
+     * @param keepSnippets if true the page text is stored in the SolrHits (if Solr returned it)
+     */
+    SolrHighlightResponseParser(boolean keepSnippets) {
+        this.keepSnippets = keepSnippets;
+    }
+
+    @Override
+    public NamedList<Object> processResponse(InputStream body, String encoding) {
+        CountingInputStream in = new CountingInputStream(body);
+        try {
+            return super.processResponse(in, encoding);
+        } finally {
+            bytesRead = in.count;
+            LOG.debug("Parsed {} Solr hits, {} merged", hits.size() + mergedHits, mergedHits);
+        }
+    }
+
+    @Override
+    protected JavaBinCodec createCodec() {
+        return new HighlightCodec();
+    }
+
+    /**
+     * @return the hits in the response, with the start and end offsets in the page text
+     */
+    List<SolrHit> getHits() {
+        return hits;
+    }
+
+    /**
+     * @return number of bytes of the response body read by this parser (after decompression, if any)
+     */
+    long getBytesRead() {
+        return bytesRead;
+    }
+
+    private void addSnippet(byte[] utf8, int length) throws IOException {
+        // find the imageId in the utf-8 bytes, so we don't have to decode the page text
+        int imageIdEnd = indexOf(utf8, length, IMAGE_ID_END);
+        String imageId = new String(utf8, 1, imageIdEnd - 1, StandardCharsets.UTF_8);
+        String snippet = null;
+        if (keepSnippets && length > imageIdEnd + 1) {
+            snippet = new String(utf8, imageIdEnd + 2, length - imageIdEnd - 2, StandardCharsets.UTF_8);
+        }
+        imageIds.add(imageId);
+        snippets.add(snippet);
+    }
+
+    private static int indexOf(byte[] utf8, int length, byte value) throws IOException {
+        for (int i = 0; i < length; i++) {
+            if (utf8[i] == value) {
+                return i;
+            }
+        }
+        throw new IOException("No imageId in snippet "
+                + new String(utf8, 0, Math.min(length, 100), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Converts the hit offsets of all passages of a field into SolrHits
+     */
+    private void createHits() {
+        int passages = Math.min(imageIds.size(), passageStarts.size);
+        for (int p = 0; p < passages; p++) {
+            String imageId = imageIds.get(p);
+            // the imageId that is inserted into snippets should also be subtracted (+ 3 because of the brackets
+            // plus a space behind it)
+            int textStart = passageStarts.values[p] + imageId.length() + 3;
+            int hitStart = passageHitStarts.values[p];
+            int hitEnd = passageHitEnds.values[p];
+            int count = Math.min(endOf(passageHitStarts, p, hitStarts) - hitStart,
+                    endOf(passageHitEnds, p, hitEnds) - hitEnd);
+
+            SolrHit previousHit = null;
+            for (int h = 0; h < count; h++) {
+                int start = hitStarts.values[hitStart + h] - textStart;
+                int end = hitEnds.values[hitEnd + h] - textStart;
+                if (start < 0 || end < 0) {
+                    // padding
+                    continue;
+                }
+                // see if there's a nearby hit we can merge with
+                if (previousHit != null && start - previousHit.getEnd() <= SearchConfig.HIT_MERGE_MAX_DISTANCE) {
+                    previousHit.setEnd(end);
+                    mergedHits++;
+                } else {
+                    previousHit = new SolrHit(imageId, snippets.get(p), start, end);
+                    hits.add(previousHit);
+                }
+            }
+        }
+        imageIds.clear();
+        snippets.clear();
+        passageStarts.size = 0;
+        passageHitStarts.size = 0;
+        passageHitEnds.size = 0;
+        hitStarts.size = 0;
+        hitEnds.size = 0;
+    }
+
+    private static int endOf(IntList passageOffsets, int passage, IntList offsets) {
+        return (passage + 1 < passageOffsets.size ? passageOffsets.values[passage + 1] : offsets.size);
+    }
+
+    /**
+     * Codec that reads the highlighting part of the response into this parser, and the rest of the response as usual
+     */
+    private final class HighlightCodec extends JavaBinCodec {
+
+        private boolean rootRead;
+        private byte[]  buffer = new byte[1024];
+
+        @Override
+        public SimpleOrderedMap<Object> readOrderedMap(DataInputInputStream dis) throws IOException {
+            if (rootRead) {
+                return super.readOrderedMap(dis);
+            }
+            return readResponse(dis, new SimpleOrderedMap<>());
+        }
+
+        @Override
+        public NamedList<Object> readNamedList(DataInputInputStream dis) throws IOException {
+            if (rootRead) {
+                return super.readNamedList(dis);
+            }
+            return readResponse(dis, new NamedList<>());
+        }
+
+        private <T extends NamedList<Object>> T readResponse(DataInputInputStream dis, T response) throws IOException {
+            rootRead = true;
+            int size = readSize(dis);
+            for (int i = 0; i < size; i++) {
+                String name = (String) readVal(dis);
+                if (HIGHLIGHTING.equals(name)) {
+                    readHighlighting(dis);
+                } else {
+                    response.add(name, readVal(dis));
+                }
+            }
+            return response;
+        }
+
+        private void readHighlighting(DataInputInputStream dis) throws IOException {
+            // there should be only 1 document (issue)
+            int documents = readMapSize(dis);
+            for (int i = 0; i < documents; i++) {
+                readVal(dis); // document id
+                if (i == 0) {
+                    readDocument(dis);
+                } else {
+                    readVal(dis);
+                }
+            }
+        }
+
+        private void readDocument(DataInputInputStream dis) throws IOException {
+            // for now we assume there will always be only 1 language, so 1 set of snippets and offsets
+            int fields = readMapSize(dis);
+            for (int i = 0; i < fields; i++) {
+                readVal(dis); // field name
+                if (i == 0) {
+                    readField(dis);
+                } else {
+                    readVal(dis);
+                }
+            }
+        }
+
+        private void readField(DataInputInputStream dis) throws IOException {
+            int entries = readMapSize(dis);
+            for (int i = 0; i < entries; i++) {
+                String name = (String) readVal(dis);
+                if (SNIPPETS.equals(name)) {
+                    int snippetCount = readArraySize(dis);
+                    for (int j = 0; j < snippetCount; j++) {
+                        readSnippet(dis);
+                    }
+                } else if (PASSAGES.equals(name)) {
+                    int passageCount = readArraySize(dis);
+                    for (int j = 0; j < passageCount; j++) {
+                        readPassage(dis);
+                    }
+                } else {
+                    readVal(dis);
+                }
+            }
+            createHits();
+        }
+
+        private void readSnippet(DataInputInputStream dis) throws IOException {
+            tagByte = dis.readByte();
+            if ((tagByte >>> 5) != (STR >>> 5)) {
+                throw new IOException("Unexpected snippet type " + tagByte);
+            }
+            int length = readSize(dis);
+            if (buffer.length < length) {
+                buffer = new byte[Math.max(length, buffer.length * 2)];
+            }
+            dis.readFully(buffer, 0, length);
+            addSnippet(buffer, length);
+        }
+
+        private void readPassage(DataInputInputStream dis) throws IOException {
+            passageHitStarts.add(hitStarts.size);
+            passageHitEnds.add(hitEnds.size);
+            int entries = readMapSize(dis);
+            for (int i = 0; i < entries; i++) {
+                String name = (String) readVal(dis);
+                if (TEXT_START_OFFSET.equals(name)) {
+                    passageStarts.add(readInt(dis));
+                } else if (HIT_START_OFFSETS.equals(name)) {
+                    readInts(dis, hitStarts);
+                } else if (HIT_END_OFFSETS.equals(name)) {
+                    readInts(dis, hitEnds);
+                } else {
+                    readVal(dis);
+                }
+            }
+        }
+
+        private void readInts(DataInputInputStream dis, IntList ints) throws IOException {
+            int size = readArraySize(dis);
+            for (int i = 0; i < size; i++) {
+                ints.add(readInt(dis));
+            }
+        }
+
+        private int readInt(DataInputInputStream dis) throws IOException {
+            tagByte = dis.readByte();
+            if ((tagByte >>> 5) == (SINT >>> 5)) {
+                return readSmallInt(dis);
+            }
+            if ((tagByte >>> 5) == (SLONG >>> 5)) {
+                return (int) readSmallLong(dis);
+            }
+            if (tagByte == INT) {
+                return dis.readInt();
+            }
+            if (tagByte == LONG) {
+                return (int) dis.readLong();
+            }
+            throw new IOException("Unexpected offset type " + tagByte);
+        }
+
+        private int readMapSize(DataInputInputStream dis) throws IOException {
+            tagByte = dis.readByte();
+            if ((tagByte >>> 5) != (ORDERED_MAP >>> 5) && (tagByte >>> 5) != (NAMED_LST >>> 5)) {
+                throw new IOException("Unexpected highlighting type " + tagByte);
+            }
+            return readSize(dis);
+        }
+
+        private int readArraySize(DataInputInputStream dis) throws IOException {
+            tagByte = dis.readByte();
+            if ((tagByte >>> 5) != (ARR >>> 5)) {
+                throw new IOException("Unexpected highlighting type " + tagByte);
+            }
+            return readSize(dis);
+        }
+    }
+
+    /**
+     * Growable list of ints
+     */
+    private static final class IntList {
+        private int[] values = new int[16];
+        private int   size;
+
+        private void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package eu.europeana.fulltext.search.service;
+
+import eu.europeana.fulltext.entity.Annotation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Interval index over the text positions (from/to) of the annotations of one AnnoPage, so the annotations that overlap
+ * with a search hit can be found without checking every annotation on the page.
+ * <p>
+ * Annotations are grouped by type and sorted on their from position. Annotations of the same type hardly ever overlap
+ * so the to positions are (nearly) sorted as well. For each type we keep the length of the longest annotation, so we
+ * know that only annotations starting between hitStart - maxLength and hitEnd can overlap with a hit.
+ * Annotations without from or to position (e.g. page annotations) are not indexed.
+ */
+final class AnnotationIndex {
+
+    private static final int  POSITION_BITS = 32;
+    private static final long POSITION_MASK = 0xFFFFFFFFL;
+
+    private final List<Annotation> annotations;
+    private final TypeIndex[]      types;
+
+    /**
+     * Create a new index
+     * @param annotations annotations of the page, in page order
+     */
+    AnnotationIndex(List<Annotation> annotations) {
+        this.annotations = annotations;
+        Map<Character, TypeIndex> indexByType = new LinkedHashMap<>();
+        TypeIndex last = null;
+        for (int i = 0; i < annotations.size(); i++) {
+            Annotation anno = annotations.get(i);
+            Integer from = anno.getFrom();
+            Integer to = anno.getTo();
+            if (from != null && to != null) {
+                // annotations of the same type are usually grouped, so we avoid most map lookups
+                if (last == null || last.type != anno.getDcType()) {
+                    last = indexByType.computeIfAbsent(anno.getDcType(), TypeIndex::new);
+                }
+                last.add(from, to, i);
+            }
+        }
+        this.types = indexByType.values().toArray(new TypeIndex[0]);
+        for (TypeIndex type : types) {
+            type.sort();
+        }
+    }
+
+    /**
+     * Find all annotations that overlap with the provided range. Both start and end are inclusive, so an annotation
+     * that ends at the start of the range also overlaps.
+     * @param start start position of the range
+     * @param end end position of the range
+     * @return overlapping annotations, in the same order as they appear on the page
+     */
+    List<Annotation> findOverlapping(int start, int end) {
+        Positions found = new Positions();
+        for (TypeIndex type : types) {
+            type.findOverlapping(start, end, found);
+        }
+        if (found.size == 0) {
+            return List.of();
+        }
+        if (types.length > 1) {
+            Arrays.sort(found.values, 0, found.size);
+        }
+        List<Annotation> result = new ArrayList<>(found.size);
+        for (int i = 0; i < found.size; i++) {
+            result.add(annotations.get(found.values[i]));
+        }
+        return result;
+    }
+
+    /**
+     * Sorted from and to positions of all annotations of one type
+     */
+    private static final class TypeIndex {
+        private final char type;
+        private int[]      from     = new int[16];
+        private int[]      to       = new int[16];
+        // position of the annotation in the page's annotation list
+        private int[]      position = new int[16];
+        private int        size;
+        private int        maxLength;
+        private boolean    sorted   = true;
+
+        private TypeIndex(char type) {
+            this.type = type;
+        }
+
+        private void add(int annoFrom, int annoTo, int annoPosition) {
+            if (size == from.length) {
+                from = Arrays.copyOf(from, size * 2);
+                to = Arrays.copyOf(to, size * 2);
+                position = Arrays.copyOf(position, size * 2);
+            }
+            if (size > 0 && annoFrom < from[size - 1]) {
+                sorted = false;
+            }
+            from[size] = annoFrom;
+            to[size] = annoTo;
+            position[size] = annoPosition;
+            maxLength = Math.max(maxLength, annoTo - annoFrom);
+            size++;
+        }
+
+        /**
+         * Sort on from, then on position in the page. Usually annotations are already in text order, so then there's
+         * nothing to do.
+         */
+        private void sort() {
+            if (sorted) {
+                return;
+            }
+            long[] keys = new long[size];
+            for (int i = 0; i < size; i++) {
+                keys[i] = ((long) from[i] << POSITION_BITS) | i;
+            }
+            Arrays.sort(keys);
+            int[] sortedFrom = new int[size];
+            int[] sortedTo = new int[size];
+            int[] sortedPosition = new int[size];
+            for (int i = 0; i < size; i++) {
+                int j = (int) (keys[i] & POSITION_MASK);
+                sortedFrom[i] = from[j];
+                sortedTo[i] = to[j];
+                sortedPosition[i] = position[j];
+            }
+            from = sortedFrom;
+            to = sortedTo;
+            position = sortedPosition;
+            sorted = true;
+        }
+
+        /**
+         * Adds the page positions of the annotations that overlap with the range to found
+         */
+        private void findOverlapping(int start, int end, Positions found) {
+            // annotations can't be longer than maxLength, so those starting before this can't overlap
+            for (int i = firstFromAtOrAfter(start - maxLength); i < size && from[i] <= end; i++) {
+                if (to[i] >= start) {
+                    found.add(position[i]);
+                }
+            }
+        }
+
+        private int firstFromAtOrAfter(int value) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (from[mid] < value) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    /**
+     * Growable list of annotation positions
+     */
+    private static final class Positions {
+        private int[] values = new int[8];
+        private int   size;
+
+        private void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+}
@@ -1,16 +1,14 @@
 package eu.europeana.fulltext.search.service;
 
-import dev.morphia.query.internal.MorphiaCursor;
 import eu.europeana.api.commons.error.EuropeanaApiException;
 import eu.europeana.fulltext.AnnotationType;
 import eu.europeana.fulltext.api.service.FTService;
 import eu.europeana.fulltext.entity.AnnoPage;
 import eu.europeana.fulltext.entity.Annotation;
-import eu.europeana.fulltext.search.config.SearchConfig;
+import eu.europeana.fulltext.repository.TextRange;
 import eu.europeana.fulltext.search.exception.RecordDoesNotExistException;
 import eu.europeana.fulltext.search.model.query.EuropeanaId;
 import eu.europeana.fulltext.search.model.query.SolrHit;
-import eu.europeana.fulltext.search.model.response.Debug;
 import eu.europeana.fulltext.search.model.response.Hit;
 import eu.europeana.fulltext.search.model.response.HitFactory;
 import eu.europeana.fulltext.search.model.response.SearchResult;
@@ -18,13 +16,18 @@ import eu.europeana.fulltext.search.model.response.SearchResultFactory;
 import eu.europeana.fulltext.search.repository.SolrRepo;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.apache.solr.common.util.NamedList;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -39,18 +42,24 @@ public class FTSearchService {
 
     private static final Logger LOG  = LogManager.getLogger(FTSearchService.class);
 
-    private static final String SNIPPETS          = "snippets";
-    private static final String OFFSETS           = "passages";
-    private static final String TEXT_START_OFFSET = "startOffsetUtf16";
-    private static final String HIT_START_OFFSETS = "matchStartsUtf16";
-    private static final String HIT_END_OFFSETS   = "matchEndsUtf16";
-
     private SolrRepo solrRepo;
     private FTService fulltextRepo;
+    private SearchResultCache searchResultCache;
 
-    FTSearchService(SolrRepo solrRepo, FTService fulltextService){
+    FTSearchService(SolrRepo solrRepo, FTService fulltextService, SearchResultCache searchResultCache){
         this.solrRepo = solrRepo;
         this.fulltextRepo = fulltextService;
+        this.searchResultCache = searchResultCache;
+    }
+
+    /**
+     * Retrieve the last modified date of a record's AnnoPages, which is used to validate cached search results and
+     * to handle conditional search requests
+     * @param europeanaId europeana id of the issue
+     * @return last modified date, or null if the record doesn't exist or none of its AnnoPages has a modified date
+     */
+    public Date getRecordModified(EuropeanaId europeanaId) {
+        return fulltextRepo.getRecordModified(europeanaId.getDatasetId(), europeanaId.getLocalId());
     }
 
     /**
@@ -58,6 +67,8 @@ public class FTSearchService {
      *
      * @param searchId       string that is set as id of the search (endpoint, path and query parameters)
      * @param europeanaId    europeana id of the issue to search
+     * @param recordModified last modified date of the issue as returned by {@link #getRecordModified(EuropeanaId)},
+     *                       if null the issue's existence is checked when there are no hits and the result isn't cached
      * @param query          the string to search
      * @param pageSize       maximum number of hits
      * @param annoTypes      requested types of annotations
@@ -66,89 +77,121 @@ public class FTSearchService {
      * @return SearchResult object (can be empty if no hits were found)
      * @throws EuropeanaApiException when there is a problem processing the request (e.g. issue doesn't exist)
      */
-    public SearchResult searchIssue(String searchId, EuropeanaId europeanaId, String query, int pageSize,
-                                    List<AnnotationType> annoTypes, String requestVersion, boolean debug)
+    public SearchResult searchIssue(String searchId, EuropeanaId europeanaId, Date recordModified, String query,
+                                    int pageSize, List<AnnotationType> annoTypes, String requestVersion, boolean debug)
             throws EuropeanaApiException {
         long start = System.currentTimeMillis();
+        String cacheKey = null;
+        if (!debug && recordModified != null && searchResultCache.isEnabled()) {
+            cacheKey = SearchResultCache.createKey(europeanaId, query, pageSize, annoTypes, requestVersion);
+            SearchResult cached = searchResultCache.get(cacheKey, recordModified, searchId);
+            if (cached != null) {
+                LOG.debug("Search result found in cache");
+                return cached;
+            }
+        }
         SearchResult result = SearchResultFactory.createSearchResult(searchId, debug, requestVersion);
 
-        Map<String, List<String>> solrResult = solrRepo.getHighlightsWithOffsets(europeanaId, query, pageSize, result.getDebug());
-        if (solrResult.isEmpty()) {
+        List<SolrHit> solrHits = solrRepo.getHighlightsWithOffsets(europeanaId, query, pageSize, result.getDebug());
+        if (solrHits.isEmpty()) {
             LOG.debug("Solr returned empty result in {} ms", System.currentTimeMillis() - start);
             // check if there are 0 hits because the record doesn't exist
-            if (!fulltextRepo.doesAnnoPageExist(europeanaId.getDatasetId(), europeanaId.getLocalId(), "1", null)) {
+            if (recordModified == null
+                    && !fulltextRepo.doesRecordExist(europeanaId.getDatasetId(), europeanaId.getLocalId())) {
                 LOG.debug("No results from Mongo");
                 throw new RecordDoesNotExistException(europeanaId);
             }
         } else {
-            LOG.debug("Solr returned {} document in {} ms", solrResult.size(), System.currentTimeMillis() - start);
-            findAnnopageAndAnnotations(result, solrResult, europeanaId, pageSize, annoTypes, requestVersion);
+            LOG.debug("Solr returned {} hits in {} ms", solrHits.size(), System.currentTimeMillis() - start);
+            findAnnopageAndAnnotations(result, solrHits, europeanaId, pageSize, annoTypes, requestVersion);
         }
         LOG.debug("Search done in {} ms. Found {} annotations", (System.currentTimeMillis() - start), result.itemSize());
+        if (cacheKey != null) {
+            searchResultCache.put(cacheKey, recordModified, result);
+        }
         return result;
     }
 
-    private void findAnnopageAndAnnotations(SearchResult result, Map<String, List<String>> highlightInfo,
+    private void findAnnopageAndAnnotations(SearchResult result, List<SolrHit> solrHits,
                                             EuropeanaId europeanaId, int pageSize, List<AnnotationType> annoTypes, String requestVersion)
             throws EuropeanaApiException {
         // Group Solr hits by imageId so we can link an AnnoPage to its corresponding hit(s)
-        Map<String, List<SolrHit>> solrHitsByImageId = parseHighlightData(highlightInfo, result.getDebug())
-                .stream()
+        Map<String, List<SolrHit>> solrHitsByImageId = solrHits.stream()
                 .collect(Collectors.groupingBy(SolrHit::getImageId));
 
         long start = System.currentTimeMillis();
-        try (MorphiaCursor<AnnoPage> annoPageCursor = fulltextRepo.fetchAnnoPageFromImageId(europeanaId.getDatasetId(),
-                europeanaId.getLocalId(), new ArrayList<>(solrHitsByImageId.keySet()), annoTypes)) {
-            if (annoPageCursor == null || !annoPageCursor.hasNext()) {
-                LOG.debug("No results from Mongo");
-                throw new RecordDoesNotExistException(europeanaId);
-            } else {
-                LOG.debug("Retrieved AnnoPages for {} in {} ms", europeanaId, System.currentTimeMillis() - start);
+        // only the annotations that overlap with a hit are retrieved
+        List<AnnoPage> annoPages = fulltextRepo.fetchAnnoPagesForSearch(europeanaId.getDatasetId(),
+                europeanaId.getLocalId(), toTextRanges(solrHitsByImageId), annoTypes);
+        if (annoPages.isEmpty()) {
+            LOG.debug("No results from Mongo");
+            throw new RecordDoesNotExistException(europeanaId);
+        }
+        LOG.debug("Retrieved {} AnnoPages for {} in {} ms", annoPages.size(), europeanaId,
+                System.currentTimeMillis() - start);
+
+        List<AnnotationMatch> matches = new ArrayList<>();
+        for (AnnoPage annoPage : annoPages) {
+            LOG.debug("Processing annoPage {}", annoPage);
+            // get relevant SolrHits by imageId (which match annoPage.tgId)
+            if (findPageAnnotations(matches, annoPage, solrHitsByImageId.get(annoPage.getTgtId()), pageSize)) {
+                break;
             }
+        }
+        addAnnotationHits(result, matches, fetchHitTexts(europeanaId, matches), requestVersion);
+    }
 
-            while (annoPageCursor.hasNext()) {
-                AnnoPage annoPage = annoPageCursor.next();
-                LOG.debug("Processing annoPage {}", annoPage);
-                // get relevant SolrHits by imageId (which match annoPage.tgId)
-                for (SolrHit solrHit : solrHitsByImageId.get(annoPage.getTgtId())) {
-                    // use the annopage to find the matching annotations
-                    findAnnotations(result, solrHit, annoPage, pageSize, annoTypes, requestVersion);
-                    if (result.itemSize() >= pageSize) {
-                        return;
-                    }
-                }
+    private static Map<String, List<TextRange>> toTextRanges(Map<String, List<SolrHit>> solrHitsByImageId) {
+        Map<String, List<TextRange>> result = new LinkedHashMap<>();
+        for (Map.Entry<String, List<SolrHit>> hits : solrHitsByImageId.entrySet()) {
+            result.put(hits.getKey(), hits.getValue().stream()
+                    .map(hit -> new TextRange(hit.getStart(), hit.getEnd()))
+                    .collect(Collectors.toList()));
+        }
+        return result;
+    }
+
+    /**
+     * Finds the annotations of one AnnoPage that match the Solr hits on that page.
+     * The page's annotations are indexed once, so each hit only looks at the annotations near its position.
+     * @param matches list to which the found annotations are added
+     * @return true if pageSize annotations are found, otherwise false
+     */
+    boolean findPageAnnotations(List<AnnotationMatch> matches, AnnoPage annoPage, List<SolrHit> solrHits,
+                                int pageSize) {
+        AnnotationIndex annotationIndex = new AnnotationIndex(annoPage.getAns());
+        for (SolrHit solrHit : solrHits) {
+            // use the annopage to find the matching annotations
+            findAnnotations(matches, solrHit, annoPage, annotationIndex, pageSize);
+            if (matches.size() >= pageSize) {
+                return true;
             }
         }
+        return false;
     }
 
-    private void findAnnotations(SearchResult result, SolrHit solrHit, AnnoPage annoPage, int pageSize,
-                                 List<AnnotationType> annoTypes, String requestVersion) {
-        LOG.trace("  Searching for {} annotations that overlap with {}...", annoTypes, solrHit.getDebugInfo());
+    private void findAnnotations(List<AnnotationMatch> matches, SolrHit solrHit, AnnoPage annoPage,
+                                 AnnotationIndex annotationIndex, int pageSize) {
+        if (LOG.isTraceEnabled()) {
+            LOG.trace("  Searching for annotations that overlap with {}...", solrHit.getDebugInfo());
+        }
         boolean annotationsFound = false;
-        for (Annotation anno : annoPage.getAns()) {
-            if (anno.getFrom() != null && anno.getTo() != null &&
-                    overlap(solrHit.getStart(), solrHit.getEnd(), anno.getFrom(), anno.getTo())) {
-                if (LOG.isDebugEnabled()) {
-                    LOG.debug("  Found overlap between {} and annotation {},{} with text '{}'", solrHit.getDebugInfo(),
-                            anno.getFrom(), anno.getTo(), annoPage.getRes().getValue().substring(anno.getFrom(), anno.getTo()));
-                }
+        // note that page-level annotations are never found, because those don't have a from and to coordinate
+        for (Annotation anno : annotationIndex.findOverlapping(solrHit.getStart(), solrHit.getEnd())) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("  Found overlap between {} and annotation {},{}", solrHit.getDebugInfo(), anno.getFrom(),
+                        anno.getTo());
+            }
 
-                // Sometimes a trailing character like a dot or comma directly after the keyword is regarded as
-                // another annotation (word). So we filter those out.
-                if (anno.getTo() - anno.getFrom() > 1) {
-                    annotationsFound = true;
-                    if (anno.getDcType() == AnnotationType.WORD.getAbbreviation()) {
-                        // Don't output hit data for word level annotations
-                        result.addAnnotationHit(annoPage, anno, null);
-                    } else {
-                        Hit hit = HitFactory.createHit(solrHit.getStart(), solrHit.getEnd(), annoPage, anno, requestVersion);
-                        result.addAnnotationHit(annoPage, anno, hit);
-                    }
-                } else {
-                    LOG.debug("Ignoring overlap with annotation {} because it's only 1 character long", anno.getAnId());
-                }
+            // Sometimes a trailing character like a dot or comma directly after the keyword is regarded as
+            // another annotation (word). So we filter those out.
+            if (anno.getTo() - anno.getFrom() > 1) {
+                annotationsFound = true;
+                matches.add(new AnnotationMatch(annoPage, anno, solrHit));
+            } else {
+                LOG.debug("Ignoring overlap with annotation {} because it's only 1 character long", anno.getAnId());
             }
-            if (result.itemSize() >= pageSize) {
+            if (matches.size() >= pageSize) {
                 break;
             }
         }
@@ -159,99 +202,94 @@ public class FTSearchService {
         }
     }
 
-
-
     /**
-     * Expected data in snippets: {<imageid>}<snippet_text>
-     * Expected data in passages:
-     *  {"startOffsetUtf16=<number>,matchStartsUtf16=[<number1>,<number2>....],matchEndsUtf16=[<number1><number2>....]}
+     * Retrieves the parts of the page texts that are needed for the hits (prefix, exact and suffix) in one query.
+     * No text is needed for word level annotations, because we don't output hits for those.
+     * @return per resource id the text of the ranges returned by {@link AnnotationMatch#getTextRange()}
      */
-    private List<SolrHit> parseHighlightData(Map<String, List<String>> highlightInfo, Debug debug) throws EuropeanaApiException {
-        // TODO for now we assume there will always be only 1 language, so 1 set of snippets and offsets
-        Object highlightObj = highlightInfo.values().iterator().next();
-        List<String> snippetsTxt;
-        ArrayList<NamedList> offsetsLists;
-        if (highlightObj instanceof NamedList) {
-            NamedList namedList = (NamedList) highlightObj;
-            snippetsTxt = (ArrayList<String>) namedList.get(SNIPPETS);
-            offsetsLists = (ArrayList<NamedList>) namedList.get(OFFSETS);
-        } else {
-            throw new EuropeanaApiException("Unexpected highlights object type: " +
-                    (highlightObj == null ? null : highlightObj.getClass()));
+    private Map<String, Map<TextRange, String>> fetchHitTexts(EuropeanaId europeanaId, List<AnnotationMatch> matches) {
+        Map<String, Set<TextRange>> rangesByResourceId = new LinkedHashMap<>();
+        for (AnnotationMatch match : matches) {
+            if (match.hasHit()) {
+                rangesByResourceId.computeIfAbsent(match.annoPage.getRes().getId(), id -> new LinkedHashSet<>())
+                        .add(match.getTextRange());
+            }
+        }
+        Map<String, Map<TextRange, String>> result = new HashMap<>();
+        if (rangesByResourceId.isEmpty()) {
+            return result;
         }
 
-        List<SolrHit> result = new ArrayList<>();
-        int nrMergedHits = 0;
-        for (int i = 0; i < snippetsTxt.size(); i++) {
-            // parse snippets data
-            String snippetTxt = snippetsTxt.get(i);
-            int imageIdEnd = snippetTxt.indexOf('}');
-            String imageId = snippetTxt.substring(1, imageIdEnd);
-            String snippet = snippetTxt.substring(imageIdEnd + 2);
-
-            // parse offsets data
-            NamedList offsetList = offsetsLists.get(i);
-            Long textStartOffset = Long.valueOf(offsetList.get(TEXT_START_OFFSET).toString());
-            // the imageId that is inserted into snippets should also be subtracted
-            textStartOffset = textStartOffset + imageIdEnd + 2; // + 2 because of bracket itself plus a space behind it
-            List<Integer> starts = getOffsets(offsetList.get(HIT_START_OFFSETS).toString(), textStartOffset);
-            List<Integer> ends = getOffsets(offsetList.get(HIT_END_OFFSETS).toString(), textStartOffset);
-
-            SolrHit previousHit = null;
-            for (int j = 0; j < starts.size(); j++) {
-                SolrHit newHit = new SolrHit(imageId, snippet, starts.get(j), ends.get(j));
-                // see if we there's a nearby hit we can merge with
-                if (previousHit != null && (newHit.getStart() - previousHit.getEnd() <= SearchConfig.HIT_MERGE_MAX_DISTANCE)) {
-                    LOG.debug("Merging {} with {}...", previousHit.getDebugInfo(), newHit.getDebugInfo());
-                    previousHit.setEnd(newHit.getEnd());
-                    nrMergedHits++;
-                } else {
-                    result.add(newHit);
-                    if (debug != null) {
-                        debug.addSolrSnippet(newHit);
-                    }
-                }
-                previousHit = newHit;
+        long start = System.currentTimeMillis();
+        Map<String, List<TextRange>> request = new LinkedHashMap<>();
+        rangesByResourceId.forEach((resourceId, ranges) -> request.put(resourceId, new ArrayList<>(ranges)));
+        Map<String, List<String>> slices = fulltextRepo.fetchTextSlices(europeanaId.getDatasetId(),
+                europeanaId.getLocalId(), request);
+        for (Map.Entry<String, List<String>> resource : slices.entrySet()) {
+            List<TextRange> ranges = request.get(resource.getKey());
+            Map<TextRange, String> texts = new HashMap<>();
+            for (int i = 0; i < ranges.size(); i++) {
+                texts.put(ranges.get(i), resource.getValue().get(i));
             }
+            result.put(resource.getKey(), texts);
         }
-        LOG.debug("Parsed {} solr hits, {} merged", result.size() + nrMergedHits, nrMergedHits);
+        LOG.debug("Retrieved text of {} hits from {} resources in {} ms",
+                request.values().stream().mapToInt(List::size).sum(), slices.size(), System.currentTimeMillis() - start);
         return result;
     }
 
     /**
-     * @param numberArrayTxt string with expected format: "[<number>,<number>....]"
-     * @param textStartOffset we need to subtract this from each number to get indexes within a text (instead of within
-     *                        entire issue)
+     * Adds the found annotations to the result, with a hit for all annotations that aren't word level annotations
+     * @param textByResourceId per resource id the text of the ranges returned by
+     *                         {@link AnnotationMatch#getTextRange()}
      */
-    private List<Integer> getOffsets(String numberArrayTxt, long textStartOffset) {
-        // strip opening and closing brackets
-        String numbersTxt = numberArrayTxt.substring(1, numberArrayTxt.length() - 1);
-        // split numbers
-        String[] numbers = numbersTxt.split(", "); // the extra space is to prevent trimming later!
-
-        List<Integer> result = new ArrayList<>();
-        for (String number : numbers) {
-            Long value = Long.parseLong(number) - textStartOffset;
-            if (value >= 0) {
-                result.add(value.intValue());
+    void addAnnotationHits(SearchResult result, List<AnnotationMatch> matches,
+                           Map<String, Map<TextRange, String>> textByResourceId, String requestVersion) {
+        for (AnnotationMatch match : matches) {
+            if (!match.hasHit()) {
+                // Don't output hit data for word level annotations
+                result.addAnnotationHit(match.annoPage, match.annotation, null);
+                continue;
+            }
+            TextRange range = match.getTextRange();
+            String text = textByResourceId.getOrDefault(match.annoPage.getRes().getId(), Collections.emptyMap())
+                    .get(range);
+            if (text == null) {
+                LOG.warn("No text found for resource {} of /{}/{}/annopage/{}", match.annoPage.getRes().getId(),
+                        match.annoPage.getDsId(), match.annoPage.getLcId(), match.annoPage.getPgId());
+                result.addAnnotationHit(match.annoPage, match.annotation, null);
+                continue;
             }
+            Hit hit = HitFactory.createHit(match.solrHit.getStart(), match.solrHit.getEnd(), match.annoPage,
+                    match.annotation, text, range.getStart(), requestVersion);
+            result.addAnnotationHit(match.annoPage, match.annotation, hit);
         }
-        return result;
     }
 
     /**
-     * Checks if there is an overlap between 2 start and end indexes.
-     * Implementation based on https://stackoverflow.com/a/36035369
-     *
-     * Note that we can't use this for page-level annotations at the moment because those don't have a to and from
-     * coordinate
-     * @param s1 start index1
-     * @param e1 end index1
-     * @param s2 start index2
-     * @param e2 end index2
-     * @return true if there is overlap, otherwise false
+     * Annotation that overlaps with a Solr hit
      */
-    private boolean overlap(int s1, int e1, int s2, int e2) {
-        return (s1 <= e2 && e1 >= s2);
+    static final class AnnotationMatch {
+        private final AnnoPage   annoPage;
+        private final Annotation annotation;
+        private final SolrHit    solrHit;
+
+        AnnotationMatch(AnnoPage annoPage, Annotation annotation, SolrHit solrHit) {
+            this.annoPage = annoPage;
+            this.annotation = annotation;
+            this.solrHit = solrHit;
+        }
+
+        private boolean hasHit() {
+            return annotation.getDcType() != AnnotationType.WORD.getAbbreviation();
+        }
+
+        /**
+         * @return the part of the page text that is needed for the hit: the hit itself and the annotation
+         */
+        TextRange getTextRange() {
+            return new TextRange(Math.min(solrHit.getStart(), annotation.getFrom()),
+                    Math.max(solrHit.getEnd(), annotation.getTo()));
+        }
     }
 }
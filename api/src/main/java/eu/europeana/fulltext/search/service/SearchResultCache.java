@@ -0,0 +1,161 @@
+package eu.europeana.fulltext.search.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import eu.europeana.fulltext.AnnotationType;
+import eu.europeana.fulltext.api.config.FTSettings;
+import eu.europeana.fulltext.search.model.query.EuropeanaId;
+import eu.europeana.fulltext.search.model.response.SearchResult;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory cache for search results, so popular searches don't require a Solr highlighting query, a database query
+ * and annotation matching every time. Results are cached per record, query, page size, text granularity and IIIF
+ * version. Together with each result we store the last modified date of the record's AnnoPages; a cached result is
+ * only returned when that date is still the same, so results are discarded as soon as the record is reloaded.
+ * <p>
+ * The cache size is limited to an estimated number of megabytes (see search.cache.maxsize.mb property) and results
+ * expire after search.cache.ttl.seconds. Results with debug information are never cached. Cache statistics are
+ * available via actuator metrics (cache.gets, cache.puts, cache.evictions, etc.).
+ */
+@Component
+public class SearchResultCache implements MeterBinder {
+
+    private static final Logger LOG = LogManager.getLogger(SearchResultCache.class);
+
+    private static final String CACHE_NAME   = "searchResults";
+    private static final long   BYTES_PER_MB = 1024L * 1024L;
+
+    // rough estimates of the memory used by a search result and its annotations and hits
+    private static final int RESULT_SIZE     = 500;
+    private static final int ANNOTATION_SIZE = 1000;
+    private static final int HIT_SIZE        = 1000;
+
+    private final Cache<String, CachedResult> cache;
+
+    /**
+     * Create a new search result cache
+     * @param ftSettings settings containing the maximum cache size and time-to-live
+     */
+    public SearchResultCache(FTSettings ftSettings) {
+        int maxSizeMb = ftSettings.getSearchCacheMaxSizeMb();
+        int ttlSeconds = ftSettings.getSearchCacheTtlSeconds();
+        if (maxSizeMb > 0 && ttlSeconds > 0) {
+            LOG.info("Search result cache maximum size is {} MB, results expire after {} seconds", maxSizeMb,
+                    ttlSeconds);
+            this.cache = Caffeine.newBuilder()
+                    .maximumWeight(maxSizeMb * BYTES_PER_MB)
+                    .weigher((String key, CachedResult cached) -> estimateSize(cached.result))
+                    .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                    .recordStats()
+                    .build();
+        } else {
+            LOG.info("Search result cache is disabled");
+            this.cache = null;
+        }
+    }
+
+    /**
+     * Registers the cache statistics with actuator
+     * @param registry the registry to bind cache metrics to
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (cache != null) {
+            CaffeineCacheMetrics.monitor(registry, cache, CACHE_NAME);
+        }
+    }
+
+    /**
+     * @return true if search results are cached, otherwise false
+     */
+    public boolean isEnabled() {
+        return cache != null;
+    }
+
+    /**
+     * Return a cached search result, provided the record wasn't modified after it was cached
+     * @param key key created with {@link #createKey(EuropeanaId, String, int, List, String)}
+     * @param recordModified current last modified date of the record's AnnoPages
+     * @param searchId id of the returned search result
+     * @return copy of the cached search result with the provided id, or null if there is no (valid) cached result
+     */
+    public SearchResult get(String key, Date recordModified, String searchId) {
+        if (cache == null) {
+            return null;
+        }
+        CachedResult cached = cache.getIfPresent(key);
+        if (cached == null) {
+            return null;
+        }
+        if (!Objects.equals(recordModified, cached.recordModified)) {
+            LOG.debug("Cached search result {} is outdated", key);
+            cache.invalidate(key);
+            return null;
+        }
+        return cached.result.withId(searchId);
+    }
+
+    /**
+     * Store a search result in the cache. The result should not be modified afterwards.
+     * @param key key created with {@link #createKey(EuropeanaId, String, int, List, String)}
+     * @param recordModified last modified date of the record's AnnoPages when the search was done
+     * @param result the search result to store
+     */
+    public void put(String key, Date recordModified, SearchResult result) {
+        if (cache != null && recordModified != null && result.getDebug() == null) {
+            cache.put(key, new CachedResult(recordModified, result));
+        }
+    }
+
+    /**
+     * Creates a key that identifies a search in a particular record. Queries that only differ in whitespace get the
+     * same key, and so do requests for the same text granularities in a different order.
+     * @param europeanaId id of the searched record
+     * @param query the search query
+     * @param pageSize maximum number of hits
+     * @param annoTypes requested types of annotations
+     * @param requestVersion requested IIIF version
+     * @return key for the search
+     */
+    public static String createKey(EuropeanaId europeanaId, String query, int pageSize,
+                                   List<AnnotationType> annoTypes, String requestVersion) {
+        StringBuilder key = new StringBuilder(100)
+                .append('/').append(europeanaId.getDatasetId())
+                .append('/').append(europeanaId.getLocalId())
+                .append('?').append(requestVersion)
+                .append('&').append(pageSize)
+                .append('&');
+        annoTypes.stream()
+                .map(AnnotationType::getAbbreviation)
+                .sorted()
+                .distinct()
+                .forEach(key::append);
+        return key.append('&').append(StringUtils.normalizeSpace(query)).toString();
+    }
+
+    private static int estimateSize(SearchResult result) {
+        return RESULT_SIZE + ANNOTATION_SIZE * result.itemSize() + HIT_SIZE * result.getHits().size();
+    }
+
+    private static final class CachedResult {
+        private final Date         recordModified;
+        private final SearchResult result;
+
+        private CachedResult(Date recordModified, SearchResult result) {
+            this.recordModified = recordModified;
+            this.result = result;
+        }
+    }
+}
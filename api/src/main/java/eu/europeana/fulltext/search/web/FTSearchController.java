@@ -1,17 +1,22 @@
 package eu.europeana.fulltext.search.web;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import eu.europeana.api.commons.error.EuropeanaApiException;
 import eu.europeana.fulltext.AnnotationType;
 import eu.europeana.fulltext.api.config.FTSettings;
+import eu.europeana.fulltext.api.service.CacheUtils;
 import eu.europeana.fulltext.api.service.ControllerUtils;
+import eu.europeana.fulltext.api.service.exception.SerializationException;
 import eu.europeana.fulltext.search.config.SearchConfig;
 import eu.europeana.fulltext.search.exception.InvalidParameterException;
 import eu.europeana.fulltext.search.model.query.EuropeanaId;
 import eu.europeana.fulltext.search.model.response.SearchResult;
 import eu.europeana.fulltext.search.service.FTSearchService;
+import eu.europeana.fulltext.search.service.SearchResultCache;
 import io.swagger.annotations.Api;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -19,6 +24,10 @@ import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.util.Date;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Set;
@@ -44,14 +53,17 @@ public class FTSearchController {
 
     private FTSearchService searchService;
     private FTSettings settings;
+    private ObjectMapper mapper;
 
-    public FTSearchController(FTSearchService searchService, FTSettings settings) {
+    public FTSearchController(FTSearchService searchService, FTSettings settings, ObjectMapper mapper) {
         this.searchService = searchService;
         this.settings = settings;
+        this.mapper = mapper;
     }
 
     /**
-     * Search the provided issue (CHO) for a particular string
+     * Search the provided issue (CHO) for a particular string. The ETag and Last-Modified headers of the response
+     * change whenever the issue is modified, so conditional requests can be answered without searching.
      *
      * @param datasetId       datasetId of the issue to search
      * @param localId         itemId of the issue to search
@@ -60,6 +72,7 @@ public class FTSearchController {
      * @param pageSize        maximum number of hits
      * @param textGranularity one-letter abbreviation or name of an Annotation type
      * @param debug           if specified then include debug information in the response
+     * @param pretty          optional, if true the response is pretty printed
      * @throws EuropeanaApiException when there is an error processing the request
      */
     @GetMapping(value = "/{datasetId}/{localId}/search", produces = MediaType.APPLICATION_JSON_VALUE)
@@ -70,7 +83,9 @@ public class FTSearchController {
                                     @RequestParam(required = false) String textGranularity,
                                     @RequestParam(value = "format", required = false) String versionParam,
                                     @RequestParam(required = false) String debug,
-                                    HttpServletRequest request) throws EuropeanaApiException {
+                                    @RequestParam(required = false) boolean pretty,
+                                    HttpServletRequest request,
+                                    HttpServletResponse response) throws EuropeanaApiException {
 
         String requestVersion = getRequestVersion(request, versionParam);
         if (ACCEPT_VERSION_INVALID.equals(requestVersion)){
@@ -85,10 +100,41 @@ public class FTSearchController {
         List<AnnotationType> annoTypes = validateTextGranularity(textGranularity);
 
         // start processing
+        EuropeanaId europeanaId = new EuropeanaId(datasetId, localId);
+        // null if the record doesn't exist, but also if none of its pages has a modified date (legacy data). In that
+        // case the search service checks if the record exists when there are no hits
+        Date recordModified = searchService.getRecordModified(europeanaId);
+        boolean isDebug = (debug != null);
+        HttpHeaders headers = null;
+        if (!isDebug && recordModified != null) {
+            // debug information differs per request, so we only support conditional requests without it
+            ZonedDateTime modified = CacheUtils.dateToZonedUTC(recordModified);
+            String eTag = CacheUtils.generateETag(
+                    SearchResultCache.createKey(europeanaId, qry, pageSize, annoTypes, requestVersion), modified,
+                    settings.getAppVersion(), true);
+            ResponseEntity<String> cached = CacheUtils.checkCached(request, modified, eTag);
+            if (cached != null) {
+                return cached;
+            }
+            headers = CacheUtils.generateHeaders(request, eTag, CacheUtils.zonedDateTimeToString(modified));
+        }
+
         String searchId = request.getRequestURI() + "?" + request.getQueryString();
-        SearchResult searchResult = searchService.searchIssue(searchId, new EuropeanaId(datasetId, localId), qry,
-                pageSize, annoTypes, requestVersion, (debug != null));
-        return new ResponseEntity<>(searchResult, HttpStatus.OK);
+        SearchResult searchResult = searchService.searchIssue(searchId, europeanaId, recordModified, qry,
+                pageSize, annoTypes, requestVersion, isDebug);
+
+        // write directly to the response output stream, so we don't keep the serialized result in memory
+        response.setStatus(HttpStatus.OK.value());
+        if (headers != null) {
+            headers.forEach((name, values) -> values.forEach(value -> response.addHeader(name, value)));
+        }
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        try {
+            ControllerUtils.writeJson(mapper, searchResult, response.getOutputStream(), pretty);
+        } catch (IOException e) {
+            throw new SerializationException("Error serialising search result: " + e.getMessage(), e);
+        }
+        return null;
     }
 
     private String validateQuery(String query, String q) throws EuropeanaApiException {
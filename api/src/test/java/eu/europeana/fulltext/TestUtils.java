@@ -12,6 +12,7 @@ import eu.europeana.fulltext.api.model.v2.AnnotationV2;
 import eu.europeana.fulltext.api.model.v3.AnnotationBodyV3;
 import eu.europeana.fulltext.api.model.v3.AnnotationPageV3;
 import eu.europeana.fulltext.api.model.v3.AnnotationV3;
+import eu.europeana.fulltext.util.ContentFingerprint;
 
 import java.time.LocalDate;
 import java.time.Month;
@@ -173,7 +174,9 @@ public class TestUtils {
 
     public static void buildFTResources(){
         ftres_1 = createFTResource("res1", "de", KUCKEBACKENWOLLTE, SOURCE_1, EDMRIGHTS);
+        ftres_1.setHash(ContentFingerprint.of(res_1));
         ftres_2 = createFTResource("res2", "de" , WUERDEJANICHTAUFGEHEN, SOURCE_2, EDMRIGHTS);
+        ftres_2.setHash(ContentFingerprint.of(res_2));
         ftres_2.setContext(MEDIA_TYPE_EDM_JSONLD);
     }
 
@@ -0,0 +1,51 @@
+package eu.europeana.fulltext.api.config;
+
+import eu.europeana.fulltext.api.service.InventoryService;
+import eu.europeana.fulltext.entity.DatasetInventory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests the inventory actuator endpoint
+ */
+public class InventoryEndpointTest {
+
+    private InventoryService  inventoryService;
+    private InventoryEndpoint endpoint;
+
+    @BeforeEach
+    public void setup() {
+        inventoryService = mock(InventoryService.class);
+        endpoint = new InventoryEndpoint(inventoryService);
+    }
+
+    @Test
+    public void testInventory() {
+        Map<String, Long> totals = Map.of("AnnoPage", 10L, "Resource", 10L);
+        List<DatasetInventory> datasets = List.of(new DatasetInventory());
+        given(inventoryService.getTotals()).willReturn(totals);
+        given(inventoryService.getDatasets()).willReturn(datasets);
+
+        Map<String, Object> result = endpoint.inventory();
+
+        assertEquals(List.of("totals", "datasets"), List.copyOf(result.keySet()));
+        assertSame(totals, result.get("totals"));
+        assertSame(datasets, result.get("datasets"));
+    }
+
+    @Test
+    public void testDataset() {
+        DatasetInventory inventory = new DatasetInventory();
+        given(inventoryService.getDataset("ds1")).willReturn(inventory);
+
+        assertSame(inventory, endpoint.dataset("ds1"));
+        assertNull(endpoint.dataset("ds2"));
+    }
+}
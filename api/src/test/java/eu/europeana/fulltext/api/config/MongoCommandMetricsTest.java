@@ -0,0 +1,78 @@
+package eu.europeana.fulltext.api.config;
+
+import com.mongodb.MongoException;
+import com.mongodb.ServerAddress;
+import com.mongodb.connection.ClusterId;
+import com.mongodb.connection.ConnectionDescription;
+import com.mongodb.connection.ServerId;
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonDocument;
+import org.bson.BsonInt64;
+import org.bson.BsonString;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.BsonDocumentCodec;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests recording Mongo command metrics
+ */
+public class MongoCommandMetricsTest {
+
+    private static final ConnectionDescription CONNECTION =
+            new ConnectionDescription(new ServerId(new ClusterId(), new ServerAddress()));
+
+    private SimpleMeterRegistry registry;
+    private MongoCommandMetrics listener;
+
+    @BeforeEach
+    public void setup() {
+        registry = new SimpleMeterRegistry();
+        listener = new MongoCommandMetrics(registry);
+    }
+
+    @Test
+    public void testCommandSucceeded() {
+        listener.commandStarted(new CommandStartedEvent(1, CONNECTION, "fulltext", "find",
+                new BsonDocument("find", new BsonString("AnnoPage"))));
+        BsonDocument reply = new BsonDocument("ok", new BsonInt64(1));
+        RawBsonDocument rawReply = new RawBsonDocument(reply, new BsonDocumentCodec());
+        listener.commandSucceeded(new CommandSucceededEvent(1, CONNECTION, "find", rawReply,
+                TimeUnit.MILLISECONDS.toNanos(5)));
+
+        Timer timer = registry.find(MongoCommandMetrics.COMMAND_TIMER)
+                .tags("command", "find", "collection", "AnnoPage", "status", "success").timer();
+        assertNotNull(timer);
+        assertEquals(1, timer.count());
+        assertEquals(5, timer.totalTime(TimeUnit.MILLISECONDS), 0.001);
+
+        DistributionSummary size = registry.find(MongoCommandMetrics.RESPONSE_SIZE)
+                .tags("command", "find", "collection", "AnnoPage").summary();
+        assertNotNull(size);
+        assertEquals(rawReply.getByteBuffer().remaining(), size.totalAmount(), 0.001);
+    }
+
+    @Test
+    public void testGetMoreCollection() {
+        BsonDocument getMore = new BsonDocument("getMore", new BsonInt64(123))
+                .append("collection", new BsonString("Resource"));
+        listener.commandStarted(new CommandStartedEvent(2, CONNECTION, "fulltext", "getMore", getMore));
+        listener.commandFailed(new CommandFailedEvent(2, CONNECTION, "getMore", 1000,
+                new MongoException("cursor not found")));
+
+        Timer timer = registry.find(MongoCommandMetrics.COMMAND_TIMER)
+                .tags("command", "getMore", "collection", "Resource", "status", "failed").timer();
+        assertNotNull(timer);
+        assertEquals(1, timer.count());
+        assertNull(registry.find(MongoCommandMetrics.RESPONSE_SIZE).summary());
+    }
+}
@@ -0,0 +1,131 @@
+package eu.europeana.fulltext.api.model;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import eu.europeana.fulltext.AnnotationType;
+import eu.europeana.fulltext.api.config.FTSettings;
+import eu.europeana.fulltext.api.config.SerializationConfig;
+import eu.europeana.fulltext.api.model.v2.AnnotationPageV2;
+import eu.europeana.fulltext.api.model.v2.AnnotationV2;
+import eu.europeana.fulltext.api.model.v3.AnnotationPageV3;
+import eu.europeana.fulltext.api.model.v3.AnnotationV3;
+import eu.europeana.fulltext.api.service.EDM2IIIFMapping;
+import eu.europeana.fulltext.api.service.FTService;
+import eu.europeana.fulltext.entity.AnnoPage;
+import eu.europeana.fulltext.entity.Annotation;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.TestPropertySource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks that AnnoPages that are serialized directly by the IIIFAnnotationPageSerializers are exactly the same as the
+ * AnnotationPageV2/AnnotationPageV3 objects that were created by the former mapping, using 2 stored AnnoPages.
+ */
+@TestPropertySource(locations = "classpath:fulltext-test.properties")
+@SpringBootTest(classes = {SerializationConfig.class, EDM2IIIFMapping.class, FTSettings.class})
+public class IIIFAnnotationPageSerializerTest {
+
+    private static final List<String> ANNOPAGE_FILES = List.of(
+            "9200396_BibliographicResource_3000118435970_annopage_61.json",
+            "9200396_BibliographicResource_3000118435970_annopage_62.json");
+
+    @Autowired
+    private FTSettings ftSettings;
+
+    @MockBean
+    private FTService ftService; // needed so we can initialize EDM2IIIFMapping
+
+    @Test
+    public void testStoredAnnoPages() throws IOException {
+        for (String file : ANNOPAGE_FILES) {
+            AnnoPage annoPage = loadAnnoPage(file);
+            assertSameOutput(expectedV2(annoPage, false), EDM2IIIFMapping.getAnnotationPageV2(annoPage, false));
+            assertSameOutput(expectedV3(annoPage, false), EDM2IIIFMapping.getAnnotationPageV3(annoPage, false));
+        }
+    }
+
+    /**
+     * The stored AnnoPages don't have a page annotation, so we add one to check dereferencing the resource
+     */
+    @Test
+    public void testStoredAnnoPagesDerefResource() throws IOException {
+        for (String file : ANNOPAGE_FILES) {
+            AnnoPage annoPage = loadAnnoPage(file);
+            List<Annotation> annotations = new ArrayList<>(annoPage.getAns());
+            annotations.add(new Annotation("page", AnnotationType.PAGE.getAbbreviation(), null, null));
+            annoPage.setAns(annotations);
+            assertSameOutput(expectedV2(annoPage, true), EDM2IIIFMapping.getAnnotationPageV2(annoPage, true));
+            assertSameOutput(expectedV3(annoPage, true), EDM2IIIFMapping.getAnnotationPageV3(annoPage, true));
+        }
+    }
+
+    /**
+     * Creates an AnnotationPageV2 the same way as the former mapping did: page annotations first, and only those
+     * (optionally) with a dereferenced resource
+     */
+    private AnnotationPageV2 expectedV2(AnnoPage annoPage, boolean derefResource) {
+        List<AnnotationV2> annotations = new ArrayList<>();
+        for (Annotation annotation : annoPage.getAns()) {
+            if (annotation.isTopLevel()) {
+                annotations.add(0, EDM2IIIFMapping.getAnnotationV2(annoPage, annotation, false, derefResource));
+            } else {
+                annotations.add(EDM2IIIFMapping.getAnnotationV2(annoPage, annotation, false, false));
+            }
+        }
+        AnnotationPageV2 result = new AnnotationPageV2(getAnnoPageIdUrl(annoPage));
+        result.setLang(annoPage.getLang());
+        result.setResources(annotations.toArray(new AnnotationV2[0]));
+        return result;
+    }
+
+    private AnnotationPageV3 expectedV3(AnnoPage annoPage, boolean derefResource) {
+        List<AnnotationV3> annotations = new ArrayList<>();
+        for (Annotation annotation : annoPage.getAns()) {
+            if (annotation.isTopLevel()) {
+                annotations.add(0, EDM2IIIFMapping.getAnnotationV3(annoPage, annotation, false, derefResource));
+            } else {
+                annotations.add(EDM2IIIFMapping.getAnnotationV3(annoPage, annotation, false, false));
+            }
+        }
+        AnnotationPageV3 result = new AnnotationPageV3(getAnnoPageIdUrl(annoPage));
+        result.setLang(annoPage.getLang());
+        result.setItems(annotations.toArray(new AnnotationV3[0]));
+        return result;
+    }
+
+    private String getAnnoPageIdUrl(AnnoPage annoPage) {
+        return ftSettings.getAnnoPageBaseUrl() + annoPage.getDsId() + "/" + annoPage.getLcId() + "/annopage/"
+                + annoPage.getPgId();
+    }
+
+    /**
+     * Compares the output with and without json-ld context, and with and without pretty printing
+     */
+    private static void assertSameOutput(AnnotationWrapper expected, AnnotationWrapper actual) throws IOException {
+        ObjectMapper mapper = new SerializationConfig().mapper();
+        assertEquals(mapper.writeValueAsString(expected), mapper.writeValueAsString(actual));
+        assertEquals(mapper.writerWithDefaultPrettyPrinter().writeValueAsString(expected),
+                mapper.writerWithDefaultPrettyPrinter().writeValueAsString(actual));
+
+        expected.setContext(null);
+        actual.setContext(null);
+        assertEquals(mapper.writeValueAsString(expected), mapper.writeValueAsString(actual));
+    }
+
+    private static AnnoPage loadAnnoPage(String file) throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        try (InputStream in = Thread.currentThread().getContextClassLoader().getResourceAsStream(file)) {
+            return mapper.readValue(in, AnnoPage.class);
+        }
+    }
+}
@@ -12,6 +12,8 @@ import static eu.europeana.fulltext.api.config.FTDefinitions.MEDIA_TYPE_IIIF_V2;
 
 /**
  * Created by luthien on 14/06/2018.
+ * AnnotationPages are now serialized directly from the AnnoPage by {@link eu.europeana.fulltext.api.model.v2.IIIFAnnotationPageV2Serializer},
+ * this class is only used in tests to verify that output.
  */
 //@JsonldType(value = "sc:AnnotationList") // commenting this out works for property ordering #EA-1310
 @JsonPropertyOrder({"context", "id", "type"})
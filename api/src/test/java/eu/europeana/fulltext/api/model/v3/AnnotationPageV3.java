@@ -12,6 +12,8 @@ import static eu.europeana.fulltext.api.config.FTDefinitions.*;
 
 /**
  * Created by luthien on 14/06/2018.
+ * AnnotationPages are now serialized directly from the AnnoPage by {@link eu.europeana.fulltext.api.model.v3.IIIFAnnotationPageV3Serializer},
+ * this class is only used in tests to verify that output.
  */
 @JsonPropertyOrder({"context", "id", "type"})
 public class AnnotationPageV3 extends JsonLdIdType implements Serializable, AnnotationWrapper {
@@ -0,0 +1,125 @@
+package eu.europeana.fulltext.api.service;
+
+import eu.europeana.fulltext.AnnotationType;
+import eu.europeana.fulltext.api.config.FTSettings;
+import eu.europeana.fulltext.entity.AnnoPage;
+import eu.europeana.fulltext.repository.AnnoPageRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static eu.europeana.fulltext.TestUtils.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests the AnnoPageCache
+ */
+public class AnnoPageCacheTest {
+
+    private AnnoPageRepository apRepository;
+    private AnnoPageCache      annoPageCache;
+
+    @BeforeEach
+    public void setup() {
+        apRepository = mock(AnnoPageRepository.class);
+        FTSettings settings = mock(FTSettings.class);
+        given(settings.getAnnoPageCacheMaxSizeMb()).willReturn(1);
+        annoPageCache = new AnnoPageCache(apRepository, settings);
+
+        given(apRepository.findOriginalByPageId(eq("ds1"), eq("lc1"), eq("pg1"), any())).willReturn(anp_1);
+        given(apRepository.findModified("ds1", "lc1", "pg1", null)).willReturn(anp_1.getModified());
+    }
+
+    @Test
+    public void testCachedAnnoPage() {
+        AnnoPage first = annoPageCache.getAnnoPage("ds1", "lc1", "pg1", Collections.emptyList(), null, null);
+        AnnoPage second = annoPageCache.getAnnoPage("ds1", "lc1", "pg1", Collections.emptyList(), null, null);
+
+        assertSame(anp_1, first);
+        assertSame(anp_1, second);
+        verify(apRepository, times(1)).findOriginalByPageId(eq("ds1"), eq("lc1"), eq("pg1"), any());
+        verify(apRepository, times(1)).findModified("ds1", "lc1", "pg1", null);
+    }
+
+    @Test
+    public void testDerivedTextGranularity() {
+        AnnoPage lines = annoPageCache.getAnnoPage("ds1", "lc1", "pg1", List.of(AnnotationType.LINE), null, null);
+
+        assertEquals(1, lines.getAns().size());
+        assertEquals("an3", lines.getAns().get(0).getAnId());
+        assertEquals(anp_1.getModified(), lines.getModified());
+        // cached page should not be affected
+        assertEquals(3, anp_1.getAns().size());
+        // full page is loaded from the database, not the requested subset
+        verify(apRepository).findOriginalByPageId("ds1", "lc1", "pg1", Collections.emptyList());
+    }
+
+    @Test
+    public void testDerivedTextGranularityMetadata() {
+        AnnoPage fullPage = new AnnoPage("ds1", "lc1", "pg3", "tg3", "de", anp_1.getRes());
+        fullPage.setAns(anp_1.getAns());
+        fullPage.setModified(anp_1.getModified());
+        given(apRepository.findOriginalByPageId(eq("ds1"), eq("lc1"), eq("pg3"), any())).willReturn(fullPage);
+        given(apRepository.findModified("ds1", "lc1", "pg3", null)).willReturn(fullPage.getModified());
+
+        AnnoPage words = annoPageCache.getAnnoPage("ds1", "lc1", "pg3", List.of(AnnotationType.WORD), null, null);
+
+        assertNotSame(fullPage, words);
+        assertEquals(2, words.getAns().size());
+        assertEquals(fullPage.getDsId(), words.getDsId());
+        assertEquals(fullPage.getLcId(), words.getLcId());
+        assertEquals(fullPage.getPgId(), words.getPgId());
+        assertEquals(fullPage.getTgtId(), words.getTgtId());
+        assertEquals(fullPage.getLang(), words.getLang());
+        assertEquals(fullPage.getModified(), words.getModified());
+        assertSame(fullPage.getRes(), words.getRes());
+    }
+
+    @Test
+    public void testOutdatedAnnoPage() {
+        annoPageCache.getAnnoPage("ds1", "lc1", "pg1", Collections.emptyList(), null, null);
+        given(apRepository.findModified("ds1", "lc1", "pg1", null)).willReturn(new Date());
+        annoPageCache.getAnnoPage("ds1", "lc1", "pg1", Collections.emptyList(), null, null);
+
+        verify(apRepository, times(2)).findOriginalByPageId(eq("ds1"), eq("lc1"), eq("pg1"), any());
+    }
+
+    @Test
+    public void testProvidedModifiedDate() {
+        annoPageCache.getAnnoPage("ds1", "lc1", "pg1", Collections.emptyList(), null, anp_1.getModified());
+        AnnoPage cached = annoPageCache.getAnnoPage("ds1", "lc1", "pg1", Collections.emptyList(), null,
+                anp_1.getModified());
+        annoPageCache.getAnnoPage("ds1", "lc1", "pg1", Collections.emptyList(), null, new Date());
+
+        assertSame(anp_1, cached);
+        // a modified date that was already retrieved by the caller shouldn't be queried again
+        verify(apRepository, never()).findModified(any(), any(), any(), any());
+        verify(apRepository, times(2)).findOriginalByPageId(eq("ds1"), eq("lc1"), eq("pg1"), any());
+    }
+
+    @Test
+    public void testAnnoPageWithoutModifiedNotCached() {
+        AnnoPage legacyPage = new AnnoPage("ds1", "lc1", "pg4", "tg4", "de", anp_1.getRes());
+        legacyPage.setAns(anp_1.getAns());
+        given(apRepository.findOriginalByPageId(eq("ds1"), eq("lc1"), eq("pg4"), any())).willReturn(legacyPage);
+
+        assertSame(legacyPage, annoPageCache.getAnnoPage("ds1", "lc1", "pg4", Collections.emptyList(), null, null));
+        assertSame(legacyPage, annoPageCache.getAnnoPage("ds1", "lc1", "pg4", Collections.emptyList(), null, null));
+
+        verify(apRepository, times(2)).findOriginalByPageId(eq("ds1"), eq("lc1"), eq("pg4"), any());
+        verify(apRepository, never()).findModified(any(), any(), any(), any());
+    }
+
+    @Test
+    public void testAnnoPageDoesNotExist() {
+        assertNull(annoPageCache.getAnnoPage("ds1", "lc1", "pg2", Collections.emptyList(), null, null));
+        assertNull(annoPageCache.getAnnoPage("ds1", "lc1", "pg1", Collections.emptyList(), "en", null));
+    }
+}
@@ -1,15 +1,21 @@
 package eu.europeana.fulltext.api.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import eu.europeana.fulltext.AnnotationType;
 import eu.europeana.fulltext.search.exception.InvalidParameterException;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class ControllerUtilsTest {
 
@@ -45,4 +51,37 @@ public class ControllerUtilsTest {
             ControllerUtils.validateTextGranularity("Block Page", ALLOWED_ANNOTATION_TYPES);
         });
     }
+
+    @Test
+    public void testParsePageIds() throws InvalidParameterException {
+        assertEquals(List.of("1", "2", "3"), ControllerUtils.parsePageIds("1-3", 10));
+        assertEquals(List.of("1", "3", "5", "6", "7"), ControllerUtils.parsePageIds("1, 3,5-7,6", 10));
+        assertEquals(List.of("p1", "p2"), ControllerUtils.parsePageIds("p1,p2,", 10));
+    }
+
+    @Test
+    public void testParsePageIdsInvalid() {
+        Assertions.assertThrows(InvalidParameterException.class, () -> ControllerUtils.parsePageIds(" ", 10));
+        Assertions.assertThrows(InvalidParameterException.class, () -> ControllerUtils.parsePageIds("5-1", 10));
+        Assertions.assertThrows(InvalidParameterException.class, () -> ControllerUtils.parsePageIds("1-a", 10));
+        Assertions.assertThrows(InvalidParameterException.class, () -> ControllerUtils.parsePageIds("1-11", 10));
+        Assertions.assertThrows(InvalidParameterException.class, () -> ControllerUtils.parsePageIds("1-2147483647", 10));
+        Assertions.assertThrows(InvalidParameterException.class, () -> ControllerUtils.parsePageIds("1-8,a,b,c", 10));
+    }
+
+    @Test
+    public void testWriteJson() throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        Map<String, String> data = Map.of("key", "value");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ControllerUtils.writeJson(mapper, data, out, false);
+        assertEquals("{\"key\":\"value\"}", out.toString(StandardCharsets.UTF_8));
+
+        out = new ByteArrayOutputStream();
+        ControllerUtils.writeJson(mapper, data, out, true);
+        String pretty = out.toString(StandardCharsets.UTF_8);
+        assertTrue(pretty.contains("\n"));
+        assertEquals(mapper.writerWithDefaultPrettyPrinter().writeValueAsString(data), pretty);
+    }
 }
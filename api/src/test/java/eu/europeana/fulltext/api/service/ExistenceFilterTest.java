@@ -0,0 +1,186 @@
+package eu.europeana.fulltext.api.service;
+
+import dev.morphia.query.internal.MorphiaCursor;
+import eu.europeana.fulltext.api.config.FTSettings;
+import eu.europeana.fulltext.entity.AnnoPage;
+import eu.europeana.fulltext.entity.TranslationAnnoPage;
+import eu.europeana.fulltext.repository.AnnoPageRepository;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatcher;
+
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.ArgumentMatchers.notNull;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests the ExistenceFilter (and the BloomFilter it uses)
+ */
+public class ExistenceFilterTest {
+
+    private static final long OVERLAP_SECONDS = TimeUnit.MINUTES.toSeconds(5);
+
+    private AnnoPageRepository apRepository;
+    private ExistenceFilter    existenceFilter;
+
+    @BeforeEach
+    public void setup() {
+        apRepository = mock(AnnoPageRepository.class);
+        FTSettings settings = mock(FTSettings.class);
+        given(settings.getNotFoundCacheSeconds()).willReturn(60);
+        existenceFilter = new ExistenceFilter(apRepository, settings);
+
+        given(apRepository.estimateCount(any())).willReturn(2L);
+        givenPageIds(AnnoPage.class, false, List.of(page("pg1", "de", 1000L), page("pg2", null, 3000L)));
+        givenPageIds(TranslationAnnoPage.class, false, List.of(page("pg1", "en", 2000L)));
+        givenPageIds(AnnoPage.class, true, List.of());
+        givenPageIds(TranslationAnnoPage.class, true, List.of());
+        given(apRepository.findLastPageId(AnnoPage.class)).willReturn(id(3000L));
+        given(apRepository.findLastPageId(TranslationAnnoPage.class)).willReturn(id(2000L));
+    }
+
+    private void givenPageIds(Class<? extends AnnoPage> clazz, boolean idAfter, List<Document> pageIds) {
+        willAnswer(invocation -> cursor(pageIds)).given(apRepository)
+                .findPageIds(eq(clazz), idAfter ? notNull() : isNull());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static MorphiaCursor<Document> cursor(List<Document> documents) {
+        Iterator<Document> iterator = documents.iterator();
+        MorphiaCursor<Document> cursor = mock(MorphiaCursor.class);
+        given(cursor.hasNext()).willAnswer(invocation -> iterator.hasNext());
+        given(cursor.next()).willAnswer(invocation -> iterator.next());
+        return cursor;
+    }
+
+    /**
+     * @param seconds time at which the id was generated, in seconds since the epoch
+     */
+    private static ObjectId id(long seconds) {
+        return new ObjectId(new Date(TimeUnit.SECONDS.toMillis(seconds)));
+    }
+
+    private static Document page(String pageId, String lang, long insertedSeconds) {
+        Document result = new Document("_id", id(insertedSeconds)).append("dsId", "ds1").append("lcId", "lc1")
+                .append("pgId", pageId);
+        if (lang != null) {
+            result.append("lang", lang);
+        }
+        return result;
+    }
+
+    @Test
+    public void testEverythingMightExistBeforeBuild() {
+        assertTrue(existenceFilter.recordMightExist("ds1", "lc2"));
+        assertTrue(existenceFilter.pageMightExist("ds1", "lc1", "pg3", null));
+        assertTrue(existenceFilter.annotationMightExist("ds1", "lc2", "an1"));
+    }
+
+    @Test
+    public void testFilter() {
+        existenceFilter.rebuild();
+
+        assertTrue(existenceFilter.recordMightExist("ds1", "lc1"));
+        assertTrue(existenceFilter.pageMightExist("ds1", "lc1", "pg1", null));
+        assertTrue(existenceFilter.pageMightExist("ds1", "lc1", "pg1", "de"));
+        assertTrue(existenceFilter.pageMightExist("ds1", "lc1", "pg1", "en"));
+        assertTrue(existenceFilter.pageMightExist("ds1", "lc1", "pg2", null));
+        assertTrue(existenceFilter.annotationMightExist("ds1", "lc1", "an1"));
+        assertTrue(existenceFilter.resourceMightExist("ds1", "lc1", "res1"));
+
+        assertFalse(existenceFilter.recordMightExist("ds1", "lc2"));
+        assertFalse(existenceFilter.pageMightExist("ds1", "lc1", "pg3", null));
+        assertFalse(existenceFilter.pageMightExist("ds1", "lc1", "pg2", "en"));
+        assertFalse(existenceFilter.annotationMightExist("ds1", "lc2", "an1"));
+        assertFalse(existenceFilter.resourceMightExist("ds2", "lc1", "res1"));
+    }
+
+    @Test
+    public void testRefresh() {
+        existenceFilter.rebuild();
+        givenPageIds(AnnoPage.class, true, List.of(page("pg3", null, 4000L)));
+        existenceFilter.refresh();
+        assertTrue(existenceFilter.pageMightExist("ds1", "lc1", "pg3", null));
+    }
+
+    /**
+     * Records and pages that aren't in the filter are rejected without querying the database
+     */
+    @Test
+    public void testMissingPagesAreNotQueried() {
+        existenceFilter.rebuild();
+
+        assertFalse(existenceFilter.pageMightExist("ds1", "lc1", "pg4", null));
+        assertFalse(existenceFilter.pageMightExist("ds1", "lc1", "pg4", "en"));
+        assertFalse(existenceFilter.recordMightExist("ds1", "lc4"));
+        verify(apRepository, never()).existsOriginalByPageId(any(), any(), any());
+        verify(apRepository, never()).existsOriginalOrTranslationByPageIdLang(any(), any(), any(), any());
+        verify(apRepository, never()).existForEuropeanaId(any(), any(), any());
+    }
+
+    /**
+     * The pages to add are found using the highest _id (insert time) in the database, not the modified date set by the
+     * loader, with some overlap because ObjectIds are generated by the clients that save the pages
+     */
+    @Test
+    public void testRefreshUsesHighestId() {
+        existenceFilter.rebuild();
+        existenceFilter.refresh();
+        verify(apRepository).findPageIds(eq(AnnoPage.class), argThat(generatedAt(3000L - OVERLAP_SECONDS)));
+        verify(apRepository).findPageIds(eq(TranslationAnnoPage.class), argThat(generatedAt(2000L - OVERLAP_SECONDS)));
+
+        // a page with an older modified date is found because it has a newer _id
+        givenPageIds(TranslationAnnoPage.class, true, List.of(page("pg2", "en", TimeUnit.HOURS.toSeconds(1))));
+        existenceFilter.refresh();
+        assertTrue(existenceFilter.pageMightExist("ds1", "lc1", "pg2", "en"));
+        existenceFilter.refresh();
+        verify(apRepository).findPageIds(eq(TranslationAnnoPage.class),
+                argThat(generatedAt(TimeUnit.HOURS.toSeconds(1) - OVERLAP_SECONDS)));
+    }
+
+    private static ArgumentMatcher<ObjectId> generatedAt(long seconds) {
+        return id -> id != null && id.getTimestamp() == seconds;
+    }
+
+    @Test
+    public void testNotFound() {
+        existenceFilter.pageNotFound("ds1", "lc1", "pg1", "de");
+        existenceFilter.annotationNotFound("ds1", "lc1", "an1");
+
+        assertFalse(existenceFilter.pageMightExist("ds1", "lc1", "pg1", "de"));
+        assertTrue(existenceFilter.pageMightExist("ds1", "lc1", "pg1", null));
+        assertFalse(existenceFilter.annotationMightExist("ds1", "lc1", "an1"));
+        assertTrue(existenceFilter.annotationMightExist("ds1", "lc1", "an2"));
+    }
+
+    @Test
+    public void testBloomFilterFalsePositives() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put("/ds1/lc" + i);
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain("/ds1/lc" + i));
+            if (filter.mightContain("/ds2/lc" + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 200, "Too many false positives: " + falsePositives);
+    }
+}
@@ -0,0 +1,110 @@
+package eu.europeana.fulltext.api.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.morphia.query.internal.MorphiaCursor;
+import eu.europeana.fulltext.api.config.FTSettings;
+import eu.europeana.fulltext.api.config.SerializationConfig;
+import eu.europeana.fulltext.entity.Resource;
+import eu.europeana.fulltext.repository.AnnoPageCursor;
+import eu.europeana.fulltext.repository.AnnoPageRepository;
+import eu.europeana.fulltext.repository.ResourceRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.TestPropertySource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+
+import static eu.europeana.fulltext.TestUtils.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests the ndjson export
+ */
+@TestPropertySource(locations = "classpath:fulltext-test.properties")
+@SpringBootTest(classes = {ExportService.class, FTSettings.class, EDM2IIIFMapping.class, SerializationConfig.class})
+public class ExportServiceTest {
+
+    @Autowired
+    private ExportService exportService;
+    @Autowired
+    private ObjectMapper mapper;
+
+    @MockBean
+    private FTService ftService;
+    @MockBean
+    private AnnoPageRepository apRepository;
+    @MockBean
+    private ResourceRepository resRepository;
+
+    @SuppressWarnings("unchecked")
+    private static <T, C extends Iterator<T>> C cursor(Class<?> cursorClass, List<T> items) {
+        Iterator<T> iterator = items.iterator();
+        C cursor = (C) mock(cursorClass);
+        given(cursor.hasNext()).willAnswer(invocation -> iterator.hasNext());
+        given(cursor.next()).willAnswer(invocation -> iterator.next());
+        return cursor;
+    }
+
+    private String[] lines(ByteArrayOutputStream out) {
+        String result = out.toString(StandardCharsets.UTF_8);
+        assertTrue(result.endsWith("\n"));
+        return result.split("\n");
+    }
+
+    @Test
+    public void testExportResources() throws IOException {
+        MorphiaCursor<Resource> cursor = cursor(MorphiaCursor.class, List.of(res_1, res_2));
+        given(resRepository.streamOriginals(eq("ds1"), isNull(), anyInt())).willReturn(cursor);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(2, exportService.exportResources("ds1", null, out));
+
+        String[] lines = lines(out);
+        assertEquals(2, lines.length);
+        JsonNode first = mapper.readTree(lines[0]);
+        assertTrue(first.get("id").asText().endsWith("/res1"));
+        assertEquals(res_1.getValue(), first.get("value").asText());
+        assertNull(first.get("@context"));
+        assertTrue(mapper.readTree(lines[1]).get("id").asText().endsWith("/res2"));
+        verify(cursor).close();
+    }
+
+    @Test
+    public void testExportAnnoPages() throws IOException {
+        AnnoPageCursor cursor = cursor(AnnoPageCursor.class, List.of(anp_1));
+        given(apRepository.streamOriginals(eq("ds1"), eq("lc1"), anyInt())).willReturn(cursor);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(1, exportService.exportAnnoPages("ds1", "lc1", true, out));
+
+        String[] lines = lines(out);
+        assertEquals(1, lines.length);
+        JsonNode page = mapper.readTree(lines[0]);
+        assertEquals("AnnotationPage", page.get("type").asText());
+        assertEquals(anp_1.getAns().size(), page.get("items").size());
+        verify(cursor).close();
+    }
+
+    @Test
+    public void testExportNothing() throws IOException {
+        MorphiaCursor<Resource> cursor = cursor(MorphiaCursor.class, List.of());
+        given(resRepository.streamOriginals(eq("ds2"), isNull(), anyInt())).willReturn(cursor);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(0, exportService.exportResources("ds2", null, out));
+        assertEquals(0, out.size());
+    }
+}
@@ -1,15 +1,27 @@
 package eu.europeana.fulltext.api.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import eu.europeana.fulltext.AnnotationType;
 import eu.europeana.fulltext.api.config.FTSettings;
+import eu.europeana.fulltext.api.config.SerializationConfig;
+import eu.europeana.fulltext.api.model.AnnotationWrapper;
 import eu.europeana.fulltext.api.model.FTResource;
-import eu.europeana.fulltext.api.model.v2.AnnotationPageV2;
+import eu.europeana.fulltext.api.model.info.SummaryCanvas;
+import eu.europeana.fulltext.api.model.info.SummaryManifest;
+import eu.europeana.fulltext.api.model.v2.AnnotationBodyV2;
 import eu.europeana.fulltext.api.model.v2.AnnotationV2;
-import eu.europeana.fulltext.api.model.v3.AnnotationPageV3;
+import eu.europeana.fulltext.api.model.v3.AnnotationBodyV3;
 import eu.europeana.fulltext.api.model.v3.AnnotationV3;
 import eu.europeana.fulltext.api.service.exception.AnnoPageDoesNotExistException;
 import eu.europeana.fulltext.api.service.exception.ResourceDoesNotExistException;
+import eu.europeana.fulltext.entity.AnnoPage;
+import eu.europeana.fulltext.entity.Annotation;
+import eu.europeana.fulltext.entity.RecordPageIndex;
+import eu.europeana.fulltext.entity.Resource;
+import eu.europeana.fulltext.entity.TranslationAnnoPage;
 import eu.europeana.fulltext.repository.AnnoPageRepository;
+import eu.europeana.fulltext.repository.RecordPageIndexRepository;
 import eu.europeana.fulltext.repository.ResourceRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -19,11 +31,21 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.test.context.TestPropertySource;
 
 import java.util.Collections;
+import java.util.Date;
+import java.util.List;
 
 import static eu.europeana.fulltext.TestUtils.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.unitils.reflectionassert.ReflectionAssert.assertReflectionEquals;
 
 /**
@@ -31,7 +53,8 @@ import static org.unitils.reflectionassert.ReflectionAssert.assertReflectionEqua
  * TODO - add some FTResource handling test cases (prepared two FTResource objects already in the TestUtils class)
  */
 @TestPropertySource(locations = "classpath:fulltext-test.properties")
-@SpringBootTest(classes = {FTService.class, FTSettings.class, EDM2IIIFMapping.class})
+@SpringBootTest(classes = {FTService.class, AnnoPageCache.class, ExistenceFilter.class, FTSettings.class,
+        EDM2IIIFMapping.class})
 public class FTServiceTest {
 
 
@@ -42,38 +65,38 @@ public class FTServiceTest {
     private AnnoPageRepository apRepository;
     @MockBean
     private ResourceRepository resRepository;
+    @MockBean
+    private RecordPageIndexRepository pageIndexRepository;
 
     @MockBean
     private ObjectMapper mapper;
 
     @BeforeEach
     public void setup(){
-        given(apRepository.existsOriginalByPageId(eq("ds1"), eq("lc1"), eq("pg1")))
-                .willReturn(true);
         given(apRepository.findOriginalByPageId(eq("ds1"), eq("lc1"), eq("pg1"), any()))
                 .willReturn(anp_1);
         //"ds1", "lc1", "pg1"
-        given(apRepository.findOriginalByPageIdLang(eq("ds1"), eq("lc1"), eq("pg1"), any(), eq("de")))
+        given(apRepository.findOriginalOrTranslationByPageIdLang(eq("ds1"), eq("lc1"), eq("pg1"), any(), eq("de")))
                 .willReturn(anp_1);
         given(apRepository.existsWithAnnoId(eq("ds1"), eq("lc1"), eq("an1")))
                 .willReturn(true);
-        given(apRepository.findOriginalByAnnoId(eq("ds1"), eq("lc1"), eq("an1")))
+        given(apRepository.findOriginalOrTranslationByAnnoId(eq("ds1"), eq("lc1"), eq("an1")))
                 .willReturn(anp_1);
         given(apRepository.existsWithAnnoId(eq("ds1"), eq("lc1"), eq("an2")))
                 .willReturn(true);
-        given(apRepository.findOriginalByAnnoId(eq("ds1"), eq("lc1"), eq("an2")))
+        given(apRepository.findOriginalOrTranslationByAnnoId(eq("ds1"), eq("lc1"), eq("an2")))
                 .willReturn(anp_1);
         given(apRepository.existsWithAnnoId(eq("ds1"), eq("lc1"), eq("an3")))
                 .willReturn(true);
-        given(apRepository.findOriginalByAnnoId(eq("ds1"), eq("lc1"), eq("an3")))
+        given(apRepository.findOriginalOrTranslationByAnnoId(eq("ds1"), eq("lc1"), eq("an3")))
                 .willReturn(anp_1);
         given(resRepository.existsOriginal(eq("ds1"), eq("lc1"), eq("res1")))
                 .willReturn(true);
-        given(resRepository.findOriginalByResId(eq("ds1"), eq("lc1"), eq("res1")))
+        given(resRepository.findOriginalOrTranslationByResId(eq("ds1"), eq("lc1"), eq("res1")))
                 .willReturn(res_1);
         given(resRepository.existsOriginal(eq("ds1"), eq("lc1"), eq("res2")))
                 .willReturn(true);
-        given(resRepository.findOriginalByResId(eq("ds1"), eq("lc1"), eq("res2")))
+        given(resRepository.findOriginalOrTranslationByResId(eq("ds1"), eq("lc1"), eq("res2")))
                 .willReturn(res_2);
     }
 
@@ -81,26 +104,99 @@ public class FTServiceTest {
 
     /**
      * First create an AnnotationPageV2 through the FTService and EDM2IIIFMapping code (with mockito'd entity classes
-     * instead of retrieving from Mongo); and deep compare the result with a manually constructed AnnotationPageV2
-     * object containing the same identifiers (see TestUtils.java for details)
+     * instead of retrieving from Mongo); and check that its output is identical to that of a manually constructed
+     * AnnotationPageV2 object containing the same identifiers (see TestUtils.java for details)
      */
     @Test
-    public void testGetAnnotationPageV2() throws AnnoPageDoesNotExistException {
+    public void testGetAnnotationPageV2() throws Exception {
         prepareAnnotationPageV2();
-        AnnotationPageV2 ap = ftService.generateAnnoPageV2(ftService.fetchAnnoPage("ds1", "lc1", "pg1", Collections.emptyList(), "de"),false);
-        assertReflectionEquals(anpv2_1, ap);
+        AnnotationWrapper ap = ftService.generateAnnoPageV2(ftService.fetchAnnoPage("ds1", "lc1", "pg1", Collections.emptyList(), "de", null),false);
+        assertSameOutput(anpv2_1, ap);
+
+        // json instead of json-ld
+        ap.setContext(null);
+        anpv2_1.setContext(null);
+        assertSameOutput(anpv2_1, ap);
     }
 
     /**
      * First create an AnnotationPageV3 through the FTService and EDM2IIIFMapping code (with mockito'd entity classes
-     * instead of retrieving from Mongo); and deep compare the result with a manually constructed AnnotationPageV3
-     * object containing the same identifiers (see TestUtils.java for details)
+     * instead of retrieving from Mongo); and check that its output is identical to that of a manually constructed
+     * AnnotationPageV3 object containing the same identifiers (see TestUtils.java for details)
      */
     @Test
-    public void testGetAnnotationPageV3() throws AnnoPageDoesNotExistException {
+    public void testGetAnnotationPageV3() throws Exception {
         prepareAnnotationPageV3();
-        AnnotationPageV3 ap = ftService.generateAnnoPageV3(ftService.fetchAnnoPage("ds1", "lc1", "pg1", Collections.emptyList(), null),false);
-        assertReflectionEquals(anpv3_1, ap);
+        AnnotationWrapper ap = ftService.generateAnnoPageV3(ftService.fetchAnnoPage("ds1", "lc1", "pg1", Collections.emptyList(), null, null),false);
+        assertSameOutput(anpv3_1, ap);
+
+        ap.setContext(null);
+        anpv3_1.setContext(null);
+        assertSameOutput(anpv3_1, ap);
+    }
+
+    /**
+     * Check that page annotations are listed first and that the resource is dereferenced in those annotations only
+     */
+    @Test
+    public void testGetAnnotationPageDerefResource() throws Exception {
+        Annotation pageAnnotation = new Annotation("an4", AnnotationType.PAGE.getAbbreviation(), null, null);
+        AnnoPage annoPage = new AnnoPage("ds1", "lc1", "pg1", anp_1.getTgtId(), "de", res_1);
+        annoPage.setAns(List.of(ann_1, pageAnnotation, ann_2));
+
+        AnnotationBodyV2 pageBodyV2 = new AnnotationBodyV2(ftres_1.getId());
+        pageBodyV2.setType(ftres_1.getType());
+        pageBodyV2.setLanguage(ftres_1.getLanguage());
+        pageBodyV2.setValue(ftres_1.getValue());
+        pageBodyV2.setSource(ftres_1.getSource());
+        pageBodyV2.setRights(ftres_1.getRights());
+        AnnotationV2 pageAnnotationV2 = new AnnotationV2(annv2_1.getId().replace("an1", "an4"));
+        pageAnnotationV2.setMotivation(annv2_1.getMotivation());
+        pageAnnotationV2.setDcType(AnnotationType.PAGE.getDisplayName());
+        pageAnnotationV2.setResource(pageBodyV2);
+        pageAnnotationV2.setOn(new String[]{anp_1.getTgtId()});
+        prepareAnnotationPageV2();
+        anpv2_1.setResources(new AnnotationV2[]{pageAnnotationV2, annv2_1, annv2_2});
+        assertSameOutput(anpv2_1, ftService.generateAnnoPageV2(annoPage, true));
+
+        AnnotationBodyV3 pageBodyV3 = new AnnotationBodyV3(ftres_1.getId());
+        pageBodyV3.setType(ftres_1.getType());
+        pageBodyV3.setLanguage(ftres_1.getLanguage());
+        pageBodyV3.setValue(ftres_1.getValue());
+        pageBodyV3.setSource(ftres_1.getSource());
+        pageBodyV3.setRights(ftres_1.getRights());
+        AnnotationV3 pageAnnotationV3 = new AnnotationV3(annv3_1.getId().replace("an1", "an4"));
+        pageAnnotationV3.setMotivation(annv3_1.getMotivation());
+        pageAnnotationV3.setDcType(AnnotationType.PAGE.getDisplayName());
+        pageAnnotationV3.setBody(pageBodyV3);
+        pageAnnotationV3.setTarget(new String[]{anp_1.getTgtId()});
+        prepareAnnotationPageV3();
+        anpv3_1.setItems(new AnnotationV3[]{pageAnnotationV3, annv3_1, annv3_2});
+        assertSameOutput(anpv3_1, ftService.generateAnnoPageV3(annoPage, true));
+    }
+
+    /**
+     * Check that a resource that wasn't loaded with the AnnoPage is only retrieved if the page has a page annotation
+     */
+    @Test
+    public void testDerefResourceOnlyForPageAnnotations() {
+        AnnoPage annoPage = new AnnoPage("ds1", "lc1", "pg1", anp_1.getTgtId(), "de",
+                new Resource("res1", null, null, null, "ds1", "lc1"));
+        annoPage.setAns(List.of(ann_1, ann_3));
+        ftService.generateAnnoPageV2(annoPage, true);
+        ftService.generateAnnoPageV3(annoPage, true);
+        verify(resRepository, never()).findOriginalOrTranslationByResId(any(), any(), any());
+
+        annoPage.setAns(List.of(ann_1, new Annotation("an4", AnnotationType.PAGE.getAbbreviation(), null, null)));
+        ftService.generateAnnoPageV2(annoPage, true);
+        verify(resRepository, times(1)).findOriginalOrTranslationByResId("ds1", "lc1", "res1");
+    }
+
+    private static void assertSameOutput(Object expected, Object actual) throws JsonProcessingException {
+        ObjectMapper realMapper = new SerializationConfig().mapper();
+        assertEquals(realMapper.writeValueAsString(expected), realMapper.writeValueAsString(actual));
+        assertEquals(realMapper.writerWithDefaultPrettyPrinter().writeValueAsString(expected),
+                     realMapper.writerWithDefaultPrettyPrinter().writeValueAsString(actual));
     }
 
     @Test
@@ -147,4 +243,93 @@ public class FTServiceTest {
         assertReflectionEquals(ftres_2, ftr);
     }
 
+    /**
+     * Check that the summary and page existence are retrieved from the record's page index plus one query for the
+     * translation languages, without querying AnnoPages
+     */
+    @Test
+    public void testRecordPageIndex() throws AnnoPageDoesNotExistException {
+        TranslationAnnoPage translation = translation("pg1", "fr", new Date(anp_1.getModified().getTime() + 1000));
+        RecordPageIndex pageIndex = new RecordPageIndex("ds1", "lc1");
+        pageIndex.addPage(anp_1);
+        given(pageIndexRepository.findByRecordId("ds1", "lc1")).willReturn(pageIndex);
+        given(apRepository.findTranslationLanguages("ds1", "lc1")).willReturn(List.of(translation));
+
+        SummaryManifest summary = ftService.collectAnnoPageInfo("ds1", "lc1");
+        assertEquals(1, summary.getCanvases().size());
+        SummaryCanvas canvas = summary.getCanvases().get(0);
+        assertEquals(2, canvas.getAnnotations().size());
+        assertTrue(canvas.getAnnotations().get(1).getId().endsWith("/ds1/lc1/annopage/pg1?lang=fr"));
+        assertEquals(translation.getModified(), summary.getModified());
+
+        // deleting the translation doesn't require a new index
+        given(apRepository.findTranslationLanguages("ds1", "lc1")).willReturn(Collections.emptyList());
+        summary = ftService.collectAnnoPageInfo("ds1", "lc1");
+        assertEquals(1, summary.getCanvases().get(0).getAnnotations().size());
+        assertEquals(anp_1.getModified(), summary.getModified());
+
+        assertTrue(ftService.doesRecordExist("ds1", "lc1"));
+        verify(apRepository, never()).findOrigPages(any(), any());
+        verify(pageIndexRepository, never()).generate(any(), any());
+        verify(pageIndexRepository, never()).save(any());
+    }
+
+    /**
+     * Check that a missing page index (of a record loaded before page indexes were introduced) is generated and saved
+     */
+    @Test
+    public void testMissingRecordPageIndex() throws AnnoPageDoesNotExistException {
+        RecordPageIndex generated = new RecordPageIndex("ds1", "lc1");
+        generated.addPage(anp_1);
+        given(pageIndexRepository.generate("ds1", "lc1")).willReturn(generated);
+
+        SummaryManifest summary = ftService.collectAnnoPageInfo("ds1", "lc1");
+        assertEquals(1, summary.getCanvases().size());
+        verify(pageIndexRepository).save(generated);
+
+        assertFalse(ftService.doesRecordExist("ds1", "lc2"));
+        verify(pageIndexRepository, never()).save(argThat(index -> "lc2".equals(index.getLcId())));
+    }
+
+    private static TranslationAnnoPage translation(String pgId, String lang, Date modified) {
+        TranslationAnnoPage result = new TranslationAnnoPage();
+        result.setDsId("ds1");
+        result.setLcId("lc1");
+        result.setPgId(pgId);
+        result.setLang(lang);
+        result.setModified(modified);
+        return result;
+    }
+
+    /**
+     * Check that the modified date of an AnnoPage is returned if the page exists (in the requested language), and null
+     * otherwise. This is used to handle HEAD and conditional requests.
+     */
+    @Test
+    public void testGetAnnoPageModified() {
+        Date translationModified = new Date(anp_1.getModified().getTime() + 1000);
+        given(apRepository.findModified("ds1", "lc1", "pg1", null)).willReturn(anp_1.getModified());
+        given(apRepository.findModified("ds1", "lc1", "pg1", "fr")).willReturn(translationModified);
+
+        assertEquals(anp_1.getModified(), ftService.getAnnoPageModified("ds1", "lc1", "pg1", null));
+        assertEquals(translationModified, ftService.getAnnoPageModified("ds1", "lc1", "pg1", "fr"));
+        assertNull(ftService.getAnnoPageModified("ds1", "lc1", "pg1", "nl"));
+        assertNull(ftService.getAnnoPageModified("ds1", "lc1", "pg2", null));
+    }
+
+    /**
+     * Check that a (legacy) AnnoPage without modified date is still reported as existing
+     */
+    @Test
+    public void testDoesAnnoPageExist() {
+        given(apRepository.existsOriginalByPageId("ds1", "lc1", "pg1")).willReturn(true);
+        given(apRepository.existsOriginalOrTranslationByPageIdLang("ds1", "lc1", "pg1", "fr")).willReturn(true);
+
+        assertNull(ftService.getAnnoPageModified("ds1", "lc1", "pg1", null));
+        assertTrue(ftService.doesAnnoPageExist("ds1", "lc1", "pg1", null));
+        assertTrue(ftService.doesAnnoPageExist("ds1", "lc1", "pg1", "fr"));
+        assertFalse(ftService.doesAnnoPageExist("ds1", "lc1", "pg1", "nl"));
+        assertFalse(ftService.doesAnnoPageExist("ds1", "lc1", "pg2", null));
+    }
+
 }
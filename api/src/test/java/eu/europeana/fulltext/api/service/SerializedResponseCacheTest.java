@@ -0,0 +1,59 @@
+package eu.europeana.fulltext.api.service;
+
+import eu.europeana.fulltext.api.config.FTSettings;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests the SerializedResponseCache
+ */
+public class SerializedResponseCacheTest {
+
+    private static final String KEY  = "/ds1/lc1/annopage/pg1|";
+    private static final String ETAG = "W/\"test\"";
+    private static final byte[] BODY = "{\"test\":\"value\"}".getBytes(StandardCharsets.UTF_8);
+
+    private SerializedResponseCache responseCache;
+
+    @BeforeEach
+    public void setup() {
+        FTSettings settings = mock(FTSettings.class);
+        given(settings.getResponseCacheMaxSizeMb()).willReturn(1);
+        responseCache = new SerializedResponseCache(settings);
+    }
+
+    @Test
+    public void testCacheWhileWriting() throws IOException {
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        OutputStream out = responseCache.cacheWhileWriting(KEY, ETAG, response);
+        out.write(BODY);
+        // nothing is cached until the stream is closed
+        assertNull(responseCache.get(KEY, ETAG));
+        out.close();
+
+        assertArrayEquals(BODY, response.toByteArray());
+        assertArrayEquals(BODY, responseCache.get(KEY, ETAG));
+        assertNull(responseCache.get(KEY, "W/\"other\""));
+    }
+
+    @Test
+    public void testLargeResponseNotCached() throws IOException {
+        byte[] largeBody = new byte[1024 * 1024];
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        OutputStream out = responseCache.cacheWhileWriting(KEY, ETAG, response);
+        out.write(largeBody);
+        out.close();
+
+        assertEquals(largeBody.length, response.size());
+        assertNull(responseCache.get(KEY, ETAG));
+    }
+}
@@ -2,8 +2,12 @@ package eu.europeana.fulltext.api.web;
 
 
 import eu.europeana.fulltext.api.config.FTSettings;
+import eu.europeana.fulltext.api.model.info.SummaryAnnoPage;
+import eu.europeana.fulltext.api.model.info.SummaryCanvas;
+import eu.europeana.fulltext.api.model.info.SummaryManifest;
 import eu.europeana.fulltext.api.service.CacheUtils;
 import eu.europeana.fulltext.api.service.FTService;
+import eu.europeana.fulltext.api.service.SerializedResponseCache;
 import eu.europeana.fulltext.api.service.exception.AnnoPageDoesNotExistException;
 import eu.europeana.fulltext.api.service.exception.ResourceDoesNotExistException;
 import eu.europeana.fulltext.api.service.exception.SerializationException;
@@ -16,14 +20,24 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.ResultMatcher;
 
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
 import static eu.europeana.fulltext.TestUtils.*;
 import static eu.europeana.fulltext.api.config.FTDefinitions.*;
 import static org.hamcrest.CoreMatchers.*;
 import static org.hamcrest.Matchers.hasItems;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.startsWith;
 import static org.mockito.BDDMockito.eq;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -52,6 +66,7 @@ public class FTControllerTest {
 
     private static final String JSON_RES_1_OUTPUT = "{FTResource_1 : DATA}";
     private static final String JSON_RES_2_OUTPUT = "{FTResource_2 : DATA}";
+    private static final String JSON_SUMMARY_OUTPUT = "{Summary : DATA}";
 
     private static final String THE_WRONG_ETAG = "W/\"abcdef0123456789\"";
     private static final String ANOTHER_WRONG_ETAG = "W/\"bcdefa1234567890\"";
@@ -96,13 +111,15 @@ public class FTControllerTest {
     private FTService ftService;
     @MockBean
     private FTSettings ftSettings;
+    @MockBean
+    private SerializedResponseCache responseCache;
 //    @MockBean
 //    private CacheUtils cacheUtils;
 
     @BeforeEach
     public void setup() throws AnnoPageDoesNotExistException, SerializationException, ResourceDoesNotExistException {
 
-        given(ftService.fetchAnnoPage(any(), any(), any(), any(), any())).willReturn(anp_1);
+        given(ftService.fetchAnnoPage(any(), any(), any(), any(), any(), any())).willReturn(anp_1);
         given(ftService.generateAnnoPageV2(anp_1, false)).willReturn(anpv2_1);
         given(ftService.generateAnnoPageV3(anp_1, false)).willReturn(anpv3_1);
         given(ftService.fetchAPAnnotation(any(), any(), any())).willReturn(anp_1);
@@ -115,21 +132,27 @@ public class FTControllerTest {
 
         given(ftService.fetchFTResource(any(), any(), eq("res1"))).willReturn(ftres_1);
         given(ftService.fetchFTResource(any(), any(), eq("res2"))).willReturn(ftres_2);
+        given(ftService.getResourceHash(any(), any(), eq("res1"))).willReturn(ftres_1.getHash());
+        given(ftService.getResourceHash(any(), any(), eq("res2"))).willReturn(ftres_2.getHash());
+
+        givenSerialised(anpv2_1, JSONLD_ANP_V2_OUTPUT);
+        givenSerialised(annv2_1, JSONLD_ANN_V2_1_OUTPUT);
+        givenSerialised(annv2_2, JSONLD_ANN_V2_2_OUTPUT);
+        givenSerialised(annv2_3, JSONLD_ANN_V2_3_OUTPUT);
+        givenSerialised(anpv3_1, JSONLD_ANP_V3_OUTPUT);
+        givenSerialised(annv3_1, JSONLD_ANN_V3_1_OUTPUT);
+        givenSerialised(annv3_2, JSONLD_ANN_V3_2_OUTPUT);
+        givenSerialised(annv3_3, JSONLD_ANN_V3_3_OUTPUT);
 
-        given(ftService.serialise(anpv2_1)).willReturn(JSONLD_ANP_V2_OUTPUT);
-        given(ftService.serialise(annv2_1)).willReturn(JSONLD_ANN_V2_1_OUTPUT);
-        given(ftService.serialise(annv2_2)).willReturn(JSONLD_ANN_V2_2_OUTPUT);
-        given(ftService.serialise(annv2_3)).willReturn(JSONLD_ANN_V2_3_OUTPUT);
-        given(ftService.serialise(anpv3_1)).willReturn(JSONLD_ANP_V3_OUTPUT);
-        given(ftService.serialise(annv3_1)).willReturn(JSONLD_ANN_V3_1_OUTPUT);
-        given(ftService.serialise(annv3_2)).willReturn(JSONLD_ANN_V3_2_OUTPUT);
-        given(ftService.serialise(annv3_3)).willReturn(JSONLD_ANN_V3_3_OUTPUT);
+        givenSerialised(ftres_1, JSON_RES_1_OUTPUT);
+        givenSerialised(ftres_2, JSON_RES_2_OUTPUT);
 
-        given(ftService.serialise(ftres_1)).willReturn(JSON_RES_1_OUTPUT);
-        given(ftService.serialise(ftres_2)).willReturn(JSON_RES_2_OUTPUT);
+        given(ftService.getAnnoPageModified(any(), any(), startsWith("a"), any())).willReturn(lastModifiedDate);
+        given(ftService.getAnnoPageModified(any(), any(), startsWith("g"), any())).willReturn(lastModifiedDate);
+        given(ftService.getAnnoPageModified(any(), any(), startsWith("t"), any())).willReturn(lastModifiedDate);
+        given(ftService.getAnnotationModified(any(), any(), any())).willReturn(lastModifiedDate);
 
-        given(ftService.doesAnnoPageExist(any(), any(), startsWith("a"), any())).willReturn(true);
-        given(ftService.doesAnnoPageExist(any(), any(), startsWith("z"), any())).willReturn(false);
+        given(responseCache.cacheWhileWriting(any(), any(), any())).willAnswer(invocation -> invocation.getArgument(2));
 
         given(ftSettings.getAppVersion()).willReturn("v1.0-test");
         given(ftService.getSettings()).willReturn(ftSettings);
@@ -152,12 +175,22 @@ public class FTControllerTest {
                 "iseealittle" + "sillypetbesideaman" + "an1", CacheUtils.dateToZonedUTC(lastModifiedDate),
                 "3" + ftSettings.getAppVersion(), true);
         dieKuckeBackenWollteETag = CacheUtils.generateSimpleETag(
-                "esgabeinefraures1" + "de" + KUCKEBACKENWOLLTE + ftSettings.getAppVersion(), true);
+                "esgabeinefraures1" + ftres_1.getHash() + ftSettings.getAppVersion(), true);
         dasTeigWollteNichtAufgehenETag = CacheUtils.generateSimpleETag(
-                "aberdasteigres2" + "de" + WUERDEJANICHTAUFGEHEN + ftSettings.getAppVersion(), true);
+                "aberdasteigres2" + ftres_2.getHash() + ftSettings.getAppVersion(), true);
         multiTeigWollteNichtAufgehenETag = THE_WRONG_ETAG + "," + dasTeigWollteNichtAufgehenETag + "," + ANOTHER_WRONG_ETAG;
     }
 
+    /**
+     * Let the mocked FTService write the provided output when serialising an object
+     */
+    private void givenSerialised(Object data, String output) throws SerializationException {
+        willAnswer(invocation -> {
+            invocation.getArgument(1, OutputStream.class).write(output.getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).given(ftService).serialise(eq(data), any(OutputStream.class), anyBoolean());
+    }
+
     /**
      * Basic Annotationpage test (no version supplied)
      * Default we expect a v2 Annotationpage
@@ -172,6 +205,25 @@ public class FTControllerTest {
                 .andExpect(content().json(JSONLD_ANP_V2_OUTPUT));
     }
 
+    /**
+     * When a serialized response is cached, it should be returned without generating a new Annotationpage
+     */
+    @Test
+    public void testGetCachedAnnopage() throws Exception {
+        given(responseCache.isEnabled()).willReturn(true);
+        given(ftService.getAnnoPageModified("cache", "hit", "pg1", null)).willReturn(lastModifiedDate);
+        given(responseCache.get(startsWith("/cache/hit/annopage/pg1|"), any()))
+                .willReturn(JSONLD_ANP_V3_OUTPUT.getBytes(StandardCharsets.UTF_8));
+
+        this.mockMvc.perform(get("/presentation/cache/hit/annopage/pg1"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andExpect(content().json(JSONLD_ANP_V3_OUTPUT));
+        // the AnnoPage itself should not be loaded
+        verify(ftService, never()).fetchAnnoPage(any(), any(), any(), any(), any(), any());
+        verify(ftService, never()).generateAnnoPageV2(any(), anyBoolean());
+    }
+
     /**
      * Basic Annotationpage test: version 2 / 3 requested through either the
      * format GET parameter or through the Accept header
@@ -281,7 +333,11 @@ public class FTControllerTest {
         this.mockMvc.perform(head("/presentation/vrolijk/versierde/annopage/annopagetaart"))
                 .andDo(print())
                 .andExpect(status().isOk())
-                .andExpect(header().string(HEADER_CONTENTTYPE, MEDIA_TYPE_JSONLD + ";profile=\"" + MEDIA_TYPE_IIIF_V2 + "\"" + ";" + UTF_8));
+                .andExpect(header().string(HEADER_CONTENTTYPE, MEDIA_TYPE_JSONLD + ";profile=\"" + MEDIA_TYPE_IIIF_V2 + "\"" + ";" + UTF_8))
+                .andExpect(header().string(HEADER_ETAG, CacheUtils.generateETag(
+                        "vrolijk" + "versierde" + "annopagetaart", CacheUtils.dateToZonedUTC(lastModifiedDate),
+                        "2" + ftSettings.getAppVersion(), true)))
+                .andExpect(header().string(HEADER_LASTMODIFIED, containsString(LASTMODIFIED_GMT)));
 
         this.mockMvc.perform(head("/presentation/tergend/zanikende/annopage/zuurpruimen"))
                 .andDo(print())
@@ -347,6 +403,121 @@ public class FTControllerTest {
     }
 
 
+    /**
+     * test the HEAD call for a (legacy) AnnoPage without modified date
+     */
+    @Test
+    public void testDoesAnnoPageWithoutModifiedExist() throws Exception {
+        given(ftService.doesAnnoPageExist("oude", "schoenen", "zonderdatum", null)).willReturn(true);
+
+        this.mockMvc.perform(head("/presentation/oude/schoenen/annopage/zonderdatum"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HEADER_ETAG))
+                .andExpect(header().doesNotExist(HEADER_LASTMODIFIED));
+
+        this.mockMvc.perform(head("/presentation/oude/schoenen/annopage/zuurpruimen"))
+                .andExpect(status().isNotFound());
+    }
+
+    /**
+     * test the annopage summary of a record and the If-None-Match header handling for it
+     */
+    @Test
+    public void testAnnoPageInfo() throws Exception {
+        SummaryManifest summary = new SummaryManifest("dikkertje", "dap");
+        summary.setModified(lastModifiedDate);
+        SummaryCanvas canvas = new SummaryCanvas("canvas/1");
+        canvas.addAnnotation(new SummaryAnnoPage("annopage/1", "nl"));
+        summary.addCanvas(canvas);
+        given(ftService.collectAnnoPageInfo("dikkertje", "dap")).willReturn(summary);
+        givenSerialised(summary, JSON_SUMMARY_OUTPUT);
+        String summaryETag = CacheUtils.generateETag("dikkertje" + "dap" + "annopage/1",
+                CacheUtils.dateToZonedUTC(lastModifiedDate), ftSettings.getAppVersion(), true);
+
+        this.mockMvc.perform(get("/presentation/dikkertje/dap/annopage")
+                .header(HEADER_ACCEPT, MEDIA_TYPE_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HEADER_ETAG, summaryETag))
+                .andExpect(header().exists(HEADER_LASTMODIFIED))
+                .andExpect(content().json(JSON_SUMMARY_OUTPUT));
+
+        this.mockMvc.perform(get("/presentation/dikkertje/dap/annopage")
+                .header(HEADER_ACCEPT, MEDIA_TYPE_JSON)
+                .header(HEADER_IFNONEMATCH, summaryETag))
+                .andExpect(status().isNotModified());
+
+        // a translation that is deleted or added doesn't have to change the modified date, but it changes the ETag
+        SummaryManifest translated = new SummaryManifest("dikkertje", "dap");
+        translated.setModified(lastModifiedDate);
+        SummaryCanvas translatedCanvas = new SummaryCanvas("canvas/1");
+        translatedCanvas.addAnnotation(new SummaryAnnoPage("annopage/1", "nl"));
+        translatedCanvas.addAnnotation(new SummaryAnnoPage("annopage/1?lang=en", "en"));
+        translated.addCanvas(translatedCanvas);
+        given(ftService.collectAnnoPageInfo("dikkertje", "dap")).willReturn(translated);
+        givenSerialised(translated, JSON_SUMMARY_OUTPUT);
+
+        this.mockMvc.perform(get("/presentation/dikkertje/dap/annopage")
+                .header(HEADER_ACCEPT, MEDIA_TYPE_JSON)
+                .header(HEADER_IFNONEMATCH, summaryETag))
+                .andExpect(status().isOk());
+    }
+
+    /**
+     * test the annopage summary of a record of which none of the pages has a modified date
+     */
+    @Test
+    public void testAnnoPageInfoWithoutModified() throws Exception {
+        SummaryManifest summary = new SummaryManifest("dikkertje", "oud");
+        given(ftService.collectAnnoPageInfo("dikkertje", "oud")).willReturn(summary);
+        givenSerialised(summary, JSON_SUMMARY_OUTPUT);
+
+        this.mockMvc.perform(get("/presentation/dikkertje/oud/annopage")
+                .header(HEADER_ACCEPT, MEDIA_TYPE_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HEADER_ETAG))
+                .andExpect(header().doesNotExist(HEADER_LASTMODIFIED))
+                .andExpect(content().json(JSON_SUMMARY_OUTPUT));
+
+        this.mockMvc.perform(get("/presentation/dikkertje/oud/annopage")
+                .header(HEADER_ACCEPT, MEDIA_TYPE_JSON)
+                .header(HEADER_IFMODIFIEDSINCE, LASTMODIFIED_GMT))
+                .andExpect(status().isOk());
+    }
+
+    /**
+     * Test retrieving multiple AnnoPages at once and revalidating them without loading the pages
+     */
+    @Test
+    public void testAnnoPages() throws Exception {
+        given(ftSettings.getAnnoPagesBatchMaxSize()).willReturn(10);
+        given(ftService.fetchAnnoPages(eq("dikkertje"), eq("dap"), eq(List.of("1", "2", "3")), any()))
+                .willReturn(List.of(anp_1));
+        given(ftService.getAnnoPagesModified("dikkertje", "dap", List.of("1", "2", "3")))
+                .willReturn(Map.of(anp_1.getPgId(), lastModifiedDate));
+        givenSerialised(List.of(anpv2_1), "[" + JSONLD_ANP_V2_OUTPUT + "]");
+
+        String eTag = this.mockMvc.perform(get("/presentation/dikkertje/dap/annopages")
+                .param("pages", "1-3")
+                .header(HEADER_ACCEPT, MEDIA_TYPE_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HEADER_ETAG))
+                .andExpect(header().exists(HEADER_LASTMODIFIED))
+                .andExpect(content().string("[" + JSONLD_ANP_V2_OUTPUT + "]"))
+                .andReturn().getResponse().getHeader(HEADER_ETAG);
+
+        this.mockMvc.perform(get("/presentation/dikkertje/dap/annopages")
+                .param("pages", "1,2-3")
+                .header(HEADER_ACCEPT, MEDIA_TYPE_JSON)
+                .header(HEADER_IFNONEMATCH, eTag))
+                .andExpect(status().isNotModified());
+        verify(ftService, times(1)).fetchAnnoPages(any(), any(), any(), any());
+
+        this.mockMvc.perform(get("/presentation/dikkertje/dap/annopages")
+                .param("pages", "1-11")
+                .header(HEADER_ACCEPT, MEDIA_TYPE_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
     /**
      * test for the If-None-Match header handling for AnnoPage
      */
@@ -365,6 +536,8 @@ public class FTControllerTest {
                 .andExpect(content().string(""))
                 .andExpect(status().isNotModified())
                 .andDo(print());
+        // revalidation should not load the annotations
+        verify(ftService, never()).fetchAnnoPage(eq("bombombom"), any(), any(), any(), any(), any());
 
         // ditto for "*"
         this.mockMvc.perform(get("/presentation/scareamoose/willyoudo/annopage/thedamntango")
@@ -644,6 +817,10 @@ public class FTControllerTest {
                 .andExpect(header().string(HEADER_CONTENTTYPE, containsString(MEDIA_TYPE_JSONLD)))
                 .andExpect(status().isOk())
                 .andDo(print());
+
+        // the text should only be loaded for requests that didn't match
+        verify(ftService, times(1)).fetchFTResource("esgab", "einefrau", "res1");
+        verify(ftService, times(1)).fetchFTResource("aberdas", "teig", "res2");
     }
 
     /**
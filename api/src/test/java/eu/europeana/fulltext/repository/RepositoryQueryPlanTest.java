@@ -0,0 +1,292 @@
+package eu.europeana.fulltext.repository;
+
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import dev.morphia.Datastore;
+import dev.morphia.Morphia;
+import dev.morphia.query.internal.MorphiaCursor;
+import eu.europeana.fulltext.AnnotationType;
+import eu.europeana.fulltext.entity.AnnoPage;
+import eu.europeana.fulltext.entity.Annotation;
+import eu.europeana.fulltext.entity.Resource;
+import eu.europeana.fulltext.entity.TranslationAnnoPage;
+import eu.europeana.fulltext.entity.TranslationResource;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static eu.europeana.fulltext.util.MorphiaUtils.MAPPER_OPTIONS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Integration test that checks if all AnnoPageRepository and ResourceRepository queries are supported by the indexes
+ * in the IndexCatalogue. All queries sent to the database are intercepted and explained; a test fails when the query
+ * plan contains a collection scan.
+ * <p>
+ * This test requires a local mongod and is skipped unless the mongo.test.uri property is set, for example
+ * mvn test -Dtest=RepositoryQueryPlanTest -Dmongo.test.uri=mongodb://localhost:27017
+ * Note that a temporary database is created (and dropped afterwards).
+ */
+@EnabledIfSystemProperty(named = "mongo.test.uri", matches = ".+")
+public class RepositoryQueryPlanTest {
+
+    private static final String      TEST_DATABASE = "fulltext-query-plan-test";
+    private static final Set<String> QUERY_COMMANDS = Set.of("find", "aggregate", "count", "distinct");
+
+    private static final List<BsonDocument> COMMANDS = Collections.synchronizedList(new ArrayList<>());
+
+    private static MongoClient          mongoClient;
+    private static Datastore            datastore;
+    private static AnnoPageRepository   annoPageRepository;
+    private static ResourceRepository   resourceRepository;
+
+    @BeforeAll
+    public static void setup() {
+        CommandListener listener = new CommandListener() {
+            @Override
+            public void commandStarted(CommandStartedEvent event) {
+                if (TEST_DATABASE.equals(event.getDatabaseName()) && QUERY_COMMANDS.contains(event.getCommandName())) {
+                    COMMANDS.add(event.getCommand().clone());
+                }
+            }
+        };
+        mongoClient = MongoClients.create(MongoClientSettings.builder()
+                .applyConnectionString(new ConnectionString(System.getProperty("mongo.test.uri")))
+                .addCommandListener(listener)
+                .build());
+        mongoClient.getDatabase(TEST_DATABASE).drop();
+        datastore = Morphia.createDatastore(mongoClient, TEST_DATABASE, MAPPER_OPTIONS);
+        new IndexCatalogue(datastore).ensureIndexes();
+        saveTestData();
+
+        annoPageRepository = new AnnoPageRepository();
+        annoPageRepository.datastore = datastore;
+        resourceRepository = new ResourceRepository();
+        resourceRepository.datastore = datastore;
+    }
+
+    private static void saveTestData() {
+        for (int i = 1; i <= 3; i++) {
+            Resource res = new Resource("res" + i, "de", "Text " + i, "http://test/rights", "ds1", "lc1");
+            datastore.save(res);
+            AnnoPage annoPage = new AnnoPage("ds1", "lc1", String.valueOf(i), "http://test/image/" + i, "de", res);
+            annoPage.setAns(List.of(new Annotation("an" + i, AnnotationType.PAGE.getAbbreviation(), 0, 6),
+                    new Annotation("an" + i + "w", AnnotationType.WORD.getAbbreviation(), 0, 4)));
+            datastore.save(annoPage);
+        }
+
+        // text with a character outside the Basic Multilingual Plane (flagged by the loader)
+        Resource nonBmpRes = new Resource("res4", "de", "\uD835\uDD4B Text 4", "http://test/rights", "ds1", "lc1");
+        nonBmpRes.setNonBmp(true);
+        datastore.save(nonBmpRes);
+
+        TranslationResource translationRes = new TranslationResource();
+        translationRes.setId("res1en");
+        translationRes.setDsId("ds1");
+        translationRes.setLcId("lc1");
+        translationRes.setLang("en");
+        datastore.save(translationRes);
+        TranslationAnnoPage translation = new TranslationAnnoPage();
+        translation.setDsId("ds1");
+        translation.setLcId("lc1");
+        translation.setPgId("1");
+        translation.setTgtId("http://test/image/1");
+        translation.setLang("en");
+        translation.setAns(List.of(new Annotation("an1en", AnnotationType.PAGE.getAbbreviation(), 0, 6)));
+        datastore.save(translation);
+    }
+
+    @AfterAll
+    public static void cleanup() {
+        if (mongoClient != null) {
+            mongoClient.getDatabase(TEST_DATABASE).drop();
+            mongoClient.close();
+        }
+    }
+
+    @BeforeEach
+    public void clearCommands() {
+        COMMANDS.clear();
+    }
+
+    @Test
+    public void testIndexCatalogueComplete() {
+        Map<String, IndexCatalogue.CollectionReport> report = new IndexCatalogue(datastore).report();
+        report.forEach((collection, collectionReport) ->
+                assertTrue(collectionReport.isComplete(), collection + " misses " + collectionReport.getMissing()));
+    }
+
+    @Test
+    public void testExistForEuropeanaId() {
+        annoPageRepository.existForEuropeanaId("ds1", "lc1", AnnoPage.class);
+        assertNoCollectionScans();
+    }
+
+    @Test
+    public void testFindPages() {
+        annoPageRepository.findOrigPages("ds1", "lc1");
+        annoPageRepository.findTranslatedPages("ds1", "lc1");
+        annoPageRepository.findTranslatedPages("ds1", "lc1", "1");
+        assertFalse(annoPageRepository.findTranslationLanguages("ds1", "lc1").isEmpty());
+        assertNoCollectionScans();
+    }
+
+    @Test
+    public void testExistsByPageId() {
+        annoPageRepository.existsOriginalByPageId("ds1", "lc1", "1");
+        annoPageRepository.existsOriginalOrTranslationByPageIdLang("ds1", "lc1", "1", "en");
+        assertNoCollectionScans();
+    }
+
+    @Test
+    public void testExistsWithAnnoId() {
+        annoPageRepository.existsWithAnnoId("ds1", "lc1", "an2");
+        assertNoCollectionScans();
+    }
+
+    @Test
+    public void testFindByPageIds() {
+        annoPageRepository.findOriginalsByPageIds("ds1", "lc1", List.of("1", "2"), List.of(AnnotationType.LINE));
+        annoPageRepository.findModifiedByPageIds("ds1", "lc1", List.of("1", "2"));
+        assertNoCollectionScans();
+    }
+
+    @Test
+    public void testStreamOriginals() {
+        annoPageRepository.streamOriginals("ds1", null, 10).close();
+        annoPageRepository.streamOriginals("ds1", "lc1", 10).close();
+        resourceRepository.streamOriginals("ds1", null, 10).close();
+        resourceRepository.streamOriginals("ds1", "lc1", 10).close();
+        assertNoCollectionScans();
+    }
+
+    @Test
+    public void testFindByPageId() {
+        annoPageRepository.findOriginalByPageId("ds1", "lc1", "1", Collections.emptyList());
+        annoPageRepository.findOriginalByPageId("ds1", "lc1", "1", List.of(AnnotationType.WORD));
+        annoPageRepository.findOriginalOrTranslationByPageIdLang("ds1", "lc1", "1", Collections.emptyList(), "en");
+        assertNoCollectionScans();
+    }
+
+    @Test
+    public void testFindByAnnoId() {
+        annoPageRepository.findOriginalOrTranslationByAnnoId("ds1", "lc1", "an1en");
+        assertNoCollectionScans();
+    }
+
+    @Test
+    public void testFindModified() {
+        annoPageRepository.findModified("ds1", "lc1", "1", null);
+        annoPageRepository.findModified("ds1", "lc1", "1", "en");
+        annoPageRepository.findModifiedByAnnoId("ds1", "lc1", "an3");
+        annoPageRepository.findLastModified("ds1", "lc1");
+        assertNoCollectionScans();
+    }
+
+    @Test
+    public void testFindForSearch() {
+        assertFalse(annoPageRepository.findForSearch("ds1", "lc1",
+                Map.of("http://test/image/2", List.of(new TextRange(0, 5))), List.of(AnnotationType.WORD)).isEmpty());
+        assertNoCollectionScans();
+    }
+
+    @Test
+    public void testFindPageIds() {
+        for (Class<? extends AnnoPage> clazz : List.of(AnnoPage.class, TranslationAnnoPage.class)) {
+            try (MorphiaCursor<Document> all = annoPageRepository.findPageIds(clazz, null);
+                 MorphiaCursor<Document> recent = annoPageRepository.findPageIds(clazz, new ObjectId(new Date(0)))) {
+                assertTrue(all.hasNext());
+                assertTrue(recent.hasNext());
+            }
+            assertNotNull(annoPageRepository.findLastPageId(clazz));
+        }
+        assertNoCollectionScans();
+    }
+
+    @Test
+    public void testResourceQueries() {
+        resourceRepository.existsOriginal("ds1", "lc1", "res1");
+        resourceRepository.existsTranslation("ds1", "lc1", "res1en");
+        resourceRepository.findOriginalOrTranslationByResId("ds1", "lc1", "res1en");
+        resourceRepository.findHash("ds1", "lc1", "res2");
+        resourceRepository.findTextSlices("ds1", "lc1", Map.of("res1", List.of(new TextRange(0, 5))));
+        assertNoCollectionScans();
+    }
+
+    /**
+     * Text offsets are in UTF-16 characters, while $substrCP counts code points, so texts with characters outside the
+     * Basic Multilingual Plane must not be sliced by the database
+     */
+    @Test
+    public void testFindTextSlicesNonBmp() {
+        Map<String, List<String>> slices = resourceRepository.findTextSlices("ds1", "lc1", Map.of(
+                "res1", List.of(new TextRange(0, 4)),
+                "res4", List.of(new TextRange(0, 2), new TextRange(3, 7), new TextRange(8, 20))));
+        assertEquals(List.of("Text"), slices.get("res1"));
+        assertEquals(List.of("\uD835\uDD4B", "Text", "4"), slices.get("res4"));
+        assertNoCollectionScans();
+    }
+
+    /**
+     * Explains all intercepted queries and fails if any of them does a collection scan
+     */
+    private static void assertNoCollectionScans() {
+        List<BsonDocument> executed;
+        synchronized (COMMANDS) {
+            executed = new ArrayList<>(COMMANDS);
+            COMMANDS.clear();
+        }
+        assertFalse(executed.isEmpty(), "No queries were intercepted");
+        for (BsonDocument command : executed) {
+            Document plan = explain(command);
+            if (containsCollectionScan(plan)) {
+                fail("Collection scan in query " + command.toJson() + "\nplan: " + plan.toJson());
+            }
+        }
+    }
+
+    private static Document explain(BsonDocument command) {
+        BsonDocument query = command.clone();
+        // remove fields that the driver adds to each command, these are not allowed inside an explain
+        for (String field : List.of("$db", "lsid", "$clusterTime", "$readPreference", "txnNumber")) {
+            query.remove(field);
+        }
+        return mongoClient.getDatabase(TEST_DATABASE).runCommand(
+                new BsonDocument("explain", query).append("verbosity", new BsonString("queryPlanner")));
+    }
+
+    private static boolean containsCollectionScan(Object planElement) {
+        if (planElement instanceof Document) {
+            Document document = (Document) planElement;
+            if ("COLLSCAN".equals(document.get("stage"))) {
+                return true;
+            }
+            return document.values().stream().anyMatch(RepositoryQueryPlanTest::containsCollectionScan);
+        }
+        if (planElement instanceof List) {
+            return ((List<?>) planElement).stream().anyMatch(RepositoryQueryPlanTest::containsCollectionScan);
+        }
+        return false;
+    }
+}
@@ -26,5 +26,6 @@ public class SolrHighlightQueryImplTest {
         assertEquals(testQuery, sq.get("hl.q"));
         assertEquals("true", sq.get("hl.extended"));
         assertEquals("unified", sq.get("hl.method"));
+        assertEquals("0", sq.get("hl.fragsize"));
     }
 }
@@ -0,0 +1,169 @@
+package eu.europeana.fulltext.search.repository;
+
+import eu.europeana.fulltext.search.model.query.SolrHit;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.util.JavaBinCodec;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SolrHighlightResponseParserTest {
+
+    private static final String IMAGE_ID1 = "https://iiif.europeana.eu/image/1.jpg";
+    private static final String IMAGE_ID2 = "https://iiif.europeana.eu/image/ümlaut.jpg";
+    private static final String TEXT1     = "Test text of page 1";
+    private static final String TEXT2     = "Test text of page 2";
+
+    // the text of a page starts after the passage start, the imageId, 2 brackets and a space
+    private static final int PAGE1_START = 1000;
+    private static final int TEXT1_START = PAGE1_START + IMAGE_ID1.length() + 3;
+    private static final int PAGE2_START = 2000;
+    private static final int TEXT2_START = PAGE2_START + IMAGE_ID2.length() + 3;
+
+    /**
+     * Test if we read the imageId and page text from the snippets and convert the passage offsets to offsets in the
+     * page text, skipping the padding
+     */
+    @Test
+    void testParseHits() throws IOException {
+        byte[] response = createResponse(
+                List.of("{" + IMAGE_ID1 + "} " + TEXT1, "{" + IMAGE_ID2 + "} " + TEXT2),
+                List.of(createPassage(PAGE1_START, List.of(TEXT1_START, TEXT1_START + 13, 0, 0),
+                                List.of(TEXT1_START + 4, TEXT1_START + 17, 0, 0)),
+                        createPassage(PAGE2_START, List.of(TEXT2_START + 5, 0, 0, 0),
+                                List.of(TEXT2_START + 9, 0, 0, 0))));
+        SolrHighlightResponseParser parser = parse(response, true);
+
+        List<SolrHit> hits = parser.getHits();
+        assertEquals(3, hits.size());
+        assertHit(hits.get(0), IMAGE_ID1, TEXT1, 0, 4);
+        assertEquals("Test", TEXT1.substring(hits.get(0).getStart(), hits.get(0).getEnd()));
+        assertHit(hits.get(1), IMAGE_ID1, TEXT1, 13, 17);
+        assertEquals("page", TEXT1.substring(hits.get(1).getStart(), hits.get(1).getEnd()));
+        // offsets are in UTF-16 characters, so the umlaut in the imageId should count as 1 character
+        assertHit(hits.get(2), IMAGE_ID2, TEXT2, 5, 9);
+        assertEquals("text", TEXT2.substring(hits.get(2).getStart(), hits.get(2).getEnd()));
+        assertEquals(response.length, parser.getBytesRead());
+    }
+
+    /**
+     * Test if we merge hits that are close to each other, but not hits that are further apart
+     */
+    @Test
+    void testMergeHits() throws IOException {
+        byte[] response = createResponse(
+                List.of("{" + IMAGE_ID1 + "} " + TEXT1),
+                List.of(createPassage(PAGE1_START,
+                        List.of(TEXT1_START, TEXT1_START + 5, TEXT1_START + 10, TEXT1_START + 18),
+                        List.of(TEXT1_START + 4, TEXT1_START + 9, TEXT1_START + 12, TEXT1_START + 19))));
+
+        List<SolrHit> hits = parse(response, true).getHits();
+        assertEquals(2, hits.size());
+        assertHit(hits.get(0), IMAGE_ID1, TEXT1, 0, 12);
+        assertHit(hits.get(1), IMAGE_ID1, TEXT1, 18, 19);
+    }
+
+    /**
+     * Test if page texts are only kept when requested
+     */
+    @Test
+    void testNoSnippets() throws IOException {
+        byte[] withText = createResponse(List.of("{" + IMAGE_ID1 + "} " + TEXT1),
+                List.of(createPassage(PAGE1_START, List.of(TEXT1_START), List.of(TEXT1_START + 4))));
+        List<SolrHit> hits = parse(withText, false).getHits();
+        assertEquals(1, hits.size());
+        assertHit(hits.get(0), IMAGE_ID1, null, 0, 4);
+    }
+
+    /**
+     * Test if we return no hits when there is no highlighting in the response
+     */
+    @Test
+    void testNoHighlighting() throws IOException {
+        NamedList<Object> response = new NamedList<>();
+        response.add("response", new SolrDocumentList());
+        SolrHighlightResponseParser parser = parse(marshal(response), true);
+        assertTrue(parser.getHits().isEmpty());
+    }
+
+    /**
+     * Test if an error in the response is returned, so SolrJ can report it
+     */
+    @Test
+    void testError() throws IOException {
+        NamedList<Object> error = new SimpleOrderedMap<>();
+        error.add("msg", "undefined field fulltext.xx");
+        error.add("code", 400);
+        NamedList<Object> response = new NamedList<>();
+        response.add("error", error);
+
+        NamedList<Object> result = new SolrHighlightResponseParser(false)
+                .processResponse(new ByteArrayInputStream(marshal(response)), null);
+        NamedList<?> parsedError = (NamedList<?>) result.get("error");
+        assertEquals("undefined field fulltext.xx", parsedError.get("msg"));
+        assertEquals(400, parsedError.get("code"));
+    }
+
+    private static SolrHighlightResponseParser parse(byte[] response, boolean keepSnippets) {
+        SolrHighlightResponseParser parser = new SolrHighlightResponseParser(keepSnippets);
+        parser.processResponse(new ByteArrayInputStream(response), null);
+        return parser;
+    }
+
+    private static void assertHit(SolrHit hit, String imageId, String snippet, int start, int end) {
+        assertEquals(imageId, hit.getImageId());
+        if (snippet == null) {
+            assertNull(hit.getSnippet());
+        } else {
+            assertEquals(snippet, hit.getSnippet());
+        }
+        assertEquals(start, hit.getStart());
+        assertEquals(end, hit.getEnd());
+    }
+
+    private static NamedList<Object> createPassage(int start, List<Integer> hitStarts, List<Integer> hitEnds) {
+        NamedList<Object> passage = new SimpleOrderedMap<>();
+        passage.add("startOffsetUtf16", start);
+        passage.add("matchStartsUtf16", hitStarts);
+        passage.add("matchEndsUtf16", hitEnds);
+        return passage;
+    }
+
+    /**
+     * Creates a javabin response in the same format as the extended unified highlighter
+     */
+    private static byte[] createResponse(List<String> snippets, List<NamedList<Object>> passages) throws IOException {
+        NamedList<Object> field = new SimpleOrderedMap<>();
+        field.add("snippets", snippets);
+        field.add("passages", passages);
+        NamedList<Object> document = new SimpleOrderedMap<>();
+        document.add("fulltext.fr", field);
+        NamedList<Object> highlighting = new SimpleOrderedMap<>();
+        highlighting.add("/x/y", document);
+
+        NamedList<Object> header = new SimpleOrderedMap<>();
+        header.add("status", 0);
+        NamedList<Object> response = new NamedList<>();
+        response.add("responseHeader", header);
+        response.add("response", new SolrDocumentList());
+        response.add("highlighting", highlighting);
+        return marshal(response);
+    }
+
+    private static byte[] marshal(NamedList<Object> response) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JavaBinCodec codec = new JavaBinCodec()) {
+            codec.marshal(response, out);
+        }
+        return out.toByteArray();
+    }
+}
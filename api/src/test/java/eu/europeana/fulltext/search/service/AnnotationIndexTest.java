@@ -0,0 +1,90 @@
+package eu.europeana.fulltext.search.service;
+
+import eu.europeana.fulltext.AnnotationType;
+import eu.europeana.fulltext.entity.Annotation;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the AnnotationIndex
+ */
+public class AnnotationIndexTest {
+
+    private static final char WORD  = AnnotationType.WORD.getAbbreviation();
+    private static final char LINE  = AnnotationType.LINE.getAbbreviation();
+    private static final char BLOCK = AnnotationType.BLOCK.getAbbreviation();
+    private static final char PAGE  = AnnotationType.PAGE.getAbbreviation();
+
+    /**
+     * Page with "aaa bbb\nccc ddd", 1 block, 2 lines and 4 words, in the order the loader stores them
+     */
+    private static List<Annotation> page() {
+        return List.of(
+                new Annotation("page", PAGE, null, null),
+                new Annotation("w1", WORD, 0, 3),
+                new Annotation("w2", WORD, 4, 7),
+                new Annotation("l1", LINE, 0, 7),
+                new Annotation("w3", WORD, 8, 11),
+                new Annotation("w4", WORD, 12, 15),
+                new Annotation("l2", LINE, 8, 15),
+                new Annotation("b1", BLOCK, 0, 15));
+    }
+
+    private static List<String> ids(List<Annotation> annotations) {
+        return annotations.stream().map(Annotation::getAnId).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testFindInPageOrder() {
+        AnnotationIndex index = new AnnotationIndex(page());
+        assertEquals(List.of("w2", "l1", "b1"), ids(index.findOverlapping(5, 6)));
+        assertEquals(List.of("w3", "w4", "l2", "b1"), ids(index.findOverlapping(9, 13)));
+    }
+
+    @Test
+    public void testBoundariesAreInclusive() {
+        AnnotationIndex index = new AnnotationIndex(page());
+        // w1 ends at 3 and w2 starts at 4
+        assertEquals(List.of("w1", "l1", "b1"), ids(index.findOverlapping(3, 3)));
+        assertEquals(List.of("w2", "l1", "b1"), ids(index.findOverlapping(4, 4)));
+        assertEquals(List.of("w1", "w2", "l1", "b1"), ids(index.findOverlapping(3, 4)));
+    }
+
+    @Test
+    public void testNoOverlap() {
+        assertTrue(new AnnotationIndex(page()).findOverlapping(20, 25).isEmpty());
+        assertTrue(new AnnotationIndex(List.of()).findOverlapping(0, 10).isEmpty());
+    }
+
+    /**
+     * Compare the results of the index with checking each annotation for random (also unsorted and overlapping)
+     * annotations and ranges
+     */
+    @Test
+    public void testSameAsCheckingAllAnnotations() {
+        Random random = new Random(42);
+        char[] types = {WORD, LINE, BLOCK};
+        List<Annotation> annotations = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            int from = random.nextInt(10_000);
+            int to = from + random.nextInt(i % 50 == 0 ? 500 : 10);
+            annotations.add(new Annotation("a" + i, types[random.nextInt(types.length)], from, to));
+        }
+        AnnotationIndex index = new AnnotationIndex(annotations);
+
+        for (int i = 0; i < 500; i++) {
+            int start = random.nextInt(10_500);
+            int end = start + random.nextInt(20);
+            List<Annotation> expected = annotations.stream()
+                    .filter(a -> start <= a.getTo() && end >= a.getFrom())
+                    .collect(Collectors.toList());
+            assertEquals(ids(expected), ids(index.findOverlapping(start, end)), "range " + start + "," + end);
+        }
+    }
+}
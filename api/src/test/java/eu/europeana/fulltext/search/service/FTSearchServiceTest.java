@@ -2,17 +2,19 @@ package eu.europeana.fulltext.search.service;
 
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import dev.morphia.query.internal.MorphiaCursor;
 import eu.europeana.api.commons.error.EuropeanaApiException;
 import eu.europeana.fulltext.AnnotationType;
 import eu.europeana.fulltext.api.config.FTSettings;
 import eu.europeana.fulltext.api.model.v2.AnnotationV2;
+import eu.europeana.fulltext.api.model.v3.AnnotationV3;
 import eu.europeana.fulltext.api.service.EDM2IIIFMapping;
 import eu.europeana.fulltext.api.service.FTService;
 import eu.europeana.fulltext.entity.AnnoPage;
 import eu.europeana.fulltext.entity.Annotation;
+import eu.europeana.fulltext.repository.TextRange;
 import eu.europeana.fulltext.search.exception.RecordDoesNotExistException;
 import eu.europeana.fulltext.search.model.query.EuropeanaId;
+import eu.europeana.fulltext.search.model.query.SolrHit;
 import eu.europeana.fulltext.search.model.response.Hit;
 import eu.europeana.fulltext.search.model.response.SearchResult;
 import eu.europeana.fulltext.search.model.response.v2.SearchResultV2;
@@ -20,7 +22,6 @@ import eu.europeana.fulltext.search.model.response.v3.SearchResultV3;
 import eu.europeana.fulltext.search.repository.SolrRepo;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
-import org.apache.solr.common.util.NamedList;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -31,6 +32,7 @@ import org.springframework.test.context.TestPropertySource;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -39,6 +41,8 @@ import java.util.stream.Collectors;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 /**
  * Unit test for the FTSearchService class
@@ -47,21 +51,11 @@ import static org.mockito.BDDMockito.given;
  * Created on 10 Jun 2020
  */
 @TestPropertySource(locations = "classpath:fulltext-test.properties")
-@SpringBootTest(classes = {FTSearchService.class, FTSettings.class, EDM2IIIFMapping.class})
+@SpringBootTest(classes = {FTSearchService.class, SearchResultCache.class, FTSettings.class, EDM2IIIFMapping.class})
 public class FTSearchServiceTest {
 
     // Create dummy Solr result (for query "presentation/9200396/BibliographicResource_3000118435970/search?query=flandre")
     // --------------------------------------------------------------------------------------------
-    private static final NamedList HIT1 = new NamedList(){{
-        add("startOffsetUtf16", 95053);
-        add("matchStartsUtf16", new ArrayList<>(List.of(95987, 96399, 0, 0, 0, 0, 0, 0)));
-        add("matchEndsUtf16", new ArrayList<>(List.of(95994, 96406, 0, 0, 0, 0, 0, 0)));
-    }};
-    private static final NamedList HIT2 = new NamedList(){{
-        add("startOffsetUtf16", 96790);
-        add("matchStartsUtf16", new ArrayList<>(List.of(97730, 0, 0, 0, 0, 0, 0, 0)));
-        add("matchEndsUtf16", new ArrayList<>(List.of(97737, 0, 0, 0, 0, 0, 0, 0)));
-    }};
     private static final String SNIPPET1 = "{https://iiif.europeana.eu/image/AVB5EMAWXYXPY2NSRANVZQ77OZBQWXFUFDDJ74OTHTVU6OBRAHIA/presentation_images/60de4440-022a-11e6-a696-fa163e2dd531/node-3/image/BNL/Journal_historique_et_littéraire/1774/07/15/00123/full/full/0/default.jpg} JUILLET. 1774, de la petite-vérole, même à celles qui font de fervice auprès de Ca Perfonne, de paroltre à la Cour pendant le danger de la contagion. Avant le départ de Sa Maj. de la Muette , le Peuple s’y étoit rendu plufieurs fois en foule , criant Vive le Roi & point d’inoculation , & il a été remis au Roi plufieurs mémoires anonymes fur des accidents  caufés par l'inoculation , mais rien n’a pd faire changer Sa Majefté de réfolution (*>\n" +
             "«5\n" +
             "PAYS-BAS.\n" +
@@ -69,17 +63,21 @@ public class FTSearchServiceTest {
             "(*) Des raifons particulières nous aïant engagés  à finir la fécondé partie du Journal avant le 15, nous ne pouvons rafsùrer encore le Public fur les fuites de l’inoculation du Roi & de la ■famille roïale , qui julqu’ici ne préfente rieti qui puiflè fonder des craintes.";
     private static final String SNIPPET2 = "{https://iiif.europeana.eu/image/AVB5EMAWXYXPY2NSRANVZQ77OZBQWXFUFDDJ74OTHTVU6OBRAHIA/presentation_images/60de4440-022a-11e6-a696-fa163e2dd531/node-3/image/BNL/Journal_historique_et_littéraire/1774/07/15/00124/full/full/0/default.jpg} J V I LL if. îfjii, demain mâtin de Prince alla voir la Ville', les Fortifications & les autres ouvrages remarquables  ,■ & revint dîner à l’Hôtel-de -Tille. Après-dîner S. A.- R. fe rendit aux Bancs des huîtres, de là par le petit trajet du port aux Eclufes de Slykens, & enfuite aux Moulins à ■ feièr, d’ôù Elle partit pour Bru- -ges avec fa compagnie dans une barque nouvellement cônftruiie pour le paffage de Bruges à Gand. ■ G an b (/e 47 juin.') Mgr.- l’Archiduc Maximilien après avoir vu ,à Bruges ce qu’il y a de remarquablè, en partit le 25 dans la barque neuve , & arriva ici à cinq heures après midi , accompagné des Seigneurs quî ont fait le voyage avec lui & de quelques Députés des Etats de Flandre. S. A. R. allâ voir d’abord la nouvelle maifon de force, de là Elle alla faire un tour dans les principales  rues de la T ille , en carroflè à fix chevaux,  avec S. A. le Prince de Stahrernbèrg le Comte de Lâmberg & Mr. notre Evêque,  & alla defeendre à l’Abbaye de faint Pierre où elle logea. Ce Prince y foupï avec fa fuite & plufieurs autres perfonnes de diitinftion , & hier il entendit la MeiT® q l’Eglife Cathédrale de St. Bavon , d’où il fut dîner chez Mr. l’Evêqué. L’après-midt il alla voir tirer l’oie par ceux du Serment de St. Sebaftien, & où tous les autres Sermons  avoient été invités. Le foir il y eut! grand fouper à l’Hôtel-dc-Vilîé, fuivi d’un beau Bal paré ; & ce matin S. A. R. ave® fa'fuite a repris le chemin de Bruxelles, • i\n" +
             "fù'4";
-    private static final NamedList SOLR_RESULT = new NamedList(){{
-        add("snippets", new ArrayList(List.of(SNIPPET1, SNIPPET2)));
-        add("passages", new ArrayList<>(List.of(HIT1, HIT2)));
-    }};
-    private static final Map<String, List<String>> SOLR_RESPONSE = new HashMap(){{
-        // Note that the Map actually contains 1 NamedList value, but we say it's a List<String> because that matches
-        // what the Solr QueryReponse.getHighlighting() method is returning.
-        put("fulltext.fr", SOLR_RESULT);
-    }};
-
-    private static final Map<String, List<String>> SOLR_EMPTY_RESPONSE = new HashMap<>();
+    // Solr hits as created by the response parser: offsets are relative to the page text (so without the imageId)
+    // and the padding in the passages is skipped
+    private static final List<SolrHit> SOLR_RESPONSE = List.of(
+            solrHit(SNIPPET1, 95053, 95987, 95994, true),
+            solrHit(SNIPPET1, 95053, 96399, 96406, true),
+            solrHit(SNIPPET2, 96790, 97730, 97737, true));
+
+    // same result, but without page texts (the response parser only keeps those in debug mode)
+    private static final List<SolrHit> SOLR_RESPONSE_NO_TEXT = List.of(
+            solrHit(SNIPPET1, 95053, 95987, 95994, false),
+            solrHit(SNIPPET1, 95053, 96399, 96406, false),
+            solrHit(SNIPPET2, 96790, 97730, 97737, false));
+    private static final String QUERY_NO_TEXT = "flandre no text";
+
+    private static final List<SolrHit> SOLR_EMPTY_RESPONSE = List.of();
 
     private static final EuropeanaId RECORDID_HAS_RESULTS = new EuropeanaId("9200396", "BibliographicResource_3000118435970");
     private static final String QUERY_HAS_RESULTS = "flandre";
@@ -93,8 +91,6 @@ public class FTSearchServiceTest {
     private SolrRepo solrRepo;
     @MockBean
     private FTService fulltextRepo;
-    @MockBean
-    private MorphiaCursor<AnnoPage> morphiaCursor;
 
     @BeforeEach
     public void setupMocks() throws EuropeanaApiException {
@@ -106,14 +102,17 @@ public class FTSearchServiceTest {
         given(solrRepo.getHighlightsWithOffsets(eq(RECORDID_HAS_RESULTS), eq(QUERY_HAS_RESULTS), anyInt(), anyObject())).willReturn(
                 SOLR_RESPONSE
         );
+        given(solrRepo.getHighlightsWithOffsets(eq(RECORDID_HAS_RESULTS), eq(QUERY_NO_TEXT), anyInt(), anyObject())).willReturn(
+                SOLR_RESPONSE_NO_TEXT
+        );
 
         // default no AnnoPages are available for any record
-        given(fulltextRepo.doesAnnoPageExist(any(), any(), any(), any())).willReturn(
+        given(fulltextRepo.doesRecordExist(any(), any())).willReturn(
                 Boolean.FALSE
         );
         // except for 1 record
-        given(fulltextRepo.doesAnnoPageExist(eq(RECORDID_HAS_RESULTS.getDatasetId()), eq(RECORDID_HAS_RESULTS.getLocalId()),
-                anyString(), any())).willReturn(
+        given(fulltextRepo.doesRecordExist(eq(RECORDID_HAS_RESULTS.getDatasetId()), eq(RECORDID_HAS_RESULTS.getLocalId())))
+                .willReturn(
                         Boolean.TRUE
         );
     }
@@ -157,27 +156,27 @@ public class FTSearchServiceTest {
     }
 
     /**
-     * This will mock a morphia cursor returning 2 annopages with annotations of the requested type(s).
-     * This method needs to be called before calling the SearchService.searchIssue() method
+     * This will mock retrieving 2 annopages with annotations of the requested type(s), and retrieving parts of their
+     * texts. This method needs to be called before calling the SearchService.searchIssue() method
      */
-    private void mockMorphiaCursor(List<AnnotationType> annoTypes){
+    private void mockAnnoPages(List<AnnotationType> annoTypes){
         List<AnnoPage> filteredAnnoPages = filterByType(annoTypes);
+        Map<String, String> textByResourceId = filteredAnnoPages.stream()
+                .collect(Collectors.toMap(ap -> ap.getRes().getId(), ap -> ap.getRes().getValue()));
 
-        given(morphiaCursor.hasNext())
-                // This is a bit of a hack, we know we will request hasNext() 1 extra time in the code so we should
-                // return true 3 times so we can return 2 items and after that return false
-                // However if our code changes and calls hasNext() more often or less often, this may need to be adjusted
-                .willReturn(true)
-                .willReturn(true)
-                .willReturn(true)
-                .willReturn(false);
-        given(morphiaCursor.next())
-                .willReturn(filteredAnnoPages.get(0))
-                .willReturn(filteredAnnoPages.get(1));
-        given(fulltextRepo.fetchAnnoPageFromImageId(eq(RECORDID_HAS_RESULTS.getDatasetId()), eq(RECORDID_HAS_RESULTS.getLocalId()),
+        given(fulltextRepo.fetchAnnoPagesForSearch(eq(RECORDID_HAS_RESULTS.getDatasetId()), eq(RECORDID_HAS_RESULTS.getLocalId()),
                 any(), any())).willReturn(
-                morphiaCursor
+                filteredAnnoPages
         );
+        given(fulltextRepo.fetchTextSlices(eq(RECORDID_HAS_RESULTS.getDatasetId()), eq(RECORDID_HAS_RESULTS.getLocalId()),
+                any())).willAnswer(invocation -> {
+            Map<String, List<TextRange>> rangesByResourceId = invocation.getArgument(2);
+            Map<String, List<String>> result = new HashMap<>();
+            rangesByResourceId.forEach((resourceId, ranges) -> result.put(resourceId, ranges.stream()
+                    .map(r -> textByResourceId.get(resourceId).substring(r.getStart(), r.getEnd()))
+                    .collect(Collectors.toList())));
+            return result;
+        });
     }
 
     /**
@@ -193,10 +192,10 @@ public class FTSearchServiceTest {
     @Test
     void testRetrieveResultsV2Line() throws EuropeanaApiException {
         List<AnnotationType> annoTypes = List.of(AnnotationType.LINE);
-        mockMorphiaCursor(annoTypes);
+        mockAnnoPages(annoTypes);
         String searchId = "testV2";
 
-        SearchResult result = searchService.searchIssue(searchId, RECORDID_HAS_RESULTS, QUERY_HAS_RESULTS, 12, annoTypes, "2", false);
+        SearchResult result = searchService.searchIssue(searchId, RECORDID_HAS_RESULTS, null, QUERY_HAS_RESULTS, 12, annoTypes, "2", false);
         assertTrue(result instanceof SearchResultV2);
         SearchResultV2 resultV2 = (SearchResultV2) result;
         assertEquals(searchId, resultV2.getId());
@@ -257,10 +256,10 @@ public class FTSearchServiceTest {
     @Test
     void testRetrieveResultsV3BlockLineWord() throws EuropeanaApiException {
         List<AnnotationType> annoTypes = List.of(AnnotationType.BLOCK, AnnotationType.LINE, AnnotationType.WORD);
-        mockMorphiaCursor(annoTypes);
+        mockAnnoPages(annoTypes);
         String searchId = "testV3";
 
-        SearchResult result = searchService.searchIssue(searchId, RECORDID_HAS_RESULTS, QUERY_HAS_RESULTS, 12, annoTypes, "3", false);
+        SearchResult result = searchService.searchIssue(searchId, RECORDID_HAS_RESULTS, null, QUERY_HAS_RESULTS, 12, annoTypes, "3", false);
         assertTrue(result instanceof SearchResultV3);
         SearchResultV3 resultV3 = (SearchResultV3) result;
         assertEquals(searchId, resultV3.getId());
@@ -280,10 +279,10 @@ public class FTSearchServiceTest {
     @Test
     void testMaxPageSize() throws EuropeanaApiException {
         List<AnnotationType> annoTypes = List.of(AnnotationType.BLOCK, AnnotationType.LINE, AnnotationType.WORD);
-        mockMorphiaCursor(annoTypes);
+        mockAnnoPages(annoTypes);
         int maxPageSize = 2;
 
-        SearchResult result = searchService.searchIssue(null, RECORDID_HAS_RESULTS, QUERY_HAS_RESULTS, maxPageSize, annoTypes, "2", true);
+        SearchResult result = searchService.searchIssue(null, RECORDID_HAS_RESULTS, null, QUERY_HAS_RESULTS, maxPageSize, annoTypes, "2", true);
         assertTrue(result instanceof SearchResultV2);
         SearchResultV2 resultV2 = (SearchResultV2) result;
 
@@ -297,19 +296,41 @@ public class FTSearchServiceTest {
     @Test
     void testRetrieveResultsNoHitsForWordAnnotations() throws EuropeanaApiException {
         List<AnnotationType> annoTypes = List.of(AnnotationType.WORD);
-        mockMorphiaCursor(annoTypes);
+        mockAnnoPages(annoTypes);
 
-        SearchResult result = searchService.searchIssue(null, RECORDID_HAS_RESULTS, QUERY_HAS_RESULTS, 12, annoTypes, "3", true);
+        SearchResult result = searchService.searchIssue(null, RECORDID_HAS_RESULTS, null, QUERY_HAS_RESULTS, 12, annoTypes, "3", true);
         assertNotNull(result.getHits());
         assertEquals(0, result.getHits().size());
     }
 
+    /**
+     * Test if we get the same annotations and hits when the Solr hits don't contain the page texts
+     */
+    @Test
+    void testHitsWithoutText() throws EuropeanaApiException {
+        List<AnnotationType> annoTypes = List.of(AnnotationType.BLOCK, AnnotationType.LINE, AnnotationType.WORD);
+        mockAnnoPages(annoTypes);
+
+        SearchResultV3 expected = (SearchResultV3) searchService.searchIssue("test", RECORDID_HAS_RESULTS, null, QUERY_HAS_RESULTS, 12, annoTypes, "3", false);
+        SearchResultV3 result = (SearchResultV3) searchService.searchIssue("test", RECORDID_HAS_RESULTS, null, QUERY_NO_TEXT, 12, annoTypes, "3", true);
+        assertEquals(9, result.getItems().size());
+        assertEquals(expected.getItems().stream().map(AnnotationV3::getId).collect(Collectors.toList()),
+                result.getItems().stream().map(AnnotationV3::getId).collect(Collectors.toList()));
+        assertEquals(6, result.getHits().size());
+        for (int i = 0; i < expected.getHits().size(); i++) {
+            assertEquals(expected.getHits().get(i).getSelectors().get(0).getExact(),
+                    result.getHits().get(i).getSelectors().get(0).getExact());
+            assertEquals(expected.getHits().get(i).getSelectors().get(0).getPrefix(),
+                    result.getHits().get(i).getSelectors().get(0).getPrefix());
+        }
+    }
+
     /**
      * Test if we handle not finding a solr hit properly (even though the record exists)
      */
     @Test
     void testNoSolrResultRecordExists() throws EuropeanaApiException {
-        SearchResult resultV2 = searchService.searchIssue("test", RECORDID_HAS_RESULTS, "Some other query", 12, List.of(AnnotationType.BLOCK), "3", false);
+        SearchResult resultV2 = searchService.searchIssue("test", RECORDID_HAS_RESULTS, null, "Some other query", 12, List.of(AnnotationType.BLOCK), "3", false);
         assertNotNull(resultV2);
         assertTrue(resultV2.getHits().isEmpty());
     }
@@ -320,8 +341,52 @@ public class FTSearchServiceTest {
     @Test
     void testNoSolrResultRecordNotExists() throws EuropeanaApiException {
         assertThrows(RecordDoesNotExistException.class, () -> {
-            searchService.searchIssue("test", RECORDID_NOT_EXISTS, "Flandres", 12, List.of(AnnotationType.BLOCK), "3", false);
+            searchService.searchIssue("test", RECORDID_NOT_EXISTS, null, "Flandres", 12, List.of(AnnotationType.BLOCK), "3", false);
         });
     }
 
+    /**
+     * Test if a search result is cached (also for a slightly different query), and that only the id of a cached
+     * result differs
+     */
+    @Test
+    void testCachedResult() throws EuropeanaApiException {
+        List<AnnotationType> annoTypes = List.of(AnnotationType.BLOCK);
+        mockAnnoPages(annoTypes);
+        Date modified = new Date(1_000_000L);
+
+        SearchResult result1 = searchService.searchIssue("search1", RECORDID_HAS_RESULTS, modified, QUERY_HAS_RESULTS, 12, annoTypes, "3", false);
+        SearchResult result2 = searchService.searchIssue("search2", RECORDID_HAS_RESULTS, modified, " " + QUERY_HAS_RESULTS + " ", 12, annoTypes, "3", false);
+        verify(solrRepo, times(1)).getHighlightsWithOffsets(eq(RECORDID_HAS_RESULTS), anyString(), anyInt(), any());
+
+        assertEquals("search1", result1.getId());
+        assertEquals("search2", result2.getId());
+        assertEquals(result1.itemSize(), result2.itemSize());
+        assertEquals(result1.getHits(), result2.getHits());
+    }
+
+    /**
+     * Test if a cached search result is not used when the record is modified or when debug information is requested
+     */
+    @Test
+    void testCachedResultOutdated() throws EuropeanaApiException {
+        List<AnnotationType> annoTypes = List.of(AnnotationType.LINE);
+        mockAnnoPages(annoTypes);
+
+        searchService.searchIssue("search1", RECORDID_HAS_RESULTS, new Date(2_000_000L), QUERY_HAS_RESULTS, 12, annoTypes, "2", false);
+        searchService.searchIssue("search2", RECORDID_HAS_RESULTS, new Date(3_000_000L), QUERY_HAS_RESULTS, 12, annoTypes, "2", false);
+        SearchResult debugResult = searchService.searchIssue("search3", RECORDID_HAS_RESULTS, new Date(3_000_000L), QUERY_HAS_RESULTS, 12, annoTypes, "2", true);
+        verify(solrRepo, times(3)).getHighlightsWithOffsets(eq(RECORDID_HAS_RESULTS), anyString(), anyInt(), any());
+        assertNotNull(debugResult.getDebug());
+    }
+
+    /**
+     * Creates a new SolrHit for a Solr snippet ({<imageId>} <page text>) and passage offsets
+     */
+    private static SolrHit solrHit(String snippet, int passageStart, int hitStart, int hitEnd, boolean withText) {
+        int imageIdEnd = snippet.indexOf('}');
+        int textStart = passageStart + imageIdEnd + 2;
+        return new SolrHit(snippet.substring(1, imageIdEnd), withText ? snippet.substring(imageIdEnd + 2) : null,
+                hitStart - textStart, hitEnd - textStart);
+    }
 }
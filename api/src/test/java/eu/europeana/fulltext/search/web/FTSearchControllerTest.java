@@ -4,6 +4,7 @@ import eu.europeana.fulltext.AnnotationType;
 import eu.europeana.fulltext.api.FTApplication;
 import eu.europeana.fulltext.api.config.FTSettings;
 import eu.europeana.fulltext.search.exception.InvalidParameterException;
+import eu.europeana.fulltext.search.exception.RecordDoesNotExistException;
 import eu.europeana.fulltext.search.model.query.EuropeanaId;
 import eu.europeana.fulltext.search.model.response.v2.SearchResultV2;
 import eu.europeana.fulltext.search.model.response.v3.SearchResultV3;
@@ -17,14 +18,17 @@ import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.web.servlet.MockMvc;
 
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 
 import static eu.europeana.fulltext.api.config.FTDefinitions.MEDIA_TYPE_IIIF_V2;
 import static eu.europeana.fulltext.api.config.FTDefinitions.MEDIA_TYPE_IIIF_V3;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -42,6 +46,7 @@ public class FTSearchControllerTest {
     private MockMvc mockMvc;
 
     private final String TEST_SEARCH_ID = "test_search_id";
+    private final Date TEST_RECORD_MODIFIED = new Date(1_600_000_000_000L);
 
 
     @BeforeEach
@@ -49,14 +54,16 @@ public class FTSearchControllerTest {
         SearchResultV2 testResultV2 = new SearchResultV2(TEST_SEARCH_ID, false);
         SearchResultV3 testResultV3 = new SearchResultV3(TEST_SEARCH_ID, false);
 
+        when(searchService.getRecordModified(any(EuropeanaId.class))).thenReturn(TEST_RECORD_MODIFIED);
+
         // return SearchResultV2 when requestVersion is 2
-        when(searchService.searchIssue(anyString(), any(EuropeanaId.class), anyString(), anyInt(), any(List.class),
+        when(searchService.searchIssue(anyString(), any(EuropeanaId.class), any(Date.class), anyString(), anyInt(), any(List.class),
                 eq("2"), anyBoolean())).thenReturn(
                         testResultV2
         );
 
         // return SearchResultV3 when requestVersion is 3
-        when(searchService.searchIssue(anyString(), any(EuropeanaId.class), anyString(), anyInt(), any(List.class),
+        when(searchService.searchIssue(anyString(), any(EuropeanaId.class), any(Date.class), anyString(), anyInt(), any(List.class),
                 eq("3"), anyBoolean())).thenReturn(
                         testResultV3
         );
@@ -126,6 +133,51 @@ public class FTSearchControllerTest {
                 .andExpect(jsonPath("$.type").value("AnnotationPage"));
     }
 
+    @Test
+    public void shouldReturnETagAndNotModified() throws Exception {
+        String eTag = mockMvc.perform(get("/presentation/9200355/BibliographicResource_3000096341989/search")
+                .param("q", "testQuery"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("Last-Modified"))
+                .andReturn().getResponse().getHeader("ETag");
+        assertNotNull(eTag);
+
+        // whitespace in the query doesn't matter
+        mockMvc.perform(get("/presentation/9200355/BibliographicResource_3000096341989/search")
+                .header("If-None-Match", eTag)
+                .param("q", " testQuery"))
+                .andExpect(status().isNotModified());
+
+        mockMvc.perform(get("/presentation/9200355/BibliographicResource_3000096341989/search")
+                .header("If-None-Match", eTag)
+                .param("q", "otherQuery"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    public void shouldReturnNotFoundWhenRecordDoesNotExist() throws Exception {
+        when(searchService.getRecordModified(any(EuropeanaId.class))).thenReturn(null);
+        when(searchService.searchIssue(anyString(), any(EuropeanaId.class), isNull(), anyString(), anyInt(),
+                any(List.class), anyString(), anyBoolean())).thenThrow(new RecordDoesNotExistException(
+                        new EuropeanaId("9200355", "BibliographicResource_3000096341989")));
+        mockMvc.perform(get("/presentation/9200355/BibliographicResource_3000096341989/search")
+                .param("q", "testQuery"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void shouldSearchRecordWithoutModifiedDate() throws Exception {
+        when(searchService.getRecordModified(any(EuropeanaId.class))).thenReturn(null);
+        when(searchService.searchIssue(anyString(), any(EuropeanaId.class), isNull(), anyString(), anyInt(),
+                any(List.class), eq("2"), anyBoolean())).thenReturn(new SearchResultV2(TEST_SEARCH_ID, false));
+        mockMvc.perform(get("/presentation/9200355/BibliographicResource_3000096341989/search")
+                .param("q", "testQuery"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("ETag"))
+                .andExpect(header().doesNotExist("Last-Modified"))
+                .andExpect(jsonPath("$.id").value(TEST_SEARCH_ID));
+    }
+
     @Test
     public void testValidateTextGranularityNoValue() throws InvalidParameterException {
         List<AnnotationType> defaultAnnoTypes = new ArrayList<>(){{
@@ -133,7 +185,7 @@ public class FTSearchControllerTest {
         }};
         when(ftSettings.getDefaultSearchTextGranularity()).thenReturn(defaultAnnoTypes);
 
-        FTSearchController searchController = new FTSearchController(searchService, ftSettings);
+        FTSearchController searchController = new FTSearchController(searchService, ftSettings, null);
         List<AnnotationType> annoTypes = searchController.validateTextGranularity(null);
         assertEquals(defaultAnnoTypes, annoTypes);
     }
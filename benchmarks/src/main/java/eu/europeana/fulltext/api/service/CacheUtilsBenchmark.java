@@ -0,0 +1,61 @@
+package eu.europeana.fulltext.api.service;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.time.ZonedDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures generating ETags and handling conditional requests, which is done for every presentation request
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CacheUtilsBenchmark {
+
+    private static final String IDS     = "9200396BibliographicResource_300011843597061";
+    private static final String VERSION = "30.8.2-SNAPSHOT";
+
+    private ZonedDateTime          modified;
+    private String                 eTag;
+    private MockHttpServletRequest matchingRequest;
+    private MockHttpServletRequest notMatchingRequest;
+    private MockHttpServletRequest unconditionalRequest;
+
+    @Setup
+    public void setup() {
+        modified = CacheUtils.januarificator();
+        eTag = CacheUtils.generateETag(IDS, modified, VERSION, true);
+
+        matchingRequest = new MockHttpServletRequest();
+        matchingRequest.addHeader("If-None-Match", "W/\"abc\", " + eTag);
+        notMatchingRequest = new MockHttpServletRequest();
+        notMatchingRequest.addHeader("If-None-Match", "W/\"abc\", W/\"def\"");
+        unconditionalRequest = new MockHttpServletRequest();
+    }
+
+    @Benchmark
+    public String generateETag() {
+        return CacheUtils.generateETag(IDS, modified, VERSION, true);
+    }
+
+    @Benchmark
+    public ResponseEntity<String> checkCachedMatch() {
+        return CacheUtils.checkCached(matchingRequest, modified, eTag);
+    }
+
+    @Benchmark
+    public ResponseEntity<String> checkCachedNoMatch() {
+        return CacheUtils.checkCached(notMatchingRequest, modified, eTag);
+    }
+
+    @Benchmark
+    public ResponseEntity<String> checkCachedUnconditional() {
+        return CacheUtils.checkCached(unconditionalRequest, modified, eTag);
+    }
+}
@@ -0,0 +1,33 @@
+package eu.europeana.fulltext.api.service;
+
+import eu.europeana.fulltext.AnnotationType;
+import eu.europeana.fulltext.search.exception.InvalidParameterException;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures parsing of the textGranularity request parameter
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ControllerUtilsBenchmark {
+
+    private static final Set<AnnotationType> ALLOWED_TYPES = EnumSet.of(AnnotationType.PAGE, AnnotationType.BLOCK,
+            AnnotationType.LINE, AnnotationType.WORD, AnnotationType.MEDIA, AnnotationType.CAPTION);
+
+    @Param({"", "Word", "Block,Line,Word", "P+B+L+W"})
+    private String textGranularity;
+
+    @Benchmark
+    public List<AnnotationType> validateTextGranularity() throws InvalidParameterException {
+        return ControllerUtils.validateTextGranularity(textGranularity, ALLOWED_TYPES);
+    }
+}
@@ -0,0 +1,44 @@
+package eu.europeana.fulltext.api.service;
+
+import eu.europeana.fulltext.api.model.AnnotationWrapper;
+import eu.europeana.fulltext.benchmarks.BenchmarkData;
+import eu.europeana.fulltext.entity.AnnoPage;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures mapping an AnnoPage to a IIIF v2 or v3 AnnotationPage. The resource is not dereferenced, because that
+ * requires a database query. Note that AnnotationPages are serialized directly from the AnnoPage, so most of the work
+ * is measured in the SerializationBenchmark.
+ * This class is in the same package as EDM2IIIFMapping so it can call its package-private methods.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MappingBenchmark {
+
+    @Param({BenchmarkData.FIXTURE_61, BenchmarkData.FIXTURE_62, "1000", "10000", "50000"})
+    private String page;
+
+    private AnnoPage annoPage;
+
+    @Setup
+    public void setup() {
+        BenchmarkData.context();
+        annoPage = BenchmarkData.annoPage(page);
+    }
+
+    @Benchmark
+    public AnnotationWrapper annotationPageV2() {
+        return EDM2IIIFMapping.getAnnotationPageV2(annoPage, false);
+    }
+
+    @Benchmark
+    public AnnotationWrapper annotationPageV3() {
+        return EDM2IIIFMapping.getAnnotationPageV3(annoPage, false);
+    }
+}
@@ -0,0 +1,51 @@
+package eu.europeana.fulltext.api.service;
+
+import eu.europeana.fulltext.api.model.AnnotationWrapper;
+import eu.europeana.fulltext.api.service.exception.SerializationException;
+import eu.europeana.fulltext.benchmarks.BenchmarkData;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures serialising an AnnotationPage to json-ld, both as String (pretty printed) and streamed to an output stream
+ * (the way the api writes annotation page responses)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @Param({BenchmarkData.FIXTURE_61, BenchmarkData.FIXTURE_62, "1000", "10000", "50000"})
+    private String page;
+
+    @Param({"2", "3"})
+    private String version;
+
+    private FTService         ftService;
+    private AnnotationWrapper annotationPage;
+    private OutputStream      out;
+
+    @Setup
+    public void setup() {
+        ftService = BenchmarkData.context().getBean(FTService.class);
+        annotationPage = ("3".equals(version)
+                ? EDM2IIIFMapping.getAnnotationPageV3(BenchmarkData.annoPage(page), false)
+                : EDM2IIIFMapping.getAnnotationPageV2(BenchmarkData.annoPage(page), false));
+        out = OutputStream.nullOutputStream();
+    }
+
+    @Benchmark
+    public String serialiseToString() throws SerializationException {
+        return ftService.serialise(annotationPage);
+    }
+
+    @Benchmark
+    public void serialiseToStream() throws SerializationException {
+        ftService.serialise(annotationPage, out, false);
+    }
+}
@@ -0,0 +1,174 @@
+package eu.europeana.fulltext.benchmarks;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import eu.europeana.fulltext.AnnotationType;
+import eu.europeana.fulltext.api.config.FTSettings;
+import eu.europeana.fulltext.api.config.SerializationConfig;
+import eu.europeana.fulltext.api.service.EDM2IIIFMapping;
+import eu.europeana.fulltext.api.service.FTService;
+import eu.europeana.fulltext.entity.AnnoPage;
+import eu.europeana.fulltext.entity.Annotation;
+import eu.europeana.fulltext.entity.Resource;
+import eu.europeana.fulltext.entity.Target;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Input data for the benchmarks: the AnnoPage fixtures of the api tests and synthetic AnnoPages of any size.
+ */
+public final class BenchmarkData {
+
+    /** Page 61 of the api test fixtures (314 annotations) */
+    public static final String FIXTURE_61 = "fixture61";
+    /** Page 62 of the api test fixtures (321 annotations) */
+    public static final String FIXTURE_62 = "fixture62";
+
+    private static final String FIXTURE_FILE = "9200396_BibliographicResource_3000118435970_annopage_%s.json";
+
+    private static final String DATASET_ID = "9200396";
+    private static final String LOCAL_ID   = "BibliographicResource_benchmark";
+    private static final String IMAGE_URL  = "https://iiif.europeana.eu/image/benchmark/%s/full/full/0/default.jpg";
+
+    private static final int WORDS_PER_LINE  = 10;
+    private static final int LINES_PER_BLOCK = 10;
+    private static final int WORD_LENGTH     = 7;
+    private static final int LINE_HEIGHT     = 40;
+
+    private static AnnotationConfigApplicationContext context;
+
+    private BenchmarkData() {
+        // empty constructor to prevent initialization
+    }
+
+    /**
+     * Returns an AnnoPage for the provided benchmark parameter value
+     * @param page either {@link #FIXTURE_61}, {@link #FIXTURE_62} or the number of annotations of a synthetic page
+     * @return AnnoPage
+     */
+    public static AnnoPage annoPage(String page) {
+        if (FIXTURE_61.equals(page)) {
+            return loadFixture("61");
+        }
+        if (FIXTURE_62.equals(page)) {
+            return loadFixture("62");
+        }
+        return syntheticAnnoPage("1", Integer.parseInt(page));
+    }
+
+    /**
+     * Load one of the AnnoPage json files used in the api tests
+     * @param pageId page number of the fixture (61 or 62)
+     * @return AnnoPage
+     */
+    public static AnnoPage loadFixture(String pageId) {
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        String file = String.format(FIXTURE_FILE, pageId);
+        try (InputStream in = BenchmarkData.class.getClassLoader().getResourceAsStream(file)) {
+            if (in == null) {
+                throw new IllegalStateException("Fixture " + file + " not found");
+            }
+            AnnoPage result = mapper.readValue(in, AnnoPage.class);
+            result.setModified(new Date(0));
+            return result;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error reading fixture " + file, e);
+        }
+    }
+
+    /**
+     * Generate an AnnoPage with the provided number of annotations: one page annotation, the rest is divided over
+     * blocks, lines and words (10 words per line and 10 lines per block). The generated data is always the same.
+     * @param pageId identifier of the page
+     * @param nrAnnotations total number of annotations
+     * @return AnnoPage with a resource containing the page text
+     */
+    public static AnnoPage syntheticAnnoPage(String pageId, int nrAnnotations) {
+        Random random = new Random(nrAnnotations);
+        // per block there is 1 block, 10 line and 100 word annotations
+        int annotationsPerBlock = 1 + LINES_PER_BLOCK + LINES_PER_BLOCK * WORDS_PER_LINE;
+        int nrWords = Math.max(1, (nrAnnotations - 1) * LINES_PER_BLOCK * WORDS_PER_LINE / annotationsPerBlock);
+
+        StringBuilder text = new StringBuilder(nrWords * (WORD_LENGTH + 1));
+        List<Annotation> words = new ArrayList<>(nrWords);
+        List<Annotation> lines = new ArrayList<>();
+        List<Annotation> blocks = new ArrayList<>();
+        int lineStart = 0;
+        int blockStart = 0;
+        for (int i = 0; i < nrWords; i++) {
+            int from = text.length();
+            for (int c = 0; c < WORD_LENGTH; c++) {
+                text.append((char) ('a' + random.nextInt(26)));
+            }
+            int line = i / WORDS_PER_LINE;
+            words.add(annotation(random, AnnotationType.WORD, from, text.length(),
+                    new Target(100 * (i % WORDS_PER_LINE), LINE_HEIGHT * line, 90, LINE_HEIGHT)));
+            boolean endOfLine = (i + 1) % WORDS_PER_LINE == 0 || i == nrWords - 1;
+            if (endOfLine) {
+                lines.add(annotation(random, AnnotationType.LINE, lineStart, text.length(),
+                        new Target(0, LINE_HEIGHT * line, 100 * WORDS_PER_LINE, LINE_HEIGHT)));
+                text.append('\n');
+                lineStart = text.length();
+            } else {
+                text.append(' ');
+            }
+            boolean endOfBlock = (i + 1) % (WORDS_PER_LINE * LINES_PER_BLOCK) == 0 || i == nrWords - 1;
+            if (endOfBlock) {
+                int firstLine = blocks.size() * LINES_PER_BLOCK;
+                blocks.add(annotation(random, AnnotationType.BLOCK, blockStart, text.length() - 1,
+                        new Target(0, LINE_HEIGHT * firstLine, 100 * WORDS_PER_LINE,
+                                LINE_HEIGHT * (line - firstLine + 1))));
+                blockStart = text.length();
+            }
+        }
+
+        List<Annotation> annotations = new ArrayList<>(1 + blocks.size() + lines.size() + words.size());
+        annotations.add(annotation(random, AnnotationType.PAGE, 0, text.length(), null));
+        annotations.addAll(blocks);
+        annotations.addAll(lines);
+        annotations.addAll(words);
+
+        Resource resource = new Resource(randomId(random), "en", text.toString(),
+                "http://creativecommons.org/publicdomain/mark/1.0/", DATASET_ID, LOCAL_ID);
+        AnnoPage result = new AnnoPage(DATASET_ID, LOCAL_ID, pageId, String.format(IMAGE_URL, pageId), "en",
+                resource);
+        result.setAns(annotations);
+        result.setModified(new Date(0));
+        return result;
+    }
+
+    private static Annotation annotation(Random random, AnnotationType type, int from, int to, Target target) {
+        List<Target> targets = (target == null ? null : List.of(target));
+        return new Annotation(randomId(random), type.getAbbreviation(), from, to, targets);
+    }
+
+    private static String randomId(Random random) {
+        return String.format("%016x%016x", random.nextLong(), random.nextLong());
+    }
+
+    /**
+     * Starts (only once) a Spring context with the beans needed for mapping and serialising, so benchmarks use the
+     * same configuration as the api. No database connection is made.
+     * @return application context
+     */
+    public static synchronized AnnotationConfigApplicationContext context() {
+        if (context == null) {
+            AnnotationConfigApplicationContext ctx = new AnnotationConfigApplicationContext();
+            ctx.register(FTSettings.class, SerializationConfig.class, EDM2IIIFMapping.class);
+            // repositories and caches are not used by the benchmarked methods
+            ctx.registerBean(FTService.class, () -> new FTService(null, null, null, null, null,
+                    ctx.getBean(FTSettings.class), ctx.getBean(ObjectMapper.class)));
+            ctx.refresh();
+            context = ctx;
+        }
+        return context;
+    }
+}
@@ -0,0 +1,30 @@
+package eu.europeana.fulltext.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler enabled, so allocation rate (gc.alloc.rate.norm = bytes per operation) is
+ * reported next to throughput. Accepts the same command-line options as the standard JMH runner, for example
+ * <pre>java -jar benchmarks.jar Mapping -p page=fixture61</pre>
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+        // empty constructor to prevent initialization
+    }
+
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+        if (commandLine.getProfilers().isEmpty()) {
+            options.addProfiler(GCProfiler.class);
+        }
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,219 @@
+package eu.europeana.fulltext.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Generates a zip archive with synthetic EDM full-text data that can be loaded with the Loader, for load and scale
+ * testing without real newspapers. The archive contains one xml file per page ({@code <localId>/<pageId>.xml}), in
+ * the format that the XMLParserService expects.
+ * Translations are written to a separate archive per language ({@code translations/<language>/<datasetId>.zip}),
+ * because the Loader doesn't support loading translations yet. A translated page has the same annotations as the
+ * original page, but a different text.
+ * The same settings and seed always generate exactly the same archives.
+ * <p>
+ * Run with e.g.
+ * <pre>java -cp benchmarks.jar eu.europeana.fulltext.benchmarks.EdmArchiveGenerator --records 1000 --pages 20
+ * --words 500 --translations de,fr --output /tmp/generated</pre>
+ */
+public class EdmArchiveGenerator {
+
+    private static final String ARCHIVE_EXTENSION = ".zip";
+    private static final String TRANSLATIONS_DIR  = "translations";
+    private static final long   ENTRY_TIME        = 946_684_800_000L; // 2000-01-01
+
+    private String       datasetId      = "9999999";
+    private int          records        = 10;
+    private int          pagesPerRecord = 10;
+    private int          wordsPerPage   = 300;
+    private String       language       = "en";
+    private List<String> translations   = new ArrayList<>();
+    private boolean      media;
+    private boolean      entityHeavy;
+    private long         seed           = 42L;
+
+    public EdmArchiveGenerator setDatasetId(String datasetId) {
+        this.datasetId = datasetId;
+        return this;
+    }
+
+    public EdmArchiveGenerator setRecords(int records) {
+        this.records = records;
+        return this;
+    }
+
+    public EdmArchiveGenerator setPagesPerRecord(int pagesPerRecord) {
+        this.pagesPerRecord = pagesPerRecord;
+        return this;
+    }
+
+    public EdmArchiveGenerator setWordsPerPage(int wordsPerPage) {
+        this.wordsPerPage = wordsPerPage;
+        return this;
+    }
+
+    public EdmArchiveGenerator setLanguage(String language) {
+        this.language = language;
+        return this;
+    }
+
+    /**
+     * @param translations languages in which every page is also generated as translation
+     */
+    public EdmArchiveGenerator setTranslations(List<String> translations) {
+        this.translations = new ArrayList<>(translations);
+        return this;
+    }
+
+    /**
+     * @param media if true, generate audio/video captions (#t targets) instead of image pages (#xywh targets)
+     */
+    public EdmArchiveGenerator setMedia(boolean media) {
+        this.media = media;
+        return this;
+    }
+
+    /**
+     * @param entityHeavy if true, about a quarter of the words contains an entity or character reference
+     */
+    public EdmArchiveGenerator setEntityHeavy(boolean entityHeavy) {
+        this.entityHeavy = entityHeavy;
+        return this;
+    }
+
+    public EdmArchiveGenerator setSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * @param recordNr number of the record (starting with 0)
+     * @return the local id of the generated record
+     */
+    public static String localId(int recordNr) {
+        return String.format("record_%07d", recordNr);
+    }
+
+    /**
+     * Generate the archive and (optionally) the translation archives
+     * @param outputDirectory directory where the archive(s) are written
+     * @return paths of all written archives, the first one contains the original pages
+     * @throws IOException when there's a problem writing an archive
+     */
+    public List<Path> generate(Path outputDirectory) throws IOException {
+        List<Path> result = new ArrayList<>();
+        result.add(outputDirectory.resolve(datasetId + ARCHIVE_EXTENSION));
+        for (String translation : translations) {
+            result.add(outputDirectory.resolve(TRANSLATIONS_DIR).resolve(translation)
+                    .resolve(datasetId + ARCHIVE_EXTENSION));
+        }
+        List<String> languages = new ArrayList<>();
+        languages.add(language);
+        languages.addAll(translations);
+
+        List<ZipOutputStream> archives = new ArrayList<>();
+        try {
+            for (Path path : result) {
+                Files.createDirectories(path.getParent());
+                archives.add(new ZipOutputStream(Files.newOutputStream(path)));
+            }
+            EdmPageGenerator generator = new EdmPageGenerator(entityHeavy, media);
+            Random random = new Random(seed);
+            for (int r = 0; r < records; r++) {
+                String localId = localId(r);
+                for (int p = 1; p <= pagesPerRecord; p++) {
+                    String pageId = Integer.toString(p);
+                    long pageSeed = random.nextLong();
+                    for (int i = 0; i < archives.size(); i++) {
+                        ZipOutputStream archive = archives.get(i);
+                        ZipEntry entry = new ZipEntry(localId + "/" + pageId + ".xml");
+                        // fixed timestamp, so archives are identical byte for byte
+                        entry.setTime(ENTRY_TIME);
+                        archive.putNextEntry(entry);
+                        archive.write(generator.generatePage(datasetId, localId, pageId, wordsPerPage,
+                                languages.get(i), pageSeed));
+                        archive.closeEntry();
+                    }
+                }
+            }
+        } finally {
+            for (OutputStream archive : archives) {
+                archive.close();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Command-line usage: all options are optional
+     * <pre>
+     * --output       directory to write to (default: generated)
+     * --dataset      dataset id (default: 9999999)
+     * --records      number of records (default: 10)
+     * --pages        number of pages per record (default: 10)
+     * --words        number of words per page (default: 300)
+     * --language     language of the original text (default: en)
+     * --translations comma-separated list of translation languages (default: none)
+     * --media        generate audio/video captions instead of image pages
+     * --entities     generate entity-heavy text
+     * --seed         random seed (default: 42)
+     * </pre>
+     */
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = parseOptions(args);
+        EdmArchiveGenerator generator = new EdmArchiveGenerator();
+        if (options.containsKey("dataset")) {
+            generator.setDatasetId(options.get("dataset"));
+        }
+        if (options.containsKey("records")) {
+            generator.setRecords(Integer.parseInt(options.get("records")));
+        }
+        if (options.containsKey("pages")) {
+            generator.setPagesPerRecord(Integer.parseInt(options.get("pages")));
+        }
+        if (options.containsKey("words")) {
+            generator.setWordsPerPage(Integer.parseInt(options.get("words")));
+        }
+        if (options.containsKey("language")) {
+            generator.setLanguage(options.get("language"));
+        }
+        if (options.containsKey("translations")) {
+            generator.setTranslations(List.of(options.get("translations").split(",")));
+        }
+        if (options.containsKey("seed")) {
+            generator.setSeed(Long.parseLong(options.get("seed")));
+        }
+        generator.setMedia(options.containsKey("media"));
+        generator.setEntityHeavy(options.containsKey("entities"));
+
+        for (Path archive : generator.generate(Paths.get(options.getOrDefault("output", "generated")))) {
+            System.out.println("Generated " + archive + " (" + Files.size(archive) + " bytes)");
+        }
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> result = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument " + args[i]);
+            }
+            String name = args[i].substring(2);
+            if (i + 1 < args.length && !args[i + 1].startsWith("--")) {
+                result.put(name, args[++i]);
+            } else {
+                result.put(name, "");
+            }
+        }
+        return result;
+    }
+}
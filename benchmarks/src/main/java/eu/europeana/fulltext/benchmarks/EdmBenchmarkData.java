@@ -0,0 +1,84 @@
+package eu.europeana.fulltext.benchmarks;
+
+import eu.europeana.fulltext.loader.config.LoaderSettings;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Input data for the loader benchmarks: the EDM xml files of the loader tests and generated EDM xml files of any size.
+ */
+public final class EdmBenchmarkData {
+
+    /** Loader test file with 78 annotations */
+    public static final String FIXTURE_78   = "fixture78";
+    /** Loader test file with 1111 annotations */
+    public static final String FIXTURE_1111 = "fixture1111";
+
+    /** Suffix of a benchmark parameter value to generate a page with many entity and character references */
+    public static final String ENTITIES_SUFFIX = "-entities";
+
+    public static final String DATASET_ID = "9200396";
+    public static final String LOCAL_ID   = "BibliographicResource_benchmark";
+    public static final String LANGUAGE   = "en";
+    public static final long   SEED       = 42L;
+
+    private static final String FIXTURE_78_FILE   = "9200396-BibliographicResource_3000118435009-1.xml";
+    private static final String FIXTURE_1111_FILE = "9200357-BibliographicResource_3000095247417-2.xml";
+
+    private static LoaderSettings settings;
+
+    private EdmBenchmarkData() {
+        // empty constructor to prevent initialization
+    }
+
+    /**
+     * Returns the EDM xml of one page for the provided benchmark parameter value
+     * @param page either {@link #FIXTURE_78}, {@link #FIXTURE_1111} or the number of words of a generated page,
+     *             optionally followed by {@link #ENTITIES_SUFFIX}
+     * @return utf-8 encoded xml
+     */
+    public static byte[] edmXml(String page) {
+        if (FIXTURE_78.equals(page)) {
+            return loadFixture(FIXTURE_78_FILE);
+        }
+        if (FIXTURE_1111.equals(page)) {
+            return loadFixture(FIXTURE_1111_FILE);
+        }
+        boolean entityHeavy = page.endsWith(ENTITIES_SUFFIX);
+        int nrWords = Integer.parseInt(entityHeavy ? page.substring(0, page.length() - ENTITIES_SUFFIX.length()) : page);
+        return new EdmPageGenerator(entityHeavy, false)
+                .generatePage(DATASET_ID, LOCAL_ID, "1", nrWords, LANGUAGE, SEED);
+    }
+
+    /**
+     * Load one of the EDM xml files used in the loader tests
+     * @param file name of the file
+     * @return file contents
+     */
+    public static byte[] loadFixture(String file) {
+        try (InputStream in = EdmBenchmarkData.class.getClassLoader().getResourceAsStream(file)) {
+            if (in == null) {
+                throw new IllegalStateException("Fixture " + file + " not found");
+            }
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error reading fixture " + file, e);
+        }
+    }
+
+    /**
+     * Loads (only once) the loader settings from loader.properties, the same way the loader does
+     * @return LoaderSettings
+     */
+    public static synchronized LoaderSettings loaderSettings() {
+        if (settings == null) {
+            try (AnnotationConfigApplicationContext ctx = new AnnotationConfigApplicationContext(LoaderSettings.class)) {
+                settings = ctx.getBean(LoaderSettings.class);
+            }
+        }
+        return settings;
+    }
+}
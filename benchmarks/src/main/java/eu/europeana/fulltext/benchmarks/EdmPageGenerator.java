@@ -0,0 +1,226 @@
+package eu.europeana.fulltext.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Generates EDM full-text xml files (one page each) in the format that the loader's XMLParserService reads: an
+ * edm:FullTextResource with the page text, followed by the annotations. For images these are Word, Line and Block
+ * annotations with #xywh targets and one Page annotation, for audio/video these are Caption annotations with #t
+ * targets and one Media annotation.
+ * Output only depends on the provided parameters. Generating the same page (seed) in another language results in a
+ * translation: the annotations (ids, targets and text positions) are the same, but the text and resource id differ.
+ */
+public class EdmPageGenerator {
+
+    private static final String RESOURCE_BASE_URL = "http://data.europeana.eu/fulltext/";
+    private static final String ANNOTATION_BASE_URL = "http://data.europeana.eu/annotation/";
+    private static final String IMAGE_URL = "https://iiif.europeana.eu/image/%s/%s/%s/full/full/0/default.jpg";
+    private static final String MEDIA_URL = "https://media.example.org/%s/%s/%s.mp4";
+    private static final String RIGHTS = "http://creativecommons.org/publicdomain/mark/1.0/";
+
+    private static final int WORDS_PER_LINE  = 10;
+    private static final int LINES_PER_BLOCK = 10;
+    private static final int WORD_WIDTH      = 90;
+    private static final int LINE_HEIGHT     = 40;
+    private static final int MAX_WORD_LENGTH = 10;
+    private static final int MIN_WORD_MS     = 200;
+    private static final int MAX_WORD_MS     = 600;
+
+    // entity and character references used when generating entity-heavy text, each resolves to a single char
+    private static final String[] ESCAPES = {"&amp;", "&apos;", "&lt;", "&#233;", "&#xFC;", "&#8217;"};
+
+    private final boolean entityHeavy;
+    private final boolean media;
+
+    /**
+     * Create a new generator
+     * @param entityHeavy if true, about a quarter of the words contains an entity or character reference
+     * @param media if true, generate audio/video pages (captions) instead of image pages
+     */
+    public EdmPageGenerator(boolean entityHeavy, boolean media) {
+        this.entityHeavy = entityHeavy;
+        this.media = media;
+    }
+
+    /**
+     * Generate the xml of one page
+     * @param datasetId dataset id of the record
+     * @param localId   local id of the record
+     * @param pageId    page number
+     * @param nrWords   number of words on the page. For images there will be a Line annotation for every 10 words and
+     *                  a Block annotation for every 10 lines, for media there is a Caption annotation for every 10 words
+     * @param language  language of the text
+     * @param pageSeed  random seed that determines the annotations, use the same seed to generate translations
+     * @return utf-8 encoded xml
+     */
+    public byte[] generatePage(String datasetId, String localId, String pageId, int nrWords, String language,
+                               long pageSeed) {
+        Random structure = new Random(pageSeed);
+        Random text = new Random(pageSeed ^ language.hashCode());
+        String recordId = datasetId + "/" + localId;
+
+        Page page = new Page(nrWords);
+        if (media) {
+            generateCaptions(page, nrWords, structure, text);
+        } else {
+            generateWordsLinesBlocks(page, nrWords, structure, text);
+        }
+
+        StringBuilder xml = new StringBuilder(page.text.length() + page.annotations.length() + 2000);
+        xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<!DOCTYPE RDF [\n")
+                .append("<!ENTITY text  \"").append(RESOURCE_BASE_URL).append(recordId).append('/')
+                .append(randomId(text)).append("\" >\n")
+                .append("<!ENTITY img   \"").append(String.format(media ? MEDIA_URL : IMAGE_URL, datasetId, localId,
+                        pageId)).append("\" >\n")
+                .append("<!ENTITY motv  \"http://www.w3.org/ns/oa#transcribing\" >\n")
+                .append("]>\n")
+                .append("<rdf:RDF xmlns:rdf=\"http://www.w3.org/1999/02/22-rdf-syntax-ns#\"\n")
+                .append("         xmlns:edm=\"http://www.europeana.eu/schemas/edm/\"\n")
+                .append("         xmlns:dc=\"http://purl.org/dc/elements/1.1/\"\n")
+                .append("         xmlns:oa=\"http://www.w3.org/ns/oa#\"\n")
+                .append("         xml:base=\"").append(ANNOTATION_BASE_URL).append(recordId).append("\">\n\n")
+                .append("<edm:FullTextResource rdf:about=\"&text;\">\n")
+                .append("\t<dc:language>").append(language).append("</dc:language>\n")
+                .append("\t<edm:rights rdf:resource=\"").append(RIGHTS).append("\"/>\n")
+                .append("\t<dc:source rdf:resource=\"").append(ANNOTATION_BASE_URL).append(recordId)
+                .append("\"/>\n")
+                .append("\t<rdf:value>").append(page.text).append("</rdf:value>\n")
+                .append("</edm:FullTextResource>\n\n")
+                .append(page.annotations)
+                .append("<oa:Annotation rdf:ID=\"/").append(randomId(structure)).append("\">\n")
+                .append("\t<dc:type>").append(media ? "Media" : "Page").append("</dc:type>\n")
+                .append("\t<oa:motivatedBy rdf:resource=\"&motv;\"/>\n")
+                .append("\t<oa:hasBody rdf:resource=\"&text;\"/>\n")
+                .append("\t<oa:hasTarget rdf:resource=\"&img;")
+                .append(media ? npt(0, page.durationMs) : "").append("\"/>\n")
+                .append("</oa:Annotation>\n\n")
+                .append("</rdf:RDF>\n");
+        return xml.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void generateWordsLinesBlocks(Page page, int nrWords, Random structure, Random text) {
+        int lineStart = 0;
+        int blockStart = 0;
+        int line = 0;
+        for (int i = 0; i < nrWords; i++) {
+            int from = page.textLength;
+            appendWord(page, structure, text);
+            int column = i % WORDS_PER_LINE;
+            appendAnnotation(page, structure, "Word", from,
+                    xywh(column * (WORD_WIDTH + 10), line * LINE_HEIGHT, WORD_WIDTH, LINE_HEIGHT));
+
+            boolean lastWord = (i == nrWords - 1);
+            if (column == WORDS_PER_LINE - 1 || lastWord) {
+                appendAnnotation(page, structure, "Line", lineStart,
+                        xywh(0, line * LINE_HEIGHT, (column + 1) * (WORD_WIDTH + 10), LINE_HEIGHT));
+                if ((line + 1) % LINES_PER_BLOCK == 0 || lastWord) {
+                    int firstLine = line - line % LINES_PER_BLOCK;
+                    appendAnnotation(page, structure, "Block", blockStart,
+                            xywh(0, firstLine * LINE_HEIGHT, WORDS_PER_LINE * (WORD_WIDTH + 10),
+                                    (line - firstLine + 1) * LINE_HEIGHT));
+                    blockStart = page.textLength + 1;
+                }
+                page.appendNewLine();
+                line++;
+                lineStart = page.textLength;
+            } else {
+                page.appendSpace();
+            }
+        }
+    }
+
+    private void generateCaptions(Page page, int nrWords, Random structure, Random text) {
+        int captionStart = 0;
+        int captionStartMs = 0;
+        for (int i = 0; i < nrWords; i++) {
+            appendWord(page, structure, text);
+            page.durationMs += MIN_WORD_MS + structure.nextInt(MAX_WORD_MS - MIN_WORD_MS);
+            if (i % WORDS_PER_LINE == WORDS_PER_LINE - 1 || i == nrWords - 1) {
+                appendAnnotation(page, structure, "Caption", captionStart, npt(captionStartMs, page.durationMs));
+                page.appendNewLine();
+                captionStart = page.textLength;
+                captionStartMs = page.durationMs;
+            } else {
+                page.appendSpace();
+            }
+        }
+    }
+
+    /**
+     * Appends a random (escaped) word to the text. The length of the word and the position of an escaped character
+     * are part of the structure, so they are the same in all translations
+     */
+    private void appendWord(Page page, Random structure, Random text) {
+        int length = 1 + structure.nextInt(MAX_WORD_LENGTH - 1);
+        int escapeAt = (entityHeavy && structure.nextInt(4) == 0 ? structure.nextInt(length) : -1);
+        for (int c = 0; c < length; c++) {
+            if (c == escapeAt) {
+                page.text.append(ESCAPES[text.nextInt(ESCAPES.length)]);
+            } else {
+                page.text.append((char) ('a' + text.nextInt(26)));
+            }
+        }
+        page.textLength += length;
+    }
+
+    private void appendAnnotation(Page page, Random structure, String type, int from, String target) {
+        page.annotations.append("<oa:Annotation rdf:ID=\"/").append(randomId(structure)).append("\">\n")
+                .append("\t<dc:type>").append(type).append("</dc:type>\n")
+                .append("\t<oa:motivatedBy rdf:resource=\"&motv;\"/>\n")
+                .append("\t<oa:hasBody>\n")
+                .append("\t\t<oa:SpecificResource rdf:about=\"&text;#char=").append(from).append(',')
+                .append(page.textLength).append("\">\n")
+                .append("\t\t\t<oa:hasSource rdf:resource=\"&text;\"/>\n")
+                .append("\t\t</oa:SpecificResource>\n")
+                .append("\t</oa:hasBody>\n")
+                .append("\t<oa:hasTarget rdf:resource=\"&img;").append(target).append("\"/>\n")
+                .append("</oa:Annotation>\n\n");
+    }
+
+    private static String xywh(int x, int y, int w, int h) {
+        return "#xywh=" + x + ',' + y + ',' + w + ',' + h;
+    }
+
+    /**
+     * @return a NormalPlayTime target in the HH:mm:ss.SSS format that the loader expects
+     */
+    private static String npt(int startMs, int endMs) {
+        return "#t=" + nptTime(startMs) + ',' + nptTime(endMs);
+    }
+
+    private static String nptTime(int ms) {
+        return String.format("%02d:%02d:%02d.%03d", ms / 3_600_000, ms / 60_000 % 60, ms / 1000 % 60, ms % 1000);
+    }
+
+    private static String randomId(Random random) {
+        return String.format("%016x%016x", random.nextLong(), random.nextLong());
+    }
+
+    /**
+     * Page text and annotations generated so far
+     */
+    private static final class Page {
+        private final StringBuilder text;
+        private final StringBuilder annotations;
+        // the unescaped text length, because that's what the character offsets refer to
+        private int textLength;
+        private int durationMs;
+
+        private Page(int nrWords) {
+            this.text = new StringBuilder(nrWords * MAX_WORD_LENGTH);
+            this.annotations = new StringBuilder(nrWords * 600);
+        }
+
+        private void appendSpace() {
+            text.append(' ');
+            textLength++;
+        }
+
+        private void appendNewLine() {
+            text.append("&#xA;");
+            textLength++;
+        }
+    }
+}
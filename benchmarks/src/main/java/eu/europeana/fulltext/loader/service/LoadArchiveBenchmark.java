@@ -0,0 +1,102 @@
+package eu.europeana.fulltext.loader.service;
+
+import eu.europeana.fulltext.benchmarks.EdmBenchmarkData;
+import eu.europeana.fulltext.benchmarks.EdmPageGenerator;
+import eu.europeana.fulltext.loader.config.LoaderSettings;
+import eu.europeana.fulltext.loader.exception.LoaderException;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Measures loading a zip archive with LoadArchiveService, without saving anything to the database
+ * (MongoSaveMode.NONE). The archive contains {@value #PAGES_PER_ARCHIVE} pages, so the reported throughput is in
+ * pages/s and the gc.alloc.rate.norm value is the allocation per page. The megabytes counter shows the throughput in
+ * MB/s of uncompressed xml.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class LoadArchiveBenchmark {
+
+    // more than 100, so pages are 'flushed' to MongoService during processing as well as at the end
+    static final int PAGES_PER_ARCHIVE = 250;
+
+    /**
+     * Counts the number of parsed megabytes
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Megabytes {
+        public double megabytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            megabytes = 0;
+        }
+    }
+
+    /**
+     * Either "fixtures" (alternating the two loader test files) or the number of words of the generated pages,
+     * optionally followed by {@link EdmBenchmarkData#ENTITIES_SUFFIX}
+     */
+    @Param({"fixtures", "300", "1000", "1000" + EdmBenchmarkData.ENTITIES_SUFFIX})
+    private String pages;
+
+    private LoadArchiveService loadArchiveService;
+    private Path               archive;
+    private double             xmlMegabytes;
+
+    @Setup
+    public void setup() throws IOException {
+        LoaderSettings settings = EdmBenchmarkData.loaderSettings();
+        // with MongoSaveMode.NONE no repositories are used
+        MongoService mongoService = new MongoService(null, null, null, null, settings);
+        loadArchiveService = new LoadArchiveService(new XMLParserService(settings), mongoService, settings);
+
+        archive = Files.createTempFile("fulltext-benchmark-", ".zip");
+        long xmlBytes = 0;
+        EdmPageGenerator generator = new EdmPageGenerator(pages.endsWith(EdmBenchmarkData.ENTITIES_SUFFIX), false);
+        try (OutputStream out = Files.newOutputStream(archive); ZipOutputStream zip = new ZipOutputStream(out)) {
+            for (int i = 1; i <= PAGES_PER_ARCHIVE; i++) {
+                String pageId = Integer.toString(i);
+                byte[] xml;
+                if ("fixtures".equals(pages)) {
+                    xml = EdmBenchmarkData.edmXml(i % 2 == 0
+                            ? EdmBenchmarkData.FIXTURE_1111
+                            : EdmBenchmarkData.FIXTURE_78);
+                } else {
+                    int nrWords = Integer.parseInt(pages.replace(EdmBenchmarkData.ENTITIES_SUFFIX, ""));
+                    xml = generator.generatePage(EdmBenchmarkData.DATASET_ID, EdmBenchmarkData.LOCAL_ID, pageId,
+                            nrWords, EdmBenchmarkData.LANGUAGE, EdmBenchmarkData.SEED + i);
+                }
+                zip.putNextEntry(new ZipEntry(EdmBenchmarkData.LOCAL_ID + "/" + pageId + ".xml"));
+                zip.write(xml);
+                zip.closeEntry();
+                xmlBytes += xml.length;
+            }
+        }
+        xmlMegabytes = xmlBytes / 1_000_000d;
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(archive);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAGES_PER_ARCHIVE)
+    public String processArchive(Megabytes counter) throws LoaderException {
+        counter.megabytes += xmlMegabytes;
+        return loadArchiveService.processArchive(archive.toString(), MongoSaveMode.NONE);
+    }
+}
@@ -0,0 +1,58 @@
+package eu.europeana.fulltext.loader.service;
+
+import eu.europeana.fulltext.benchmarks.EdmBenchmarkData;
+import eu.europeana.fulltext.entity.AnnoPage;
+import eu.europeana.fulltext.loader.exception.LoaderException;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures parsing a single EDM full-text xml file into an AnnoPage. One operation is one page, so the reported
+ * throughput is in pages/s and the gc.alloc.rate.norm value is the allocation per page. The megabytes counter shows
+ * the throughput in MB/s.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class XMLParserBenchmark {
+
+    /**
+     * Counts the number of parsed megabytes
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Megabytes {
+        public double megabytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            megabytes = 0;
+        }
+    }
+
+    @Param({EdmBenchmarkData.FIXTURE_78, EdmBenchmarkData.FIXTURE_1111, "1000", "10000", "50000",
+            "1000" + EdmBenchmarkData.ENTITIES_SUFFIX, "10000" + EdmBenchmarkData.ENTITIES_SUFFIX})
+    private String page;
+
+    private XMLParserService parser;
+    private byte[]           xml;
+    private double           xmlMegabytes;
+
+    @Setup
+    public void setup() {
+        parser = new XMLParserService(EdmBenchmarkData.loaderSettings());
+        xml = EdmBenchmarkData.edmXml(page);
+        xmlMegabytes = xml.length / 1_000_000d;
+    }
+
+    @Benchmark
+    public AnnoPage parse(Megabytes counter) throws LoaderException {
+        counter.megabytes += xmlMegabytes;
+        return parser.parse("1", new ByteArrayInputStream(xml), page);
+    }
+}
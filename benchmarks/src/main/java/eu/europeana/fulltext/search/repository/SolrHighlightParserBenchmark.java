@@ -0,0 +1,97 @@
+package eu.europeana.fulltext.search.repository;
+
+import eu.europeana.fulltext.search.model.query.SolrHit;
+import org.apache.solr.client.solrj.impl.BinaryResponseParser;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.util.JavaBinCodec;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures reading a Solr highlighting response of an issue with the streaming highlight parser, compared to reading
+ * it into NamedLists with the default SolrJ parser (which the old parsing of snippets and offsets started with)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SolrHighlightParserBenchmark {
+
+    private static final String IMAGE_ID      = "https://iiif.europeana.eu/image/AVB5EMAWXYXPY2NSRANVZQ77OZBQWXFUFDDJ74OTHTVU6OBRAHIA/presentation_images/60de4440-022a-11e6-a696-fa163e2dd531/node-3/image/BNL/Journal_historique_et_littéraire/1774/07/15/";
+    private static final int    PAGE_LENGTH   = 2000;
+    private static final int    HITS_PER_PAGE = 2;
+    private static final int    PADDED_HITS   = 8;
+
+    @Param({"1", "10", "100"})
+    private int pages;
+
+    private byte[] response;
+
+    @Setup
+    public void setup() throws IOException {
+        List<String> snippets = new ArrayList<>();
+        List<NamedList<Object>> passages = new ArrayList<>();
+        StringBuilder text = new StringBuilder(PAGE_LENGTH);
+        while (text.length() < PAGE_LENGTH) {
+            text.append("Mgr. l’Archiduc Maximilien après avoir vu à Bruges ce qu’il y a de remarquable ");
+        }
+        int pageStart = 0;
+        for (int page = 0; page < pages; page++) {
+            String imageId = IMAGE_ID + String.format("%05d", page) + "/full/full/0/default.jpg";
+            snippets.add("{" + imageId + "} " + text);
+            int textStart = pageStart + imageId.length() + 3;
+            List<Integer> starts = new ArrayList<>();
+            List<Integer> ends = new ArrayList<>();
+            for (int hit = 0; hit < PADDED_HITS; hit++) {
+                boolean padding = hit >= HITS_PER_PAGE;
+                starts.add(padding ? 0 : textStart + 100 + hit * 500);
+                ends.add(padding ? 0 : textStart + 107 + hit * 500);
+            }
+            NamedList<Object> passage = new SimpleOrderedMap<>();
+            passage.add("startOffsetUtf16", pageStart);
+            passage.add("matchStartsUtf16", starts);
+            passage.add("matchEndsUtf16", ends);
+            passages.add(passage);
+            pageStart = textStart + text.length() + 1;
+        }
+
+        NamedList<Object> field = new SimpleOrderedMap<>();
+        field.add("snippets", snippets);
+        field.add("passages", passages);
+        NamedList<Object> document = new SimpleOrderedMap<>();
+        document.add("fulltext.fr", field);
+        NamedList<Object> highlighting = new SimpleOrderedMap<>();
+        highlighting.add("/9200396/BibliographicResource_3000118435970", document);
+        NamedList<Object> root = new SimpleOrderedMap<>();
+        root.add("response", new SolrDocumentList());
+        root.add("highlighting", highlighting);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JavaBinCodec codec = new JavaBinCodec()) {
+            codec.marshal(root, out);
+        }
+        response = out.toByteArray();
+    }
+
+    @Benchmark
+    public List<SolrHit> streamingParser() {
+        SolrHighlightResponseParser parser = new SolrHighlightResponseParser(false);
+        parser.processResponse(new ByteArrayInputStream(response), null);
+        return parser.getHits();
+    }
+
+    @Benchmark
+    public NamedList<Object> namedListParser() {
+        return new BinaryResponseParser().processResponse(new ByteArrayInputStream(response), null);
+    }
+}
@@ -0,0 +1,89 @@
+package eu.europeana.fulltext.search.service;
+
+import eu.europeana.fulltext.AnnotationType;
+import eu.europeana.fulltext.benchmarks.BenchmarkData;
+import eu.europeana.fulltext.entity.AnnoPage;
+import eu.europeana.fulltext.entity.Annotation;
+import eu.europeana.fulltext.search.config.SearchConfig;
+import eu.europeana.fulltext.search.model.query.SolrHit;
+import eu.europeana.fulltext.search.model.response.SearchResult;
+import eu.europeana.fulltext.search.model.response.SearchResultFactory;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Measures mapping Solr hits to the annotations of a page, which is done for every page with hits when searching in
+ * an issue. The page contains all annotations of the requested type (words, the default), so this is the worst case:
+ * Mongo normally only returns the annotations that overlap with a hit. The hits are spread evenly over the page.
+ * <p>
+ * {@link #findPageAnnotations()} is what the search service does after retrieving the page (including adding the
+ * annotations to the result), {@link #checkAllAnnotations(Blackhole)} is the old approach of checking every annotation on the page for every hit and is
+ * only there for comparison.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+
+    private static final String VERSION = "3";
+
+    @Param({"1000", "25000"})
+    private int annotations;
+
+    @Param({"1", "12", "100"})
+    private int hits;
+
+    private FTSearchService searchService;
+    private AnnoPage        annoPage;
+    private List<SolrHit>   solrHits;
+
+    @Setup
+    public void setup() {
+        // the search results use the mapping settings
+        BenchmarkData.context();
+        searchService = new FTSearchService(null, null, null);
+        annoPage = BenchmarkData.syntheticAnnoPage("1", annotations);
+        List<Annotation> words = annoPage.getAns().stream()
+                .filter(a -> a.getDcType() == AnnotationType.WORD.getAbbreviation())
+                .collect(Collectors.toList());
+        annoPage.setAns(words);
+
+        String text = annoPage.getRes().getValue();
+        solrHits = new ArrayList<>(hits);
+        for (int i = 0; i < hits; i++) {
+            Annotation word = words.get((int) ((long) i * words.size() / hits));
+            solrHits.add(new SolrHit(annoPage.getTgtId(), text, word.getFrom(), word.getTo()));
+        }
+    }
+
+    @Benchmark
+    public SearchResult findPageAnnotations() {
+        List<FTSearchService.AnnotationMatch> matches = new ArrayList<>();
+        searchService.findPageAnnotations(matches, annoPage, solrHits, SearchConfig.MAXIMUM_HITS);
+        SearchResult result = SearchResultFactory.createSearchResult(null, false, VERSION);
+        // word level annotations don't have hits, so no text is needed
+        searchService.addAnnotationHits(result, matches, Collections.emptyMap(), VERSION);
+        return result;
+    }
+
+    @Benchmark
+    public void checkAllAnnotations(Blackhole bh) {
+        for (SolrHit hit : solrHits) {
+            for (Annotation anno : annoPage.getAns()) {
+                if (anno.getFrom() != null && anno.getTo() != null
+                        && hit.getStart() <= anno.getTo() && hit.getEnd() >= anno.getFrom()) {
+                    bh.consume(anno);
+                }
+            }
+        }
+    }
+}
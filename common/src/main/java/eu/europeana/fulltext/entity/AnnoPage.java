@@ -17,7 +17,17 @@ import java.util.Objects;
  * Resource base URL: https://www.europeana.eu/api/fulltext/
  */
 @Entity(value = "AnnoPage", useDiscriminator = false)
-@Indexes(@Index(fields = {@Field("dsId"), @Field("lcId"), @Field("pgId")}, options = @IndexOptions(unique = true)))
+@Indexes({
+        @Index(fields = {@Field("dsId"), @Field("lcId"), @Field("pgId")}, options = @IndexOptions(unique = true)),
+        // covers queries that only retrieve the modified date
+        @Index(fields = {@Field("dsId"), @Field("lcId"), @Field("pgId"), @Field("lang"), @Field("modified")}),
+        // multikey index for retrieving a single annotation by its id
+        @Index(fields = {@Field("dsId"), @Field("lcId"), @Field("ans.anId")}),
+        // for retrieving AnnoPages by image id (target)
+        @Index(fields = {@Field("dsId"), @Field("lcId"), @Field("tgtId")}),
+        // covers retrieving the ids of recently inserted pages
+        @Index(fields = {@Field("_id"), @Field("dsId"), @Field("lcId"), @Field("pgId"), @Field("lang")})
+})
 public class AnnoPage {
 
     @Id
@@ -115,11 +125,11 @@ public class AnnoPage {
     }
 
     public Date getModified() {
-        return (Date) modified.clone();
+        return (modified == null ? null : (Date) modified.clone());
     }
 
     public void setModified(Date modified) {
-        this.modified = (Date) modified.clone();
+        this.modified = (modified == null ? null : (Date) modified.clone());
     }
 
     public String getLang() {
@@ -0,0 +1,60 @@
+package eu.europeana.fulltext.entity;
+
+import dev.morphia.annotations.Entity;
+import dev.morphia.annotations.Id;
+
+import java.util.Date;
+
+/**
+ * Number of (original) pages, resources and annotations of a dataset, and the size of its texts. The counters
+ * are maintained by the loader whenever data is saved or deleted, so they can be retrieved without counting the
+ * (very large) AnnoPage and Resource collections. Translations are not loaded by the loader, so they are not
+ * counted here.
+ */
+@Entity(value = "DatasetInventory", useDiscriminator = false)
+public class DatasetInventory {
+
+    @Id
+    private String dsId;
+    private long   pages;
+    private long   resources;
+    private long   annotations;
+    private long   bytes;     // total size of all resource texts (UTF-8 encoded)
+    private Date   modified;  // when the counters were last updated
+
+    /**
+     * Empty constructor required for serialisation
+     */
+    public DatasetInventory() {
+    }
+
+    public String getDsId() {
+        return dsId;
+    }
+
+    public long getPages() {
+        return pages;
+    }
+
+    public long getResources() {
+        return resources;
+    }
+
+    public long getAnnotations() {
+        return annotations;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public Date getModified() {
+        return modified;
+    }
+
+    @Override
+    public String toString() {
+        return "DatasetInventory " + dsId + " (pages: " + pages + ", resources: " + resources + ", annotations: " + annotations
+                + ", bytes: " + bytes + ")";
+    }
+}
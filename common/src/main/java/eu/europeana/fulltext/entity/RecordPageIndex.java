@@ -0,0 +1,149 @@
+package eu.europeana.fulltext.entity;
+
+import dev.morphia.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Compact overview of all original pages of a record, so the summary of a record and page existence can be retrieved
+ * with a single read instead of querying all AnnoPages of that record.
+ * The index is maintained by the loader whenever AnnoPages are saved or deleted. Translations are saved by other
+ * applications, so they are not part of the index.
+ */
+@Entity(value = "RecordPageIndex", useDiscriminator = false)
+@Indexes(@Index(fields = {@Field("dsId")}))
+public class RecordPageIndex {
+
+    @Id
+    private String            id;       // custom Mongo ID, /{dsId}/{lcId}
+    private String            dsId;
+    private String            lcId;
+    private List<IndexedPage> pages;
+    private List<String>      langs;    // languages of the original pages
+    private Date              modified; // most recent modified date of all original pages
+
+    /**
+     * Empty constructor required for serialisation
+     */
+    public RecordPageIndex() {
+        pages = new ArrayList<>();
+        langs = new ArrayList<>();
+    }
+
+    public RecordPageIndex(String dsId, String lcId) {
+        this();
+        this.id = createId(dsId, lcId);
+        this.dsId = dsId;
+        this.lcId = lcId;
+    }
+
+    /**
+     * @param dsId dataset id of the record
+     * @param lcId local id of the record
+     * @return the id of a record's page index
+     */
+    public static String createId(String dsId, String lcId) {
+        return "/" + dsId + "/" + lcId;
+    }
+
+    /**
+     * Add an original AnnoPage to the index. Pages are listed in the order in which they are added.
+     * @param annoPage the AnnoPage to add
+     */
+    public void addPage(AnnoPage annoPage) {
+        pages.add(new IndexedPage(annoPage.getPgId(), annoPage.getTgtId(), annoPage.getLang()));
+        addLanguage(annoPage.getLang());
+        updateModified(annoPage.getModified());
+    }
+
+    private void addLanguage(String lang) {
+        if (lang != null && !langs.contains(lang)) {
+            langs.add(lang);
+        }
+    }
+
+    private void updateModified(Date pageModified) {
+        if (pageModified != null && (modified == null || pageModified.after(modified))) {
+            modified = pageModified;
+        }
+    }
+
+    /**
+     * @param pgId id of the page to find
+     * @return the indexed page with the provided id, or null if there is no such page
+     */
+    public IndexedPage getPage(String pgId) {
+        for (IndexedPage page : pages) {
+            if (Objects.equals(pgId, page.getPgId())) {
+                return page;
+            }
+        }
+        return null;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getDsId() {
+        return dsId;
+    }
+
+    public String getLcId() {
+        return lcId;
+    }
+
+    public List<IndexedPage> getPages() {
+        return pages;
+    }
+
+    public List<String> getLangs() {
+        return langs;
+    }
+
+    public Date getModified() {
+        return (modified == null ? null : (Date) modified.clone());
+    }
+
+    public String toString() {
+        return id;
+    }
+
+    /**
+     * Metadata of a single page (original AnnoPage) in the record page index
+     */
+    @Embedded
+    public static class IndexedPage {
+
+        private String pgId;
+        private String tgtId;
+        private String lang;
+
+        /**
+         * Empty constructor required for serialisation
+         */
+        public IndexedPage() {
+        }
+
+        public IndexedPage(String pgId, String tgtId, String lang) {
+            this.pgId = pgId;
+            this.tgtId = tgtId;
+            this.lang = lang;
+        }
+
+        public String getPgId() {
+            return pgId;
+        }
+
+        public String getTgtId() {
+            return tgtId;
+        }
+
+        public String getLang() {
+            return lang;
+        }
+    }
+}
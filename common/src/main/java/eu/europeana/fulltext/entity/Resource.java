@@ -18,6 +18,8 @@ public class Resource {
 
     private String source;
     private String rights;
+    private String hash;  // fingerprint of the resource contents, see ContentFingerprint
+    private boolean nonBmp; // true if the text contains characters outside the Basic Multilingual Plane
 
     /**
      * Empty constructor required for serialisation
@@ -94,4 +96,27 @@ public class Resource {
     public String getRights() { return rights; }
 
     public void setRights(String rights) { this.rights = rights; }
+
+    /**
+     * @return fingerprint of the resource's language, text, source and rights, null if it was never calculated
+     */
+    public String getHash() {
+        return hash;
+    }
+
+    public void setHash(String hash) {
+        this.hash = hash;
+    }
+
+    /**
+     * @return true if the text contains characters outside the Basic Multilingual Plane (so code point offsets differ
+     * from UTF-16 offsets), false if it doesn't or if this was never checked
+     */
+    public boolean isNonBmp() {
+        return nonBmp;
+    }
+
+    public void setNonBmp(boolean nonBmp) {
+        this.nonBmp = nonBmp;
+    }
 }
@@ -7,7 +7,15 @@ import dev.morphia.annotations.*;
  * Created by P.Ehlert on 25 March 2021.
  */
 @Entity(value = "TranslationAnnoPage", useDiscriminator = false)
-@Indexes(@Index(fields = { @Field("dsId"), @Field("lcId"), @Field("pgId"), @Field("lang") }, options = @IndexOptions(unique = true)))
+@Indexes({
+        @Index(fields = { @Field("dsId"), @Field("lcId"), @Field("pgId"), @Field("lang") }, options = @IndexOptions(unique = true)),
+        // covers queries that only retrieve the modified date
+        @Index(fields = { @Field("dsId"), @Field("lcId"), @Field("pgId"), @Field("lang"), @Field("modified") }),
+        // multikey index for retrieving a single annotation by its id
+        @Index(fields = { @Field("dsId"), @Field("lcId"), @Field("ans.anId") }),
+        // covers retrieving the ids of recently inserted pages
+        @Index(fields = { @Field("_id"), @Field("dsId"), @Field("lcId"), @Field("pgId"), @Field("lang") })
+})
 public class TranslationAnnoPage extends AnnoPage {
 
     @Reference
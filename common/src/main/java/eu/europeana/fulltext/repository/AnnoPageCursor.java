@@ -0,0 +1,40 @@
+package eu.europeana.fulltext.repository;
+
+import dev.morphia.query.internal.MorphiaCursor;
+import eu.europeana.fulltext.entity.AnnoPage;
+import org.bson.Document;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.function.Function;
+
+/**
+ * Cursor over AnnoPage documents that converts each document into an AnnoPage when it's requested, without loading
+ * the referenced Resource. Only the current batch of documents is kept in memory.
+ * The cursor must be closed when the caller is done.
+ */
+public class AnnoPageCursor implements Iterator<AnnoPage>, Closeable {
+
+    private final MorphiaCursor<Document>      cursor;
+    private final Function<Document, AnnoPage> converter;
+
+    AnnoPageCursor(MorphiaCursor<Document> cursor, Function<Document, AnnoPage> converter) {
+        this.cursor = cursor;
+        this.converter = converter;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return cursor.hasNext();
+    }
+
+    @Override
+    public AnnoPage next() {
+        return converter.apply(cursor.next());
+    }
+
+    @Override
+    public void close() {
+        cursor.close();
+    }
+}
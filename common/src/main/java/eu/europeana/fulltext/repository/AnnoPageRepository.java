@@ -1,26 +1,50 @@
 package eu.europeana.fulltext.repository;
 
+import com.mongodb.DBRef;
 import dev.morphia.Datastore;
 import dev.morphia.aggregation.experimental.Aggregation;
+import dev.morphia.aggregation.experimental.AggregationOptions;
 import dev.morphia.aggregation.experimental.expressions.ArrayExpressions;
+import dev.morphia.aggregation.experimental.expressions.ComparisonExpressions;
+import dev.morphia.aggregation.experimental.expressions.impls.Expression;
+import dev.morphia.aggregation.experimental.stages.AddFields;
+import dev.morphia.aggregation.experimental.stages.Match;
 import dev.morphia.aggregation.experimental.stages.Projection;
+import dev.morphia.aggregation.experimental.stages.Sort;
+import dev.morphia.aggregation.experimental.stages.Stage;
 import dev.morphia.mapping.lazy.proxy.ReferenceException;
+import dev.morphia.query.FindOptions;
+import dev.morphia.query.experimental.filters.Filter;
 import dev.morphia.query.internal.MorphiaCursor;
 import eu.europeana.fulltext.AnnotationType;
 import eu.europeana.fulltext.entity.AnnoPage;
+import eu.europeana.fulltext.entity.Resource;
 import eu.europeana.fulltext.entity.TranslationAnnoPage;
+import eu.europeana.fulltext.entity.TranslationResource;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.bson.Document;
+import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 import static dev.morphia.aggregation.experimental.expressions.ArrayExpressions.filter;
+import static dev.morphia.aggregation.experimental.expressions.BooleanExpressions.and;
+import static dev.morphia.aggregation.experimental.expressions.BooleanExpressions.or;
+import static dev.morphia.aggregation.experimental.expressions.ComparisonExpressions.gte;
+import static dev.morphia.aggregation.experimental.expressions.ComparisonExpressions.lte;
 import static dev.morphia.aggregation.experimental.expressions.Expressions.field;
 import static dev.morphia.aggregation.experimental.expressions.Expressions.value;
 import static dev.morphia.query.experimental.filters.Filters.eq;
+import static dev.morphia.query.experimental.filters.Filters.gt;
 import static dev.morphia.query.experimental.filters.Filters.in;
 import static eu.europeana.fulltext.util.MorphiaUtils.Fields.*;
 
@@ -34,31 +58,34 @@ public class AnnoPageRepository {
 
     private static final Logger LOG = LogManager.getLogger(AnnoPageRepository.class);
 
+    // temporary field added to union query results to tell originals and translations apart
+    private static final String IS_TRANSLATION = "isTranslation";
+
     @Autowired
     protected Datastore datastore;
 
-    // TODO investigate if we can query for both original and translation annopages in 1 query (e.g. with aggregation)
-    // If not we could try and sent the original and translation query simultaneously (see also FTService)
-
     /**
-     * @return the total number of original AnnoPages in the database
+     * @return the (estimated) total number of original AnnoPages in the database
      */
     public long countOriginal() {
-        return count(AnnoPage.class);
+        return estimateCount(AnnoPage.class);
     }
 
     /**
-     * @return the total number of TranslationAnnoPages in the database
+     * @return the (estimated) total number of TranslationAnnoPages in the database
      */
     public long countTranslation() {
-        return count(TranslationAnnoPage.class);
+        return estimateCount(TranslationAnnoPage.class);
     }
 
-    private long count(Class clazz) {
-        // TODO investigate why this query is so slow and fix
-        LOG.warn("Repository count is temporarily disabled because of bad performance with large collections");
-        //return datastore.createQuery(clazz).count();
-        return 0;
+    /**
+     * Returns the number of AnnoPages or TranslationAnnoPages based on the collection's metadata, so this is fast
+     * but the count may not be exact (e.g. after an unclean shutdown)
+     * @param clazz either AnnoPage or TranslationAnnoPage
+     * @return estimated number of documents in the collection
+     */
+    public long estimateCount(Class<? extends AnnoPage> clazz) {
+        return datastore.getMapper().getCollection(clazz).estimatedDocumentCount();
     }
 
     /**
@@ -75,21 +102,23 @@ public class AnnoPageRepository {
     }
 
     /**
-     * Find and return AnnoPages that match the given parameters using DBCollection.count().
+     * Find and return AnnoPages that match the given parameters.
+     * Only page metadata (dsId, lcId, pgId, tgtId, lang and modified) is loaded, so annotations and resource are
+     * not retrieved.
      * @param datasetId ID of the dataset
      * @param localId   ID of the parent of the Annopage object
      * @return List of AnnoPage objects
      */
     public List<AnnoPage> findOrigPages(String datasetId, String localId) {
-        //TODO instead of loading the AnnoPage + Resource, we should load have the option to only the AnnoPage
         return datastore.find(AnnoPage.class).filter(
                 eq(DATASET_ID, datasetId),
-                eq(LOCAL_ID, localId)).iterator().toList();
+                eq(LOCAL_ID, localId)).iterator(metadataOnly()).toList();
     }
 
     /**
-     * Find and return TranslationAnnoPages that match the given parameters using DBCollection.count().
-     * The Morphia ReferenceException is thrown if there is no matching TranslationResource document found;
+     * Find and return TranslationAnnoPages that match the given parameters.
+     * Only page metadata (dsId, lcId, pgId, tgtId, lang and modified) is loaded, so annotations and resource are
+     * not retrieved.
      *
      * @param datasetId ID of the dataset
      * @param localId   ID of the parent of the TranslationAnnopage object
@@ -97,11 +126,29 @@ public class AnnoPageRepository {
      * @return List of TranslationAnnopage objects
      */
     public List<TranslationAnnoPage> findTranslatedPages(String datasetId, String localId, String pageId) {
-        // TODO instead of loading the AnnoPage + Resource, we should load only the AnnoPage
         return datastore.find(TranslationAnnoPage.class).filter(
                     eq(DATASET_ID, datasetId),
                     eq(LOCAL_ID, localId),
-                    eq(PAGE_ID, pageId)).iterator().toList();
+                    eq(PAGE_ID, pageId)).iterator(metadataOnly()).toList();
+    }
+
+    /**
+     * Find and return all TranslationAnnoPages of a record.
+     * Only page metadata (dsId, lcId, pgId, tgtId, lang and modified) is loaded, so annotations and resource are
+     * not retrieved.
+     *
+     * @param datasetId ID of the dataset
+     * @param localId   ID of the parent of the TranslationAnnopage objects
+     * @return List of TranslationAnnopage objects
+     */
+    public List<TranslationAnnoPage> findTranslatedPages(String datasetId, String localId) {
+        return datastore.find(TranslationAnnoPage.class).filter(
+                    eq(DATASET_ID, datasetId),
+                    eq(LOCAL_ID, localId)).iterator(metadataOnly()).toList();
+    }
+
+    private static FindOptions metadataOnly() {
+        return new FindOptions().projection().include(DATASET_ID, LOCAL_ID, PAGE_ID, IMAGE_ID, LANGUAGE, MODIFIED);
     }
 
     /**
@@ -120,36 +167,30 @@ public class AnnoPageRepository {
     }
 
     /**
-     * Check if an original AnnoPage exists that matches the given parameters using DBCollection.count().
-     * @param datasetId ID of the dataset
-     * @param localId   ID of the parent of the Annopage object
-     * @param pageId    index (page number) of the Annopage object
-     * @param lang      in which language should the original AnnoPage be
-     * @return true if yes, otherwise false
-     */
-    public boolean existsOriginalByPageIdLang(String datasetId, String localId, String pageId, String lang) {
-        return existsByPageIdLang(datasetId, localId, pageId, lang, AnnoPage.class);
-    }
-
-    /**
-     * Check if a TranslationAnnoPage exists that matches the given parameters using DBCollection.count().
+     * Check if an original AnnoPage or a TranslationAnnoPage exists that matches the given parameters. Both
+     * collections are checked in a single query, which only uses indexed fields (see the dsId/lcId/pgId/lang/modified
+     * indexes).
      * @param datasetId ID of the dataset
      * @param localId   ID of the parent of the Annopage object
      * @param pageId    index (page number) of the Annopage object
-     * @param lang      in which language should the translation be
+     * @param lang      in which language should the original AnnoPage or translation be
      * @return true if yes, otherwise false
      */
-    public boolean existsTranslationByPageIdLang(String datasetId, String localId, String pageId, String lang) {
-        return existsByPageIdLang(datasetId, localId, pageId, lang, TranslationAnnoPage.class);
-    }
-
-    private boolean existsByPageIdLang(String datasetId, String localId, String pageId, String lang, Class clazz) {
-        return datastore.find(clazz).filter(
+    public boolean existsOriginalOrTranslationByPageIdLang(String datasetId, String localId, String pageId, String lang) {
+        Filter[] filters = {
                 eq(DATASET_ID, datasetId),
                 eq(LOCAL_ID, localId),
                 eq(PAGE_ID, pageId),
                 eq(LANGUAGE, lang)
-        ).count() > 0;
+        };
+        Projection langOnly = Projection.of().include(LANGUAGE).suppressId();
+        return datastore.aggregate(AnnoPage.class)
+                .match(filters)
+                .project(langOnly)
+                .unionWith(TranslationAnnoPage.class, Match.on(filters), langOnly)
+                .limit(1)
+                .execute(Document.class)
+                .tryNext() != null;
     }
 
     /**
@@ -185,6 +226,7 @@ public class AnnoPageRepository {
      *   "res": "$res",
      *   "className": "$className",
      *   "modified": "$modified",
+     *   "lang": "$lang",
      *   "ans": {
      *                 $filter: {
      *                   input: "$ans",
@@ -194,6 +236,8 @@ public class AnnoPageRepository {
      *             }
      * })
      *
+     * Note that only the id of the referenced Resource is loaded, not the Resource itself.
+     *
      * @param datasetId      ID of the dataset
      * @param localId        ID of the parent of the Annopage object
      * @param pageId         index (page number) of the Annopage object
@@ -207,107 +251,444 @@ public class AnnoPageRepository {
                 eq(PAGE_ID, pageId)
         );
         query = filterTextGranularity(query, annoTypes);
-        return query.execute(AnnoPage.class).tryNext();
+        return toAnnoPage(query.execute(Document.class).tryNext(), AnnoPage.class);
     }
 
     /**
-     * Find and return an original AnnoPage that matches the given parameters.
+     * Find and return an original AnnoPage or, if there is no original, a TranslationAnnoPage that matches the given
+     * parameters. Both collections are queried in a single aggregation using $unionWith, so only 1 roundtrip to the
+     * database is needed.
+     * <p>
+     * The mongodb query implemented by this method is:
+     * db.getCollection("AnnoPage").aggregate(
+     * {$match: {"dsId": <datasetId>, "lcId": <localId>, "pgId": <pageId>, "lang": <lang>}},
+     * {$project: <see findOriginalByPageId>},
+     * {$addFields: {"isTranslation": false}},
+     * {$unionWith: {coll: "TranslationAnnoPage", pipeline: [<same $match, $project>, {$addFields: {"isTranslation": true}}]}},
+     * {$sort: {"isTranslation": 1}},
+     * {$limit: 1})
+     *
      * @param datasetId  ID of the dataset
      * @param localId    ID of the parent of the Annopage object
      * @param pageId     index (page number) of the Annopage object
-     * @param lang       language
      * @param annoTypes  dcType values to filter annotations with
-     * @return AnnoPage
+     * @param lang       language
+     * @return AnnoPage or TranslationAnnoPage (with only the id of the referenced Resource), null if neither exists
      */
-    public AnnoPage findOriginalByPageIdLang(String datasetId, String localId, String pageId, List<AnnotationType> annoTypes,
-                                             String lang) {
-        Aggregation<AnnoPage> query = datastore.aggregate(AnnoPage.class).match(
+    public AnnoPage findOriginalOrTranslationByPageIdLang(String datasetId, String localId, String pageId,
+                                                          List<AnnotationType> annoTypes, String lang) {
+        return findOriginalOrTranslation(new Filter[]{
                 eq(DATASET_ID, datasetId),
                 eq(LOCAL_ID, localId),
                 eq(PAGE_ID, pageId),
                 eq(LANGUAGE, lang)
-        );
-        query = filterTextGranularity(query, annoTypes);
-        return query.execute(AnnoPage.class).tryNext();
+        }, annoTypes);
     }
 
     /**
-     * Find and return a Translation AnnoPage that matches the given parameters.
-     * @param datasetId  ID of the dataset
-     * @param localId    ID of the parent of the Annopage object
-     * @param pageId     index (page number) of the Annopage object
-     * @param lang       language
-     * @param annoTypes  dcType values to filter annotations with
-     * @return AnnoPage
+     * Find and return an original AnnoPage or, if there is none, a TranslationAnnoPage that contains an annotation
+     * that matches the given parameters. Both collections are queried in a single aggregation.
+     * <p>
+     * Only the requested annotation is retrieved from the data store, together with the page fields that are needed
+     * to generate the annotation's urls. The mongodb query implemented by this method is (for both collections):
+     * {$match: {"dsId": <datasetId>, "lcId": <localId>, "ans.anId": <annoId>}},
+     * {$project: {
+     *   "dsId": 1, "lcId": 1, "pgId": 1, "tgtId": 1, "res": 1, "className": 1, "modified": 1, "lang": 1,
+     *   "ans": {
+     *                 $filter: {
+     *                   input: "$ans",
+     *                   as: "annotation",
+     *                   cond: { $eq: [ '$$annotation.anId', <annoId> ] }
+     *                 }
+     *             }
+     * })
+     * The $filter has the same effect as a positional $elemMatch projection in a find query (which is not available
+     * in an aggregation). The $match stage uses the dsId/lcId/ans.anId index.
+     *
+     * @param datasetId ID of the dataset
+     * @param localId   ID of the parent of the Annopage object
+     * @param annoId    ID of the annotation
+     * @return AnnoPage or TranslationAnnoPage with only the matching annotation (and only the id of the referenced
+     * Resource), null if neither exists
      */
-    public TranslationAnnoPage findTranslationByPageIdLang(String datasetId, String localId, String pageId,
-                                                           List<AnnotationType> annoTypes, String lang) {
-        Aggregation<TranslationAnnoPage> query = datastore.aggregate(TranslationAnnoPage.class).match(
+    public AnnoPage findOriginalOrTranslationByAnnoId(String datasetId, String localId, String annoId) {
+        return findOriginalOrTranslation(new Filter[]{
                 eq(DATASET_ID, datasetId),
                 eq(LOCAL_ID, localId),
-                eq(PAGE_ID, pageId),
-                eq(LANGUAGE, lang)
+                eq(ANNOTATIONS_ID, annoId)
+        }, singleAnnotationProjection(annoId));
+    }
+
+    /**
+     * Find and return the original AnnoPages of a record with the provided page ids. All pages are retrieved with a
+     * single query ({$match: {"dsId": <datasetId>, "lcId": <localId>, "pgId": {$in: <pageIds>}}}, followed by the
+     * same $project stage as findOriginalByPageId).
+     * Note that only the id of the referenced Resources is loaded, not the Resources themselves.
+     * @param datasetId ID of the dataset
+     * @param localId   ID of the parent of the Annopage objects
+     * @param pageIds   index (page number) of the Annopage objects
+     * @param annoTypes dcType values to filter annotations with
+     * @return list of found AnnoPages, in the same order as the provided page ids (empty if none were found)
+     */
+    public List<AnnoPage> findOriginalsByPageIds(String datasetId, String localId, List<String> pageIds,
+                                                 List<AnnotationType> annoTypes) {
+        Aggregation<AnnoPage> query = datastore.aggregate(AnnoPage.class).match(
+                eq(DATASET_ID, datasetId),
+                eq(LOCAL_ID, localId),
+                in(PAGE_ID, pageIds)
         );
         query = filterTextGranularity(query, annoTypes);
-        return query.execute(TranslationAnnoPage.class).tryNext();
+        List<AnnoPage> result = new ArrayList<>(pageIds.size());
+        try (MorphiaCursor<Document> cursor = query.execute(Document.class)) {
+            while (cursor.hasNext()) {
+                result.add(toAnnoPage(cursor.next(), AnnoPage.class));
+            }
+        }
+        result.sort(Comparator.comparingInt(annoPage -> pageIds.indexOf(annoPage.getPgId())));
+        return result;
+    }
+
+    private AnnoPage findOriginalOrTranslation(Filter[] filters, List<AnnotationType> annoTypes) {
+        return findOriginalOrTranslation(filters, textGranularityProjection(annoTypes));
+    }
+
+    private AnnoPage findOriginalOrTranslation(Filter[] filters, Projection projection) {
+        Document result = originalOrTranslationQuery(filters, projection)
+                .execute(Document.class)
+                .tryNext();
+        if (result == null) {
+            return null;
+        }
+        // translations don't store a discriminator, so we decide on the result type ourselves
+        Class<? extends AnnoPage> clazz = Boolean.TRUE.equals(result.remove(IS_TRANSLATION))
+                ? TranslationAnnoPage.class : AnnoPage.class;
+        return toAnnoPage(result, clazz);
+    }
+
+    /**
+     * Converts a (raw) AnnoPage document into an AnnoPage object without loading the referenced Resource. Instead
+     * the returned AnnoPage refers to a Resource object that only has its id, dataset id and local id set.
+     * The complete Resource can be retrieved later (if needed) with the ResourceRepository.
+     * @param document AnnoPage document, can be null
+     * @param clazz either AnnoPage or TranslationAnnoPage
+     * @return AnnoPage object, null if the provided document was null
+     */
+    private AnnoPage toAnnoPage(Document document, Class<? extends AnnoPage> clazz) {
+        if (document == null) {
+            return null;
+        }
+        Object resRef = document.remove(RESOURCE);
+        AnnoPage result = datastore.getMapper().fromDocument(clazz, document);
+        if (resRef != null) {
+            Resource res = (TranslationAnnoPage.class.equals(clazz) ? new TranslationResource() : new Resource());
+            res.setId(String.valueOf(resRef instanceof DBRef ? ((DBRef) resRef).getId() : resRef));
+            res.setDsId(result.getDsId());
+            res.setLcId(result.getLcId());
+            result.setRes(res);
+        }
+        return result;
+    }
+
+    /**
+     * Creates an aggregation query that returns the first original AnnoPage matching the filters or, if there is
+     * none, the first matching TranslationAnnoPage
+     * @param filters    filters to match both collections with
+     * @param projection optional projection to apply to both collections
+     * @return aggregation query
+     */
+    private Aggregation<AnnoPage> originalOrTranslationQuery(Filter[] filters, Projection projection) {
+        List<Stage> translationStages = new ArrayList<>();
+        translationStages.add(Match.on(filters));
+        if (projection != null) {
+            translationStages.add(projection);
+        }
+        translationStages.add(AddFields.of().field(IS_TRANSLATION, value(true)));
+
+        Aggregation<AnnoPage> query = datastore.aggregate(AnnoPage.class).match(filters);
+        if (projection != null) {
+            query = query.project(projection);
+        }
+        return query.addFields(AddFields.of().field(IS_TRANSLATION, value(false)))
+                .unionWith(TranslationAnnoPage.class, translationStages.get(0),
+                        translationStages.subList(1, translationStages.size()).toArray(new Stage[0]))
+                .sort(Sort.on().ascending(IS_TRANSLATION))
+                .limit(1);
     }
 
     /**
-     * Find and return original AnnoPage that contains an annotation that matches the given parameters
+     * Find the modified date of an AnnoPage, without loading its annotations or resource.
+     * If a language is provided and there is no original AnnoPage in that language, the modified date of the
+     * TranslationAnnoPage in that language is returned.
+     * Only indexed fields are used, so this is a covered query (see the dsId/lcId/pgId/lang/modified indexes).
      * @param datasetId ID of the dataset
      * @param localId   ID of the parent of the Annopage object
-     * @param annoId    ID of the annotation
-     * @return AnnoPage
+     * @param pageId    index (page number) of the Annopage object
+     * @param lang      optional, language of the original AnnoPage or translation
+     * @return modified date, null if no such AnnoPage exists
+     */
+    public Date findModified(String datasetId, String localId, String pageId, String lang) {
+        Aggregation<AnnoPage> query;
+        if (lang == null || lang.isEmpty()) {
+            query = datastore.aggregate(AnnoPage.class).match(
+                    eq(DATASET_ID, datasetId),
+                    eq(LOCAL_ID, localId),
+                    eq(PAGE_ID, pageId)
+            ).project(modifiedOnly()).limit(1);
+        } else {
+            query = originalOrTranslationQuery(new Filter[]{
+                    eq(DATASET_ID, datasetId),
+                    eq(LOCAL_ID, localId),
+                    eq(PAGE_ID, pageId),
+                    eq(LANGUAGE, lang)
+            }, modifiedOnly());
+        }
+        return getModified(query);
+    }
+
+    /**
+     * Find the most recent modified date of all original AnnoPages of a record, without loading their annotations or
+     * resources. Like {@link #findModified(String, String, String, String)} this is a covered query.
+     * @param datasetId ID of the dataset
+     * @param localId   ID of the parent of the Annopage objects
+     * @return last modified date, null if the record has no AnnoPages
      */
-    public AnnoPage findOriginalByAnnoId(String datasetId, String localId, String annoId) {
-        return findAnnotationById(datasetId, localId, annoId, AnnoPage.class);
+    public Date findLastModified(String datasetId, String localId) {
+        return getModified(datastore.aggregate(AnnoPage.class).match(
+                eq(DATASET_ID, datasetId),
+                eq(LOCAL_ID, localId)
+        ).project(modifiedOnly()).sort(Sort.on().descending(MODIFIED)).limit(1));
     }
 
     /**
-     * Find and return a Translation AnnoPage that contains an annotation that matches the given parameters
+     * Find the page ids, languages and modified dates of all TranslationAnnoPages of a record, ordered by page id and
+     * language. This is a covered query (see the dsId/lcId/pgId/lang/modified index), so the TranslationAnnoPages
+     * themselves are not read.
      * @param datasetId ID of the dataset
-     * @param localId   ID of the parent of the Annopage object
-     * @param annoId    ID of the annotation
-     * @return TranslationAnnoPage
+     * @param localId   ID of the parent of the TranslationAnnoPage objects
+     * @return List of TranslationAnnoPages with only the pgId, lang and modified fields set (empty if none were found)
      */
-    public TranslationAnnoPage findTranslationByAnnoId(String datasetId, String localId, String annoId) {
-        return (TranslationAnnoPage) findAnnotationById(datasetId, localId, annoId, TranslationAnnoPage.class);
+    public List<TranslationAnnoPage> findTranslationLanguages(String datasetId, String localId) {
+        List<TranslationAnnoPage> result = new ArrayList<>();
+        try (MorphiaCursor<Document> cursor = datastore.aggregate(TranslationAnnoPage.class).match(
+                eq(DATASET_ID, datasetId),
+                eq(LOCAL_ID, localId)
+        ).sort(Sort.on().ascending(PAGE_ID, LANGUAGE))
+                .project(Projection.of().include(PAGE_ID).include(LANGUAGE).include(MODIFIED).suppressId())
+                .execute(Document.class)) {
+            while (cursor.hasNext()) {
+                Document page = cursor.next();
+                TranslationAnnoPage translation = new TranslationAnnoPage();
+                translation.setDsId(datasetId);
+                translation.setLcId(localId);
+                translation.setPgId(page.getString(PAGE_ID));
+                translation.setLang(page.getString(LANGUAGE));
+                translation.setModified(page.getDate(MODIFIED));
+                result.add(translation);
+            }
+        }
+        return result;
     }
 
-    private AnnoPage findAnnotationById(String datasetId, String localId, String annoId, Class clazz) {
-        return (AnnoPage) datastore.find(clazz).filter(
+    /**
+     * Find the modified date of the original AnnoPage or, if there is none, TranslationAnnoPage that contains an
+     * annotation that matches the given parameters. Annotations and resource are not loaded.
+     * @param datasetId ID of the dataset
+     * @param localId   ID of the parent of the Annopage object
+     * @param annoId    ID of the annotation
+     * @return modified date, null if no such AnnoPage exists
+     */
+    public Date findModifiedByAnnoId(String datasetId, String localId, String annoId) {
+        return getModified(originalOrTranslationQuery(new Filter[]{
                 eq(DATASET_ID, datasetId),
                 eq(LOCAL_ID, localId),
-                eq(ANNOTATIONS_ID, annoId))
-                .first();
+                eq(ANNOTATIONS_ID, annoId)
+        }, modifiedOnly()));
     }
 
     /**
-     * Find and return original AnnoPages that contains an annotation that matches the given parameters.
-     *
-     * Returns a {@link MorphiaCursor} that can be iterated on to obtain matching AnnoPages.
-     * The cursor must be closed after iteration is completed.
-     *
-     * The Cursor returned by this method must be closed
+     * Iterate over all original AnnoPages of a dataset or record, ordered by local id and page id. The dataset id
+     * (and local id) are matched on the dsId/lcId/pgId index, so documents are returned in index order without
+     * sorting them in memory. Only the id of the referenced Resources is loaded, not the Resources themselves.
+     * The cursor returned by this method must be closed.
      * @param datasetId ID of the dataset
-     * @param localId   ID of the parent of the Annopage object
-     * @param imageIds  ID of the image
-     * @param annoTypes type of annotations that should be retrieve, if null or empty all annotations of that
-     *                        annopage will be retrieved
-     * @return MorphiaCursor containing AnnoPage entries.
+     * @param localId   optional, ID of the parent of the Annopage objects. If null all AnnoPages of the dataset are
+     *                  returned
+     * @param batchSize number of AnnoPages retrieved from the database in one batch
+     * @return cursor with AnnoPages
      */
-    public MorphiaCursor<AnnoPage> findByImageId(String datasetId, String localId, List<String> imageIds,
-                                                 List<AnnotationType> annoTypes) {
-        Aggregation<AnnoPage> query = datastore.aggregate(AnnoPage.class).match(
+    public AnnoPageCursor streamOriginals(String datasetId, String localId, int batchSize) {
+        Aggregation<AnnoPage> query = datastore.aggregate(AnnoPage.class);
+        if (localId == null) {
+            query = query.match(eq(DATASET_ID, datasetId));
+        } else {
+            query = query.match(eq(DATASET_ID, datasetId), eq(LOCAL_ID, localId));
+        }
+        MorphiaCursor<Document> cursor = query
+                .sort(Sort.on().ascending(LOCAL_ID, PAGE_ID))
+                .execute(Document.class, new AggregationOptions().batchSize(batchSize));
+        return new AnnoPageCursor(cursor, document -> toAnnoPage(document, AnnoPage.class));
+    }
+
+    /**
+     * Find the modified dates of the original AnnoPages of a record with the provided page ids, without loading
+     * their annotations or resource. This is a covered query (see the dsId/lcId/pgId/lang/modified index).
+     * @param datasetId ID of the dataset
+     * @param localId   ID of the parent of the Annopage objects
+     * @param pageIds   index (page number) of the Annopage objects
+     * @return map with the modified date of each found page id (empty if none were found)
+     */
+    public Map<String, Date> findModifiedByPageIds(String datasetId, String localId, List<String> pageIds) {
+        Map<String, Date> result = new LinkedHashMap<>();
+        try (MorphiaCursor<Document> cursor = datastore.aggregate(AnnoPage.class).match(
                 eq(DATASET_ID, datasetId),
                 eq(LOCAL_ID, localId),
-                in(IMAGE_ID, imageIds)
-        );
-        query = filterTextGranularity(query, annoTypes);
-        return query.execute(AnnoPage.class);
+                in(PAGE_ID, pageIds)
+        ).project(Projection.of().include(PAGE_ID).include(MODIFIED).suppressId()).execute(Document.class)) {
+            while (cursor.hasNext()) {
+                Document page = cursor.next();
+                result.put(page.getString(PAGE_ID), page.getDate(MODIFIED));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Iterate over the ids (dataset id, local id, page id and language) of all AnnoPages or TranslationAnnoPages,
+     * optionally only of those that were inserted after a particular AnnoPage. Only indexed fields are used, so these
+     * are covered queries that don't have to read the (large) AnnoPage documents themselves.
+     * The cursor returned by this method must be closed.
+     * @param clazz   either AnnoPage or TranslationAnnoPage
+     * @param idAfter optional, if provided only the AnnoPages with a higher (i.e. more recently generated) _id are
+     *                returned
+     * @return cursor with documents containing only the dsId, lcId, pgId and lang fields, plus the _id field if
+     * idAfter is provided
+     */
+    public MorphiaCursor<Document> findPageIds(Class<? extends AnnoPage> clazz, ObjectId idAfter) {
+        Aggregation<? extends AnnoPage> query = datastore.aggregate(clazz);
+        Projection projection = Projection.of()
+                .include(DATASET_ID)
+                .include(LOCAL_ID)
+                .include(PAGE_ID)
+                .include(LANGUAGE);
+        if (idAfter == null) {
+            // sorting on all fields of the dsId/lcId/pgId/lang/modified index makes sure that index is used
+            query = query.sort(Sort.on().ascending(DATASET_ID, LOCAL_ID, PAGE_ID, LANGUAGE, MODIFIED));
+            projection = projection.suppressId();
+        } else {
+            query = query.match(gt(DOC_ID, idAfter));
+        }
+        return query.project(projection).execute(Document.class);
     }
 
+    /**
+     * Find the highest _id of all AnnoPages or TranslationAnnoPages. ObjectIds start with the time at which they were
+     * generated, so this is (approximately) the most recently inserted page. This only uses the _id index.
+     * @param clazz either AnnoPage or TranslationAnnoPage
+     * @return the highest _id, or null if there are no pages
+     */
+    public ObjectId findLastPageId(Class<? extends AnnoPage> clazz) {
+        Document result = datastore.aggregate(clazz)
+                .sort(Sort.on().descending(DOC_ID))
+                .limit(1)
+                .project(Projection.of().include(DOC_ID))
+                .execute(Document.class).tryNext();
+        return (result == null ? null : result.getObjectId(DOC_ID));
+    }
+
+    private static Projection modifiedOnly() {
+        return Projection.of().include(MODIFIED).suppressId();
+    }
+
+    private static Date getModified(Aggregation<AnnoPage> query) {
+        Document result = query.execute(Document.class).tryNext();
+        return (result == null ? null : result.getDate(MODIFIED));
+    }
+
+    /**
+     * Find the original AnnoPages with the provided image ids, for mapping search hits to annotations. Only the
+     * annotations of the requested types that overlap with (or touch) one of the hits on the same page are returned,
+     * so pages with thousands of annotations don't have to be loaded for a few hits.
+     * <p>
+     * The mongodb query implemented by this method is:
+     * db.getCollection("AnnoPage").aggregate(
+     * {$match: {"dsId": <datasetId>, "lcId": <localId>, "tgtId": {$in: [<imageIds>]}}},
+     * {$project: {
+     *   "dsId": "$dsId",
+     *   "lcId":"$lcId",
+     *   "pgId": "$pgId",
+     *   "tgtId": "$tgtId",
+     *   "res": "$res",
+     *   "className": "$className",
+     *   "modified": "$modified",
+     *   "lang": "$lang",
+     *   "ans": {
+     *                 $filter: {
+     *                   input: "$ans",
+     *                   as: "annotation",
+     *                   cond: { $and: [
+     *                     { $in: [ '$$annotation.dcType', [<textGranValues>] ] },
+     *                     { $or: [
+     *                       { $and: [ { $eq: [ '$tgtId', <imageId> ] },
+     *                                 { $lte: [ '$$annotation.from', <hitEnd> ] },
+     *                                 { $gte: [ '$$annotation.to', <hitStart> ] } ] },
+     *                       ...
+     *                     ] }
+     *                   ] }
+     *                 }
+     *             }
+     * })
+     *
+     * Note that only the id of the referenced Resource is loaded, not the Resource itself. Page annotations are never
+     * returned, because those don't have a from and to.
+     *
+     * @param datasetId     ID of the dataset
+     * @param localId       ID of the parent of the Annopage object
+     * @param hitsByImageId per image id the offsets of the hits on that page
+     * @param annoTypes     type of annotations that should be retrieved, if empty annotations of all types are
+     *                      retrieved
+     * @return List of AnnoPages, each containing only the annotations that overlap with a hit
+     */
+    public List<AnnoPage> findForSearch(String datasetId, String localId, Map<String, List<TextRange>> hitsByImageId,
+                                        List<AnnotationType> annoTypes) {
+        Aggregation<AnnoPage> query = datastore.aggregate(AnnoPage.class)
+                .match(
+                        eq(DATASET_ID, datasetId),
+                        eq(LOCAL_ID, localId),
+                        in(IMAGE_ID, hitsByImageId.keySet())
+                )
+                .project(pageFieldsProjection()
+                        .include(ANNOTATIONS, filter(field(ANNOTATIONS), searchHitCondition(hitsByImageId, annoTypes))
+                                .as("annotation")));
+        List<AnnoPage> result = new ArrayList<>(hitsByImageId.size());
+        try (MorphiaCursor<Document> cursor = query.execute(Document.class)) {
+            while (cursor.hasNext()) {
+                result.add(toAnnoPage(cursor.next(), AnnoPage.class));
+            }
+        }
+        return result;
+    }
 
+    /**
+     * Creates the $filter condition for annotations of the requested types that overlap with a hit on their page
+     */
+    private static Expression searchHitCondition(Map<String, List<TextRange>> hitsByImageId,
+                                                 List<AnnotationType> annoTypes) {
+        List<Expression> overlapsHit = new ArrayList<>();
+        for (Map.Entry<String, List<TextRange>> hits : hitsByImageId.entrySet()) {
+            for (TextRange hit : hits.getValue()) {
+                overlapsHit.add(and(
+                        ComparisonExpressions.eq(field(IMAGE_ID), value(hits.getKey())),
+                        lte(value("$$annotation.from"), value(hit.getEnd())),
+                        gte(value("$$annotation.to"), value(hit.getStart()))));
+            }
+        }
+        Expression result = or(overlapsHit.get(0), overlapsHit.subList(1, overlapsHit.size()).toArray(new Expression[0]));
+        if (annoTypes.isEmpty()) {
+            return result;
+        }
+        List<String> dcTypes = annoTypes.stream().map(s -> String.valueOf(s.getAbbreviation())).collect(Collectors.toUnmodifiableList());
+        return and(ArrayExpressions.in(value("$$annotation.dcType"), value(dcTypes)), result);
+    }
 
     /**
      * Creates an AnnoPage aggregation query to return only matching annotation types.
@@ -316,28 +697,61 @@ public class AnnoPageRepository {
      * @return Updated aggregation query
      */
     private Aggregation filterTextGranularity(Aggregation annoPageQuery, List<AnnotationType> annoTypes) {
-        if (annoTypes.isEmpty()) {
+        Projection projection = textGranularityProjection(annoTypes);
+        if (projection == null) {
             return annoPageQuery;
         }
+        return annoPageQuery.project(projection);
+    }
+
+    /**
+     * Creates an AnnoPage projection that only includes annotations of the matching types
+     * @param annoTypes list containing text granularity values to match
+     * @return projection stage, or null if all annotations should be returned
+     */
+    private Projection textGranularityProjection(List<AnnotationType> annoTypes) {
+        if (annoTypes.isEmpty()) {
+            return null;
+        }
 
         // ans.dcType stored as first letter of text granularity value in uppercase. ie. WORD -> 'W'
         List<String> dcTypes = annoTypes.stream().map(s -> String.valueOf(s.getAbbreviation())).collect(Collectors.toUnmodifiableList());
 
+        return pageFieldsProjection()
+                .include(ANNOTATIONS,
+                        filter(field(ANNOTATIONS),
+                                ArrayExpressions.in(value("$$annotation.dcType"), value(dcTypes))
+                        ).as("annotation")
+                );
+    }
+
+    /**
+     * Creates an AnnoPage projection that only includes the annotation with the provided id
+     * @param annoId ID of the annotation
+     * @return projection stage
+     */
+    private static Projection singleAnnotationProjection(String annoId) {
+        return pageFieldsProjection()
+                .include(ANNOTATIONS,
+                        filter(field(ANNOTATIONS),
+                                ComparisonExpressions.eq(value("$$annotation.anId"), value(annoId))
+                        ).as("annotation")
+                );
+    }
+
+    /**
+     * Creates an AnnoPage projection with all fields except the annotations
+     */
+    private static Projection pageFieldsProjection() {
         // _id implicitly included in projection
-        return annoPageQuery.project(
-                Projection.of()
-                        .include(DATASET_ID)
-                        .include(LOCAL_ID)
-                        .include(PAGE_ID)
-                        .include(RESOURCE)
-                        .include(CLASSNAME)
-                        .include(IMAGE_ID)
-                        .include(MODIFIED)
-                        .include(ANNOTATIONS,
-                                filter(field(ANNOTATIONS),
-                                        ArrayExpressions.in(value("$$annotation.dcType"), value(dcTypes))
-                                ).as("annotation")
-                        )
-        );
+        return Projection.of()
+                .include(DATASET_ID)
+                .include(LOCAL_ID)
+                .include(PAGE_ID)
+                .include(RESOURCE)
+                .include(CLASSNAME)
+                .include(IMAGE_ID)
+                .include(MODIFIED)
+                .include(LANGUAGE);
     }
 }
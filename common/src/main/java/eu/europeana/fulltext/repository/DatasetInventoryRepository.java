@@ -0,0 +1,43 @@
+package eu.europeana.fulltext.repository;
+
+import dev.morphia.Datastore;
+import dev.morphia.query.FindOptions;
+import dev.morphia.query.Sort;
+import eu.europeana.fulltext.entity.DatasetInventory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+import static dev.morphia.query.experimental.filters.Filters.eq;
+import static eu.europeana.fulltext.util.MorphiaUtils.Fields.DOC_ID;
+
+/**
+ * Repository for retrieving DatasetInventory objects
+ */
+@Repository
+public class DatasetInventoryRepository {
+
+    @Autowired
+    protected Datastore datastore;
+
+    /**
+     * Find the inventory of a dataset
+     * @param datasetId ID of the dataset
+     * @return DatasetInventory, or null if there is no inventory for this dataset
+     */
+    public DatasetInventory findByDatasetId(String datasetId) {
+        return datastore.find(DatasetInventory.class)
+                .filter(eq(DOC_ID, datasetId))
+                .first();
+    }
+
+    /**
+     * @return the inventories of all datasets, ordered by dataset id
+     */
+    public List<DatasetInventory> findAll() {
+        return datastore.find(DatasetInventory.class)
+                .iterator(new FindOptions().sort(Sort.ascending(DOC_ID)))
+                .toList();
+    }
+}
@@ -0,0 +1,185 @@
+package eu.europeana.fulltext.repository;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoCollection;
+import dev.morphia.Datastore;
+import dev.morphia.annotations.Field;
+import dev.morphia.annotations.Index;
+import dev.morphia.annotations.Indexes;
+import eu.europeana.fulltext.entity.AnnoPage;
+import eu.europeana.fulltext.entity.RecordPageIndex;
+import eu.europeana.fulltext.entity.Resource;
+import eu.europeana.fulltext.entity.TranslationAnnoPage;
+import eu.europeana.fulltext.entity.TranslationResource;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.bson.Document;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+
+/**
+ * Catalogue of all MongoDB indexes the application relies on. The indexes themselves are declared (with Morphia's
+ * {@link Indexes} annotation) on the entity classes listed in this catalogue, so there is only one place where they
+ * are defined.
+ * <p>
+ * The catalogue can create all indexes, and it can report which declared indexes are missing in the database, which
+ * indexes exist in the database but are not declared, and which indexes have not been used since the last restart of
+ * the mongod that was queried. Note that usage statistics are kept per mongod, so in a replica set an index that is
+ * reported as unused may still be used by another member.
+ */
+public class IndexCatalogue {
+
+    private static final Logger LOG = LogManager.getLogger(IndexCatalogue.class);
+
+    private static final List<Class<?>> ENTITIES = List.of(AnnoPage.class, TranslationAnnoPage.class,
+            Resource.class, TranslationResource.class, RecordPageIndex.class);
+
+    private static final String DEFAULT_INDEX_NAME = "_id_";
+
+    private final Datastore datastore;
+
+    /**
+     * Create a new index catalogue
+     * @param datastore datastore in which the indexes should be present
+     */
+    public IndexCatalogue(Datastore datastore) {
+        this.datastore = datastore;
+    }
+
+    /**
+     * Creates all catalogued indexes that do not exist yet.
+     * Note that we can't rely on datastore.ensureIndexes() for this, as that only handles entities that Morphia has
+     * already mapped (which may not be the case yet right after startup).
+     */
+    public void ensureIndexes() {
+        for (Class<?> entity : ENTITIES) {
+            LOG.info("Ensuring indexes for {}...", entity.getSimpleName());
+            datastore.ensureIndexes(entity);
+        }
+    }
+
+    /**
+     * Compares the catalogued indexes with the indexes that are present in the database
+     * @return map with a report for each collection, ordered the same as the catalogue
+     */
+    public Map<String, CollectionReport> report() {
+        Map<String, CollectionReport> result = new LinkedHashMap<>();
+        for (Class<?> entity : ENTITIES) {
+            MongoCollection<?> collection = datastore.getMapper().getCollection(entity);
+            String collectionName = collection.getNamespace().getCollectionName();
+            result.put(collectionName, report(entity, collection));
+        }
+        return result;
+    }
+
+    private CollectionReport report(Class<?> entity, MongoCollection<?> collection) {
+        CollectionReport result = new CollectionReport();
+        Map<String, String> existing = new LinkedHashMap<>(); // index key -> index name
+        for (Document index : collection.listIndexes()) {
+            existing.put(toKeyString(index.get("key", Document.class)), index.getString("name"));
+        }
+
+        List<String> declared = getDeclaredIndexes(entity);
+        for (String key : declared) {
+            if (!existing.containsKey(key)) {
+                result.missing.add(key);
+            }
+        }
+        for (Map.Entry<String, String> index : existing.entrySet()) {
+            if (!DEFAULT_INDEX_NAME.equals(index.getValue()) && !declared.contains(index.getKey())) {
+                result.undeclared.add(index.getValue());
+            }
+        }
+
+        try {
+            for (Document stats : collection.aggregate(List.of(new Document("$indexStats", new Document())),
+                    Document.class)) {
+                Document accesses = stats.get("accesses", Document.class);
+                if (accesses != null && accesses.get("ops", Number.class).longValue() == 0L
+                        && !DEFAULT_INDEX_NAME.equals(stats.getString("name"))) {
+                    result.unused.add(stats.getString("name"));
+                }
+            }
+        } catch (MongoException e) {
+            // we may not be allowed to retrieve index statistics
+            LOG.warn("Unable to retrieve index usage statistics for collection {}",
+                    collection.getNamespace().getCollectionName(), e);
+            result.unused = null;
+        }
+        return result;
+    }
+
+    /**
+     * @return the keys of all indexes that are declared on the provided entity class
+     */
+    private static List<String> getDeclaredIndexes(Class<?> entity) {
+        List<String> result = new ArrayList<>();
+        Indexes indexes = entity.getAnnotation(Indexes.class);
+        if (indexes != null) {
+            for (Index index : indexes.value()) {
+                StringJoiner key = new StringJoiner(", ", "{", "}");
+                for (Field field : index.fields()) {
+                    key.add(field.value() + ": " + field.type().toIndexValue());
+                }
+                result.add(key.toString());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Converts an index key document to the same notation as we use for declared indexes. Number values are
+     * converted to integers, because indexes that are created manually (e.g. with the mongo shell) may specify the
+     * index direction as a double.
+     */
+    private static String toKeyString(Document key) {
+        StringJoiner result = new StringJoiner(", ", "{", "}");
+        for (Map.Entry<String, Object> field : key.entrySet()) {
+            Object value = field.getValue();
+            result.add(field.getKey() + ": " + (value instanceof Number ? ((Number) value).intValue() : value));
+        }
+        return result.toString();
+    }
+
+    /**
+     * Index report of a single collection
+     */
+    public static final class CollectionReport {
+        private final List<String> missing    = new ArrayList<>();
+        private final List<String> undeclared = new ArrayList<>();
+        private       List<String> unused     = new ArrayList<>();
+
+        /**
+         * @return keys of the catalogued indexes that do not exist in the database
+         */
+        public List<String> getMissing() {
+            return missing;
+        }
+
+        /**
+         * @return names of the indexes that exist in the database, but are not in the catalogue
+         */
+        public List<String> getUndeclared() {
+            return undeclared;
+        }
+
+        /**
+         * @return names of the indexes that have not been used since the mongod was started, null if no usage
+         * statistics are available
+         */
+        public List<String> getUnused() {
+            return unused;
+        }
+
+        /**
+         * @return true if all catalogued indexes exist
+         */
+        public boolean isComplete() {
+            return missing.isEmpty();
+        }
+    }
+}
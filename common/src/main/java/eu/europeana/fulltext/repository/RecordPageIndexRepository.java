@@ -0,0 +1,64 @@
+package eu.europeana.fulltext.repository;
+
+import dev.morphia.Datastore;
+import eu.europeana.fulltext.entity.AnnoPage;
+import eu.europeana.fulltext.entity.RecordPageIndex;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+import static dev.morphia.query.experimental.filters.Filters.eq;
+import static eu.europeana.fulltext.util.MorphiaUtils.Fields.DOC_ID;
+
+/**
+ * Repository for retrieving, generating and saving RecordPageIndex objects
+ */
+@Repository
+public class RecordPageIndexRepository {
+
+    @Autowired
+    protected Datastore datastore;
+
+    @Autowired
+    protected AnnoPageRepository annoPageRepository;
+
+    /**
+     * Find the page index of a record
+     * @param datasetId ID of the dataset
+     * @param localId   ID of the record
+     * @return RecordPageIndex, or null if there is no index for this record
+     */
+    public RecordPageIndex findByRecordId(String datasetId, String localId) {
+        return datastore.find(RecordPageIndex.class)
+                .filter(eq(DOC_ID, RecordPageIndex.createId(datasetId, localId)))
+                .first();
+    }
+
+    /**
+     * Generate a page index for a record from the (metadata of the) original AnnoPages of that record.
+     * The generated index is not saved.
+     * @param datasetId ID of the dataset
+     * @param localId   ID of the record
+     * @return generated RecordPageIndex, or null if the record has no original AnnoPages
+     */
+    public RecordPageIndex generate(String datasetId, String localId) {
+        List<AnnoPage> annoPages = annoPageRepository.findOrigPages(datasetId, localId);
+        if (annoPages == null || annoPages.isEmpty()) {
+            return null;
+        }
+        RecordPageIndex result = new RecordPageIndex(datasetId, localId);
+        for (AnnoPage annoPage : annoPages) {
+            result.addPage(annoPage);
+        }
+        return result;
+    }
+
+    /**
+     * Saves a page index, replacing any existing index of the same record
+     * @param pageIndex the page index to save
+     */
+    public void save(RecordPageIndex pageIndex) {
+        datastore.save(pageIndex);
+    }
+}
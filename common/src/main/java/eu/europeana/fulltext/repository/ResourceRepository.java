@@ -1,14 +1,38 @@
 package eu.europeana.fulltext.repository;
 
 import dev.morphia.Datastore;
+import dev.morphia.aggregation.experimental.expressions.ComparisonExpressions;
+import dev.morphia.aggregation.experimental.expressions.ConditionalExpressions;
+import dev.morphia.aggregation.experimental.expressions.impls.Expression;
+import dev.morphia.aggregation.experimental.expressions.impls.SwitchExpression;
+import dev.morphia.aggregation.experimental.stages.AddFields;
+import dev.morphia.aggregation.experimental.stages.Match;
+import dev.morphia.aggregation.experimental.stages.Projection;
+import dev.morphia.aggregation.experimental.stages.Sort;
+import dev.morphia.query.FindOptions;
+import dev.morphia.query.Query;
+import dev.morphia.query.experimental.filters.Filter;
+import dev.morphia.query.internal.MorphiaCursor;
 import eu.europeana.fulltext.entity.Resource;
 import eu.europeana.fulltext.entity.TranslationResource;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.bson.Document;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static dev.morphia.aggregation.experimental.expressions.ArrayExpressions.array;
+import static dev.morphia.aggregation.experimental.expressions.ConditionalExpressions.condition;
+import static dev.morphia.aggregation.experimental.expressions.Expressions.field;
+import static dev.morphia.aggregation.experimental.expressions.Expressions.value;
+import static dev.morphia.aggregation.experimental.expressions.StringExpressions.substrCP;
 import static dev.morphia.query.experimental.filters.Filters.eq;
+import static dev.morphia.query.experimental.filters.Filters.in;
 import static eu.europeana.fulltext.util.MorphiaUtils.Fields.*;
 
 
@@ -20,12 +44,14 @@ public class ResourceRepository {
 
     private static final Logger LOG = LogManager.getLogger(ResourceRepository.class);
 
+    // temporary field added to union query results to tell originals and translations apart
+    private static final String IS_TRANSLATION = "isTranslation";
+    // temporary field with the requested parts of the text
+    private static final String SLICES         = "slices";
+
     @Autowired
     protected Datastore datastore;
 
-    // TODO investigate if we can query for both original and translation annopages in 1 query (e.g. with aggregation)
-    // If not we could try and sent the original and translation query simultaneously (see also FTService)
-
     /**
      * Check if an original Resource exists that matches the given parameters
      * @param datasetId ID of the associated dataset
@@ -59,55 +85,182 @@ public class ResourceRepository {
     }
 
     /**
-     * @return the total number of original resources in the database
+     * @return the (estimated) total number of original resources in the database
      */
     public long countOriginal() {
-        return count(Resource.class);
+        return estimateCount(Resource.class);
     }
 
     /**
-     * @return the total number of translation resources in the database
+     * @return the (estimated) total number of translation resources in the database
      */
     public long countTranslation() {
-        return count(TranslationResource.class);
+        return estimateCount(TranslationResource.class);
     }
 
-    private long count(Class clazz) {
-        LOG.warn("Repository count is temporarily disabled because of bad performance with large collections");
-        //return datastore.createQuery(clazz).count();
-        return 0;
+    /**
+     * Returns the number of Resources or TranslationResources based on the collection's metadata, so this is fast
+     * but the count may not be exact (e.g. after an unclean shutdown)
+     * @param clazz either Resource or TranslationResource
+     * @return estimated number of documents in the collection
+     */
+    public long estimateCount(Class<? extends Resource> clazz) {
+        return datastore.getMapper().getCollection(clazz).estimatedDocumentCount();
     }
 
     /**
-     * Find an original Resource that matches the given parameters
+     * Find an original Resource or, if there is no original, a Translation Resource that matches the given parameters.
+     * Both collections are queried in a single aggregation using $unionWith.
      * @param datasetId ID of the associated dataset
-     * @param localId   ID of the associated Annopage parent object
+     * @param localId   ID of the associated (Translation)Annopage parent object
      * @param resId     ID of the Resource document
-     * @return List containing matching Resource(s) (should be just one)
+     * @return Resource or TranslationResource, null if neither exists
      */
-    public Resource findOriginalByResId(String datasetId, String localId, String resId) {
-        return datastore.find(Resource.class)
-                .filter(
+    public Resource findOriginalOrTranslationByResId(String datasetId, String localId, String resId) {
+        Filter[] filters = {
+                eq(DATASET_ID, datasetId),
+                eq(LOCAL_ID, localId),
+                eq(DOC_ID, resId)
+        };
+        Document result = datastore.aggregate(Resource.class)
+                .match(filters)
+                .addFields(AddFields.of().field(IS_TRANSLATION, value(false)))
+                .unionWith(TranslationResource.class, Match.on(filters),
+                        AddFields.of().field(IS_TRANSLATION, value(true)))
+                .sort(Sort.on().ascending(IS_TRANSLATION))
+                .limit(1)
+                .execute(Document.class)
+                .tryNext();
+        if (result == null) {
+            return null;
+        }
+        // translations don't store a discriminator, so we decide on the result type ourselves
+        Class<? extends Resource> clazz = Boolean.TRUE.equals(result.remove(IS_TRANSLATION))
+                ? TranslationResource.class : Resource.class;
+        return datastore.getMapper().fromDocument(clazz, result);
+    }
+
+    /**
+     * Retrieve parts of the text of original Resources, without transferring the complete texts. All Resources are
+     * retrieved in one query.
+     * <p>
+     * The mongodb query implemented by this method is:
+     * db.getCollection("Resource").aggregate(
+     * {$match: {"dsId": <datasetId>, "lcId": <localId>, "_id": {$in: [<resourceIds>]}}},
+     * {$project: {
+     *   "slices": {
+     *     $switch: { branches: [
+     *       { case: { $eq: [ "$_id", <resourceId> ] },
+     *         then: [ { $substrCP: [ "$value", <start>, <length> ] }, ... ] },
+     *       ...
+     *     ] }
+     *   }
+     * })
+     *
+     * Note that $substrCP counts code points, while text offsets are in UTF-16 characters (like Java Strings). These
+     * are the same unless the text contains characters outside the Basic Multilingual Plane. The loader flags such
+     * Resources (nonBmp), so for those we retrieve the complete text instead and slice it here:
+     *   "value": { $cond: [ "$nonBmp", "$value", "" ] }
+     * @param datasetId          ID of the associated dataset
+     * @param localId            ID of the associated Annopage parent object
+     * @param rangesByResourceId per resource id the parts of the text that should be retrieved
+     * @return per resource id the text of the requested ranges, in the same order as the ranges. Resources that
+     * don't exist are not included
+     */
+    public Map<String, List<String>> findTextSlices(String datasetId, String localId,
+                                                    Map<String, List<TextRange>> rangesByResourceId) {
+        Map<String, List<String>> result = new HashMap<>();
+        if (rangesByResourceId.isEmpty()) {
+            return result;
+        }
+        SwitchExpression slices = ConditionalExpressions.switchExpression();
+        for (Map.Entry<String, List<TextRange>> ranges : rangesByResourceId.entrySet()) {
+            Expression[] substrings = ranges.getValue().stream()
+                    .map(range -> substrCP(field(VALUE), range.getStart(), range.length()))
+                    .toArray(Expression[]::new);
+            slices.branch(ComparisonExpressions.eq(field(DOC_ID), value(ranges.getKey())), array(substrings));
+        }
+        try (MorphiaCursor<Document> cursor = datastore.aggregate(Resource.class)
+                .match(
                         eq(DATASET_ID, datasetId),
                         eq(LOCAL_ID, localId),
-                        eq(DOC_ID, resId))
-                .first();
+                        in(DOC_ID, rangesByResourceId.keySet()))
+                .project(Projection.of()
+                        .include(SLICES, slices)
+                        .include(NON_BMP)
+                        .include(VALUE, condition(field(NON_BMP), field(VALUE), value(""))))
+                .execute(Document.class)) {
+            while (cursor.hasNext()) {
+                Document resource = cursor.next();
+                String resourceId = resource.getString(DOC_ID);
+                if (resource.getBoolean(NON_BMP, false)) {
+                    result.put(resourceId, slice(resource.getString(VALUE), rangesByResourceId.get(resourceId)));
+                } else {
+                    result.put(resourceId, resource.getList(SLICES, String.class));
+                }
+            }
+        }
+        return result;
     }
 
     /**
-     * Find a Translation Resource that matches the given parameters
+     * Returns the requested parts of a text, like $substrCP ranges outside the text are truncated
+     */
+    private static List<String> slice(String text, List<TextRange> ranges) {
+        List<String> result = new ArrayList<>(ranges.size());
+        for (TextRange range : ranges) {
+            int start = Math.min(range.getStart(), text.length());
+            result.add(text.substring(start, Math.min(range.getEnd(), text.length())));
+        }
+        return result;
+    }
+
+    /**
+     * Iterate over all original Resources of a dataset or record, ordered by local id and resource id (the order of
+     * the dsId/lcId/_id index, so no sorting in memory is needed).
+     * The cursor returned by this method must be closed.
+     * @param datasetId ID of the associated dataset
+     * @param localId   optional, ID of the associated Annopage parent object. If null all Resources of the dataset
+     *                  are returned
+     * @param batchSize number of Resources retrieved from the database in one batch
+     * @return cursor with Resources
+     */
+    public MorphiaCursor<Resource> streamOriginals(String datasetId, String localId, int batchSize) {
+        Query<Resource> query = datastore.find(Resource.class).filter(eq(DATASET_ID, datasetId));
+        if (localId != null) {
+            query = query.filter(eq(LOCAL_ID, localId));
+        }
+        return query.iterator(new FindOptions()
+                .sort(dev.morphia.query.Sort.ascending(LOCAL_ID), dev.morphia.query.Sort.ascending(DOC_ID))
+                .batchSize(batchSize));
+    }
+
+    /**
+     * Find the content fingerprint of an original Resource or, if there is no original, a Translation Resource that
+     * matches the given parameters. Only the fingerprint is retrieved, the text itself is not loaded.
      * @param datasetId ID of the associated dataset
-     * @param localId   ID of the associated TranslationAnnopage parent object
+     * @param localId   ID of the associated (Translation)Annopage parent object
      * @param resId     ID of the Resource document
-     * @return List containing matching Resource(s) (should be just one)
+     * @return fingerprint, null if no such Resource exists or if it doesn't have a fingerprint
      */
-    public TranslationResource findTranslationByResId(String datasetId, String localId, String resId) {
-        return datastore.find(TranslationResource.class)
-                .filter(
-                        eq(DATASET_ID, datasetId),
-                        eq(LOCAL_ID, localId),
-                        eq(DOC_ID, resId))
-                .first();
+    public String findHash(String datasetId, String localId, String resId) {
+        Filter[] filters = {
+                eq(DATASET_ID, datasetId),
+                eq(LOCAL_ID, localId),
+                eq(DOC_ID, resId)
+        };
+        Projection hashOnly = Projection.of().include(HASH).suppressId();
+        Document result = datastore.aggregate(Resource.class)
+                .match(filters)
+                .project(hashOnly)
+                .addFields(AddFields.of().field(IS_TRANSLATION, value(false)))
+                .unionWith(TranslationResource.class, Match.on(filters), hashOnly,
+                        AddFields.of().field(IS_TRANSLATION, value(true)))
+                .sort(Sort.on().ascending(IS_TRANSLATION))
+                .limit(1)
+                .execute(Document.class)
+                .tryNext();
+        return (result == null ? null : result.getString(HASH));
     }
 
 }
@@ -0,0 +1,60 @@
+package eu.europeana.fulltext.repository;
+
+import java.util.Objects;
+
+/**
+ * Start and end offset of a part of the text of a page (e.g. a search hit), with the same meaning as the from and to
+ * of an Annotation: the start is inclusive, the end exclusive.
+ */
+public final class TextRange {
+
+    private final int start;
+    private final int end;
+
+    /**
+     * Create a new text range
+     * @param start start offset (inclusive)
+     * @param end end offset (exclusive)
+     */
+    public TextRange(int start, int end) {
+        if (start < 0 || end < start) {
+            throw new IllegalArgumentException("Invalid text range " + start + "," + end);
+        }
+        this.start = start;
+        this.end = end;
+    }
+
+    public int getStart() {
+        return start;
+    }
+
+    public int getEnd() {
+        return end;
+    }
+
+    public int length() {
+        return end - start;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        TextRange that = (TextRange) o;
+        return start == that.start && end == that.end;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(start, end);
+    }
+
+    @Override
+    public String toString() {
+        return start + "," + end;
+    }
+}
@@ -0,0 +1,44 @@
+package eu.europeana.fulltext.util;
+
+import eu.europeana.fulltext.entity.Resource;
+import org.apache.commons.codec.digest.MurmurHash3;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Generates fingerprints of the contents of Resources. Fingerprints are calculated by the loader and
+ * stored together with the data, so the API can generate ETags without reading or hashing the full text.
+ * We use the 128-bit variant of MurmurHash3, which is a lot faster than cryptographic hashes. It's not meant to be
+ * collision resistant against deliberate attacks, but that's not required for detecting content changes.
+ */
+public final class ContentFingerprint {
+
+    private static final char SEPARATOR = '\u0000';
+
+    private ContentFingerprint() {
+        // private constructor to prevent instantiation
+    }
+
+    /**
+     * Calculate the fingerprint of a Resource (language, text, source and rights)
+     * @param resource the resource to fingerprint
+     * @return hexadecimal fingerprint string (32 characters)
+     */
+    public static String of(Resource resource) {
+        StringBuilder s = new StringBuilder(resource.getValue() == null ? 64 : resource.getValue().length() + 64);
+        append(s, resource.getLang());
+        append(s, resource.getSource());
+        append(s, resource.getRights());
+        append(s, resource.getValue());
+        return hash(s);
+    }
+
+    private static void append(StringBuilder s, Object value) {
+        s.append(value).append(SEPARATOR);
+    }
+
+    private static String hash(CharSequence data) {
+        long[] hash = MurmurHash3.hash128x64(data.toString().getBytes(StandardCharsets.UTF_8));
+        return String.format("%016x%016x", hash[0], hash[1]);
+    }
+}
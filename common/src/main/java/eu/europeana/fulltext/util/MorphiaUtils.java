@@ -32,10 +32,19 @@ public final class MorphiaUtils {
         public static final String ANNOTATIONS = "ans";
         public static final String RESOURCE = "res";
         public static final String MODIFIED = "modified";
+        public static final String HASH = "hash";
+        public static final String NON_BMP = "nonBmp";
+        public static final String VALUE = "value";
 
         public static final String ANNOTATIONS_DCTYPE = ANNOTATIONS + ".dcType";
         public static final String ANNOTATIONS_ID = ANNOTATIONS + ".anId";
 
+        // DatasetInventory counters
+        public static final String PAGE_COUNT = "pages";
+        public static final String RESOURCE_COUNT = "resources";
+        public static final String ANNOTATION_COUNT = "annotations";
+        public static final String BYTE_COUNT = "bytes";
+
         private Fields() {
             // private constructor to prevent instantiation
         }
@@ -4,6 +4,7 @@ import com.mongodb.MongoClientURI;
 import com.mongodb.client.MongoClient;
 import dev.morphia.Datastore;
 import dev.morphia.Morphia;
+import eu.europeana.fulltext.repository.IndexCatalogue;
 import org.apache.logging.log4j.LogManager;
 import org.springframework.boot.autoconfigure.mongo.MongoProperties;
 import org.springframework.context.annotation.Bean;
@@ -33,7 +34,7 @@ public class DataSourceConfig {
         LogManager.getLogger(eu.europeana.fulltext.api.config.DataSourceConfig.class).
                 info("Connecting to {} Mongo database on hosts {}...", database, uri.getHosts());
         final Datastore datastore = Morphia.createDatastore(mongoClient, database, MAPPER_OPTIONS);
-        datastore.ensureIndexes();
+        new IndexCatalogue(datastore).ensureIndexes();
         return datastore;
     }
 }
@@ -1,9 +1,7 @@
 package eu.europeana.fulltext.loader.repository;
 
 import eu.europeana.fulltext.entity.AnnoPage;
-import eu.europeana.fulltext.entity.Resource;
 import eu.europeana.fulltext.entity.TranslationAnnoPage;
-import eu.europeana.fulltext.entity.TranslationResource;
 import eu.europeana.fulltext.repository.AnnoPageRepository;
 import org.springframework.stereotype.Repository;
 
@@ -25,11 +23,11 @@ public class LoaderAnnoPageRepository extends AnnoPageRepository {
      * @return the number of deleted annotation pages
      */
     public long deleteOriginalDataset(String datasetId) {
-        return deleteDataset(datasetId, Resource.class);
+        return deleteDataset(datasetId, AnnoPage.class);
     }
 
     public long deleteTranslationDataset(String datasetId) {
-        return deleteDataset(datasetId, TranslationResource.class);
+        return deleteDataset(datasetId, TranslationAnnoPage.class);
     }
 
     private long deleteDataset(String datasetId, Class clazz) {
@@ -38,8 +36,12 @@ public class LoaderAnnoPageRepository extends AnnoPageRepository {
                 .delete(MULTI_DELETE_OPTS).getDeletedCount();
     }
 
+    /**
+     * Inserts a new AnnoPage. This fails if an AnnoPage with the same dataset, local and page id already exists.
+     * @param apToSave AnnoPage to insert
+     */
     public void saveOriginal(AnnoPage apToSave){
-        datastore.save(apToSave);
+        datastore.insert(apToSave);
     }
 
     public void saveTranslation(TranslationAnnoPage apToSave){
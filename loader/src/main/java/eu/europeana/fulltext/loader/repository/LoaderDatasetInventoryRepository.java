@@ -0,0 +1,69 @@
+package eu.europeana.fulltext.loader.repository;
+
+import com.mongodb.client.model.ReturnDocument;
+import dev.morphia.ModifyOptions;
+import eu.europeana.fulltext.entity.DatasetInventory;
+import eu.europeana.fulltext.repository.DatasetInventoryRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Date;
+
+import static dev.morphia.query.experimental.filters.Filters.eq;
+import static dev.morphia.query.experimental.updates.UpdateOperators.inc;
+import static dev.morphia.query.experimental.updates.UpdateOperators.set;
+import static eu.europeana.fulltext.util.MorphiaUtils.Fields.*;
+
+/**
+ * Repository for updating DatasetInventory counters
+ */
+@Repository
+public class LoaderDatasetInventoryRepository extends DatasetInventoryRepository {
+
+    /**
+     * Increments the counters of a dataset with the number of newly saved original pages, resources and annotations.
+     * The inventory is created if it doesn't exist yet.
+     * @param datasetId   ID of the dataset
+     * @param pages       number of saved AnnoPages
+     * @param resources   number of saved Resources
+     * @param annotations number of annotations of the saved AnnoPages
+     * @param bytes       change in the total size of the texts of the saved Resources
+     * @return the updated inventory of the dataset
+     */
+    public DatasetInventory incrementOriginals(String datasetId, long pages, long resources, long annotations,
+                                               long bytes) {
+        return datastore.find(DatasetInventory.class)
+                .filter(eq(DOC_ID, datasetId))
+                .modify(inc(PAGE_COUNT, pages),
+                        inc(RESOURCE_COUNT, resources),
+                        inc(ANNOTATION_COUNT, annotations),
+                        inc(BYTE_COUNT, bytes),
+                        set(MODIFIED, new Date()))
+                .execute(new ModifyOptions().upsert(true).returnDocument(ReturnDocument.AFTER));
+    }
+
+    /**
+     * Resets the page and annotation counters of a dataset, after all its AnnoPages were deleted
+     * @param datasetId ID of the dataset
+     */
+    public void resetPages(String datasetId) {
+        datastore.find(DatasetInventory.class)
+                .filter(eq(DOC_ID, datasetId))
+                .update(set(PAGE_COUNT, 0L),
+                        set(ANNOTATION_COUNT, 0L),
+                        set(MODIFIED, new Date()))
+                .execute();
+    }
+
+    /**
+     * Resets the resource and text size counters of a dataset, after all its Resources were deleted
+     * @param datasetId ID of the dataset
+     */
+    public void resetResources(String datasetId) {
+        datastore.find(DatasetInventory.class)
+                .filter(eq(DOC_ID, datasetId))
+                .update(set(RESOURCE_COUNT, 0L),
+                        set(BYTE_COUNT, 0L),
+                        set(MODIFIED, new Date()))
+                .execute();
+    }
+}
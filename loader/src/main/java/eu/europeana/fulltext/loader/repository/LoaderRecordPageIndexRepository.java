@@ -0,0 +1,45 @@
+package eu.europeana.fulltext.loader.repository;
+
+import eu.europeana.fulltext.entity.RecordPageIndex;
+import eu.europeana.fulltext.repository.RecordPageIndexRepository;
+import org.springframework.stereotype.Repository;
+
+import static dev.morphia.query.experimental.filters.Filters.eq;
+import static eu.europeana.fulltext.util.MorphiaUtils.Fields.DATASET_ID;
+import static eu.europeana.fulltext.util.MorphiaUtils.Fields.DOC_ID;
+import static eu.europeana.fulltext.util.MorphiaUtils.MULTI_DELETE_OPTS;
+
+/**
+ * Repository for updating and deleting RecordPageIndex objects
+ */
+@Repository
+public class LoaderRecordPageIndexRepository extends RecordPageIndexRepository {
+
+    /**
+     * Regenerates the page index of a record from its AnnoPages and saves it. If the record doesn't have any
+     * AnnoPages (anymore) then its page index is deleted.
+     * @param datasetId ID of the dataset
+     * @param localId   ID of the record
+     */
+    public void update(String datasetId, String localId) {
+        RecordPageIndex index = generate(datasetId, localId);
+        if (index == null) {
+            datastore.find(RecordPageIndex.class)
+                    .filter(eq(DOC_ID, RecordPageIndex.createId(datasetId, localId)))
+                    .delete();
+        } else {
+            save(index);
+        }
+    }
+
+    /**
+     * Deletes the page indexes of all records in a particular dataset
+     * @param datasetId ID of the dataset
+     * @return the number of deleted page indexes
+     */
+    public long deleteDataset(String datasetId) {
+        return datastore.find(RecordPageIndex.class).filter(
+                eq(DATASET_ID, datasetId))
+                .delete(MULTI_DELETE_OPTS).getDeletedCount();
+    }
+}
@@ -1,12 +1,23 @@
 package eu.europeana.fulltext.loader.repository;
 
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndReplaceOptions;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Updates;
+import dev.morphia.query.internal.MorphiaCursor;
 import eu.europeana.fulltext.entity.Resource;
 import eu.europeana.fulltext.entity.TranslationResource;
 import eu.europeana.fulltext.repository.ResourceRepository;
 import org.springframework.stereotype.Repository;
 
 import static dev.morphia.query.experimental.filters.Filters.eq;
+import static dev.morphia.query.experimental.filters.Filters.exists;
 import static eu.europeana.fulltext.util.MorphiaUtils.Fields.DATASET_ID;
+import static eu.europeana.fulltext.util.MorphiaUtils.Fields.DOC_ID;
+import static eu.europeana.fulltext.util.MorphiaUtils.Fields.HASH;
+import static eu.europeana.fulltext.util.MorphiaUtils.Fields.NON_BMP;
+import static eu.europeana.fulltext.util.MorphiaUtils.Fields.VALUE;
 import static eu.europeana.fulltext.util.MorphiaUtils.MULTI_DELETE_OPTS;
 
 
@@ -34,11 +45,43 @@ public class LoaderResourceRepository extends ResourceRepository {
                 .filter(eq(DATASET_ID, datasetId)).delete(MULTI_DELETE_OPTS).getDeletedCount();
     }
 
-    public void saveOriginal(Resource resToSave){
-        datastore.save(resToSave);
+    /**
+     * Saves a resource, replacing any existing resource with the same id
+     * @param resToSave resource to save
+     * @return the replaced resource (with only its value), or null if the resource didn't exist yet
+     */
+    public Resource saveOriginal(Resource resToSave){
+        return datastore.getMapper().getCollection(Resource.class).findOneAndReplace(
+                Filters.eq(DOC_ID, resToSave.getId()), resToSave,
+                new FindOneAndReplaceOptions()
+                        .upsert(true)
+                        .returnDocument(ReturnDocument.BEFORE)
+                        .projection(Projections.include(VALUE)));
     }
 
     public void saveTranslation(TranslationResource resToSave){
         datastore.save(resToSave);
     }
+
+    /**
+     * Finds all original resources that don't have a fingerprint yet (because they were saved by an older loader)
+     * @return cursor over the resources without fingerprint, must be closed after use
+     */
+    public MorphiaCursor<Resource> findWithoutHash() {
+        return datastore.find(Resource.class).filter(exists(HASH).not()).iterator();
+    }
+
+    /**
+     * Sets the fingerprint and nonBmp flag of a resource, but only if it doesn't have a fingerprint yet. A resource
+     * that was replaced by the loader in the meantime already has a (newer) fingerprint, so it's left alone.
+     * @param id id of the resource
+     * @param hash fingerprint of the resource contents
+     * @param nonBmp true if the text contains characters outside the Basic Multilingual Plane
+     * @return true if the fingerprint was set, otherwise false
+     */
+    public boolean saveHashIfMissing(String id, String hash, boolean nonBmp) {
+        return datastore.getMapper().getCollection(Resource.class).updateOne(
+                Filters.and(Filters.eq(DOC_ID, id), Filters.exists(HASH, false)),
+                Updates.combine(Updates.set(HASH, hash), Updates.set(NON_BMP, nonBmp))).getModifiedCount() > 0;
+    }
 }
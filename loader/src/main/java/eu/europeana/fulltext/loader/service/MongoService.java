@@ -1,16 +1,23 @@
 package eu.europeana.fulltext.loader.service;
 
 import eu.europeana.fulltext.entity.AnnoPage;
+import eu.europeana.fulltext.entity.DatasetInventory;
 import eu.europeana.fulltext.entity.Resource;
 import eu.europeana.fulltext.loader.config.LoaderSettings;
 import eu.europeana.fulltext.loader.exception.LoaderException;
 import eu.europeana.fulltext.loader.repository.LoaderAnnoPageRepository;
+import eu.europeana.fulltext.loader.repository.LoaderDatasetInventoryRepository;
+import eu.europeana.fulltext.loader.repository.LoaderRecordPageIndexRepository;
 import eu.europeana.fulltext.loader.repository.LoaderResourceRepository;
+import eu.europeana.fulltext.util.ContentFingerprint;
+import dev.morphia.query.internal.MorphiaCursor;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.stereotype.Service;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author Lúthien
@@ -27,48 +34,138 @@ public class MongoService {
 
     private LoaderResourceRepository resourceRepository;
     private LoaderAnnoPageRepository annoPageRepository;
+    private LoaderRecordPageIndexRepository pageIndexRepository;
+    private LoaderDatasetInventoryRepository inventoryRepository;
     private LoaderSettings settings;
 
-    public MongoService(LoaderResourceRepository resourceRepository, LoaderAnnoPageRepository annoPageRepository, LoaderSettings settings) {
+    public MongoService(LoaderResourceRepository resourceRepository, LoaderAnnoPageRepository annoPageRepository,
+                        LoaderRecordPageIndexRepository pageIndexRepository,
+                        LoaderDatasetInventoryRepository inventoryRepository, LoaderSettings settings) {
         this.resourceRepository = resourceRepository;
         this.annoPageRepository = annoPageRepository;
+        this.pageIndexRepository = pageIndexRepository;
+        this.inventoryRepository = inventoryRepository;
         this.settings = settings;
     }
 
     public void saveAnnoPageList(List<AnnoPage> apList, MongoSaveMode saveMode) throws LoaderException {
         LOG.debug("Saving {} annoPages...", apList.size());
 
-        long resourceCount = resourceRepository.countOriginal();
-        long annoPageCount = annoPageRepository.countOriginal();
         if (MongoSaveMode.INSERT.equals(saveMode)) {
+            Map<String, InventoryDelta> deltas = new LinkedHashMap<>();
             for (AnnoPage annoPage : apList) {
-                saveResource(annoPage.getRes());
-                saveAnnoPage(annoPage);
+                InventoryDelta delta = deltas.computeIfAbsent(annoPage.getDsId(), k -> new InventoryDelta());
+                saveResource(annoPage.getRes(), delta);
+                if (saveAnnoPage(annoPage)) {
+                    delta.addPage(annoPage);
+                }
             }
-            long newResourceCount = resourceRepository.countOriginal();
-            long newAnnoPageCount = annoPageRepository.countOriginal();
-            if (resourceCount + apList.size() != newResourceCount) {
-                LogFile.OUT.warn("Expected number of resource in database is {}, but actual number is {}",
-                        resourceCount + apList.size(), newResourceCount);
+            deltas.forEach(this::updateInventory);
+            updatePageIndexes(apList);
+        }
+        LOG.debug("Saving done.");
+    }
+
+    /**
+     * Adds the pages and resources saved in a batch to the inventory of their dataset, and checks if the dataset
+     * (still) has a resource for every AnnoPage
+     */
+    private void updateInventory(String datasetId, InventoryDelta delta) {
+        try {
+            DatasetInventory inventory = inventoryRepository.incrementOriginals(datasetId, delta.pages,
+                    delta.resources, delta.annotations, delta.bytes);
+            if (inventory.getPages() != inventory.getResources()) {
+                LogFile.OUT.warn("{} - Dataset has {} annotation pages, but {} resources", datasetId,
+                        inventory.getPages(), inventory.getResources());
             }
-            if (annoPageCount + apList.size() != newAnnoPageCount) {
-                LogFile.OUT.warn("Expected number of annotation pages in database is {}, but actual number is {}",
-                        annoPageCount + apList.size(), annoPageCount);
+        } catch (Exception e) {
+            LogFile.OUT.error("{} - Error updating dataset inventory", datasetId, e);
+        }
+    }
+
+    /**
+     * Number of pages, resources and annotations inserted for a dataset in one batch, and the change in the size of
+     * its texts
+     */
+    private static final class InventoryDelta {
+        private long pages;
+        private long resources;
+        private long annotations;
+        private long bytes;
+
+        void addResource(Resource resource, Resource replaced) {
+            bytes += utf8Length(resource.getValue());
+            if (replaced == null) {
+                resources++;
+            } else {
+                bytes -= utf8Length(replaced.getValue());
             }
         }
-        LOG.debug("Saving done.");
+
+        void addPage(AnnoPage annoPage) {
+            pages++;
+            annotations += (annoPage.getAns() == null ? 0 : annoPage.getAns().size());
+        }
     }
 
     /**
-     * Saves a Resource object to the database
+     * @return the number of bytes of the UTF-8 encoded text, calculated without encoding it
+     */
+    static long utf8Length(String text) {
+        if (text == null) {
+            return 0;
+        }
+        long result = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                result++;
+            } else if (c < 0x800) {
+                result += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                result += 4;
+                i++;
+            } else {
+                result += 3;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Regenerates the page index of all records that the provided AnnoPages belong to. Each record is updated only
+     * once, regardless of the number of its AnnoPages in the list.
+     */
+    private void updatePageIndexes(List<AnnoPage> apList) {
+        Map<String, AnnoPage> records = new LinkedHashMap<>();
+        for (AnnoPage annoPage : apList) {
+            records.putIfAbsent(annoPage.getDsId() + "/" + annoPage.getLcId(), annoPage);
+        }
+        for (AnnoPage annoPage : records.values()) {
+            try {
+                pageIndexRepository.update(annoPage.getDsId(), annoPage.getLcId());
+                LOG.debug("{}/{} - Page index updated", annoPage.getDsId(), annoPage.getLcId());
+            } catch (Exception e) {
+                LogFile.OUT.error("{}/{} - Error updating page index", annoPage.getDsId(), annoPage.getLcId(), e);
+            }
+        }
+    }
+
+    /**
+     * Saves a Resource object to the database, together with a fingerprint of its contents and whether its text
+     * contains characters outside the Basic Multilingual Plane, and adds it to the
+     * inventory changes of its dataset (an existing resource with the same id is replaced, not counted again)
      * @return true if the object was saved properly, otherwise false
      */
-    public boolean saveResource(Resource resource) throws LoaderException {
+    private boolean saveResource(Resource resource, InventoryDelta delta) throws LoaderException {
         String dsId = resource.getDsId();
         String lcId = resource.getLcId();
         String id = resource.getId();
         try{
-            resourceRepository.saveOriginal(resource);
+            resource.setHash(ContentFingerprint.of(resource));
+            resource.setNonBmp(containsNonBmp(resource.getValue()));
+            delta.addResource(resource, resourceRepository.saveOriginal(resource));
             LOG.debug("{}/{}/{} - Resource saved", dsId, lcId, id);
             return true;
         } catch (Exception e){
@@ -88,7 +185,33 @@ public class MongoService {
      * @return the number of deleted resources
      */
     public long deleteAllResources(String datasetId) {
-        return resourceRepository.deleteOriginalDataset(datasetId);
+        long deleted = resourceRepository.deleteOriginalDataset(datasetId);
+        inventoryRepository.resetResources(datasetId);
+        return deleted;
+    }
+
+    /**
+     * Stores a fingerprint for all original resources that were saved without one (by an older loader), so the API
+     * can generate their ETag without reading and hashing the entire text for every request. Resources saved by an
+     * older loader also don't have the nonBmp flag, so that is set as well.
+     * Translation resources are saved by other applications and are not updated.
+     * @return the number of updated resources
+     */
+    public long addMissingResourceHashes() {
+        long updated = 0;
+        try (MorphiaCursor<Resource> resources = resourceRepository.findWithoutHash()) {
+            while (resources.hasNext()) {
+                Resource resource = resources.next();
+                if (resourceRepository.saveHashIfMissing(resource.getId(), ContentFingerprint.of(resource),
+                        containsNonBmp(resource.getValue()))) {
+                    updated++;
+                    if (updated % 10_000 == 0) {
+                        LOG.info("Added fingerprint to {} resources...", updated);
+                    }
+                }
+            }
+        }
+        return updated;
     }
 
     /**
@@ -120,13 +243,29 @@ public class MongoService {
     }
 
     /**
-     * Deletes all annotation pages that belong to a particular dataset
+     * Deletes all annotation pages (and the page indexes of their records) that belong to a particular dataset
      * @param datasetId id of the dataset for which all annopages should be deleted
      * @return the number of deleted annopages
      */
     public long deleteAllAnnoPages(String datasetId) {
-        return annoPageRepository.deleteOriginalDataset(datasetId);
+        long deleted = annoPageRepository.deleteOriginalDataset(datasetId);
+        inventoryRepository.resetPages(datasetId);
+        LOG.debug("Deleted {} page indexes", pageIndexRepository.deleteDataset(datasetId));
+        return deleted;
     }
 
-
+    /**
+     * Text offsets are in UTF-16 characters, but MongoDB's $substrCP counts code points. These only differ for texts
+     * with characters outside the Basic Multilingual Plane (stored as surrogate pairs in Java Strings).
+     */
+    private static boolean containsNonBmp(String text) {
+        if (text != null) {
+            for (int i = 0; i < text.length(); i++) {
+                if (Character.isSurrogate(text.charAt(i))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
 }
@@ -59,5 +59,16 @@ public class LoaderController {
         return result;
     }
 
+    /**
+     * Store a fingerprint for all original resources that don't have one yet (saved by an older loader version)
+     * @return String describing how many resources were updated
+     */
+    @GetMapping(value = "/addhashes", produces = MediaType.TEXT_PLAIN_VALUE)
+    public String addHashes() {
+        LogManager.getLogger(LoaderController.class).debug("Starting adding fingerprints...");
+        String result = "Added fingerprint to " + mongoService.addMissingResourceHashes() + " resources";
+        LogManager.getLogger(LoaderController.class).info(result);
+        return result;
+    }
 
 }
@@ -56,6 +56,7 @@ public class LoaderControllerTest {
 
         given(mongoService.deleteAllAnnoPages(eq("9200357"))).willReturn(DELETED_ITEMS);
         given(mongoService.deleteAllResources(eq("9200357"))).willReturn(DELETED_ITEMS);
+        given(mongoService.addMissingResourceHashes()).willReturn(DELETED_ITEMS);
     }
 
     /**
@@ -101,5 +102,14 @@ public class LoaderControllerTest {
                         + DELETED_ITEMS + " resources"));
     }
 
+    /**
+     * Test adding missing resource fingerprints
+     */
+    @Test
+    public void testAddHashes() throws Exception {
+        this.mockMvc.perform(get("/fulltext/addhashes"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("Added fingerprint to " + DELETED_ITEMS + " resources"));
+    }
 
 }
@@ -0,0 +1,149 @@
+package eu.europeana.fulltext.loader.test;
+
+import dev.morphia.query.internal.MorphiaCursor;
+import eu.europeana.fulltext.entity.AnnoPage;
+import eu.europeana.fulltext.entity.Annotation;
+import eu.europeana.fulltext.entity.DatasetInventory;
+import eu.europeana.fulltext.entity.Resource;
+import eu.europeana.fulltext.loader.config.LoaderSettings;
+import eu.europeana.fulltext.loader.exception.LoaderException;
+import eu.europeana.fulltext.loader.repository.LoaderAnnoPageRepository;
+import eu.europeana.fulltext.loader.repository.LoaderDatasetInventoryRepository;
+import eu.europeana.fulltext.loader.repository.LoaderRecordPageIndexRepository;
+import eu.europeana.fulltext.loader.repository.LoaderResourceRepository;
+import eu.europeana.fulltext.loader.service.MongoSaveMode;
+import eu.europeana.fulltext.loader.service.MongoService;
+import eu.europeana.fulltext.util.ContentFingerprint;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests if the MongoService keeps the dataset inventory up-to-date
+ */
+public class MongoServiceTest {
+
+    private LoaderResourceRepository         resourceRepository;
+    private LoaderAnnoPageRepository         annoPageRepository;
+    private LoaderDatasetInventoryRepository inventoryRepository;
+    private MongoService                     mongoService;
+
+    @Before
+    public void setup() {
+        resourceRepository = mock(LoaderResourceRepository.class);
+        annoPageRepository = mock(LoaderAnnoPageRepository.class);
+        inventoryRepository = mock(LoaderDatasetInventoryRepository.class);
+        LoaderSettings settings = mock(LoaderSettings.class);
+        given(settings.isStopOnSaveError()).willReturn(false);
+        mongoService = new MongoService(resourceRepository, annoPageRepository,
+                mock(LoaderRecordPageIndexRepository.class), inventoryRepository, settings);
+
+        given(inventoryRepository.incrementOriginals(any(), anyLong(), anyLong(), anyLong(), anyLong()))
+                .willReturn(mock(DatasetInventory.class));
+    }
+
+    private static AnnoPage annoPage(String dsId, String pgId, String text, int annotations) {
+        Resource resource = new Resource("res" + pgId, "en", text, "rights", dsId, "lc1");
+        AnnoPage result = new AnnoPage(dsId, "lc1", pgId, "tgt" + pgId, "en", resource);
+        result.setAns(Collections.nCopies(annotations, new Annotation()));
+        return result;
+    }
+
+    /**
+     * Test if the inventory of each dataset is incremented with the number of saved pages, resources, annotations
+     * and bytes
+     */
+    @Test
+    public void testInventoryCountsSavedDocuments() throws LoaderException {
+        mongoService.saveAnnoPageList(List.of(annoPage("ds1", "1", "tëxt", 2), annoPage("ds1", "2", "text", 3),
+                annoPage("ds2", "1", "te", 1)), MongoSaveMode.INSERT);
+
+        // the ë is encoded as 2 bytes
+        verify(inventoryRepository).incrementOriginals("ds1", 2, 2, 5, 9);
+        verify(inventoryRepository).incrementOriginals("ds2", 1, 1, 1, 2);
+    }
+
+    /**
+     * Test if a re-loaded resource or AnnoPage isn't counted again, but the change in text size is
+     */
+    @Test
+    public void testInventoryIgnoresExistingDocuments() throws LoaderException {
+        AnnoPage existing = annoPage("ds1", "1", "longer text", 2);
+        AnnoPage added = annoPage("ds1", "2", "text", 3);
+        given(resourceRepository.saveOriginal(existing.getRes()))
+                .willReturn(new Resource("res1", "en", "text", "rights"));
+        willThrow(new IllegalStateException("duplicate key")).given(annoPageRepository).saveOriginal(existing);
+
+        mongoService.saveAnnoPageList(List.of(existing, added), MongoSaveMode.INSERT);
+
+        verify(inventoryRepository).incrementOriginals("ds1", 1, 1, 3, 11);
+    }
+
+    /**
+     * Test if the counters of a dataset are reset when its pages or resources are deleted
+     */
+    @Test
+    public void testDeleteResetsInventory() {
+        given(annoPageRepository.deleteOriginalDataset("ds1")).willReturn(10L);
+        given(resourceRepository.deleteOriginalDataset("ds1")).willReturn(10L);
+
+        assertEquals(10L, mongoService.deleteAllAnnoPages("ds1"));
+        verify(inventoryRepository).resetPages(eq("ds1"));
+        assertEquals(10L, mongoService.deleteAllResources("ds1"));
+        verify(inventoryRepository).resetResources(eq("ds1"));
+    }
+
+    /**
+     * Test if resources without fingerprint get the same fingerprint as newly loaded resources, and that resources
+     * that were replaced in the meantime are not counted
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testAddMissingResourceHashes() {
+        Resource res1 = new Resource("res1", "en", "text", "rights", "ds1", "lc1");
+        Resource res2 = new Resource("res2", "en", "other text", "rights", "ds1", "lc1");
+        MorphiaCursor<Resource> cursor = mock(MorphiaCursor.class);
+        given(cursor.hasNext()).willReturn(true, true, false);
+        given(cursor.next()).willReturn(res1, res2);
+        given(resourceRepository.findWithoutHash()).willReturn(cursor);
+        given(resourceRepository.saveHashIfMissing(anyString(), anyString(), anyBoolean())).willReturn(true, false);
+
+        assertEquals(1L, mongoService.addMissingResourceHashes());
+        verify(resourceRepository).saveHashIfMissing("res1", ContentFingerprint.of(res1), false);
+        verify(resourceRepository).saveHashIfMissing("res2", ContentFingerprint.of(res2), false);
+        verify(cursor).close();
+        verify(inventoryRepository, never()).resetResources(any());
+    }
+
+    /**
+     * Test if resources with characters outside the Basic Multilingual Plane are flagged, so the API doesn't slice
+     * their text with code point offsets
+     */
+    @Test
+    public void testNonBmpResourcesFlagged() throws LoaderException {
+        AnnoPage bmp = annoPage("ds1", "1", "tëxt", 1);
+        AnnoPage nonBmp = annoPage("ds1", "2", "text \uD835\uDD4B", 1);
+
+        mongoService.saveAnnoPageList(List.of(bmp, nonBmp), MongoSaveMode.INSERT);
+
+        verify(resourceRepository).saveOriginal(argThat(resource -> "res1".equals(resource.getId())
+                && !resource.isNonBmp()));
+        verify(resourceRepository).saveOriginal(argThat(resource -> "res2".equals(resource.getId())
+                && resource.isNonBmp()));
+    }
+}
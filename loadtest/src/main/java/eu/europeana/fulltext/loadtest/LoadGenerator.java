@@ -0,0 +1,154 @@
+package eu.europeana.fulltext.loadtest;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sends the requests of a request mix to the API, either at a fixed rate (open model) or with a fixed number of
+ * concurrent users that each send a new request as soon as the previous one is answered (closed model).
+ * <p>
+ * In the open model the latency of a request is measured from the time it should have been sent according to the
+ * rate, not from when it was actually sent. That way a stalled API results in high latencies instead of in fewer
+ * (and seemingly fast) requests (coordinated omission).
+ */
+public class LoadGenerator {
+
+    private static final Logger LOG = LogManager.getLogger(LoadGenerator.class);
+
+    private static final long DRAIN_POLL_MS = 10;
+
+    private final HttpClient client;
+    private final RequestMix mix;
+    private final double     rate;
+    private final int        concurrency;
+    private final Duration   timeout;
+
+    /**
+     * Create a new load generator
+     * @param mix         request mix
+     * @param rate        number of requests per second, if larger than 0 the open model is used
+     * @param concurrency number of concurrent users, only used if rate is 0
+     * @param timeout     request timeout
+     */
+    public LoadGenerator(RequestMix mix, double rate, int concurrency, Duration timeout) {
+        if (rate <= 0 && concurrency <= 0) {
+            throw new IllegalArgumentException("Either rate or concurrency should be larger than 0");
+        }
+        this.mix = mix;
+        this.rate = rate;
+        this.concurrency = concurrency;
+        this.timeout = timeout;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(timeout)
+                .build();
+    }
+
+    /**
+     * @return description of the used load model, for logging
+     */
+    public String describe() {
+        if (rate > 0) {
+            return String.format("open model, %.1f requests/s", rate);
+        }
+        return "closed model, " + concurrency + " concurrent users";
+    }
+
+    /**
+     * Send requests for the provided duration and record the results
+     * @param duration how long requests are sent
+     * @param report   report to record the results in
+     * @throws InterruptedException when interrupted while waiting for requests to finish
+     */
+    public void run(Duration duration, LoadTestReport report) throws InterruptedException {
+        report.start();
+        if (rate > 0) {
+            runOpen(duration, report);
+        } else {
+            runClosed(duration, report);
+        }
+        report.stop();
+    }
+
+    private void runOpen(Duration duration, LoadTestReport report) throws InterruptedException {
+        AtomicInteger inFlight = new AtomicInteger();
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+        for (long i = 0; ; i++) {
+            long intendedStart = start + i * intervalNanos;
+            if (intendedStart >= end) {
+                break;
+            }
+            long wait = intendedStart - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            RequestType type = mix.nextType(ThreadLocalRandom.current());
+            HttpRequest request = mix.createRequest(type, ThreadLocalRandom.current());
+            inFlight.incrementAndGet();
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, e) -> {
+                        long latency = System.nanoTime() - intendedStart;
+                        if (e == null) {
+                            report.recordResponse(type, latency, response.statusCode(),
+                                    mix.processResponse(type, response));
+                        } else {
+                            LOG.debug("Request {} failed", request.uri(), e);
+                            report.recordException(type, latency);
+                        }
+                        inFlight.decrementAndGet();
+                    });
+        }
+        // wait for outstanding requests, they can't take longer than the request timeout
+        long drainEnd = System.nanoTime() + timeout.toNanos() + TimeUnit.SECONDS.toNanos(1);
+        while (inFlight.get() > 0 && System.nanoTime() < drainEnd) {
+            Thread.sleep(DRAIN_POLL_MS);
+        }
+    }
+
+    private void runClosed(Duration duration, LoadTestReport report) throws InterruptedException {
+        long end = System.nanoTime() + duration.toNanos();
+        List<Thread> users = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            Thread user = new Thread(() -> {
+                while (System.nanoTime() < end && !Thread.currentThread().isInterrupted()) {
+                    sendRequest(report);
+                }
+            }, "loadtest-user-" + i);
+            user.start();
+            users.add(user);
+        }
+        for (Thread user : users) {
+            user.join();
+        }
+    }
+
+    private void sendRequest(LoadTestReport report) {
+        RequestType type = mix.nextType(ThreadLocalRandom.current());
+        HttpRequest request = mix.createRequest(type, ThreadLocalRandom.current());
+        long start = System.nanoTime();
+        try {
+            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+            report.recordResponse(type, System.nanoTime() - start, response.statusCode(),
+                    mix.processResponse(type, response));
+        } catch (IOException e) {
+            LOG.debug("Request {} failed", request.uri(), e);
+            report.recordException(type, System.nanoTime() - start);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
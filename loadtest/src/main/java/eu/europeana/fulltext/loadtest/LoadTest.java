@@ -0,0 +1,224 @@
+package eu.europeana.fulltext.loadtest;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import eu.europeana.fulltext.api.FTApplication;
+import eu.europeana.fulltext.benchmarks.EdmArchiveGenerator;
+import eu.europeana.fulltext.benchmarks.EdmBenchmarkData;
+import eu.europeana.fulltext.loader.LoaderApplication;
+import eu.europeana.fulltext.loader.exception.LoaderException;
+import eu.europeana.fulltext.loader.service.LoadArchiveService;
+import eu.europeana.fulltext.loader.service.MongoSaveMode;
+import eu.europeana.fulltext.loader.service.XMLParserService;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * End-to-end load test of the API. By default it
+ * <ol>
+ *     <li>generates an archive with synthetic full-text data (see {@link EdmArchiveGenerator}),</li>
+ *     <li>loads the archive with the Loader into a (local) Mongo database, after dropping that database,</li>
+ *     <li>starts a {@link SolrStandIn} with the same data, so search requests return hits,</li>
+ *     <li>starts the API in the same JVM, connected to the Mongo database and the Solr stand-in,</li>
+ *     <li>sends a warm-up and a measured round of requests according to the request mix, and</li>
+ *     <li>prints the results and writes them to the report directory.</li>
+ * </ol>
+ * Run with e.g.
+ * <pre>java -jar loadtest/target/loadtest.jar --records 100 --rate 200 --duration 120</pre>
+ * or, to test an API that is already running and connected to a database with the same archive loaded,
+ * <pre>java -jar loadtest/target/loadtest.jar --api-url http://localhost:8084 --concurrency 32</pre>
+ * <p>
+ * Options that are not listed in {@link #main(String[])} are passed on to the API as Spring properties, so API
+ * settings can be changed per run, e.g. {@code --annopage.cache.maxsize.mb 256}.
+ */
+public final class LoadTest {
+
+    private static final Logger LOG = LogManager.getLogger(LoadTest.class);
+
+    private static final String DEFAULT_MONGO_URI   = "mongodb://localhost:27017";
+    private static final String DEFAULT_DATABASE    = "fulltext_loadtest";
+    private static final String DEFAULT_REPORT_DIR  = "loadtest-report";
+    private static final String DEFAULT_ARCHIVE_DIR = "loadtest-data";
+    private static final int    DEFAULT_RECORDS     = 100;
+    private static final int    DEFAULT_CONCURRENCY = 16;
+
+    private static final Set<String> OPTIONS = Set.of("archive", "output", "dataset", "records", "pages", "words",
+            "media", "entities", "seed", "mongo-uri", "database", "skip-load", "api-url", "port", "solr-port",
+            "solr-delay", "mix", "rate", "concurrency", "duration", "warmup", "timeout", "report");
+
+    private LoadTest() {
+        // empty constructor to prevent initialization
+    }
+
+    /**
+     * Command-line usage: all options are optional
+     * <pre>
+     * --archive      existing archive to use instead of generating one
+     * --output       directory to write the generated archive to (default: loadtest-data)
+     * --dataset, --records, --pages, --words, --media, --entities, --seed
+     *                archive generator settings (default 100 records, see EdmArchiveGenerator for the rest)
+     * --mongo-uri    Mongo server to load the data into and to connect the API to (default: mongodb://localhost:27017)
+     * --database     name of the database, which is dropped before loading (default: fulltext_loadtest)
+     * --skip-load    don't (re)load the database, e.g. when running again with the same archive
+     * --api-url      send requests to an already running API instead of starting one (no loading and Solr stand-in)
+     * --port         port for the API (default: a free port)
+     * --solr-port    port for the Solr stand-in (default: a free port)
+     * --solr-delay   extra time in ms that every Solr stand-in query takes (default: 0)
+     * --mix          request types and their weight (default: see RequestMix.DEFAULT_MIX)
+     * --rate         number of requests per second (open model)
+     * --concurrency  number of concurrent users, used if there's no rate (closed model, default: 16)
+     * --warmup       warm-up duration in seconds, not part of the results (default: 10)
+     * --duration     duration of the measurement in seconds (default: 60)
+     * --timeout      request timeout in seconds (default: 30)
+     * --report       directory to write the report to (default: loadtest-report)
+     * </pre>
+     */
+    public static void main(String[] args) throws IOException, LoaderException, InterruptedException {
+        Map<String, String> options = parseOptions(args);
+        long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+        Path archive = options.containsKey("archive") ? Paths.get(options.get("archive")) : generateArchive(options);
+
+        LOG.info("Reading {}...", archive);
+        LoadTestData data = new LoadTestData(archive, new XMLParserService(EdmBenchmarkData.loaderSettings()), seed);
+        LOG.info("Archive contains {} pages", data.getPages().size());
+
+        String apiUrl = options.get("api-url");
+        SolrStandIn solr = null;
+        ConfigurableApplicationContext api = null;
+        try {
+            if (apiUrl == null) {
+                String mongoUri = options.getOrDefault("mongo-uri", DEFAULT_MONGO_URI);
+                String database = options.getOrDefault("database", DEFAULT_DATABASE);
+                if (!options.containsKey("skip-load")) {
+                    loadArchive(archive, mongoUri, database);
+                }
+                solr = new SolrStandIn(data, Integer.parseInt(options.getOrDefault("solr-port", "0")),
+                        Long.parseLong(options.getOrDefault("solr-delay", "0")));
+                api = startApi(options, mongoUri, database, solr);
+                apiUrl = "http://localhost:" + api.getEnvironment().getProperty("local.server.port");
+            }
+
+            Duration timeout = Duration.ofSeconds(Long.parseLong(options.getOrDefault("timeout", "30")));
+            RequestMix mix = new RequestMix(apiUrl, data, options.getOrDefault("mix", RequestMix.DEFAULT_MIX),
+                    timeout);
+            LoadGenerator generator = new LoadGenerator(mix,
+                    Double.parseDouble(options.getOrDefault("rate", "0")),
+                    Integer.parseInt(options.getOrDefault("concurrency", String.valueOf(DEFAULT_CONCURRENCY))),
+                    timeout);
+
+            Duration warmup = Duration.ofSeconds(Long.parseLong(options.getOrDefault("warmup", "10")));
+            LOG.info("Warming up {} for {} s ({})...", apiUrl, warmup.toSeconds(), generator.describe());
+            generator.run(warmup, new LoadTestReport(mix));
+
+            Duration duration = Duration.ofSeconds(Long.parseLong(options.getOrDefault("duration", "60")));
+            LOG.info("Measuring for {} s...", duration.toSeconds());
+            LoadTestReport report = new LoadTestReport(mix);
+            generator.run(duration, report);
+
+            report.print(System.out);
+            Path reportDir = Paths.get(options.getOrDefault("report", DEFAULT_REPORT_DIR));
+            report.write(reportDir);
+            LOG.info("Report written to {}", reportDir.toAbsolutePath());
+        } finally {
+            if (api != null) {
+                api.close();
+            }
+            if (solr != null) {
+                solr.close();
+            }
+        }
+    }
+
+    private static Path generateArchive(Map<String, String> options) throws IOException {
+        EdmArchiveGenerator generator = new EdmArchiveGenerator()
+                .setRecords(Integer.parseInt(options.getOrDefault("records", String.valueOf(DEFAULT_RECORDS))))
+                .setMedia(options.containsKey("media"))
+                .setEntityHeavy(options.containsKey("entities"));
+        if (options.containsKey("dataset")) {
+            generator.setDatasetId(options.get("dataset"));
+        }
+        if (options.containsKey("pages")) {
+            generator.setPagesPerRecord(Integer.parseInt(options.get("pages")));
+        }
+        if (options.containsKey("words")) {
+            generator.setWordsPerPage(Integer.parseInt(options.get("words")));
+        }
+        if (options.containsKey("seed")) {
+            generator.setSeed(Long.parseLong(options.get("seed")));
+        }
+        Path archive = generator.generate(Paths.get(options.getOrDefault("output", DEFAULT_ARCHIVE_DIR))).get(0);
+        LOG.info("Generated {}", archive);
+        return archive;
+    }
+
+    /**
+     * Drop the database and load the archive using the Loader (without its web interface)
+     */
+    private static void loadArchive(Path archive, String mongoUri, String database) throws LoaderException {
+        try (MongoClient client = MongoClients.create(mongoUri)) {
+            LOG.info("Dropping database {}...", database);
+            client.getDatabase(database).drop();
+        }
+        // command-line arguments, because these should override the properties in loader.properties
+        try (ConfigurableApplicationContext loader = new SpringApplicationBuilder(LoaderApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.data.mongodb.uri=" + mongoUri, "--spring.data.mongodb.database=" + database)) {
+            LOG.info("Loading {} into database {}...", archive, database);
+            String result = loader.getBean(LoadArchiveService.class).processArchive(archive.toString(),
+                    MongoSaveMode.INSERT);
+            LOG.info(result);
+        }
+    }
+
+    private static ConfigurableApplicationContext startApi(Map<String, String> options, String mongoUri,
+                                                           String database, SolrStandIn solr) {
+        List<String> args = new ArrayList<>();
+        args.add("--server.port=" + options.getOrDefault("port", "0"));
+        args.add("--spring.data.mongodb.uri=" + mongoUri);
+        args.add("--spring.data.mongodb.database=" + database);
+        args.add("--spring.data.solr.zk-host=");
+        args.add("--spring.data.solr.host=" + solr.getUrl());
+        args.add("--spring.data.solr.core=" + solr.getCore());
+        args.add("--management.health.solr.enabled=false");
+        for (Map.Entry<String, String> option : options.entrySet()) {
+            if (!OPTIONS.contains(option.getKey())) {
+                args.add("--" + option.getKey() + "=" + option.getValue());
+            }
+        }
+        LOG.info("Starting API with {}", args);
+        // FTApplication.main() isn't used, because the socks proxy settings are not needed here
+        return new SpringApplicationBuilder(FTApplication.class).run(args.toArray(new String[0]));
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> result = new LinkedHashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument " + args[i]);
+            }
+            String name = args[i].substring(2);
+            int eq = name.indexOf('=');
+            if (eq > 0) {
+                result.put(name.substring(0, eq), name.substring(eq + 1));
+            } else if (i + 1 < args.length && !args[i + 1].startsWith("--")) {
+                result.put(name, args[++i]);
+            } else {
+                result.put(name, "");
+            }
+        }
+        return result;
+    }
+}
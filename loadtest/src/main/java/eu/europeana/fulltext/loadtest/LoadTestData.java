@@ -0,0 +1,140 @@
+package eu.europeana.fulltext.loadtest;
+
+import eu.europeana.fulltext.entity.AnnoPage;
+import eu.europeana.fulltext.entity.Annotation;
+import eu.europeana.fulltext.loader.exception.LoaderException;
+import eu.europeana.fulltext.loader.service.XMLParserService;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * The pages in a (generated) archive, read with the Loader's XMLParserService. This is used to create requests for
+ * existing pages, annotations and resources and to fill the Solr stand-in.
+ */
+public class LoadTestData {
+
+    // number of annotation ids and words we keep per page for creating requests
+    private static final int SAMPLE_SIZE = 20;
+    private static final Pattern SEARCHABLE_WORD = Pattern.compile("(?<=^|\\s)\\p{Alpha}{3,}(?=\\s|$)");
+
+    private final List<Page> pages = new ArrayList<>();
+
+    /**
+     * Reads all pages of a zip archive
+     * @param archive path to the archive
+     * @param parser  xml parser
+     * @param seed    random seed for selecting annotation ids and words
+     * @throws IOException when there's a problem reading the archive
+     * @throws LoaderException when a page can't be parsed
+     */
+    public LoadTestData(Path archive, XMLParserService parser, long seed) throws IOException, LoaderException {
+        Random random = new Random(seed);
+        try (ZipFile zip = new ZipFile(archive.toFile())) {
+            for (ZipEntry entry : Collections.list(zip.entries())) {
+                if (entry.isDirectory() || !entry.getName().endsWith(".xml")) {
+                    continue;
+                }
+                String pageId = StringUtils.removeEnd(StringUtils.substringAfterLast("/" + entry.getName(), "/"),
+                        ".xml");
+                try (InputStream in = zip.getInputStream(entry)) {
+                    pages.add(new Page(parser.parse(pageId, in, entry.getName()), random));
+                }
+            }
+        }
+    }
+
+    public List<Page> getPages() {
+        return pages;
+    }
+
+    /**
+     * The information of one page that is needed to send requests about it
+     */
+    public static final class Page {
+        private final String       datasetId;
+        private final String       localId;
+        private final String       pageId;
+        private final String       resourceId;
+        private final String       imageId;
+        private final String       language;
+        private final String       text;
+        private final List<String> annotationIds = new ArrayList<>();
+        private final List<String> words         = new ArrayList<>();
+
+        private Page(AnnoPage annoPage, Random random) {
+            this.datasetId = annoPage.getDsId();
+            this.localId = annoPage.getLcId();
+            this.pageId = annoPage.getPgId();
+            this.resourceId = annoPage.getRes().getId();
+            this.imageId = annoPage.getTgtId();
+            this.language = annoPage.getRes().getLang();
+            this.text = annoPage.getRes().getValue();
+
+            List<Annotation> annotations = annoPage.getAns();
+            for (int i = 0; i < SAMPLE_SIZE && !annotations.isEmpty(); i++) {
+                annotationIds.add(annotations.get(random.nextInt(annotations.size())).getAnId());
+            }
+            List<String> allWords = new ArrayList<>();
+            Matcher m = SEARCHABLE_WORD.matcher(text);
+            while (m.find()) {
+                allWords.add(m.group());
+            }
+            for (int i = 0; i < SAMPLE_SIZE && !allWords.isEmpty(); i++) {
+                words.add(allWords.get(random.nextInt(allWords.size())));
+            }
+        }
+
+        public String getDatasetId() {
+            return datasetId;
+        }
+
+        public String getLocalId() {
+            return localId;
+        }
+
+        public String getPageId() {
+            return pageId;
+        }
+
+        public String getResourceId() {
+            return resourceId;
+        }
+
+        public String getImageId() {
+            return imageId;
+        }
+
+        public String getLanguage() {
+            return language;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        /**
+         * @return a sample of the annotation ids of this page
+         */
+        public List<String> getAnnotationIds() {
+            return annotationIds;
+        }
+
+        /**
+         * @return a sample of the (alphabetic) words on this page
+         */
+        public List<String> getWords() {
+            return words;
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package eu.europeana.fulltext.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects the results of a load test run: a latency histogram (in microseconds), the number of responses per status
+ * code and the number of errors for every request type.
+ * The report can be printed as a table and written to a directory as a summary.json file and one .hgrm file (the
+ * percentile distribution in milliseconds) per request type, so the results of different builds can be compared or
+ * plotted with the HdrHistogram tools.
+ */
+public class LoadTestReport {
+
+    private static final long     HIGHEST_LATENCY_US = TimeUnit.MINUTES.toMicros(5);
+    private static final int      SIGNIFICANT_DIGITS = 3;
+    private static final double   US_PER_MS          = 1000.0;
+    private static final double[] PERCENTILES        = {50.0, 90.0, 99.0, 99.9};
+    private static final String   TOTAL              = "total";
+    private static final String   ERROR_STATUS       = "exception";
+
+    private final Map<RequestType, Results> results = new EnumMap<>(RequestType.class);
+    private long startNanos;
+    private long endNanos;
+
+    /**
+     * Create a new report
+     * @param mix request types to report on
+     */
+    public LoadTestReport(RequestMix mix) {
+        for (RequestType type : mix.getWeights().keySet()) {
+            results.put(type, new Results());
+        }
+    }
+
+    /**
+     * Mark the start of the measurement
+     */
+    public void start() {
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * Mark the end of the measurement
+     */
+    public void stop() {
+        endNanos = System.nanoTime();
+    }
+
+    /**
+     * Record a received response
+     * @param type         type of request
+     * @param latencyNanos time between the (intended) start of the request and receiving the response
+     * @param status       response status code
+     * @param ok           true if the status is the expected status
+     */
+    public void recordResponse(RequestType type, long latencyNanos, int status, boolean ok) {
+        Results r = results.get(type);
+        r.latency.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(latencyNanos), HIGHEST_LATENCY_US));
+        r.statuses.computeIfAbsent(Integer.toString(status), s -> new LongAdder()).increment();
+        if (!ok) {
+            r.errors.increment();
+        }
+    }
+
+    /**
+     * Record a request that failed without a response (e.g. a timeout or connection error)
+     * @param type         type of request
+     * @param latencyNanos time between the (intended) start of the request and the failure
+     */
+    public void recordException(RequestType type, long latencyNanos) {
+        Results r = results.get(type);
+        r.latency.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(latencyNanos), HIGHEST_LATENCY_US));
+        r.statuses.computeIfAbsent(ERROR_STATUS, s -> new LongAdder()).increment();
+        r.errors.increment();
+    }
+
+    /**
+     * Print a summary table with throughput, error rate and latency percentiles (in ms) per request type
+     * @param out stream to print to
+     */
+    public void print(PrintStream out) {
+        out.printf("%-22s %9s %9s %8s %9s %9s %9s %9s %9s%n", "request", "count", "req/s", "errors",
+                "p50", "p90", "p99", "p99.9", "max");
+        for (Map.Entry<String, Histogram> entry : histograms().entrySet()) {
+            Histogram h = entry.getValue();
+            long errors = errors(entry.getKey());
+            out.printf("%-22s %9d %9.1f %7.2f%% %9.2f %9.2f %9.2f %9.2f %9.2f%n", entry.getKey(),
+                    h.getTotalCount(), throughput(h.getTotalCount()), errorRate(errors, h.getTotalCount()),
+                    h.getValueAtPercentile(PERCENTILES[0]) / US_PER_MS,
+                    h.getValueAtPercentile(PERCENTILES[1]) / US_PER_MS,
+                    h.getValueAtPercentile(PERCENTILES[2]) / US_PER_MS,
+                    h.getValueAtPercentile(PERCENTILES[3]) / US_PER_MS,
+                    h.getMaxValue() / US_PER_MS);
+        }
+        out.printf("Duration %.1f s, latencies in ms%n", durationSeconds());
+    }
+
+    /**
+     * Write summary.json and a .hgrm percentile distribution file per request type (and in total)
+     * @param directory directory to write to, is created if it doesn't exist
+     * @throws IOException when there's a problem writing a file
+     */
+    public void write(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("durationSeconds", durationSeconds());
+        Map<String, Object> requests = new LinkedHashMap<>();
+        for (Map.Entry<String, Histogram> entry : histograms().entrySet()) {
+            Histogram h = entry.getValue();
+            long errors = errors(entry.getKey());
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("count", h.getTotalCount());
+            result.put("throughput", throughput(h.getTotalCount()));
+            result.put("errors", errors);
+            result.put("errorRate", errorRate(errors, h.getTotalCount()));
+            result.put("statuses", statuses(entry.getKey()));
+            Map<String, Object> latency = new LinkedHashMap<>();
+            latency.put("mean", h.getMean() / US_PER_MS);
+            for (double percentile : PERCENTILES) {
+                latency.put(percentileName(percentile), h.getValueAtPercentile(percentile) / US_PER_MS);
+            }
+            latency.put("max", h.getMaxValue() / US_PER_MS);
+            result.put("latencyMs", latency);
+            requests.put(entry.getKey(), result);
+
+            try (PrintStream out = new PrintStream(Files.newOutputStream(directory.resolve(entry.getKey()
+                    + ".hgrm")), false, "UTF-8")) {
+                h.outputPercentileDistribution(out, US_PER_MS);
+            }
+        }
+        summary.put("requests", requests);
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT)
+                .writeValue(directory.resolve("summary.json").toFile(), summary);
+    }
+
+    /**
+     * @return the total number of requests that were recorded
+     */
+    public long getTotalCount() {
+        return histograms().get(TOTAL).getTotalCount();
+    }
+
+    /**
+     * @return latency histogram per request type name, followed by the total of all request types
+     */
+    private Map<String, Histogram> histograms() {
+        Map<String, Histogram> result = new LinkedHashMap<>();
+        Histogram total = new Histogram(HIGHEST_LATENCY_US, SIGNIFICANT_DIGITS);
+        for (Map.Entry<RequestType, Results> entry : results.entrySet()) {
+            Histogram copy = entry.getValue().latency.copy();
+            result.put(entry.getKey().getName(), copy);
+            total.add(copy);
+        }
+        result.put(TOTAL, total);
+        return result;
+    }
+
+    private long errors(String name) {
+        return results.entrySet().stream()
+                .filter(e -> TOTAL.equals(name) || e.getKey().getName().equals(name))
+                .mapToLong(e -> e.getValue().errors.sum()).sum();
+    }
+
+    private Map<String, Long> statuses(String name) {
+        Map<String, Long> result = new TreeMap<>();
+        results.entrySet().stream()
+                .filter(e -> TOTAL.equals(name) || e.getKey().getName().equals(name))
+                .forEach(e -> e.getValue().statuses.forEach((status, count) -> result.merge(status, count.sum(),
+                        Long::sum)));
+        return result;
+    }
+
+    private double durationSeconds() {
+        return (endNanos - startNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+    }
+
+    private double throughput(long count) {
+        double seconds = durationSeconds();
+        return seconds > 0 ? count / seconds : 0;
+    }
+
+    private static String percentileName(double percentile) {
+        // p50 instead of p50.0, but p99.9
+        if (percentile == Math.rint(percentile)) {
+            return "p" + (long) percentile;
+        }
+        return "p" + percentile;
+    }
+
+    private static double errorRate(long errors, long count) {
+        return count > 0 ? 100.0 * errors / count : 0;
+    }
+
+    /**
+     * Results of one request type
+     */
+    private static final class Results {
+        private final Histogram              latency  = new ConcurrentHistogram(HIGHEST_LATENCY_US,
+                SIGNIFICANT_DIGITS);
+        private final Map<String, LongAdder> statuses = new ConcurrentHashMap<>();
+        private final LongAdder              errors   = new LongAdder();
+    }
+}
@@ -0,0 +1,165 @@
+package eu.europeana.fulltext.loadtest;
+
+import eu.europeana.fulltext.loadtest.LoadTestData.Page;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Creates random requests for the pages in the load test data, according to the configured weight of each request
+ * type. For conditional requests the ETag of the previous response for the same url is remembered and sent in an
+ * If-None-Match header, so after the first request the API can respond with 304 Not Modified.
+ */
+public class RequestMix {
+
+    /** Default request mix: mostly AnnotationPages, some search and the rest spread over the other request types */
+    public static final String DEFAULT_MIX = "annopage-v3=35,annopage-v2=10,annopage-granularity=10,annotation=10,"
+            + "resource=10,summary=5,search=15,conditional=5";
+
+    private static final String   ACCEPT_JSON        = "application/json";
+    private static final String   ACCEPT_JSONLD      = "application/ld+json";
+    private static final String[] TEXT_GRANULARITIES = {"line", "word"};
+    private static final int      SEARCH_PAGE_SIZE   = 12;
+
+    private final String                    apiUrl;
+    private final List<Page>                pages;
+    private final Map<RequestType, Integer> weights = new EnumMap<>(RequestType.class);
+    private final int                       totalWeight;
+    private final Duration                  timeout;
+    private final Map<URI, String>          eTags   = new ConcurrentHashMap<>();
+
+    /**
+     * Create a new request mix
+     * @param apiUrl  base url of the API, e.g. http://localhost:8080
+     * @param data    pages that exist in the API's database
+     * @param mix     comma-separated list of request types and their weight, see {@link #DEFAULT_MIX}
+     * @param timeout request timeout
+     */
+    public RequestMix(String apiUrl, LoadTestData data, String mix, Duration timeout) {
+        this.apiUrl = apiUrl.endsWith("/") ? apiUrl.substring(0, apiUrl.length() - 1) : apiUrl;
+        this.pages = data.getPages();
+        this.timeout = timeout;
+        if (pages.isEmpty()) {
+            throw new IllegalArgumentException("No pages to send requests for");
+        }
+        int total = 0;
+        for (String part : mix.split(",")) {
+            String[] typeWeight = part.split("=");
+            if (typeWeight.length != 2) {
+                throw new IllegalArgumentException("Invalid request mix " + mix + ", expected <type>=<weight>,...");
+            }
+            int weight = Integer.parseInt(typeWeight[1].trim());
+            if (weight < 0) {
+                throw new IllegalArgumentException("Weight of " + typeWeight[0] + " can't be negative");
+            }
+            weights.merge(RequestType.fromName(typeWeight[0]), weight, Integer::sum);
+            total += weight;
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException("Request mix " + mix + " has no requests");
+        }
+        this.totalWeight = total;
+    }
+
+    /**
+     * @return the request types in this mix and their weight
+     */
+    public Map<RequestType, Integer> getWeights() {
+        return weights;
+    }
+
+    /**
+     * Pick a random request type, taking into account the weights
+     * @param random random generator (of the calling thread)
+     * @return request type
+     */
+    public RequestType nextType(Random random) {
+        int value = random.nextInt(totalWeight);
+        for (Map.Entry<RequestType, Integer> entry : weights.entrySet()) {
+            value -= entry.getValue();
+            if (value < 0) {
+                return entry.getKey();
+            }
+        }
+        throw new IllegalStateException("Request mix weights are inconsistent");
+    }
+
+    /**
+     * Create a request of the provided type for a random page
+     * @param type   type of request
+     * @param random random generator (of the calling thread)
+     * @return request
+     */
+    public HttpRequest createRequest(RequestType type, Random random) {
+        Page page = pages.get(random.nextInt(pages.size()));
+        String recordUrl = apiUrl + "/presentation/" + page.getDatasetId() + "/" + page.getLocalId();
+        String pageUrl = recordUrl + "/annopage/" + page.getPageId();
+        switch (type) {
+            case ANNOPAGE_V2:
+                return get(pageUrl + "?format=2", ACCEPT_JSON).build();
+            case ANNOPAGE_V3:
+                return get(pageUrl + "?format=3", ACCEPT_JSONLD).build();
+            case ANNOPAGE_GRANULARITY:
+                return get(pageUrl + "?format=3&textGranularity="
+                        + TEXT_GRANULARITIES[random.nextInt(TEXT_GRANULARITIES.length)], ACCEPT_JSONLD).build();
+            case ANNOTATION:
+                return get(recordUrl + "/anno/" + randomItem(page.getAnnotationIds(), random), ACCEPT_JSONLD)
+                        .build();
+            case RESOURCE:
+                return get(recordUrl + "/" + page.getResourceId(), ACCEPT_JSONLD).build();
+            case SUMMARY:
+                return get(recordUrl + "/annopage", ACCEPT_JSON).build();
+            case SEARCH:
+                return get(recordUrl + "/search?pageSize=" + SEARCH_PAGE_SIZE + "&query="
+                        + URLEncoder.encode(randomItem(page.getWords(), random), StandardCharsets.UTF_8),
+                        ACCEPT_JSON).build();
+            case CONDITIONAL:
+                HttpRequest.Builder builder = get(pageUrl + "?format=3", ACCEPT_JSONLD);
+                String eTag = eTags.get(builder.build().uri());
+                if (eTag != null) {
+                    builder.header("If-None-Match", eTag);
+                }
+                return builder.build();
+            default:
+                throw new IllegalArgumentException("Unsupported request type " + type);
+        }
+    }
+
+    /**
+     * Check the response of a request and, for conditional requests, remember its ETag
+     * @param type     type of request
+     * @param response received response
+     * @return true if the response has the expected status
+     */
+    public boolean processResponse(RequestType type, HttpResponse<?> response) {
+        if (type == RequestType.CONDITIONAL) {
+            response.headers().firstValue("ETag").ifPresent(eTag -> eTags.put(response.request().uri(), eTag));
+            return response.statusCode() == 200 || response.statusCode() == 304;
+        }
+        return response.statusCode() == 200;
+    }
+
+    private HttpRequest.Builder get(String url, String accept) {
+        // like browsers, accept compressed responses (the body is discarded, so it's never decompressed)
+        return HttpRequest.newBuilder(URI.create(url)).timeout(timeout)
+                .header("Accept", accept)
+                .header("Accept-Encoding", "gzip")
+                .GET();
+    }
+
+    private static String randomItem(List<String> items, Random random) {
+        if (items.isEmpty()) {
+            throw new IllegalStateException("No annotation ids or words available for this page");
+        }
+        return items.get(random.nextInt(items.size()));
+    }
+}
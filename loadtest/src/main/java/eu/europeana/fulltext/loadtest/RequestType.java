@@ -0,0 +1,47 @@
+package eu.europeana.fulltext.loadtest;
+
+import java.util.Locale;
+
+/**
+ * The types of requests that can be part of a request mix
+ */
+public enum RequestType {
+
+    /** AnnotationPage in IIIF presentation v2 format */
+    ANNOPAGE_V2,
+    /** AnnotationPage in IIIF presentation v3 format */
+    ANNOPAGE_V3,
+    /** AnnotationPage (v3) with only Line or only Word annotations */
+    ANNOPAGE_GRANULARITY,
+    /** Single annotation */
+    ANNOTATION,
+    /** Full-text resource of a page */
+    RESOURCE,
+    /** Summary of all AnnoPages of a record */
+    SUMMARY,
+    /** Search for one word in a record */
+    SEARCH,
+    /** AnnotationPage request with the ETag of a previous response in an If-None-Match header */
+    CONDITIONAL;
+
+    /**
+     * @return name as used in the request mix and report, e.g. annopage-v3
+     */
+    public String getName() {
+        return name().toLowerCase(Locale.ROOT).replace('_', '-');
+    }
+
+    /**
+     * @param name name of a request type as used in the request mix, e.g. annopage-v3
+     * @return matching RequestType
+     * @throws IllegalArgumentException when there is no such request type
+     */
+    public static RequestType fromName(String name) {
+        for (RequestType type : values()) {
+            if (type.getName().equalsIgnoreCase(name.trim())) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("Unknown request type " + name);
+    }
+}
@@ -0,0 +1,300 @@
+package eu.europeana.fulltext.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import eu.europeana.fulltext.loadtest.LoadTestData.Page;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.util.JavaBinCodec;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Minimal stand-in for the Solr highlighting query that the API does for searching in an issue. It answers
+ * {@code /select} requests in the javabin format with the same structure as the (custom) extended unified highlighter
+ * of the full-text Solr: per page a snippet {@code {<imageId>} <text>} and the passage start and match offsets.
+ * <p>
+ * Like in the real index, every record is one document with a multi-valued {@code fulltext.<language>} field that
+ * contains the image id and text of every page, so offsets are relative to the start of the first value. A word is
+ * found if it matches a whole word in the text (case-insensitive); there's no stemming or phrase search.
+ * A real Solr can't be used here, because the API depends on the offsets returned by the custom highlighter plugin.
+ */
+public class SolrStandIn implements AutoCloseable {
+
+    private static final Logger LOG = LogManager.getLogger(SolrStandIn.class);
+
+    private static final String CORE             = "fulltext";
+    private static final String FIELD_PREFIX     = "fulltext.";
+    private static final String ID_FIELD         = "europeana_id";
+    private static final String CONTENT_TYPE     = "application/octet-stream";
+    // Solr puts an offset gap of 1 between the values of a multi-valued field
+    private static final int    VALUE_GAP        = 1;
+    private static final int    DEFAULT_SNIPPETS = 1;
+
+    private final Map<String, Document> documents = new HashMap<>();
+    private final HttpServer            server;
+    private final ExecutorService       executor;
+    private final long                  delayMs;
+
+    /**
+     * Create and start a Solr stand-in for the provided pages
+     * @param data    pages to index
+     * @param port    port to listen on, or 0 to pick a free port
+     * @param delayMs extra time in ms that every query takes, to simulate the query time of a real Solr server
+     * @throws IOException when the http server can't be started
+     */
+    public SolrStandIn(LoadTestData data, int port, long delayMs) throws IOException {
+        this.delayMs = delayMs;
+        for (Page page : data.getPages()) {
+            String id = "/" + page.getDatasetId() + "/" + page.getLocalId();
+            documents.computeIfAbsent(id, k -> new Document(page.getLanguage())).addPage(page);
+        }
+        this.executor = Executors.newCachedThreadPool();
+        this.server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        server.createContext("/solr", this::handle);
+        server.setExecutor(executor);
+        server.start();
+        LOG.info("Solr stand-in for {} records listening on {}", documents.size(), getUrl());
+    }
+
+    /**
+     * @return Solr base url, to be used as spring.data.solr.host
+     */
+    public String getUrl() {
+        return "http://localhost:" + server.getAddress().getPort() + "/solr";
+    }
+
+    /**
+     * @return name of the Solr core, to be used as spring.data.solr.core
+     */
+    public String getCore() {
+        return CORE;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!exchange.getRequestURI().getPath().endsWith("/select")) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            long start = System.nanoTime();
+            String query = exchange.getRequestURI().getRawQuery();
+            if ("POST".equals(exchange.getRequestMethod())) {
+                query = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            }
+            Map<String, String> params = parseParams(query);
+            if (delayMs > 0) {
+                Thread.sleep(delayMs);
+            }
+
+            String id = unescape(StringUtils.removeStart(params.getOrDefault("q", ""), ID_FIELD + ":"));
+            String[] words = unescape(params.getOrDefault("hl.q", "")).toLowerCase(Locale.ROOT).split("\\s+");
+            int maxSnippets = Integer.parseInt(params.getOrDefault("hl.snippets", String.valueOf(DEFAULT_SNIPPETS)));
+            NamedList<Object> response = createResponse(documents.get(id), id, words, maxSnippets,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            try (JavaBinCodec codec = new JavaBinCodec()) {
+                codec.marshal(response, body);
+            }
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.size());
+            try (OutputStream out = exchange.getResponseBody()) {
+                body.writeTo(out);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            LOG.error("Error handling Solr request {}", exchange.getRequestURI(), e);
+            exchange.sendResponseHeaders(500, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static NamedList<Object> createResponse(Document document, String id, String[] words, int maxSnippets,
+                                                    long queryTime) {
+        NamedList<Object> response = new NamedList<>();
+        SimpleOrderedMap<Object> header = new SimpleOrderedMap<>();
+        header.add("status", 0);
+        header.add("QTime", (int) queryTime);
+        response.add("responseHeader", header);
+
+        SolrDocumentList results = new SolrDocumentList();
+        results.setStart(0);
+        if (document == null) {
+            results.setNumFound(0);
+            response.add("response", results);
+            return response;
+        }
+        results.setNumFound(1);
+        SolrDocument doc = new SolrDocument();
+        doc.setField(ID_FIELD, id);
+        results.add(doc);
+        response.add("response", results);
+
+        SimpleOrderedMap<Object> fields = new SimpleOrderedMap<>();
+        NamedList<Object> highlights = document.highlight(words, maxSnippets);
+        if (highlights != null) {
+            fields.add(FIELD_PREFIX + document.language, highlights);
+        }
+        SimpleOrderedMap<Object> highlighting = new SimpleOrderedMap<>();
+        highlighting.add(id, fields);
+        response.add("highlighting", highlighting);
+        return response;
+    }
+
+    private static Map<String, String> parseParams(String query) {
+        Map<String, String> result = new LinkedHashMap<>();
+        if (query == null) {
+            return result;
+        }
+        for (String param : query.split("&")) {
+            int eq = param.indexOf('=');
+            if (eq > 0) {
+                result.put(URLDecoder.decode(param.substring(0, eq), StandardCharsets.UTF_8),
+                        URLDecoder.decode(param.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reverts ClientUtils.escapeQueryChars
+     */
+    private static String unescape(String value) {
+        StringBuilder result = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                c = value.charAt(++i);
+            }
+            result.append(c);
+        }
+        return result.toString();
+    }
+
+    /**
+     * All pages of one record, as they would be stored in the multi-valued full-text field
+     */
+    private static final class Document {
+        private final String           language;
+        private final List<FieldValue> values = new ArrayList<>();
+        private int                    length;
+
+        private Document(String language) {
+            this.language = language;
+        }
+
+        private void addPage(Page page) {
+            if (!values.isEmpty()) {
+                length += VALUE_GAP;
+            }
+            FieldValue value = new FieldValue(length, "{" + page.getImageId() + "} " + page.getText());
+            values.add(value);
+            length += value.text.length();
+        }
+
+        /**
+         * @return snippets and passages of at most maxSnippets values that contain one of the words, or null if
+         * there are none
+         */
+        private NamedList<Object> highlight(String[] words, int maxSnippets) {
+            List<String> snippets = new ArrayList<>();
+            List<NamedList<Object>> passages = new ArrayList<>();
+            for (FieldValue value : values) {
+                if (snippets.size() >= maxSnippets) {
+                    break;
+                }
+                List<Integer> starts = new ArrayList<>();
+                List<Integer> ends = new ArrayList<>();
+                value.findMatches(words, starts, ends);
+                if (!starts.isEmpty()) {
+                    snippets.add(value.text);
+                    SimpleOrderedMap<Object> passage = new SimpleOrderedMap<>();
+                    passage.add("startOffsetUtf16", value.start);
+                    passage.add("matchStartsUtf16", starts);
+                    passage.add("matchEndsUtf16", ends);
+                    passages.add(passage);
+                }
+            }
+            if (snippets.isEmpty()) {
+                return null;
+            }
+            SimpleOrderedMap<Object> result = new SimpleOrderedMap<>();
+            result.add("snippets", snippets);
+            result.add("passages", passages);
+            return result;
+        }
+    }
+
+    /**
+     * One value of the multi-valued full-text field (one page)
+     */
+    private static final class FieldValue {
+        private final int    start;
+        private final String text;
+        private final String lowerCaseText;
+
+        private FieldValue(int start, String text) {
+            this.start = start;
+            this.text = text;
+            String lowerCase = text.toLowerCase(Locale.ROOT);
+            // only use the lower case text if it doesn't change offsets
+            this.lowerCaseText = (lowerCase.length() == text.length() ? lowerCase : text);
+        }
+
+        private void findMatches(String[] words, List<Integer> starts, List<Integer> ends) {
+            // the image id is not part of the text
+            int textStart = text.indexOf('}') + 2;
+            for (String word : words) {
+                if (word.isEmpty()) {
+                    continue;
+                }
+                int from = lowerCaseText.indexOf(word, textStart);
+                while (from >= 0) {
+                    int to = from + word.length();
+                    if (isWordBoundary(from - 1) && isWordBoundary(to)) {
+                        starts.add(start + from);
+                        ends.add(start + to);
+                    }
+                    from = lowerCaseText.indexOf(word, to);
+                }
+            }
+            // matches of different words should be in order of appearance
+            if (words.length > 1) {
+                starts.sort(Integer::compare);
+                ends.sort(Integer::compare);
+            }
+        }
+
+        private boolean isWordBoundary(int index) {
+            return index < 0 || index >= text.length() || !Character.isLetterOrDigit(text.charAt(index));
+        }
+    }
+}